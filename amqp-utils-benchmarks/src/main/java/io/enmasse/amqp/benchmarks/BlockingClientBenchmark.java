@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.amqp.benchmarks;
+
+import io.enmasse.amqp.BlockingClient;
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonServer;
+import io.vertx.proton.ProtonSession;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the messages per second sent and received by the BlockingClient, for different windows of
+ * unsettled deliveries and credit, against an in-process AMQP server settling and producing messages right away
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockingClientBenchmark {
+
+    private static final int MESSAGES = 1024;
+
+    @Param({ "1", "16", "256", "1024" })
+    public int window;
+
+    private Vertx vertx;
+    private ProtonServer server;
+    private BlockingClient client;
+    private List<Message> messages;
+
+    @Setup
+    public void setup() throws Exception {
+
+        this.vertx = Vertx.vertx();
+        this.server = ProtonServer.create(this.vertx);
+        this.server.connectHandler(connection -> {
+            connection.closeHandler(c -> {
+                connection.close();
+                connection.disconnect();
+            });
+            connection.disconnectHandler(c -> connection.disconnect()).open();
+            connection.sessionOpenHandler(ProtonSession::open);
+
+            // accepting all the messages sent by the client
+            connection.receiverOpenHandler(receiver -> {
+                receiver.setTarget(receiver.getRemoteTarget());
+                receiver.handler((delivery, message) -> { });
+                receiver.open();
+            });
+
+            // producing messages as long as the client grants credit
+            connection.senderOpenHandler(sender -> {
+                sender.setSource(sender.getRemoteSource());
+                sender.sendQueueDrainHandler(s -> {
+                    while (!sender.sendQueueFull()) {
+                        sender.send(createMessage("benchmark"));
+                    }
+                });
+                sender.open();
+            });
+        });
+
+        CompletableFuture<Void> listening = new CompletableFuture<>();
+        this.server.listen(0, result -> listening.complete(null));
+        listening.get(1, TimeUnit.MINUTES);
+
+        this.client = new BlockingClient("127.0.0.1", this.server.actualPort(), this.vertx);
+        this.messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            this.messages.add(createMessage("benchmark"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        this.server.close();
+        this.client.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void send() throws InterruptedException {
+
+        this.client.send("benchmark", this.messages, this.window, 1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public List<Message> recv() throws InterruptedException {
+
+        return this.client.recv("benchmark", MESSAGES, this.window, 1, TimeUnit.MINUTES);
+    }
+
+    private static Message createMessage(String address) {
+
+        Message message = Message.Factory.create();
+        message.setAddress(address);
+        message.setBody(new AmqpValue("hello"));
+        return message;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        new Runner(new OptionsBuilder()
+                .include(BlockingClientBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
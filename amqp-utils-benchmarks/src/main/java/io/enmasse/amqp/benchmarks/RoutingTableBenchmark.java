@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.amqp.benchmarks;
+
+import io.enmasse.amqp.PrefixTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JMH benchmark of the link route lookup done by the DispatchRouterJ routing table on every link attach, comparing
+ * the synchronized linear scan of the prefixes with the lock-free lookup in the prefix trie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(16)
+@Fork(1)
+public class RoutingTableBenchmark {
+
+    @Param({ "10000" })
+    public int prefixes;
+
+    private String[] addresses;
+    private LinearRoutingTable linearRoutingTable;
+    private AtomicReference<PrefixTrie<String>> linkRoutePrefixes;
+    private AtomicReference<PrefixTrie<String>> linkRoutes;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        this.linearRoutingTable = new LinearRoutingTable();
+        PrefixTrie<String> trie = PrefixTrie.empty();
+        for (int i = 0; i < this.prefixes; i++) {
+            String prefix = "tenant-" + (i % 100) + "/route-" + i + "/";
+            String containerId = "container-" + (i % 10);
+            this.linearRoutingTable.addLinkRoute(prefix, containerId);
+            trie = trie.put(prefix, containerId);
+        }
+        this.linkRoutePrefixes = new AtomicReference<>(trie);
+        this.linkRoutes = new AtomicReference<>(trie);
+
+        // mostly link routed addresses, with some not matching any prefix
+        this.addresses = new String[1024];
+        for (int i = 0; i < this.addresses.length; i++) {
+            int route = random.nextInt(this.prefixes);
+            this.addresses[i] = i % 10 == 0
+                    ? "anycast-" + route
+                    : "tenant-" + (route % 100) + "/route-" + route + "/queue-" + i;
+        }
+    }
+
+    @Benchmark
+    public String linearAttach() {
+
+        // the RoutingTable lookup before the prefix trie
+        return this.linearRoutingTable.lookup(nextAddress());
+    }
+
+    @Benchmark
+    public String trieAttach() {
+
+        String address = nextAddress();
+        if (this.linkRoutePrefixes.get().longestPrefixMatch(address) == null) {
+            return null;
+        }
+        return this.linkRoutes.get().longestPrefixMatch(address);
+    }
+
+    private String nextAddress() {
+        return this.addresses[ThreadLocalRandom.current().nextInt(this.addresses.length)];
+    }
+
+    private static class LinearRoutingTable {
+        private final List<String> linkRouteConfigs = new ArrayList<>();
+        private final List<String[]> linkRoutes = new ArrayList<>();
+
+        synchronized void addLinkRoute(String prefix, String containerId) {
+            this.linkRouteConfigs.add(prefix);
+            this.linkRoutes.add(new String[] { prefix, containerId });
+        }
+
+        synchronized String lookup(String address) {
+            boolean hasLinkRoute = false;
+            for (String prefix : this.linkRouteConfigs) {
+                if (address.startsWith(prefix)) {
+                    hasLinkRoute = true;
+                    break;
+                }
+            }
+            if (!hasLinkRoute) {
+                return null;
+            }
+            String containerId = null;
+            for (String[] linkRoute : this.linkRoutes) {
+                if (address.startsWith(linkRoute[0])) {
+                    containerId = linkRoute[1];
+                }
+            }
+            return containerId;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        new Runner(new OptionsBuilder()
+                .include(RoutingTableBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
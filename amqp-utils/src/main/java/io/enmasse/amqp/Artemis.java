@@ -19,34 +19,48 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
- * Represents an Artemis broker that may be managed
+ * Represents an Artemis broker that may be managed.
+ *
+ * Management requests are asynchronous and pipelined: every request is tagged with a message-id (also used as
+ * correlation-id) and the reply is matched by its correlation-id, so many requests can be in flight and a late reply
+ * for a timed out request, or with an unknown correlation-id, is discarded.
+ *
+ * The asynchronous operations changing the broker fail when the broker replies with _AMQ_OperationSucceeded=false,
+ * the blocking ones ignore the outcome of the operation as they always did.
  */
 public class Artemis implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(Artemis.class.getName());
     private static final int maxRetries = 10;
+    private static final String requestIdPrefix = "artemis-mgmt-";
     private final Context context;
     private final ProtonConnection connection;
     private final ProtonSender sender;
     private final ProtonReceiver receiver;
     private final String replyTo;
-    private final BlockingQueue<Message> replies;
     private final String brokerContainerId;
+    private final AtomicLong requestIds = new AtomicLong(0);
+    // outstanding requests by id
+    private final ConcurrentMap<Long, CompletableFuture<Message>> pendingRequests;
     private long requestTimeoutMillis = 10_000;
 
-    private Artemis(Context context, ProtonConnection connection, ProtonSender sender, ProtonReceiver receiver, String replyTo, BlockingQueue<Message> replies) {
+    private Artemis(Context context, ProtonConnection connection, ProtonSender sender, ProtonReceiver receiver, String replyTo, ConcurrentMap<Long, CompletableFuture<Message>> pendingRequests) {
         this.context = context;
         this.connection = connection;
         this.brokerContainerId = connection.getRemoteContainer();
         this.sender = sender;
         this.receiver = receiver;
         this.replyTo = replyTo;
-        this.replies = replies;
+        this.pendingRequests = pendingRequests;
     }
 
     public Artemis setRequestTimeout(long timeout, TimeUnit timeUnit) {
@@ -94,14 +108,14 @@ public class Artemis implements AutoCloseable {
     }
 
     private static void createReceiver(Vertx vertx, ProtonConnection connection, ProtonSender sender, Future<Artemis> promise, int retries) {
-        BlockingQueue<Message> replies = new LinkedBlockingDeque<>();
+        ConcurrentMap<Long, CompletableFuture<Message>> pendingRequests = new ConcurrentHashMap<>();
         ProtonReceiver receiver = connection.createReceiver("activemq.management");
         Source source = new Source();
         source.setDynamic(true);
         receiver.setSource(source);
         receiver.openHandler(h -> {
             if (h.succeeded()) {
-                promise.complete(new Artemis(vertx.getOrCreateContext(), connection, sender, receiver, h.result().getRemoteSource().getAddress(), replies));
+                promise.complete(new Artemis(vertx.getOrCreateContext(), connection, sender, receiver, h.result().getRemoteSource().getAddress(), pendingRequests));
             } else {
                 if (retries > maxRetries) {
                     promise.fail(h.cause());
@@ -112,39 +126,45 @@ public class Artemis implements AutoCloseable {
             }
         });
         receiver.handler(((protonDelivery, message) -> {
-            try {
-                replies.put(message);
-                ProtonHelper.accepted(protonDelivery, true);
-            } catch (Exception e) {
-                ProtonHelper.rejected(protonDelivery, true);
+            ProtonHelper.accepted(protonDelivery, true);
+            CompletableFuture<Message> request = takeRequest(pendingRequests, message.getCorrelationId());
+            if (request != null) {
+                request.complete(message);
+            } else {
+                log.info("Discarding reply with correlation id {}, no outstanding request", message.getCorrelationId());
             }
         }));
         receiver.open();
     }
 
-    private Message doOperation(String resource, String operation, Object ... parameters) throws TimeoutException {
-        Message message = createOperationMessage(resource, operation);
-        Message response = doRequestResponse(message, parameters);
-        if (response == null) {
-            throw new TimeoutException("Timed out getting response from broker " + brokerContainerId + " on " + resource + "." + operation + " with parameters: " + Arrays.toString(parameters));
+    /**
+     * Take the outstanding request a reply belongs to. The broker may add a prefix to the correlation-id when
+     * converting the reply, so the request id is looked up after the request id prefix.
+     */
+    private static CompletableFuture<Message> takeRequest(ConcurrentMap<Long, CompletableFuture<Message>> pendingRequests, Object correlationId) {
+        String correlation = correlationId != null ? correlationId.toString() : "";
+        int index = correlation.lastIndexOf(requestIdPrefix);
+        if (index >= 0) {
+            try {
+                return pendingRequests.remove(Long.parseLong(correlation.substring(index + requestIdPrefix.length())));
+            } catch (NumberFormatException e) {
+                log.debug("Invalid correlation id {}", correlation);
+            }
         }
-        return response;
+        return null;
     }
 
-    private Message doAttribute(String resource, String attribute, Object ... parameters) throws TimeoutException {
-        Message message = createAttributeMessage(resource, attribute);
-        Message response = doRequestResponse(message, parameters);
-        if (response == null) {
-            throw new TimeoutException("Timed out getting response from broker " + brokerContainerId + " on " + resource + "." + attribute + " with parameters: " + Arrays.toString(parameters));
-        }
-        return response;
+    private CompletableFuture<Message> doOperationAsync(String resource, String operation, Object ... parameters) {
+        Message message = createOperationMessage(resource, operation);
+        return doRequestResponse(requestTimeoutMillis, TimeUnit.MILLISECONDS, message, resource + "." + operation, parameters);
     }
 
-    private Message doRequestResponse(Message message, Object ... parameters) throws TimeoutException {
-        return doRequestResponse(requestTimeoutMillis, TimeUnit.MILLISECONDS, message, parameters);
+    private CompletableFuture<Message> doAttributeAsync(String resource, String attribute, Object ... parameters) {
+        Message message = createAttributeMessage(resource, attribute);
+        return doRequestResponse(requestTimeoutMillis, TimeUnit.MILLISECONDS, message, resource + "." + attribute, parameters);
     }
 
-    private Message doRequestResponse(long timeout, TimeUnit timeUnit, Message message, Object ... parameters) throws TimeoutException {
+    private CompletableFuture<Message> doRequestResponse(long timeout, TimeUnit timeUnit, Message message, String request, Object ... parameters) {
         JsonArray params = new JsonArray();
         for (Object param : parameters) {
             if (param == null) {
@@ -155,7 +175,21 @@ public class Artemis implements AutoCloseable {
         }
 
         message.setBody(new AmqpValue(Json.encode(params)));
-        return sendMessage(message, timeout, timeUnit);
+        return sendMessage(message, timeout, timeUnit, () -> "Timed out getting response from broker " + brokerContainerId + " on " + request + " with parameters: " + Arrays.toString(parameters));
+    }
+
+    /**
+     * Complete with null if the broker executed the operation, fail with the broker error otherwise.
+     */
+    private CompletableFuture<Void> checkSucceeded(CompletableFuture<Message> response, String request) {
+        return response.thenApply(reply -> {
+            ApplicationProperties properties = reply.getApplicationProperties();
+            if (properties != null && Boolean.FALSE.equals(properties.getValue().get("_AMQ_OperationSucceeded"))) {
+                Object body = reply.getBody() instanceof AmqpValue ? ((AmqpValue) reply.getBody()).getValue() : null;
+                throw new IllegalStateException("Error from broker " + brokerContainerId + " on " + request + ": " + body);
+            }
+            return null;
+        });
     }
 
     private Message createOperationMessage(String resource, String operation) {
@@ -180,104 +214,217 @@ public class Artemis implements AutoCloseable {
         return message;
     }
 
-    private Message sendMessage(Message message, long timeout, TimeUnit timeUnit) {
-        context.runOnContext(h -> sender.send(message));
+    private CompletableFuture<Message> sendMessage(Message message, long timeout, TimeUnit timeUnit, Supplier<String> timeoutMessage) {
+        long id = requestIds.incrementAndGet();
+        String messageId = requestIdPrefix + id;
+        message.setMessageId(messageId);
+        message.setCorrelationId(messageId);
+
+        CompletableFuture<Message> response = new CompletableFuture<>();
+        pendingRequests.put(id, response);
+        context.runOnContext(h -> {
+            sender.send(message);
+            context.owner().setTimer(timeUnit.toMillis(timeout), timerId -> {
+                if (pendingRequests.remove(id, response)) {
+                    response.completeExceptionally(new TimeoutException(timeoutMessage.get()));
+                }
+            });
+        });
+        return response;
+    }
+
+    /**
+     * Wait for the result of an asynchronous request.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws TimeoutException {
         try {
-            Message m = replies.poll(timeout, timeUnit);
-            return m;
+            return future.get();
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new TimeoutException(cause.getMessage());
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
         }
     }
 
-    public void deployQueue(String name, String address) throws TimeoutException {
+    private static String getStringResult(Message response) {
+        String payload = (String) ((AmqpValue)response.getBody()).getValue();
+        return new JsonArray(payload).getString(0);
+    }
+
+    private CompletableFuture<Message> deployQueueRequest(String name, String address) {
         log.info("Deploying queue {} with address {} on broker {}", name, address, brokerContainerId);
-        doOperation("broker", "deployQueue", address, name, null, false);
+        return doOperationAsync("broker", "deployQueue", address, name, null, false);
     }
 
-    public void createQueue(String name, String address) throws TimeoutException {
+    public CompletableFuture<Void> deployQueueAsync(String name, String address) {
+        return checkSucceeded(deployQueueRequest(name, address), "broker.deployQueue");
+    }
+
+    public void deployQueue(String name, String address) throws TimeoutException {
+        await(deployQueueRequest(name, address));
+    }
+
+    private CompletableFuture<Message> createQueueRequest(String name, String address) {
         log.info("Creating queue {} with address {} on broker {}", name, address, brokerContainerId);
-        doOperation("broker", "createQueue", address, "ANYCAST", name, null, true, -1, false, true);
+        return doOperationAsync("broker", "createQueue", address, "ANYCAST", name, null, true, -1, false, true);
     }
 
-    public void createConnectorService(String name, Map<String, String> connParams) throws TimeoutException {
+    public CompletableFuture<Void> createQueueAsync(String name, String address) {
+        return checkSucceeded(createQueueRequest(name, address), "broker.createQueue");
+    }
+
+    public void createQueue(String name, String address) throws TimeoutException {
+        await(createQueueRequest(name, address));
+    }
+
+    private CompletableFuture<Message> createConnectorServiceRequest(String name, Map<String, String> connParams) {
         log.info("Creating connector service {} on broker {}", name, brokerContainerId);
         String factoryName = "org.apache.activemq.artemis.integration.amqp.AMQPConnectorServiceFactory";
-        doOperation("broker", "createConnectorService", name, factoryName, connParams);
+        return doOperationAsync("broker", "createConnectorService", name, factoryName, connParams);
     }
 
-    public void destroyQueue(String name) throws TimeoutException {
+    public CompletableFuture<Void> createConnectorServiceAsync(String name, Map<String, String> connParams) {
+        return checkSucceeded(createConnectorServiceRequest(name, connParams), "broker.createConnectorService");
+    }
+
+    public void createConnectorService(String name, Map<String, String> connParams) throws TimeoutException {
+        await(createConnectorServiceRequest(name, connParams));
+    }
+
+    private CompletableFuture<Message> destroyQueueRequest(String name) {
         log.info("Destroying queue {} on broker {}", name, brokerContainerId);
-        doOperation("broker", "destroyQueue", name, true);
+        return doOperationAsync("broker", "destroyQueue", name, true);
+    }
+
+    public CompletableFuture<Void> destroyQueueAsync(String name) {
+        return checkSucceeded(destroyQueueRequest(name), "broker.destroyQueue");
+    }
+
+    public void destroyQueue(String name) throws TimeoutException {
+        await(destroyQueueRequest(name));
+    }
+
+    private CompletableFuture<Message> destroyConnectorServiceRequest(String address) {
+        return doOperationAsync("broker", "destroyConnectorService", address).thenApply(response -> {
+            log.info("Destroyed connector service {} on broker {}", address, brokerContainerId);
+            return response;
+        });
+    }
+
+    public CompletableFuture<Void> destroyConnectorServiceAsync(String address) {
+        return checkSucceeded(destroyConnectorServiceRequest(address), "broker.destroyConnectorService");
     }
 
     public void destroyConnectorService(String address) throws TimeoutException {
-        doOperation("broker", "destroyConnectorService", address);
-        log.info("Destroyed connector service {} on broker {}", address, brokerContainerId);
+        await(destroyConnectorServiceRequest(address));
     }
 
     public long getNumQueues() throws TimeoutException {
         return getQueueNames().size();
     }
 
-    public long getQueueMessageCount(String queueName) throws TimeoutException {
+    public CompletableFuture<Long> getQueueMessageCountAsync(String queueName) {
         log.info("Checking message count for queue {} on broker {}", queueName, brokerContainerId);
-        Message response = doAttribute("queue." + queueName, "messageCount");
-        String payload = (String) ((AmqpValue)response.getBody()).getValue();
-        JsonArray json = new JsonArray(payload);
-        return json.getLong(0);
+        return doAttributeAsync("queue." + queueName, "messageCount").thenApply(response -> {
+            String payload = (String) ((AmqpValue)response.getBody()).getValue();
+            JsonArray json = new JsonArray(payload);
+            return json.getLong(0);
+        });
     }
 
+    public long getQueueMessageCount(String queueName) throws TimeoutException {
+        return await(getQueueMessageCountAsync(queueName));
+    }
 
-    public String getQueueAddress(String queueName) throws TimeoutException {
+    public CompletableFuture<String> getQueueAddressAsync(String queueName) {
         log.info("Checking queue address for queue {} on broker {}", queueName, brokerContainerId);
-        Message response = doOperation("queue." + queueName, "getAddress");
-        String payload = (String) ((AmqpValue)response.getBody()).getValue();
-        JsonArray json = new JsonArray(payload);
-        return json.getString(0);
+        return doOperationAsync("queue." + queueName, "getAddress").thenApply(Artemis::getStringResult);
+    }
+
+    public String getQueueAddress(String queueName) throws TimeoutException {
+        return await(getQueueAddressAsync(queueName));
     }
 
     public void forceShutdown() throws TimeoutException {
         log.info("Sending forceShutdown to broker {}", brokerContainerId);
         Message request = createOperationMessage("broker", "forceFailover");
-        doRequestResponse(10, TimeUnit.SECONDS, request);
+        try {
+            await(doRequestResponse(10, TimeUnit.SECONDS, request, "broker.forceFailover"));
+        } catch (TimeoutException e) {
+            // the broker is not expected to reply when shutting down
+            log.debug("No response to forceShutdown from broker {}", brokerContainerId);
+        }
     }
 
-    public Set<String> getQueueNames() throws TimeoutException {
+    public CompletableFuture<Set<String>> getQueueNamesAsync() {
         log.info("Retrieving queue names for broker {}", brokerContainerId);
-        Message response = doOperation("broker", "getQueueNames");
-
-        Set<String> queues = new LinkedHashSet<>();
-        JsonArray payload = new JsonArray((String)((AmqpValue)response.getBody()).getValue());
-        for (int i = 0; i < payload.size(); i++) {
-            JsonArray inner = payload.getJsonArray(i);
-            for (int j = 0; j < inner.size(); j++) {
-                String queueName = inner.getString(j);
-                if (!queueName.equals(replyTo)) {
-                    queues.add(queueName);
+        return doOperationAsync("broker", "getQueueNames").thenApply(response -> {
+            Set<String> queues = new LinkedHashSet<>();
+            JsonArray payload = new JsonArray((String)((AmqpValue)response.getBody()).getValue());
+            for (int i = 0; i < payload.size(); i++) {
+                JsonArray inner = payload.getJsonArray(i);
+                for (int j = 0; j < inner.size(); j++) {
+                    String queueName = inner.getString(j);
+                    if (!queueName.equals(replyTo)) {
+                        queues.add(queueName);
+                    }
                 }
             }
-        }
-        return queues;
+            return queues;
+        });
+    }
+
+    public Set<String> getQueueNames() throws TimeoutException {
+        return await(getQueueNamesAsync());
+    }
+
+    /**
+     * @return number of requests waiting for a reply
+     */
+    public int getNumPendingRequests() {
+        return pendingRequests.size();
     }
 
     public void close() {
         context.runOnContext(id -> connection.close());
     }
 
-    public void pauseQueue(String queueName) throws TimeoutException {
+    private CompletableFuture<Message> pauseQueueRequest(String queueName) {
         log.info("Pausing queue {}", queueName);
-        doOperation("queue." + queueName, "pause");
+        return doOperationAsync("queue." + queueName, "pause");
     }
 
-    public void resumeQueue(String queueName) throws TimeoutException {
+    public CompletableFuture<Void> pauseQueueAsync(String queueName) {
+        return checkSucceeded(pauseQueueRequest(queueName), "queue." + queueName + ".pause");
+    }
+
+    public void pauseQueue(String queueName) throws TimeoutException {
+        await(pauseQueueRequest(queueName));
+    }
+
+    private CompletableFuture<Message> resumeQueueRequest(String queueName) {
         log.info("Resuming queue {}", queueName);
-        doOperation("queue." + queueName, "resume");
+        return doOperationAsync("queue." + queueName, "resume");
+    }
+
+    public CompletableFuture<Void> resumeQueueAsync(String queueName) {
+        return checkSucceeded(resumeQueueRequest(queueName), "queue." + queueName + ".resume");
+    }
+
+    public void resumeQueue(String queueName) throws TimeoutException {
+        await(resumeQueueRequest(queueName));
     }
 
     public Set<String> getDivertNames() throws TimeoutException {
         log.info("Retrieving divert names");
-        Message response = doOperation("broker", "getDivertNames");
+        Message response = await(doOperationAsync("broker", "getDivertNames"));
 
         Set<String> diverts = new LinkedHashSet<>();
         JsonArray payload = new JsonArray((String)((AmqpValue)response.getBody()).getValue());
@@ -292,10 +439,7 @@ public class Artemis implements AutoCloseable {
     }
 
     private String doOperationWithStringResult(String resource, String operation, Object ... parameters) throws TimeoutException {
-        Message response = doOperation(resource, operation, parameters);
-        String payload = (String) ((AmqpValue)response.getBody()).getValue();
-        JsonArray json = new JsonArray(payload);
-        return json.getString(0);
+        return getStringResult(await(doOperationAsync(resource, operation, parameters)));
     }
 
     public String getDivertRoutingName(String divertName) throws TimeoutException {
@@ -315,29 +459,33 @@ public class Artemis implements AutoCloseable {
 
     public void createDivert(String divertName, String routingName, String address, String forwardingAddress) throws TimeoutException {
         log.info("Creating divert {}", divertName);
-        doOperation("broker", "createDivert", divertName, routingName, address, forwardingAddress, false, null, null);
+        await(doOperationAsync("broker", "createDivert", divertName, routingName, address, forwardingAddress, false, null, null));
     }
 
     public void destroyDivert(String divertName) throws TimeoutException {
         log.info("Destroying divert {}", divertName);
-        doOperation("broker", "destroyDivert", divertName);
+        await(doOperationAsync("broker", "destroyDivert", divertName));
     }
 
-    public Set<String> getConnectorNames() throws TimeoutException {
+    public CompletableFuture<Set<String>> getConnectorNamesAsync() {
         log.info("Retrieving conector names for broker {}", brokerContainerId);
-        Message response = doOperation("broker", "getConnectorServices");
-
-        Set<String> connectors = new LinkedHashSet<>();
-        JsonArray payload = new JsonArray((String)((AmqpValue)response.getBody()).getValue());
-        for (int i = 0; i < payload.size(); i++) {
-            JsonArray inner = payload.getJsonArray(i);
-            for (int j = 0; j < inner.size(); j++) {
-                String connector = inner.getString(j);
-                if (!connector.equals("amqp-connector")) {
-                    connectors.add(connector);
+        return doOperationAsync("broker", "getConnectorServices").thenApply(response -> {
+            Set<String> connectors = new LinkedHashSet<>();
+            JsonArray payload = new JsonArray((String)((AmqpValue)response.getBody()).getValue());
+            for (int i = 0; i < payload.size(); i++) {
+                JsonArray inner = payload.getJsonArray(i);
+                for (int j = 0; j < inner.size(); j++) {
+                    String connector = inner.getString(j);
+                    if (!connector.equals("amqp-connector")) {
+                        connectors.add(connector);
+                    }
                 }
             }
-        }
-        return connectors;
+            return connectors;
+        });
+    }
+
+    public Set<String> getConnectorNames() throws TimeoutException {
+        return await(getConnectorNamesAsync());
     }
 }
@@ -9,17 +9,26 @@ import io.vertx.proton.ProtonClient;
 import io.vertx.proton.ProtonConnection;
 import io.vertx.proton.ProtonReceiver;
 import io.vertx.proton.ProtonSender;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.message.Message;
 
-import java.util.ArrayDeque;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Client that sends and receives messages blocking
+ *
+ * Messages can be sent with a window of unsettled deliveries in flight, and received with a window of credit
+ * granted ahead, instead of one at a time.
  */
 public class BlockingClient implements AutoCloseable {
     private final String host;
@@ -37,75 +46,203 @@ public class BlockingClient implements AutoCloseable {
     }
 
     public void send(String address, List<Message> messages, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        send(address, messages, 1, timeout, timeUnit);
+    }
+
+    /**
+     * Send messages, with up to window deliveries unsettled at a time, and wait for all of them to be settled.
+     */
+    public void send(String address, List<Message> messages, int window, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        AtomicInteger numSettled = new AtomicInteger(0);
+        await(sendAsync(address, messages, window, numSettled), timeout, timeUnit,
+                () -> "Sending messages timed out, " + (messages.size() - numSettled.get()) + " messages unsettled");
+    }
+
+    /**
+     * Send messages, with up to window deliveries unsettled at a time.
+     *
+     * @return the remote state of every delivery, in the order of the messages, once all of them are settled
+     */
+    public CompletableFuture<List<DeliveryState>> sendAsync(String address, List<Message> messages, int window) {
+        return sendAsync(address, messages, window, new AtomicInteger(0));
+    }
+
+    private CompletableFuture<List<DeliveryState>> sendAsync(String address, List<Message> messages, int window, AtomicInteger numSettled) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1, was " + window);
+        }
+        CompletableFuture<List<DeliveryState>> result = new CompletableFuture<>();
         ProtonClient client = ProtonClient.create(vertx);
-        CountDownLatch latch = new CountDownLatch(1);
-        Queue<Message> messageQueue = new ArrayDeque<>(messages);
         client.connect(host, port, connectEvent -> {
             if (connectEvent.succeeded()) {
                 ProtonConnection connection = connectEvent.result();
+                connection.disconnectHandler(c -> result.completeExceptionally(new IOException("Connection to " + host + ":" + port + " lost")));
                 connection.open();
 
                 ProtonSender sender = connection.createSender(address);
+                WindowedSend send = new WindowedSend(connection, sender, messages, window, numSettled, result);
+                sender.sendQueueDrainHandler(s -> send.sendMore());
+                sender.closeHandler(closeEvent -> send.fail(new IOException("Sender for " + address + " closed")));
                 sender.openHandler(senderOpenEvent -> {
                     if (senderOpenEvent.succeeded()) {
-                        sendNext(connection, sender, messageQueue, latch);
+                        send.sendMore();
+                    } else {
+                        send.fail(senderOpenEvent.cause());
                     }
                 });
                 sender.open();
+            } else {
+                result.completeExceptionally(connectEvent.cause());
             }
         });
-        boolean ok = latch.await(timeout, timeUnit);
-        if (!ok) {
-            throw new RuntimeException("Sending messages timed out, " + messageQueue.size() + " messages unsent");
-        }
+        return result;
     }
 
-    private void sendNext(ProtonConnection connection, ProtonSender sender, Queue<Message> messageQueue, CountDownLatch latch) {
-        Message message = messageQueue.poll();
+    public List<Message> recv(String address, int numMessages, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return recv(address, numMessages, 1, timeout, timeUnit);
+    }
 
-        if (message == null) {
-            connection.close();
-            latch.countDown();
-        } else {
-            sender.send(message, protonDelivery -> sendNext(connection, sender, messageQueue, latch));
-        }
+    /**
+     * Receive messages, granting up to window credits ahead of the messages received.
+     */
+    public List<Message> recv(String address, int numMessages, int window, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        AtomicInteger numReceived = new AtomicInteger(0);
+        return await(recvAsync(address, numMessages, window, numReceived), timeout, timeUnit,
+                () -> "Receiving messages timed out, " + numReceived.get() + " out of " + numMessages + " messages received");
     }
 
-    public List<Message> recv(String address, int numMessages, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    /**
+     * Receive messages, granting up to window credits ahead of the messages received. Credit is topped up
+     * once half of the window is used, so that the sender doesn't stall waiting for it.
+     *
+     * @return the messages, once all of them are received
+     */
+    public CompletableFuture<List<Message>> recvAsync(String address, int numMessages, int window) {
+        return recvAsync(address, numMessages, window, new AtomicInteger(0));
+    }
+
+    private CompletableFuture<List<Message>> recvAsync(String address, int numMessages, int window, AtomicInteger numReceived) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1, was " + window);
+        }
+        CompletableFuture<List<Message>> result = new CompletableFuture<>();
+        if (numMessages <= 0) {
+            result.complete(Collections.emptyList());
+            return result;
+        }
         ProtonClient client = ProtonClient.create(vertx);
-        CountDownLatch latch = new CountDownLatch(1);
-        List<Message> messages = new ArrayList<>();
         client.connect(host, port, connectEvent -> {
             if (connectEvent.succeeded()) {
                 ProtonConnection connection = connectEvent.result();
+                connection.disconnectHandler(c -> result.completeExceptionally(new IOException("Connection to " + host + ":" + port + " lost")));
                 connection.open();
 
+                List<Message> messages = new ArrayList<>(numMessages);
+                int[] credit = {Math.min(window, numMessages)};
                 ProtonReceiver receiver = connection.createReceiver(address);
                 receiver.setPrefetch(0);
-                receiver.openHandler(r -> receiver.flow(1));
+                receiver.openHandler(r -> receiver.flow(credit[0]));
                 receiver.handler((delivery, message) -> {
                     messages.add(message);
+                    numReceived.incrementAndGet();
+                    credit[0]--;
                     if (messages.size() == numMessages) {
                         vertx.runOnContext(h -> {
                             connection.close();
-                            latch.countDown();
+                            result.complete(messages);
                         });
                     } else {
-                        receiver.flow(1);
+                        int notRequested = numMessages - messages.size() - credit[0];
+                        if (credit[0] <= window / 2 && notRequested > 0) {
+                            int flow = Math.min(window - credit[0], notRequested);
+                            credit[0] += flow;
+                            receiver.flow(flow);
+                        }
                     }
                 });
                 receiver.open();
+            } else {
+                result.completeExceptionally(connectEvent.cause());
             }
         });
-        boolean ok = latch.await(timeout, timeUnit);
-        if (!ok) {
-            throw new RuntimeException("Sending messages timed out, " + messages.size() + " out of " + numMessages + " messages received");
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long timeout, TimeUnit timeUnit, Supplier<String> timeoutMessage) throws InterruptedException {
+        try {
+            return future.get(timeout, timeUnit);
+        } catch (TimeoutException e) {
+            throw new RuntimeException(timeoutMessage.get());
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         }
-        return messages;
     }
 
     @Override
     public void close() {
         vertx.close();
     }
+
+    /**
+     * Messages being sent on a link, with at most window deliveries unsettled. Only used on the connection context.
+     */
+    private static class WindowedSend {
+        private final ProtonConnection connection;
+        private final ProtonSender sender;
+        private final List<Message> messages;
+        private final int window;
+        private final DeliveryState[] states;
+        private final boolean[] settled;
+        private final AtomicInteger numSettled;
+        private final CompletableFuture<List<DeliveryState>> result;
+        private int next = 0;
+        private int unsettled = 0;
+
+        private WindowedSend(ProtonConnection connection, ProtonSender sender, List<Message> messages, int window, AtomicInteger numSettled, CompletableFuture<List<DeliveryState>> result) {
+            this.connection = connection;
+            this.sender = sender;
+            this.messages = messages;
+            this.window = window;
+            this.states = new DeliveryState[messages.size()];
+            this.settled = new boolean[messages.size()];
+            this.numSettled = numSettled;
+            this.result = result;
+        }
+
+        private void sendMore() {
+            if (messages.isEmpty() && !result.isDone()) {
+                complete();
+            }
+            while (!result.isDone() && next < messages.size() && unsettled < window && !sender.sendQueueFull()) {
+                int index = next++;
+                unsettled++;
+                sender.send(messages.get(index), delivery -> {
+                    states[index] = delivery.getRemoteState();
+                    // an update may come before the settlement (i.e. accepted but unsettled), only the latter frees the slot
+                    if (!delivery.remotelySettled() || settled[index]) {
+                        return;
+                    }
+                    settled[index] = true;
+                    unsettled--;
+                    if (numSettled.incrementAndGet() == messages.size()) {
+                        complete();
+                    } else {
+                        sendMore();
+                    }
+                });
+            }
+        }
+
+        private void complete() {
+            connection.close();
+            result.complete(Arrays.asList(states));
+        }
+
+        private void fail(Throwable cause) {
+            if (!result.isDone()) {
+                connection.close();
+                result.completeExceptionally(cause);
+            }
+        }
+    }
 }
@@ -18,6 +18,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
@@ -336,13 +339,18 @@ public class DispatchRouterJ extends AbstractVerticle {
     }
 
 
+    /**
+     * Routes for the links attached to the router. The link routes are kept in immutable tries, replaced on updates,
+     * so that attaching links looks the routes up without locking.
+     */
     public static class RoutingTable {
         /** Decoupled senders and receivers */
-        private final Map<String, List<Receiver>> receiverMap = new HashMap<>();
-        private final Map<String, List<Sender>> senderMap = new HashMap<>();
+        private final Map<String, List<Receiver>> receiverMap = new ConcurrentHashMap<>();
+        private final Map<String, List<Sender>> senderMap = new ConcurrentHashMap<>();
 
-        private final List<LinkRouteConfig> linkRouteConfigs = new ArrayList<>();
-        private final List<LinkRoute> linkRoutes = new ArrayList<>();
+        private final List<LinkRouteConfig> linkRouteConfigs = new CopyOnWriteArrayList<>();
+        private final AtomicReference<PrefixTrie<LinkRouteConfig>> linkRoutePrefixes = new AtomicReference<>(PrefixTrie.empty());
+        private final AtomicReference<PrefixTrie<LinkRoute>> linkRoutes = new AtomicReference<>(PrefixTrie.empty());
 
 
         @Override
@@ -350,28 +358,23 @@ public class DispatchRouterJ extends AbstractVerticle {
             StringBuilder sb = new StringBuilder();
             sb.append("{senders=").append(senderMap.keySet()).append("},");
             sb.append("{receivers=").append(receiverMap.keySet()).append("},");
-            sb.append("{linkRoutes=").append(linkRoutes).append("}");
+            sb.append("{linkRoutes=").append(linkRoutes.get().size()).append("}");
             return sb.toString();
         }
 
-        public synchronized void addConnection(ProtonConnection connection, Context context) {
+        public void addConnection(ProtonConnection connection, Context context) {
             for (LinkRouteConfig linkRouteConfig : linkRouteConfigs) {
                 if (connection.getRemoteContainer().equals(linkRouteConfig.containerId)) {
                     LinkRoute linkRoute = new LinkRoute(linkRouteConfig, new Connection(connection, context));
                     log.info("Link route with prefix {} found for {}", linkRouteConfig.prefix, linkRouteConfig.containerId);
-                    linkRoutes.add(linkRoute);
+                    linkRoutes.updateAndGet(routes -> routes.put(linkRouteConfig.prefix, linkRoute));
                 }
             }
         }
 
-        public synchronized void addReceiver(String address, ProtonReceiver protonReceiver, Context context) {
+        public void addReceiver(String address, ProtonReceiver protonReceiver, Context context) {
             if (hasLinkRouteFor(address)) {
-                LinkRoute linkRoute = null;
-                for (LinkRoute lr : linkRoutes) {
-                    if (address.startsWith(lr.config.prefix)) {
-                        linkRoute = lr;
-                    }
-                }
+                LinkRoute linkRoute = linkRoutes.get().longestPrefixMatch(address);
                 if (linkRoute != null) {
                     log.info("Activating receiver link route for {} on {}", address, linkRoute.config.containerId);
                     linkRoute.getConnection().createSenderLink(new Receiver(protonReceiver, context));
@@ -382,7 +385,7 @@ public class DispatchRouterJ extends AbstractVerticle {
             } else {
                 log.info("Adding receiver with address {}", address);
                 log.info("Table: " + this);
-                List<Receiver> receiverList = receiverMap.computeIfAbsent(address, k -> new ArrayList<>());
+                List<Receiver> receiverList = receiverMap.computeIfAbsent(address, k -> new CopyOnWriteArrayList<>());
                 Receiver receiver = new Receiver(protonReceiver, context);
                 receiverList.add(receiver);
 
@@ -398,15 +401,10 @@ public class DispatchRouterJ extends AbstractVerticle {
         }
 
         private boolean hasLinkRouteFor(String address) {
-            for (LinkRouteConfig route : linkRouteConfigs) {
-                if (address.startsWith(route.prefix)) {
-                    return true;
-                }
-            }
-            return false;
+            return linkRoutePrefixes.get().longestPrefixMatch(address) != null;
         }
 
-        private synchronized void handleMessage(Receiver receiver, String address, ProtonDelivery delivery, org.apache.qpid.proton.message.Message message) {
+        private void handleMessage(Receiver receiver, String address, ProtonDelivery delivery, org.apache.qpid.proton.message.Message message) {
             List<Sender> senderList = senderMap.get(address);
             if (senderList == null || senderList.isEmpty()) {
                 delivery.disposition(new Rejected(), true);
@@ -416,14 +414,9 @@ public class DispatchRouterJ extends AbstractVerticle {
             }
         }
 
-        public synchronized void addSender(String address, ProtonSender protonSender, Context context) {
+        public void addSender(String address, ProtonSender protonSender, Context context) {
             if (hasLinkRouteFor(address)) {
-                LinkRoute linkRoute = null;
-                for (LinkRoute lr : linkRoutes) {
-                    if (address.startsWith(lr.config.prefix)) {
-                        linkRoute = lr;
-                    }
-                }
+                LinkRoute linkRoute = linkRoutes.get().longestPrefixMatch(address);
                 if (linkRoute != null) {
                     log.info("Activating sender link route for {} on {}", address, linkRoute.config.containerId);
                     Connection connection = linkRoute.connection;
@@ -435,7 +428,7 @@ public class DispatchRouterJ extends AbstractVerticle {
             } else {
                 log.info("Adding sender with address {}", address);
                 log.info("Table: " + this);
-                List<Sender> senderList = senderMap.computeIfAbsent(address, k -> new ArrayList<>());
+                List<Sender> senderList = senderMap.computeIfAbsent(address, k -> new CopyOnWriteArrayList<>());
                 Sender sender = new Sender(protonSender, context);
                 senderList.add(sender);
                 protonSender.closeHandler(handle -> {
@@ -446,8 +439,9 @@ public class DispatchRouterJ extends AbstractVerticle {
             }
         }
 
-        public synchronized void addLinkRoute(LinkRouteConfig linkRoute) {
+        public void addLinkRoute(LinkRouteConfig linkRoute) {
             linkRouteConfigs.add(linkRoute);
+            linkRoutePrefixes.updateAndGet(prefixes -> prefixes.put(linkRoute.prefix, linkRoute));
         }
     }
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.amqp;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonClient;
+import io.vertx.proton.ProtonClientOptions;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonReceiver;
+import io.vertx.proton.ProtonSender;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client for doing request-response over AMQP, keeping a connection open to every host it sends requests to.
+ *
+ * Every connection has a single receiver with a dynamic address for the replies, which are matched to the requests
+ * by correlation id, so that many requests can be in flight on it. Connections not used for the idle timeout are
+ * closed, and a connection lost is opened again on the next request to the host.
+ */
+public class PooledRequestClient implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(PooledRequestClient.class.getName());
+    private static final String requestIdPrefix = "pooled-request-";
+
+    private final Vertx vertx;
+    private final ProtonClientOptions clientOptions;
+    private final Context context;
+    private final AtomicLong requestIds = new AtomicLong(0);
+    // only modified on the context
+    private final Map<String, PooledConnection> connections = new ConcurrentHashMap<>();
+    private long idleTimeoutMillis = 60_000;
+    private long idleTimerId = -1;
+    private boolean closed = false;
+
+    public PooledRequestClient(Vertx vertx) {
+        this(vertx, new ProtonClientOptions());
+    }
+
+    public PooledRequestClient(Vertx vertx, ProtonClientOptions clientOptions) {
+        this.vertx = vertx;
+        this.clientOptions = clientOptions;
+        this.context = vertx.getOrCreateContext();
+    }
+
+    public PooledRequestClient setIdleTimeout(long timeout, TimeUnit timeUnit) {
+        this.idleTimeoutMillis = timeUnit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Send a request to a host and wait for the response.
+     */
+    public Message request(String host, int port, Message message, long timeout, TimeUnit timeUnit) throws InterruptedException, TimeoutException, ExecutionException {
+        return requestAsync(host, port, message, timeout, timeUnit).get();
+    }
+
+    /**
+     * Send a request to a host, opening a connection to it if there isn't one already.
+     *
+     * @return the response, failed with a TimeoutException if not received within the timeout
+     */
+    public CompletableFuture<Message> requestAsync(String host, int port, Message message, long timeout, TimeUnit timeUnit) {
+        CompletableFuture<Message> response = new CompletableFuture<>();
+        String requestId = requestIdPrefix + requestIds.incrementAndGet();
+        message.setMessageId(requestId);
+        message.setCorrelationId(requestId);
+
+        context.runOnContext(v -> {
+            if (closed) {
+                response.completeExceptionally(new IllegalStateException("Client closed"));
+                return;
+            }
+            String key = host + ":" + port;
+            PooledConnection connection = connections.get(key);
+            if (connection == null) {
+                connection = new PooledConnection(key, host, port);
+                connections.put(key, connection);
+                connection.connect();
+                scheduleIdleCheck();
+            }
+            PooledConnection pooled = connection;
+            pooled.lastUsed = System.currentTimeMillis();
+            pooled.pending.put(requestId, response);
+            vertx.setTimer(timeUnit.toMillis(timeout), id -> {
+                if (pooled.pending.remove(requestId) != null) {
+                    pooled.waiting.remove(message);
+                    response.completeExceptionally(new TimeoutException("Timed out waiting for response from " + key));
+                }
+            });
+            if (pooled.replyTo != null) {
+                pooled.send(message);
+            } else {
+                pooled.waiting.add(message);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * @return number of connections currently open or being opened
+     */
+    public int getNumConnections() {
+        return connections.size();
+    }
+
+    @Override
+    public void close() {
+        context.runOnContext(v -> {
+            closed = true;
+            if (idleTimerId != -1) {
+                vertx.cancelTimer(idleTimerId);
+            }
+            for (PooledConnection connection : new ArrayList<>(connections.values())) {
+                connection.close(new IllegalStateException("Client closed"));
+            }
+        });
+    }
+
+    private void scheduleIdleCheck() {
+        if (idleTimerId == -1) {
+            idleTimerId = vertx.setPeriodic(Math.max(1, idleTimeoutMillis / 2), id -> {
+                long now = System.currentTimeMillis();
+                for (PooledConnection connection : new ArrayList<>(connections.values())) {
+                    if (connection.pending.isEmpty() && now - connection.lastUsed >= idleTimeoutMillis) {
+                        log.debug("Closing idle connection to {}", connection.key);
+                        connection.close(null);
+                    }
+                }
+                if (connections.isEmpty()) {
+                    vertx.cancelTimer(idleTimerId);
+                    idleTimerId = -1;
+                }
+            });
+        }
+    }
+
+    /**
+     * A connection to a host, with its reply receiver and a sender per target address.
+     */
+    private class PooledConnection {
+        private final String key;
+        private final String host;
+        private final int port;
+        private final Map<String, CompletableFuture<Message>> pending = new HashMap<>();
+        private final List<Message> waiting = new ArrayList<>();
+        private final Map<String, ProtonSender> senders = new HashMap<>();
+        private ProtonConnection connection;
+        private String replyTo;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(String key, String host, int port) {
+            this.key = key;
+            this.host = host;
+            this.port = port;
+        }
+
+        private void connect() {
+            ProtonClient client = ProtonClient.create(vertx);
+            client.connect(clientOptions, host, port, connectEvent -> {
+                if (connectEvent.failed()) {
+                    close(connectEvent.cause());
+                    return;
+                }
+                connection = connectEvent.result();
+                connection.closeHandler(c -> close(new IOException("Connection to " + key + " closed")));
+                connection.disconnectHandler(c -> close(new IOException("Connection to " + key + " lost")));
+                connection.open();
+
+                ProtonReceiver receiver = connection.createReceiver(null);
+                Source source = new Source();
+                source.setDynamic(true);
+                receiver.setSource(source);
+                receiver.handler((delivery, message) -> {
+                    CompletableFuture<Message> response = pending.remove(String.valueOf(message.getCorrelationId()));
+                    if (response != null) {
+                        response.complete(message);
+                    } else {
+                        log.debug("Discarding response with correlation id {} from {}", message.getCorrelationId(), key);
+                    }
+                });
+                receiver.openHandler(receiverOpenEvent -> {
+                    if (receiverOpenEvent.succeeded() && receiver.getRemoteSource() != null) {
+                        replyTo = receiver.getRemoteSource().getAddress();
+                        for (Message message : waiting) {
+                            send(message);
+                        }
+                        waiting.clear();
+                    } else {
+                        close(receiverOpenEvent.cause());
+                    }
+                });
+                receiver.open();
+            });
+        }
+
+        private void send(Message message) {
+            message.setReplyTo(replyTo);
+            ProtonSender sender = senders.computeIfAbsent(message.getAddress(), address -> {
+                ProtonSender created = connection.createSender(address);
+                created.open();
+                return created;
+            });
+            sender.send(message);
+        }
+
+        /**
+         * Close the connection and remove it from the pool, failing the requests waiting for a response.
+         */
+        private void close(Throwable cause) {
+            if (connections.get(key) == this) {
+                connections.remove(key);
+            }
+            if (connection != null) {
+                connection.closeHandler(null);
+                connection.disconnectHandler(null);
+                connection.close();
+                connection.disconnect();
+            }
+            Exception error = cause instanceof Exception ? (Exception) cause : new IOException("Connection to " + key + " closed", cause);
+            for (Iterator<CompletableFuture<Message>> it = pending.values().iterator(); it.hasNext(); ) {
+                CompletableFuture<Message> response = it.next();
+                it.remove();
+                response.completeExceptionally(error);
+            }
+            waiting.clear();
+        }
+    }
+}
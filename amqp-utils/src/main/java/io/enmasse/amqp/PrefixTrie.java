@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.amqp;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An immutable radix trie mapping string prefixes to values, for longest-prefix match of addresses.
+ *
+ * Adding a prefix returns a new trie, copying only the nodes on the path to it and sharing all the others, so
+ * that a trie can be published to many readers and queried without locking.
+ */
+public final class PrefixTrie<T> {
+    private static final PrefixTrie<?> empty = new PrefixTrie<>(new Node<>("", null, new char[0], newChildren(0)), 0);
+
+    private final Node<T> root;
+    private final int size;
+
+    private PrefixTrie(Node<T> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PrefixTrie<T> empty() {
+        return (PrefixTrie<T>) empty;
+    }
+
+    /**
+     * @return a trie with the prefix mapped to the value, replacing the value already mapped to it if any
+     */
+    public PrefixTrie<T> put(String prefix, T value) {
+        Objects.requireNonNull(prefix);
+        Objects.requireNonNull(value);
+        boolean added = get(prefix) == null;
+        return new PrefixTrie<>(put(root, prefix, 0, value), added ? size + 1 : size);
+    }
+
+    /**
+     * @return the value mapped to exactly the prefix, or null if none
+     */
+    public T get(String prefix) {
+        Node<T> node = root;
+        int offset = 0;
+        while (offset < prefix.length()) {
+            Node<T> child = node.child(prefix.charAt(offset));
+            if (child == null || !prefix.startsWith(child.label, offset)) {
+                return null;
+            }
+            offset += child.label.length();
+            node = child;
+        }
+        return node.value;
+    }
+
+    /**
+     * @return the value mapped to the longest prefix of the key, or null if no prefix of the key is mapped
+     */
+    public T longestPrefixMatch(String key) {
+        Node<T> node = root;
+        T match = node.value;
+        int offset = 0;
+        while (offset < key.length()) {
+            Node<T> child = node.child(key.charAt(offset));
+            if (child == null || !key.startsWith(child.label, offset)) {
+                break;
+            }
+            offset += child.label.length();
+            node = child;
+            if (node.value != null) {
+                match = node.value;
+            }
+        }
+        return match;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static <T> Node<T> put(Node<T> node, String key, int offset, T value) {
+        if (offset == key.length()) {
+            return new Node<>(node.label, value, node.firsts, node.children);
+        }
+
+        char first = key.charAt(offset);
+        Node<T> child = node.child(first);
+        if (child == null) {
+            return node.withChild(new Node<>(key.substring(offset), value, new char[0], newChildren(0)));
+        }
+
+        int common = commonPrefixLength(child.label, key, offset);
+        if (common == child.label.length()) {
+            return node.withChild(put(child, key, offset + common, value));
+        }
+
+        // the key diverges in the middle of the child label, so the label is split at that point
+        Node<T> suffix = new Node<>(child.label.substring(common), child.value, child.firsts, child.children);
+        Node<T> split = new Node<T>(child.label.substring(0, common), null, new char[0], newChildren(0)).withChild(suffix);
+        return node.withChild(put(split, key, offset + common, value));
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newChildren(int length) {
+        return (Node<T>[]) new Node[length];
+    }
+
+    /**
+     * A node reached through its label, with the children sorted by the first character of their labels.
+     */
+    private static final class Node<T> {
+        private final String label;
+        private final T value;
+        private final char[] firsts;
+        private final Node<T>[] children;
+
+        private Node(String label, T value, char[] firsts, Node<T>[] children) {
+            this.label = label;
+            this.value = value;
+            this.firsts = firsts;
+            this.children = children;
+        }
+
+        private Node<T> child(char first) {
+            int index = Arrays.binarySearch(firsts, first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * @return a copy of this node with the child added, or replacing the child with the same first character
+         */
+        private Node<T> withChild(Node<T> child) {
+            char first = child.label.charAt(0);
+            int index = Arrays.binarySearch(firsts, first);
+            if (index >= 0) {
+                Node<T>[] newChildren = Arrays.copyOf(children, children.length);
+                newChildren[index] = child;
+                return new Node<>(label, value, firsts, newChildren);
+            }
+
+            int insertAt = -index - 1;
+            char[] newFirsts = new char[firsts.length + 1];
+            Node<T>[] newChildren = newChildren(children.length + 1);
+            System.arraycopy(firsts, 0, newFirsts, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newFirsts[insertAt] = first;
+            newChildren[insertAt] = child;
+            System.arraycopy(firsts, insertAt, newFirsts, insertAt + 1, firsts.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            return new Node<>(label, value, newFirsts, newChildren);
+        }
+    }
+}
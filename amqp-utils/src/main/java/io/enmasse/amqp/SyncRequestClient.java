@@ -19,13 +19,15 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
- * A simple client for doing request-response over AMQP.
+ * A simple client for doing request-response over AMQP. Unless created with a {@link PooledRequestClient}, it opens
+ * a connection for every request.
  */
 public class SyncRequestClient implements AutoCloseable {
     private final String host;
     private final int port;
     private final Vertx vertx;
     private final ProtonClientOptions clientOptions;
+    private final PooledRequestClient pool;
 
     public SyncRequestClient(String host, int port) {
         this(host, port, Vertx.vertx());
@@ -40,9 +42,24 @@ public class SyncRequestClient implements AutoCloseable {
         this.port = port;
         this.vertx = vertx;
         this.clientOptions = clientOptions;
+        this.pool = null;
+    }
+
+    /**
+     * Create a client sending the requests on the connection to the host kept by the pool.
+     */
+    public SyncRequestClient(String host, int port, PooledRequestClient pool) {
+        this.host = host;
+        this.port = port;
+        this.vertx = null;
+        this.clientOptions = null;
+        this.pool = pool;
     }
 
     public Message request(Message message, long timeout, TimeUnit timeUnit) throws InterruptedException, TimeoutException, ExecutionException {
+        if (pool != null) {
+            return pool.request(host, port, message, timeout, timeUnit);
+        }
         String address = message.getAddress();
         CompletableFuture<Message> response = new CompletableFuture<>();
 
@@ -91,6 +108,9 @@ public class SyncRequestClient implements AutoCloseable {
 
     @Override
     public void close() throws Exception {
-        vertx.close();
+        // the connections of the pool are kept for the other clients
+        if (vertx != null) {
+            vertx.close();
+        }
     }
 }
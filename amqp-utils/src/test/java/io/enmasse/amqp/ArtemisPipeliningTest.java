@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.amqp;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.proton.ProtonClientOptions;
+import io.vertx.proton.ProtonHelper;
+import io.vertx.proton.ProtonSender;
+import io.vertx.proton.ProtonServer;
+import io.vertx.proton.ProtonSession;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.message.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests the management requests against a fake broker that answers them in batches, out of order.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ArtemisPipeliningTest {
+    private static final String replyAddress = "management-replies";
+
+    private Vertx vertx;
+    private ProtonServer server;
+    private ProtonSender replySender;
+    private final List<Message> batch = new ArrayList<>();
+    private volatile int batchSize = 1;
+    private volatile boolean reverse = false;
+    private volatile boolean unknownReplies = false;
+    private volatile int maxBatchReceived = 0;
+
+    @Before
+    public void setup(TestContext context) {
+        vertx = Vertx.vertx();
+        server = ProtonServer.create(vertx);
+        server.connectHandler(connection -> {
+            connection.setContainer("fake-broker");
+            connection.openHandler(result -> connection.open());
+            connection.sessionOpenHandler(ProtonSession::open);
+            connection.senderOpenHandler(sender -> {
+                Source source = new Source();
+                source.setAddress(replyAddress);
+                sender.setSource(source);
+                sender.open();
+                replySender = sender;
+            });
+            connection.receiverOpenHandler(receiver -> {
+                receiver.setTarget(receiver.getRemoteTarget());
+                receiver.handler((delivery, message) -> {
+                    ProtonHelper.accepted(delivery, true);
+                    batch.add(message);
+                    maxBatchReceived = Math.max(maxBatchReceived, batch.size());
+                    if (batch.size() >= batchSize) {
+                        replyBatch();
+                    }
+                });
+                receiver.open();
+            });
+        });
+        server.listen(0, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void teardown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private void replyBatch() {
+        List<Message> requests = new ArrayList<>(batch);
+        batch.clear();
+        for (int i = 0; i < requests.size(); i++) {
+            Message request = requests.get(reverse ? requests.size() - 1 - i : i);
+            String resource = (String) request.getApplicationProperties().getValue().get("_AMQ_ResourceName");
+
+            if (unknownReplies) {
+                Message unknown = Message.Factory.create();
+                unknown.setAddress(request.getReplyTo());
+                unknown.setCorrelationId("unknown-" + i);
+                unknown.setBody(new AmqpValue(new JsonArray().add("unknown").encode()));
+                replySender.send(unknown);
+            }
+
+            Message reply = Message.Factory.create();
+            reply.setAddress(request.getReplyTo());
+            reply.setCorrelationId(request.getMessageId());
+            reply.setBody(new AmqpValue(new JsonArray().add("address-of-" + resource).encode()));
+            replySender.send(reply);
+        }
+    }
+
+    @Test
+    public void testOutOfOrderReplies(TestContext context) {
+        int numRequests = 100;
+        batchSize = numRequests;
+        reverse = true;
+
+        Async async = context.async();
+        Artemis.create(vertx, new ProtonClientOptions(), "localhost", server.actualPort()).setHandler(context.asyncAssertSuccess(artemis -> {
+            List<CompletableFuture<String>> responses = new ArrayList<>();
+            for (int i = 0; i < numRequests; i++) {
+                responses.add(artemis.getQueueAddressAsync("queue" + i));
+            }
+
+            CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).whenComplete((result, error) -> {
+                context.assertNull(error);
+                // all the requests were in flight at the same time
+                context.assertEquals(numRequests, maxBatchReceived);
+                for (int i = 0; i < numRequests; i++) {
+                    context.assertEquals("address-of-queue.queue" + i, responses.get(i).join());
+                }
+                context.assertEquals(0, artemis.getNumPendingRequests());
+                async.complete();
+            });
+        }));
+    }
+
+    @Test
+    public void testLateReplyDiscarded(TestContext context) {
+        // the first request is answered only together with the second one, after timing out
+        batchSize = 2;
+
+        Async async = context.async();
+        Artemis.create(vertx, new ProtonClientOptions(), "localhost", server.actualPort()).setHandler(context.asyncAssertSuccess(artemis -> {
+            artemis.setRequestTimeout(200, TimeUnit.MILLISECONDS);
+            vertx.executeBlocking(future -> {
+                try {
+                    artemis.getQueueAddress("late");
+                    future.fail("Expected a timeout");
+                } catch (TimeoutException e) {
+                    future.complete(artemis.getQueueAddress("next"));
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            }, context.asyncAssertSuccess(address -> {
+                context.assertEquals("address-of-queue.next", address);
+                context.assertEquals(0, artemis.getNumPendingRequests());
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void testUnknownReplyDiscarded(TestContext context) {
+        // every reply is preceded by one with a correlation id not matching any request
+        batchSize = 10;
+        unknownReplies = true;
+
+        Async async = context.async();
+        Artemis.create(vertx, new ProtonClientOptions(), "localhost", server.actualPort()).setHandler(context.asyncAssertSuccess(artemis -> {
+            List<CompletableFuture<String>> responses = new ArrayList<>();
+            for (int i = 0; i < batchSize; i++) {
+                responses.add(artemis.getQueueAddressAsync("queue" + i));
+            }
+
+            CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).whenComplete((result, error) -> {
+                context.assertNull(error);
+                for (int i = 0; i < batchSize; i++) {
+                    context.assertEquals("address-of-queue.queue" + i, responses.get(i).join());
+                }
+                context.assertEquals(0, artemis.getNumPendingRequests());
+                async.complete();
+            });
+        }));
+    }
+}
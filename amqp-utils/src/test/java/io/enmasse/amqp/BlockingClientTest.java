@@ -5,31 +5,42 @@
 package io.enmasse.amqp;
 
 import io.enmasse.amqp.BlockingClient;
+import io.vertx.core.Context;
 import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonDelivery;
 import io.vertx.proton.ProtonServer;
 import io.vertx.proton.ProtonSession;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.message.Message;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class BlockingClientTest {
     private Vertx vertx;
     private ProtonServer server;
     private BlockingQueue<Message> inbox;
     private BlockingQueue<Message> outbox;
+    private final List<ProtonDelivery> held = new ArrayList<>();
+    private volatile boolean released = false;
+    private volatile Context heldContext;
 
     @Before
     public void setup() throws InterruptedException {
@@ -52,17 +63,32 @@ public class BlockingClientTest {
             conn.receiverOpenHandler(receiver -> {
                 System.out.println("Receiver open");
                 receiver.setTarget(receiver.getRemoteTarget());
-                receiver.handler((delivery, message) -> {
-                    inbox.add(message);
-                });
+                if ("held".equals(receiver.getRemoteTarget().getAddress())) {
+                    // deliveries accepted right away, but left unsettled until released
+                    receiver.setAutoAccept(false);
+                    receiver.handler((delivery, message) -> {
+                        inbox.add(message);
+                        if (released) {
+                            delivery.disposition(Accepted.getInstance(), true);
+                        } else {
+                            delivery.disposition(Accepted.getInstance(), false);
+                            held.add(delivery);
+                        }
+                    });
+                    heldContext = vertx.getOrCreateContext();
+                } else {
+                    receiver.handler((delivery, message) -> {
+                        inbox.add(message);
+                    });
+                }
                 receiver.open();
             });
 
             conn.senderOpenHandler(sender -> {
                 vertx.setPeriodic(100, id -> {
                     try {
-                        Message m = outbox.poll(0, TimeUnit.SECONDS);
-                        if (m != null) {
+                        Message m;
+                        while (!sender.sendQueueFull() && (m = outbox.poll(0, TimeUnit.SECONDS)) != null) {
                             sender.send(m);
                         }
                     } catch (InterruptedException e) {
@@ -108,6 +134,67 @@ public class BlockingClientTest {
         }
     }
 
+    @Test
+    public void testWindowedSend() throws Exception {
+        try (BlockingClient client = new BlockingClient("127.0.0.1", 12345)) {
+            List<Message> messages = createMessages("held", 100);
+            CompletableFuture<List<DeliveryState>> result = client.sendAsync("held", messages, 10);
+
+            // no more than the window in flight while the deliveries are not settled, even if accepted
+            waitForInbox(10);
+            Thread.sleep(200);
+            assertThat(inbox.size(), is(10));
+            assertFalse(result.isDone());
+
+            heldContext.runOnContext(v -> {
+                released = true;
+                held.forEach(delivery -> delivery.disposition(Accepted.getInstance(), true));
+            });
+            List<DeliveryState> states = result.get(1, TimeUnit.MINUTES);
+            assertThat(states.size(), is(100));
+            for (DeliveryState state : states) {
+                assertTrue(state instanceof Accepted);
+            }
+
+            List<Message> received = new ArrayList<>(inbox);
+            assertThat(received.size(), is(100));
+            for (int i = 0; i < 100; i++) {
+                assertThat(((AmqpValue) received.get(i).getBody()).getValue(), is("message " + i));
+            }
+        }
+    }
+
+    @Test
+    public void testPrefetchingReceive() throws InterruptedException {
+        try (BlockingClient client = new BlockingClient("127.0.0.1", 12345)) {
+            outbox.addAll(createMessages("testreceive", 50));
+
+            List<Message> messages = client.recv("testreceive", 50, 16, 1, TimeUnit.MINUTES);
+            assertThat(messages.size(), is(50));
+            for (int i = 0; i < 50; i++) {
+                assertThat(((AmqpValue) messages.get(i).getBody()).getValue(), is("message " + i));
+            }
+        }
+    }
+
+    private static List<Message> createMessages(String address, int numMessages) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < numMessages; i++) {
+            Message m = Message.Factory.create();
+            m.setAddress(address);
+            m.setBody(new AmqpValue("message " + i));
+            messages.add(m);
+        }
+        return messages;
+    }
+
+    private void waitForInbox(int size) throws InterruptedException {
+        long endTime = System.currentTimeMillis() + 60_000;
+        while (inbox.size() < size && System.currentTimeMillis() < endTime) {
+            Thread.sleep(10);
+        }
+    }
+
     @After
     public void teardown() {
         server.close();
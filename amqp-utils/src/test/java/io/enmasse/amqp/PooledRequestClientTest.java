@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.amqp;
+
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonSender;
+import io.vertx.proton.ProtonServer;
+import io.vertx.proton.ProtonSession;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.message.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class PooledRequestClientTest {
+    private Vertx vertx;
+    private ProtonServer server;
+    private PooledRequestClient pool;
+    private final AtomicInteger connectionsAccepted = new AtomicInteger(0);
+    private final List<ProtonConnection> connections = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        server = ProtonServer.create(vertx);
+        server.connectHandler(conn -> {
+            connectionsAccepted.incrementAndGet();
+            connections.add(conn);
+            conn.closeHandler(c -> {
+                conn.close();
+                conn.disconnect();
+            });
+            conn.disconnectHandler(c -> conn.disconnect()).open();
+            conn.sessionOpenHandler(ProtonSession::open);
+
+            CompletableFuture<ProtonSender> replySender = new CompletableFuture<>();
+            conn.senderOpenHandler(sender -> {
+                Source source = new Source();
+                source.setAddress("replies-" + connectionsAccepted.get());
+                sender.setSource(source);
+                sender.open();
+                replySender.complete(sender);
+            });
+            conn.receiverOpenHandler(receiver -> {
+                receiver.setTarget(receiver.getRemoteTarget());
+                receiver.handler((delivery, message) -> {
+                    Message response = Message.Factory.create();
+                    response.setAddress(message.getReplyTo());
+                    response.setCorrelationId(message.getCorrelationId());
+                    response.setBody(new AmqpValue("response to " + ((AmqpValue) message.getBody()).getValue()));
+                    replySender.thenAccept(sender -> sender.send(response));
+                });
+                receiver.open();
+            });
+        });
+        CompletableFuture<Void> listening = new CompletableFuture<>();
+        server.listen(0, result -> listening.complete(null));
+        listening.get(1, TimeUnit.MINUTES);
+        pool = new PooledRequestClient(vertx);
+    }
+
+    @After
+    public void teardown() {
+        pool.close();
+        server.close();
+        vertx.close();
+    }
+
+    private static Message createRequest(String body) {
+        Message request = Message.Factory.create();
+        request.setAddress("$management");
+        request.setBody(new AmqpValue(body));
+        return request;
+    }
+
+    private static String getBody(Message response) {
+        return (String) ((AmqpValue) response.getBody()).getValue();
+    }
+
+    @Test
+    public void testConnectionReused() throws Exception {
+        SyncRequestClient client = new SyncRequestClient("127.0.0.1", server.actualPort(), pool);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("response to " + i, getBody(client.request(createRequest(String.valueOf(i)), 10, TimeUnit.SECONDS)));
+        }
+
+        // many requests in flight on the same connection
+        List<CompletableFuture<Message>> responses = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            responses.add(pool.requestAsync("127.0.0.1", server.actualPort(), createRequest("async " + i), 10, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("response to async " + i, getBody(responses.get(i).get(10, TimeUnit.SECONDS)));
+        }
+
+        assertEquals(1, connectionsAccepted.get());
+        assertEquals(1, pool.getNumConnections());
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        pool.setIdleTimeout(200, TimeUnit.MILLISECONDS);
+        pool.request("127.0.0.1", server.actualPort(), createRequest("first"), 10, TimeUnit.SECONDS);
+        assertEquals(1, connectionsAccepted.get());
+
+        long endTime = System.currentTimeMillis() + 10_000;
+        while (pool.getNumConnections() > 0 && System.currentTimeMillis() < endTime) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pool.getNumConnections());
+
+        assertEquals("response to second", getBody(pool.request("127.0.0.1", server.actualPort(), createRequest("second"), 10, TimeUnit.SECONDS)));
+        assertEquals(2, connectionsAccepted.get());
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        pool.request("127.0.0.1", server.actualPort(), createRequest("first"), 10, TimeUnit.SECONDS);
+
+        // the server going away, the connection is removed from the pool
+        vertx.runOnContext(v -> connections.forEach(ProtonConnection::disconnect));
+        long endTime = System.currentTimeMillis() + 10_000;
+        while (pool.getNumConnections() > 0 && System.currentTimeMillis() < endTime) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pool.getNumConnections());
+
+        assertEquals("response to second", getBody(pool.request("127.0.0.1", server.actualPort(), createRequest("second"), 10, TimeUnit.SECONDS)));
+        assertEquals(2, connectionsAccepted.get());
+    }
+}
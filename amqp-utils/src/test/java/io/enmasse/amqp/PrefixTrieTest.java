@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.amqp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixTrieTest {
+    @Test
+    public void testLongestPrefixMatch() {
+        PrefixTrie<String> trie = PrefixTrie.<String>empty()
+                .put("queue", "queue")
+                .put("queue/a", "queue/a")
+                .put("queue/ab", "queue/ab")
+                .put("topic", "topic")
+                .put("q", "q");
+
+        assertEquals(5, trie.size());
+        assertEquals("queue/ab", trie.longestPrefixMatch("queue/abc"));
+        assertEquals("queue/a", trie.longestPrefixMatch("queue/ac"));
+        assertEquals("queue", trie.longestPrefixMatch("queue/"));
+        assertEquals("queue", trie.longestPrefixMatch("queue"));
+        assertEquals("q", trie.longestPrefixMatch("queu"));
+        assertEquals("topic", trie.longestPrefixMatch("topic/foo"));
+        assertNull(trie.longestPrefixMatch("top"));
+        assertNull(trie.longestPrefixMatch(""));
+
+        assertEquals("queue/a", trie.get("queue/a"));
+        assertNull(trie.get("queue/"));
+        assertNull(trie.get("queue/abc"));
+    }
+
+    @Test
+    public void testPutIsCopyOnWrite() {
+        PrefixTrie<String> first = PrefixTrie.<String>empty().put("abc", "1");
+        PrefixTrie<String> second = first.put("abd", "2").put("abc", "3");
+
+        assertEquals(1, first.size());
+        assertEquals("1", first.longestPrefixMatch("abcd"));
+        assertNull(first.longestPrefixMatch("abdd"));
+
+        assertEquals(2, second.size());
+        assertEquals("3", second.longestPrefixMatch("abcd"));
+        assertEquals("2", second.longestPrefixMatch("abdd"));
+        assertTrue(PrefixTrie.empty().isEmpty());
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(1);
+        List<String> prefixes = new ArrayList<>();
+        PrefixTrie<String> trie = PrefixTrie.empty();
+        for (int i = 0; i < 2000; i++) {
+            String prefix = randomString(random, 1 + random.nextInt(8));
+            prefixes.add(prefix);
+            trie = trie.put(prefix, prefix);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            String address = randomString(random, random.nextInt(12));
+            String expected = null;
+            for (String prefix : prefixes) {
+                if (address.startsWith(prefix) && (expected == null || prefix.length() > expected.length())) {
+                    expected = prefix;
+                }
+            }
+            assertEquals(address, expected, trie.longestPrefixMatch(address));
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append("abc/".charAt(random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+}
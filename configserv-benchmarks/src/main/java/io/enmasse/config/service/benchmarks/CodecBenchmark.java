@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.config.service.benchmarks;
+
+import io.enmasse.address.model.Address;
+import io.enmasse.address.model.AddressList;
+import io.enmasse.address.model.Status;
+import io.enmasse.address.model.types.standard.StandardType;
+import io.enmasse.config.service.config.ConfigCodecs;
+import io.enmasse.config.service.config.ConfigMessageEncoder;
+import io.enmasse.config.service.kubernetes.EncodedMessage;
+import org.apache.qpid.proton.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of encoding an address snapshot on the configserv side and decoding it on the subscriber side, for
+ * each of the codecs a subscriber can ask for. The size of the encoded snapshot is printed in the setup.
+ *
+ * Run with "-prof gc" for the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({ "json", "amqp-map" })
+    public String codec;
+
+    @Param({ "10000" })
+    public int addresses;
+
+    private ConfigMessageEncoder encoder;
+    private Set<Address> snapshot;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+
+        this.encoder = new ConfigMessageEncoder(ConfigCodecs.get(this.codec));
+        this.snapshot = new LinkedHashSet<>();
+        for (int i = 0; i < this.addresses; i++) {
+            this.snapshot.add(new Address.Builder()
+                    .setName("address-" + i)
+                    .setAddress("address-" + i)
+                    .setAddressSpace("myspace")
+                    .setType(StandardType.QUEUE)
+                    .setPlan(StandardType.QUEUE.getPlans().get(0))
+                    .setUuid("uuid-" + i)
+                    .setStatus(new Status(true))
+                    .build());
+        }
+        this.encoded = encode();
+        System.out.println("Encoded " + this.addresses + " addresses with " + this.codec + " in " + this.encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+
+        EncodedMessage message = EncodedMessage.encode(this.encoder.encode(this.snapshot));
+        byte[] bytes = new byte[message.getEncodedSize()];
+        message.encode(bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    @Benchmark
+    public AddressList decode() throws IOException {
+
+        Message message = Message.Factory.create();
+        message.decode(this.encoded, 0, this.encoded.length);
+        return this.encoder.decode(message);
+    }
+
+    @Benchmark
+    public AddressList roundTrip() throws IOException {
+
+        byte[] bytes = encode();
+        Message message = Message.Factory.create();
+        message.decode(bytes, 0, bytes.length);
+        return this.encoder.decode(message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        new Runner(new OptionsBuilder()
+                .include(CodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.config.service.benchmarks;
+
+import io.enmasse.address.model.Address;
+import io.enmasse.address.model.Status;
+import io.enmasse.address.model.types.standard.StandardType;
+import io.enmasse.config.service.config.ConfigMessageEncoder;
+import io.enmasse.config.service.kubernetes.EncodedMessage;
+import org.apache.qpid.proton.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of pushing an address snapshot to the configserv subscribers, comparing encoding the snapshot for
+ * every subscriber with encoding it once and copying the encoded bytes for every subscriber.
+ *
+ * Run with "-prof gc" for the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int subscribers;
+
+    @Param({ "1000" })
+    public int addresses;
+
+    private ConfigMessageEncoder encoder;
+    private Set<Address> snapshot;
+
+    @Setup
+    public void setup() {
+
+        this.encoder = new ConfigMessageEncoder();
+        this.snapshot = new LinkedHashSet<>();
+        for (int i = 0; i < this.addresses; i++) {
+            this.snapshot.add(new Address.Builder()
+                    .setName("address-" + i)
+                    .setAddress("address-" + i)
+                    .setAddressSpace("myspace")
+                    .setType(StandardType.QUEUE)
+                    .setPlan(StandardType.QUEUE.getPlans().get(0))
+                    .setUuid("uuid-" + i)
+                    .setStatus(new Status(true))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public void encodePerSubscriber(Blackhole blackhole) throws IOException {
+
+        // the SubscriptionManager and AMQPSubscriber behaviour before the encoded message cache
+        for (int i = 0; i < this.subscribers; i++) {
+            Message message = this.encoder.encode(this.snapshot);
+            blackhole.consume(send(message));
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce(Blackhole blackhole) throws IOException {
+
+        Message message = EncodedMessage.encode(this.encoder.encode(this.snapshot));
+        for (int i = 0; i < this.subscribers; i++) {
+            blackhole.consume(send(message));
+        }
+    }
+
+    /**
+     * Encodes the message the way the vertx-proton sender does on send
+     */
+    private static byte[] send(Message message) {
+
+        byte[] buffer = new byte[1024];
+        while (true) {
+            try {
+                int length = message.encode(buffer, 0, buffer.length);
+                byte[] encoded = new byte[length];
+                System.arraycopy(buffer, 0, encoded, 0, length);
+                return encoded;
+            } catch (BufferOverflowException e) {
+                buffer = new byte[buffer.length * 2];
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        new Runner(new OptionsBuilder()
+                .include(FanOutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -5,6 +5,8 @@
 
 package io.enmasse.config.service.amqp;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -40,6 +42,9 @@ public class AMQPServer extends AbstractVerticle {
     private volatile ProtonServer server;
     private static final Symbol LABELS = Symbol.getSymbol("labels");
     private static final Symbol ANNOTATIONS = Symbol.getSymbol("annotations");
+    private static final Symbol RESOURCE_VERSION = Symbol.getSymbol("resourceVersion");
+    private static final Symbol DELTAS = Symbol.getSymbol("enmasse.io/deltas");
+    private static final Symbol CODEC = Symbol.getSymbol("enmasse.io/codec");
     private ProtonServerOptions options;
     private ProtonSaslAuthenticatorFactory authenticatorFactory;
 
@@ -88,7 +93,10 @@ public class AMQPServer extends AbstractVerticle {
                 Map<String, String> labelFilter = createLabelFilter(source.getFilter());
                 Map<String, String> annotationFilter = createAnnotationFilter(source.getFilter());
                 ObserverKey subscriptionKey = new ObserverKey(labelFilter, annotationFilter);
-                database.subscribe(subscriptionKey, new AMQPSubscriber(protonContext, subscriptionKey, connection, sender));
+                boolean supportsDeltas = desiresDeltas(sender);
+                long resourceVersion = getResourceVersion(source.getFilter());
+                String codec = getCodec(sender);
+                database.subscribe(subscriptionKey, new AMQPSubscriber(protonContext, subscriptionKey, connection, sender, supportsDeltas, resourceVersion, codec));
 
                 promise.complete(database);
             } catch (Exception e) {
@@ -96,6 +104,13 @@ public class AMQPServer extends AbstractVerticle {
             }
         }, result -> {
             if (result.succeeded()) {
+                if (desiresDeltas(sender)) {
+                    sender.setOfferedCapabilities(new Symbol[]{DELTAS});
+                }
+                String codec = getCodec(sender);
+                if (codec != null) {
+                    sender.setProperties(Collections.singletonMap(CODEC, codec));
+                }
                 sender.open();
                 log.info("Added subscriber {} for config {}", connection.getRemoteContainer(), sender.getRemoteSource().getAddress());
             } else {
@@ -114,6 +129,26 @@ public class AMQPServer extends AbstractVerticle {
         }
     }
 
+    private static boolean desiresDeltas(ProtonSender sender) {
+        Symbol[] capabilities = sender.getRemoteDesiredCapabilities();
+        return capabilities != null && Arrays.asList(capabilities).contains(DELTAS);
+    }
+
+    private static String getCodec(ProtonSender sender) {
+        Map<Symbol, Object> properties = sender.getRemoteProperties();
+        if (properties != null && properties.get(CODEC) != null) {
+            return properties.get(CODEC).toString();
+        }
+        return null;
+    }
+
+    private static long getResourceVersion(Map filter) {
+        if (filter != null && filter.containsKey(RESOURCE_VERSION)) {
+            return Long.parseLong(filter.get(RESOURCE_VERSION).toString());
+        }
+        return 0;
+    }
+
     private Map<String, String> createLabelFilter(Map filter) {
         Map<String, String> labelFilter = new LinkedHashMap<>();
         if (filter != null) {
@@ -121,7 +156,9 @@ public class AMQPServer extends AbstractVerticle {
                 filter = (Map) filter.get(LABELS);
             }
             for (Object key : filter.keySet()) {
-                labelFilter.put(key.toString(), filter.get(key).toString());
+                if (!RESOURCE_VERSION.equals(key)) {
+                    labelFilter.put(key.toString(), filter.get(key).toString());
+                }
             }
         }
         return labelFilter;
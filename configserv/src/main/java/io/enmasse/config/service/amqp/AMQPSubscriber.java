@@ -20,12 +20,22 @@ public class AMQPSubscriber implements Subscriber {
     private final String id;
     private final ObserverKey subscriptionKey;
     private final ProtonSender sender;
+    private final boolean supportsDeltas;
+    private final long resourceVersion;
+    private final String codec;
 
     public AMQPSubscriber(Context protonContext, ObserverKey subscriptionKey, ProtonConnection connection, ProtonSender sender) {
+        this(protonContext, subscriptionKey, connection, sender, false, 0, null);
+    }
+
+    public AMQPSubscriber(Context protonContext, ObserverKey subscriptionKey, ProtonConnection connection, ProtonSender sender, boolean supportsDeltas, long resourceVersion, String codec) {
         this.context = protonContext;
         this.subscriptionKey = subscriptionKey;
         this.id = connection.getRemoteContainer();
         this.sender = sender;
+        this.supportsDeltas = supportsDeltas;
+        this.resourceVersion = resourceVersion;
+        this.codec = codec;
     }
 
     @Override
@@ -33,6 +43,21 @@ public class AMQPSubscriber implements Subscriber {
         return id;
     }
 
+    @Override
+    public boolean supportsDeltas() {
+        return supportsDeltas;
+    }
+
+    @Override
+    public long getResourceVersion() {
+        return resourceVersion;
+    }
+
+    @Override
+    public String getCodec() {
+        return codec;
+    }
+
     @Override
     public void resourcesUpdated(Message message) {
         context.runOnContext(h -> {
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Section;
+
+/**
+ * Encodes the documents as native AMQP typed maps and lists, so that no JSON text is produced or parsed
+ */
+public class AmqpMapConfigCodec implements ConfigCodec {
+    public static final String NAME = "amqp-map";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return null;
+    }
+
+    @Override
+    public Section encode(ObjectMapper mapper, Object document) {
+        // Maps, lists, strings, numbers and booleans, all native AMQP types
+        return new AmqpValue(mapper.convertValue(document, Object.class));
+    }
+
+    @Override
+    public <T> T decode(ObjectMapper mapper, Section body, Class<T> type) {
+        return mapper.convertValue(((AmqpValue) body).getValue(), type);
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.qpid.proton.amqp.messaging.Section;
+
+import java.io.IOException;
+
+/**
+ * Encoding of the address documents in the body of the config messages, requested by the subscribers by name.
+ *
+ * The documents are serialized with the mapper of the address model, so that all the codecs carry the same content.
+ * Codecs other than the built in ones are found with {@link java.util.ServiceLoader}.
+ */
+public interface ConfigCodec {
+    String getName();
+
+    String getContentType();
+
+    Section encode(ObjectMapper mapper, Object document) throws IOException;
+
+    <T> T decode(ObjectMapper mapper, Section body, Class<T> type) throws IOException;
+}
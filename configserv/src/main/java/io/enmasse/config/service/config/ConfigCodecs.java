@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The codecs available to the subscribers, the built in ones and those found with {@link ServiceLoader}
+ */
+public class ConfigCodecs {
+    private static final Map<String, ConfigCodec> codecs = new LinkedHashMap<>();
+
+    static {
+        register(new JsonConfigCodec());
+        register(new AmqpMapConfigCodec());
+        for (ConfigCodec codec : ServiceLoader.load(ConfigCodec.class)) {
+            register(codec);
+        }
+    }
+
+    private static void register(ConfigCodec codec) {
+        codecs.put(codec.getName(), codec);
+    }
+
+    public static ConfigCodec getDefault() {
+        return codecs.get(JsonConfigCodec.NAME);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no codec with the name
+     */
+    public static ConfigCodec get(String name) {
+        ConfigCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown codec " + name + ", supported are " + codecs.keySet());
+        }
+        return codec;
+    }
+}
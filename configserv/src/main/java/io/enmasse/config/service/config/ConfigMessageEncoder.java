@@ -5,40 +5,99 @@
 package io.enmasse.config.service.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.enmasse.config.service.kubernetes.MessageEncoder;
+import io.enmasse.config.service.kubernetes.DeltaMessageEncoder;
+import io.enmasse.config.service.kubernetes.ResourceDelta;
 import io.enmasse.address.model.Address;
 import io.enmasse.address.model.AddressList;
 import io.enmasse.address.model.v1.CodecV1;
-import org.apache.qpid.proton.amqp.messaging.AmqpValue;
-import org.apache.qpid.proton.amqp.messaging.Section;
 import org.apache.qpid.proton.message.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Encodes a set of address configs to an AMQP message
+ * Encodes a set of address configs, or the changes to it, to an AMQP message
  */
-public class ConfigMessageEncoder implements MessageEncoder<Address> {
+public class ConfigMessageEncoder implements DeltaMessageEncoder<Address> {
     private static final Logger log = LoggerFactory.getLogger(ConfigMessageEncoder.class.getName());
     private static final ObjectMapper mapper = CodecV1.getMapper();
 
+    private final ConfigCodec codec;
+    private final Map<String, ConfigMessageEncoder> codecEncoders = new ConcurrentHashMap<>();
+
+    public ConfigMessageEncoder() {
+        this(ConfigCodecs.getDefault());
+    }
+
+    public ConfigMessageEncoder(ConfigCodec codec) {
+        this.codec = codec;
+    }
+
     @Override
     public Message encode(Set<Address> resources) throws IOException {
         Message message = Message.Factory.create();
         // TODO: Avoid so much decode/encode
         AddressList addressList = new AddressList(resources);
         message.setSubject("enmasse.io/v1/AddressList");
-        message.setBody(createBody(addressList));
-        message.setContentType("application/json");
+        message.setBody(codec.encode(mapper, addressList));
+        setContentType(message);
+        return message;
+    }
+
+    /**
+     * Decode the addresses of a message encoded with this codec.
+     */
+    public AddressList decode(Message message) throws IOException {
+        return codec.decode(mapper, message.getBody(), AddressList.class);
+    }
+
+    @Override
+    public ConfigMessageEncoder withCodec(String name) {
+        if (name == null || name.equals(codec.getName())) {
+            return this;
+        }
+        // Same encoder for a codec, as the encoded messages are cached by encoder
+        return codecEncoders.computeIfAbsent(name, n -> new ConfigMessageEncoder(ConfigCodecs.get(n)));
+    }
+
+    public ConfigCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public String getKey(Address address) {
+        return address.getAddress();
+    }
+
+    @Override
+    public boolean isModified(Address previous, Address current) {
+        // Address equality only considers the address itself, so comparing all that is sent, annotations included
+        return !mapper.valueToTree(previous).equals(mapper.valueToTree(current));
+    }
+
+    @Override
+    public Message encodeDelta(ResourceDelta<Address> delta) throws IOException {
+        Message message = Message.Factory.create();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("apiVersion", "enmasse.io/v1");
+        body.put("kind", "AddressListDelta");
+        body.put("added", delta.getAdded());
+        body.put("modified", delta.getModified());
+        body.put("deleted", delta.getDeleted());
+        message.setSubject("enmasse.io/v1/AddressListDelta");
+        message.setBody(codec.encode(mapper, body));
+        setContentType(message);
         return message;
     }
 
-    private Section createBody(List<Address> addressList) throws IOException {
-        return new AmqpValue(mapper.writeValueAsString(addressList));
+    private void setContentType(Message message) {
+        if (codec.getContentType() != null) {
+            message.setContentType(codec.getContentType());
+        }
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Section;
+
+import java.io.IOException;
+
+/**
+ * Encodes the documents with a Jackson data format into a binary AMQP data section. Binary formats like Smile or
+ * CBOR are plugged in by subclassing it with their factory, and registering the subclass as a service:
+ *
+ * <pre>
+ * public class CborConfigCodec extends JacksonBinaryConfigCodec {
+ *     public CborConfigCodec() {
+ *         super("cbor", "application/cbor", new CBORFactory());
+ *     }
+ * }
+ * </pre>
+ */
+public class JacksonBinaryConfigCodec implements ConfigCodec {
+    private final String name;
+    private final String contentType;
+    private final JsonFactory factory;
+
+    public JacksonBinaryConfigCodec(String name, String contentType, JsonFactory factory) {
+        this.name = name;
+        this.contentType = contentType;
+        this.factory = factory;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public Section encode(ObjectMapper mapper, Object document) throws IOException {
+        return new Data(new Binary(mapper.writer().with(factory).writeValueAsBytes(document)));
+    }
+
+    @Override
+    public <T> T decode(ObjectMapper mapper, Section body, Class<T> type) throws IOException {
+        Binary binary = ((Data) body).getValue();
+        return mapper.readerFor(type).with(factory).readValue(binary.getArray(), binary.getArrayOffset(), binary.getLength());
+    }
+}
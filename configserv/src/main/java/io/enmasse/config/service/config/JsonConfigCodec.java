@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Section;
+
+import java.io.IOException;
+
+/**
+ * Encodes the documents as JSON text in an AMQP string, the default encoding
+ */
+public class JsonConfigCodec implements ConfigCodec {
+    public static final String NAME = "json";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json";
+    }
+
+    @Override
+    public Section encode(ObjectMapper mapper, Object document) throws IOException {
+        return new AmqpValue(mapper.writeValueAsString(document));
+    }
+
+    @Override
+    public <T> T decode(ObjectMapper mapper, Section body, Class<T> type) throws IOException {
+        return mapper.readValue((String) ((AmqpValue) body).getValue(), type);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.kubernetes;
+
+import org.apache.qpid.proton.message.Message;
+
+import java.io.IOException;
+
+/**
+ * Interface for encoding the changes of a set of resources as AMQP messages, for subscribers receiving deltas
+ * instead of the full set on every change
+ */
+public interface DeltaMessageEncoder<T> extends MessageEncoder<T> {
+    /**
+     * @return key identifying the resource across versions
+     */
+    String getKey(T resource);
+
+    /**
+     * @return true if the resource with the same key has changed
+     */
+    default boolean isModified(T previous, T current) {
+        return !previous.equals(current);
+    }
+
+    Message encodeDelta(ResourceDelta<T> delta) throws IOException;
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.kubernetes;
+
+import org.apache.qpid.proton.codec.WritableBuffer;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+
+import java.nio.BufferOverflowException;
+
+/**
+ * A message encoded once, and then copied as is whenever it is encoded again, so that sending the same message
+ * to many subscribers doesn't encode it for each of them.
+ *
+ * The message must not be modified once created, as the modifications would not be sent.
+ */
+public class EncodedMessage extends MessageImpl {
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final byte[] encoded;
+
+    private EncodedMessage(Message message, byte[] encoded) {
+        setHeader(message.getHeader());
+        setDeliveryAnnotations(message.getDeliveryAnnotations());
+        setMessageAnnotations(message.getMessageAnnotations());
+        setProperties(message.getProperties());
+        setApplicationProperties(message.getApplicationProperties());
+        setBody(message.getBody());
+        setFooter(message.getFooter());
+        this.encoded = encoded;
+    }
+
+    /**
+     * Encode the message, returning it as is if already encoded.
+     */
+    public static EncodedMessage encode(Message message) {
+        if (message instanceof EncodedMessage) {
+            return (EncodedMessage) message;
+        }
+        byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        while (true) {
+            try {
+                int length = message.encode(buffer, 0, buffer.length);
+                byte[] encoded = new byte[length];
+                System.arraycopy(buffer, 0, encoded, 0, length);
+                return new EncodedMessage(message, encoded);
+            } catch (BufferOverflowException e) {
+                buffer = new byte[buffer.length * 2];
+            }
+        }
+    }
+
+    public int getEncodedSize() {
+        return encoded.length;
+    }
+
+    @Override
+    public int encode(byte[] data, int offset, int length) {
+        if (encoded.length > length) {
+            throw new BufferOverflowException();
+        }
+        System.arraycopy(encoded, 0, data, offset, encoded.length);
+        return encoded.length;
+    }
+
+    @Override
+    public int encode(WritableBuffer buffer) {
+        if (encoded.length > buffer.remaining()) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(encoded, 0, encoded.length);
+        return encoded.length;
+    }
+}
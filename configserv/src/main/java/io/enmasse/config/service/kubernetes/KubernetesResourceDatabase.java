@@ -44,11 +44,12 @@ public class KubernetesResourceDatabase<T> implements AutoCloseable, ResourceDat
         if (entry == null) {
             log.info("Creating new observer with filter " + observerKey);
             SubscriptionManager<T> subscriptionManager = new SubscriptionManager<>(observerKey, subscriptionConfig.getMessageEncoder(), subscriptionConfig.getResourceFilter());
+            // Subscribing first, so that a subscriber asking for an unknown codec doesn't leave an unstarted observer
+            subscriptionManager.subscribe(subscriber);
+
             ResourceController<T> controller = ResourceController.create(subscriptionConfig.getResource(observerKey, client), subscriptionManager);
             entry = new DatabaseEntry<>(controller, subscriptionManager);
             entryMap.put(observerKey, entry);
-
-            subscriptionManager.subscribe(subscriber);
             controller.start();
         } else {
             log.info("Subscribed to existing observer with filter " + observerKey);
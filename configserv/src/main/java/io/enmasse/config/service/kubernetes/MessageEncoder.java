@@ -14,4 +14,16 @@ import java.util.Set;
  */
 public interface MessageEncoder<T> {
     Message encode(Set<T> set) throws IOException;
+
+    /**
+     * @param codec name of the codec requested by a subscriber, or null for the default one
+     * @return encoder using the codec
+     * @throws IllegalArgumentException if the codec is not supported
+     */
+    default MessageEncoder<T> withCodec(String codec) {
+        if (codec == null) {
+            return this;
+        }
+        throw new IllegalArgumentException("Codec " + codec + " not supported");
+    }
 }
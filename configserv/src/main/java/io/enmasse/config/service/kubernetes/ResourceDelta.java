@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.kubernetes;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The resources added, modified and deleted to get from the previous resource version to this one
+ */
+public class ResourceDelta<T> {
+    private final long version;
+    private final List<T> added;
+    private final List<T> modified;
+    private final List<String> deleted;
+
+    public ResourceDelta(long version, List<T> added, List<T> modified, List<String> deleted) {
+        this.version = version;
+        this.added = Collections.unmodifiableList(added);
+        this.modified = Collections.unmodifiableList(modified);
+        this.deleted = Collections.unmodifiableList(deleted);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<T> getAdded() {
+        return added;
+    }
+
+    public List<T> getModified() {
+        return modified;
+    }
+
+    /**
+     * @return keys of the resources deleted
+     */
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && modified.isEmpty() && deleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "{version=" + version + ",added=" + added + ",modified=" + modified + ",deleted=" + deleted + "}";
+    }
+}
@@ -8,6 +8,7 @@ package io.enmasse.config.service.kubernetes;
 import io.enmasse.config.service.model.ObserverKey;
 import io.enmasse.config.service.model.Subscriber;
 import io.enmasse.k8s.api.Watcher;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
 import org.apache.qpid.proton.message.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,9 +20,21 @@ import java.util.stream.Collectors;
 
 /**
  * Manages subscribers for a given set of OpenShift resources.
+ *
+ * With a {@link DeltaMessageEncoder}, subscribers supporting deltas get a snapshot of the resources when they
+ * subscribe, and then only the resources added, modified and deleted on every change. Every change gets a new
+ * resource version, sent in the messages. A subscriber coming back with the version it has gets the deltas it
+ * missed, or a new snapshot if they are no longer kept.
+ *
+ * Messages are encoded once for each codec used by the subscribers, and sent as encoded to all of them.
  */
 public class SubscriptionManager<T> implements Watcher<T> {
     private static final Logger log = LoggerFactory.getLogger(SubscriptionManager.class.getName());
+    public static final String RESOURCE_VERSION = "resourceVersion";
+    public static final String UPDATE_TYPE = "updateType";
+    public static final String UPDATE_TYPE_SNAPSHOT = "snapshot";
+    public static final String UPDATE_TYPE_DELTA = "delta";
+    private static final int DEFAULT_MAX_DELTAS = 100;
 
     private final ObserverKey subscriptionKey;
     private final List<Subscriber> subscriberList = new ArrayList<>();
@@ -29,62 +42,292 @@ public class SubscriptionManager<T> implements Watcher<T> {
     private final MessageEncoder<T> messageEncoder;
     private final Predicate<T> resourceFilter;
 
+    // Only used with a delta encoder
+    private final DeltaMessageEncoder<T> deltaEncoder;
+    private final int maxDeltas;
+    private final Map<String, T> resourcesByKey = new LinkedHashMap<>();
+    private final Deque<VersionedDelta> deltas = new ArrayDeque<>();
+    private final Map<Subscriber, Long> subscriberVersions = new HashMap<>();
+    private boolean initialized = false;
+
+    // Starting from the time, so that versions from before a restart are not mistaken for current ones
+    private long version = System.currentTimeMillis();
+    // Encoded once per version and codec, whatever the number of subscribers
+    private final Map<MessageEncoder<T>, VersionedMessage> snapshots = new HashMap<>();
+
     public SubscriptionManager(ObserverKey subscriptionKey, MessageEncoder<T> messageEncoder, Predicate<T> resourceFilter) {
+        this(subscriptionKey, messageEncoder, resourceFilter, DEFAULT_MAX_DELTAS);
+    }
+
+    /**
+     * @param maxDeltas number of deltas kept for the subscribers coming back
+     */
+    public SubscriptionManager(ObserverKey subscriptionKey, MessageEncoder<T> messageEncoder, Predicate<T> resourceFilter, int maxDeltas) {
         this.subscriptionKey = subscriptionKey;
         this.messageEncoder = messageEncoder;
         this.resourceFilter = resourceFilter;
+        this.deltaEncoder = messageEncoder instanceof DeltaMessageEncoder ? (DeltaMessageEncoder<T>) messageEncoder : null;
+        this.maxDeltas = maxDeltas;
     }
 
     /**
      * Subscribe for updates.
      *
      * @param subscriber The subscriber handle.
+     * @throws IllegalArgumentException if the codec requested by the subscriber is not supported
      */
     public synchronized void subscribe(Subscriber subscriber) {
+        MessageEncoder<T> encoder = encoderFor(subscriber);
         subscriberList.add(subscriber);
+        if (isDeltaSubscriber(subscriber)) {
+            subscribeDeltas(subscriber, encoder);
+            return;
+        }
         // Notify only when we have values
         if (!resources.isEmpty()) {
             log.info("Added new subscriber {} on key {}, notifying with new resources", subscriber.getId(), subscriptionKey);
-            Optional<Message> message = encodeAndLog();
+            Optional<Message> message = encodeAndLog(encoder);
             message.ifPresent(subscriber::resourcesUpdated);
         } else {
             log.info("Added new subscriber {} on key {}, no resources to updated with", subscriber.getId(), subscriptionKey);
         }
     }
 
+    private void subscribeDeltas(Subscriber subscriber, MessageEncoder<T> encoder) {
+        long subscriberVersion = subscriber.getResourceVersion();
+        subscriberVersions.put(subscriber, subscriberVersion);
+        if (!initialized) {
+            log.info("Added new delta subscriber {} on key {}, no resources to updated with", subscriber.getId(), subscriptionKey);
+        } else if (subscriberVersion == version) {
+            log.info("Added new delta subscriber {} on key {}, already at version {}", subscriber.getId(), subscriptionKey, version);
+        } else {
+            List<Message> missed = hasDeltasSince(subscriberVersion) ? encodeDeltasSince(subscriberVersion, encoder) : null;
+            if (missed != null) {
+                log.info("Added new delta subscriber {} on key {}, notifying with deltas since version {}", subscriber.getId(), subscriptionKey, subscriberVersion);
+                missed.forEach(subscriber::resourcesUpdated);
+                subscriberVersions.put(subscriber, version);
+            } else {
+                log.info("Added new delta subscriber {} on key {}, notifying with snapshot at version {}", subscriber.getId(), subscriptionKey, version);
+                Optional<Message> snapshot = encodeAndLog(encoder);
+                snapshot.ifPresent(message -> {
+                    subscriber.resourcesUpdated(message);
+                    subscriberVersions.put(subscriber, version);
+                });
+            }
+        }
+    }
+
+    private boolean hasDeltasSince(long subscriberVersion) {
+        return !deltas.isEmpty() && subscriberVersion < version && deltas.peekFirst().delta.getVersion() <= subscriberVersion + 1;
+    }
+
+    /**
+     * @return the deltas after the version, or null if some could not be encoded
+     */
+    private List<Message> encodeDeltasSince(long subscriberVersion, MessageEncoder<T> encoder) {
+        List<Message> messages = new ArrayList<>();
+        for (VersionedDelta delta : deltas) {
+            if (delta.delta.getVersion() > subscriberVersion) {
+                Optional<Message> message = encodeDeltaAndLog(delta, encoder);
+                if (!message.isPresent()) {
+                    return null;
+                }
+                messages.add(message.get());
+            }
+        }
+        return messages;
+    }
+
+    private boolean isDeltaSubscriber(Subscriber subscriber) {
+        return deltaEncoder != null && subscriber.supportsDeltas();
+    }
+
+    private MessageEncoder<T> encoderFor(Subscriber subscriber) {
+        return messageEncoder.withCodec(subscriber.getCodec());
+    }
+
     /**
      * Notify subscribers that the set of configs has been updated.
      */
     private void notifySubscribers() {
         log.info("Notifying subscribers on {} with updated resources: {}", subscriptionKey, resources);
-        Optional<Message> message = encodeAndLog();
-        message.ifPresent(m -> subscriberList.forEach(s -> {
-            log.info("Notifying {}", s.getId());
-            s.resourcesUpdated(m);
-        }));
+        for (Subscriber subscriber : subscriberList) {
+            Optional<Message> message = encodeAndLog(encoderFor(subscriber));
+            message.ifPresent(m -> {
+                log.info("Notifying {}", subscriber.getId());
+                subscriber.resourcesUpdated(m);
+            });
+        }
+    }
+
+    /**
+     * Notify subscribers with the delta from the previous version, or a snapshot for those not at that version.
+     *
+     * @param delta the delta from the previous version, null if there were no resources before
+     */
+    private void notifySubscribers(ResourceDelta<T> delta, long previousVersion) {
+        log.info("Notifying subscribers on {} with delta: {}", subscriptionKey, delta);
+        VersionedDelta versionedDelta = null;
+        if (delta != null) {
+            versionedDelta = new VersionedDelta(delta);
+            deltas.addLast(versionedDelta);
+            while (deltas.size() > maxDeltas) {
+                deltas.removeFirst();
+            }
+        }
+
+        for (Subscriber subscriber : subscriberList) {
+            MessageEncoder<T> encoder = encoderFor(subscriber);
+            Optional<Message> message = Optional.empty();
+            if (versionedDelta != null && isDeltaSubscriber(subscriber) && subscriberVersions.get(subscriber) == previousVersion) {
+                message = encodeDeltaAndLog(versionedDelta, encoder);
+            }
+            if (!message.isPresent()) {
+                // The snapshot is encoded only if some subscriber needs it
+                message = encodeAndLog(encoder);
+            }
+            message.ifPresent(m -> {
+                log.info("Notifying {}", subscriber.getId());
+                subscriber.resourcesUpdated(m);
+                if (isDeltaSubscriber(subscriber)) {
+                    subscriberVersions.put(subscriber, version);
+                }
+            });
+        }
     }
 
-    private Optional<Message> encodeAndLog() {
+    /**
+     * Encode the snapshot of the current version, or return it if already encoded.
+     */
+    private Optional<Message> encodeAndLog(MessageEncoder<T> encoder) {
+        VersionedMessage snapshot = snapshots.get(encoder);
+        if (snapshot != null && snapshot.version == version) {
+            return Optional.of(snapshot.message);
+        }
         Set<T> set = Collections.unmodifiableSet(resources);
         try {
-            return Optional.of(messageEncoder.encode(set));
+            Message message = EncodedMessage.encode(setUpdateProperties(encoder.encode(set), UPDATE_TYPE_SNAPSHOT, version));
+            snapshots.put(encoder, new VersionedMessage(version, message));
+            return Optional.of(message);
         } catch (IOException e) {
             log.warn("Error encoding message", e);
             return Optional.empty();
         }
     }
 
+    /**
+     * Encode the delta, or return it if already encoded.
+     */
+    private Optional<Message> encodeDeltaAndLog(VersionedDelta delta, MessageEncoder<T> encoder) {
+        Message message = delta.encoded.get(encoder);
+        if (message != null) {
+            return Optional.of(message);
+        }
+        if (!(encoder instanceof DeltaMessageEncoder)) {
+            return Optional.empty();
+        }
+        try {
+            message = EncodedMessage.encode(setUpdateProperties(((DeltaMessageEncoder<T>) encoder).encodeDelta(delta.delta), UPDATE_TYPE_DELTA, delta.delta.getVersion()));
+            delta.encoded.put(encoder, message);
+            return Optional.of(message);
+        } catch (IOException e) {
+            log.warn("Error encoding delta", e);
+            return Optional.empty();
+        }
+    }
+
+    private Message setUpdateProperties(Message message, String updateType, long messageVersion) {
+        if (deltaEncoder != null) {
+            Map<String, Object> properties = new HashMap<>();
+            if (message.getApplicationProperties() != null) {
+                properties.putAll(message.getApplicationProperties().getValue());
+            }
+            properties.put(RESOURCE_VERSION, messageVersion);
+            properties.put(UPDATE_TYPE, updateType);
+            message.setApplicationProperties(new ApplicationProperties(properties));
+        }
+        return message;
+    }
+
     public synchronized void resourcesUpdated(Set<T> updated) {
         Set<T> filtered = updated.stream()
                 .filter(resourceFilter)
                 .collect(Collectors.toSet());
 
         log.info("Resources was filtered on {} from {} to {}", subscriptionKey, updated, filtered);
-        if (!filtered.equals(resources)) {
+        if (deltaEncoder != null) {
+            ResourceDelta<T> delta = computeDelta(filtered);
+            if (!delta.isEmpty() || !initialized) {
+                log.info("Updated resources for {} to version {}", subscriptionKey, delta.getVersion());
+                long previousVersion = version;
+                version = delta.getVersion();
+                applyDelta(delta);
+                notifySubscribers(initialized ? delta : null, previousVersion);
+                initialized = true;
+            }
+        } else if (!filtered.equals(resources)) {
             log.info("Updated resources for {}", subscriptionKey);
+            version++;
             resources.clear();
             resources.addAll(filtered);
             notifySubscribers();
         }
     }
+
+    private ResourceDelta<T> computeDelta(Set<T> updated) {
+        List<T> added = new ArrayList<>();
+        List<T> modified = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        for (T resource : updated) {
+            String key = deltaEncoder.getKey(resource);
+            keys.add(key);
+            T previous = resourcesByKey.get(key);
+            if (previous == null) {
+                added.add(resource);
+            } else if (deltaEncoder.isModified(previous, resource)) {
+                modified.add(resource);
+            }
+        }
+        List<String> deleted = new ArrayList<>();
+        for (String key : resourcesByKey.keySet()) {
+            if (!keys.contains(key)) {
+                deleted.add(key);
+            }
+        }
+        return new ResourceDelta<>(version + 1, added, modified, deleted);
+    }
+
+    private void applyDelta(ResourceDelta<T> delta) {
+        for (String key : delta.getDeleted()) {
+            resourcesByKey.remove(key);
+        }
+        for (T resource : delta.getAdded()) {
+            resourcesByKey.put(deltaEncoder.getKey(resource), resource);
+        }
+        for (T resource : delta.getModified()) {
+            resourcesByKey.put(deltaEncoder.getKey(resource), resource);
+        }
+        resources.clear();
+        resources.addAll(resourcesByKey.values());
+    }
+
+    private class VersionedDelta {
+        private final ResourceDelta<T> delta;
+        // Encoded once per codec, when a subscriber needs it
+        private final Map<MessageEncoder<T>, Message> encoded = new HashMap<>();
+
+        private VersionedDelta(ResourceDelta<T> delta) {
+            this.delta = delta;
+        }
+    }
+
+    private static class VersionedMessage {
+        private final long version;
+        private final Message message;
+
+        private VersionedMessage(long version, Message message) {
+            this.version = version;
+            this.message = message;
+        }
+    }
 }
@@ -12,4 +12,25 @@ import org.apache.qpid.proton.message.Message;
 public interface Subscriber {
     String getId();
     void resourcesUpdated(Message message);
+
+    /**
+     * @return true if the subscriber wants deltas after the first snapshot, rather than a snapshot on every change
+     */
+    default boolean supportsDeltas() {
+        return false;
+    }
+
+    /**
+     * @return the resource version the subscriber already has from a previous subscription, or 0 if none
+     */
+    default long getResourceVersion() {
+        return 0;
+    }
+
+    /**
+     * @return name of the codec the subscriber wants the resources encoded with, or null for the default one
+     */
+    default String getCodec() {
+        return null;
+    }
 }
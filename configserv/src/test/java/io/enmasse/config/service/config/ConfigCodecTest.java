@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.config.service.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.enmasse.address.model.Address;
+import io.enmasse.address.model.AddressList;
+import io.enmasse.address.model.Status;
+import io.enmasse.address.model.types.AddressType;
+import io.enmasse.address.model.types.standard.StandardType;
+import io.enmasse.address.model.v1.CodecV1;
+import io.enmasse.config.service.kubernetes.ResourceDelta;
+import org.apache.qpid.proton.message.Message;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConfigCodecTest {
+    private final List<ConfigCodec> codecs = Arrays.asList(
+            new JsonConfigCodec(),
+            new AmqpMapConfigCodec(),
+            new JacksonBinaryConfigCodec("json-binary", "application/json", new JsonFactory()));
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        Set<Address> addresses = new LinkedHashSet<>(Arrays.asList(
+                createAddress("c1", "myqueue", StandardType.QUEUE, true),
+                createAddress("c2", "myqueue2", StandardType.QUEUE, false),
+                createAddress("c3", "mytopic", StandardType.TOPIC, true)));
+
+        for (ConfigCodec codec : codecs) {
+            ConfigMessageEncoder encoder = new ConfigMessageEncoder(codec);
+            Message message = roundTrip(encoder.encode(addresses));
+            assertThat(message.getSubject(), is("enmasse.io/v1/AddressList"));
+            assertThat(message.getContentType(), is(codec.getContentType()));
+
+            AddressList decoded = encoder.decode(message);
+            assertThat(codec.getName(), decoded.size(), is(3));
+            int i = 0;
+            for (Address expected : addresses) {
+                Address actual = decoded.get(i++);
+                assertThat(codec.getName(), actual.getName(), is(expected.getName()));
+                assertThat(codec.getName(), actual.getAddress(), is(expected.getAddress()));
+                assertThat(codec.getName(), actual.getUuid(), is(expected.getUuid()));
+                assertThat(codec.getName(), actual.getType(), is(expected.getType()));
+                assertThat(codec.getName(), actual.getPlan(), is(expected.getPlan()));
+                assertThat(codec.getName(), actual.getStatus(), is(expected.getStatus()));
+            }
+        }
+    }
+
+    @Test
+    public void testDeltaRoundTrip() throws IOException {
+        ResourceDelta<Address> delta = new ResourceDelta<>(2,
+                Arrays.asList(createAddress("c1", "myqueue", StandardType.QUEUE, false)),
+                Arrays.asList(createAddress("c2", "myqueue2", StandardType.QUEUE, true)),
+                Arrays.asList("mytopic"));
+
+        JsonNode expected = null;
+        for (ConfigCodec codec : codecs) {
+            Message message = roundTrip(new ConfigMessageEncoder(codec).encodeDelta(delta));
+            assertThat(message.getSubject(), is("enmasse.io/v1/AddressListDelta"));
+
+            JsonNode decoded = codec.decode(CodecV1.getMapper(), message.getBody(), JsonNode.class);
+            if (expected == null) {
+                expected = decoded;
+            }
+            assertThat(codec.getName(), decoded, is(expected));
+        }
+        assertThat(expected.get("kind").asText(), is("AddressListDelta"));
+        assertThat(expected.get("deleted").get(0).asText(), is("mytopic"));
+    }
+
+    @Test
+    public void testEmptySnapshot() throws IOException {
+        for (ConfigCodec codec : codecs) {
+            ConfigMessageEncoder encoder = new ConfigMessageEncoder(codec);
+            assertThat(codec.getName(), encoder.decode(roundTrip(encoder.encode(Collections.emptySet()))).size(), is(0));
+        }
+    }
+
+    @Test
+    public void testCodecLookup() {
+        assertThat(ConfigCodecs.getDefault().getName(), is(JsonConfigCodec.NAME));
+        assertThat(ConfigCodecs.get(AmqpMapConfigCodec.NAME).getName(), is(AmqpMapConfigCodec.NAME));
+
+        ConfigMessageEncoder encoder = new ConfigMessageEncoder();
+        assertThat(encoder.withCodec(null), sameInstance(encoder));
+        assertThat(encoder.withCodec(JsonConfigCodec.NAME), sameInstance(encoder));
+        assertThat(encoder.withCodec(AmqpMapConfigCodec.NAME), sameInstance(encoder.withCodec(AmqpMapConfigCodec.NAME)));
+        assertThat(encoder.withCodec(AmqpMapConfigCodec.NAME).getCodec().getName(), is(AmqpMapConfigCodec.NAME));
+
+        try {
+            ConfigCodecs.get("nosuch");
+            fail("Expected unknown codec to fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static Message roundTrip(Message message) {
+        byte[] buffer = new byte[65536];
+        int length = message.encode(buffer, 0, buffer.length);
+        Message decoded = Message.Factory.create();
+        decoded.decode(buffer, 0, length);
+        return decoded;
+    }
+
+    private static Address createAddress(String name, String address, AddressType addressType, boolean ready) {
+        return new Address.Builder()
+                .setName(name)
+                .setAddress(address)
+                .setAddressSpace("unknown")
+                .setType(addressType)
+                .setPlan(addressType.getPlans().get(0))
+                .setUuid(name + "-uuid")
+                .setStatus(new Status(ready))
+                .build();
+    }
+}
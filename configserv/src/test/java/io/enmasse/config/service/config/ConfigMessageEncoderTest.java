@@ -10,6 +10,7 @@ import io.enmasse.address.model.Address;
 import io.enmasse.address.model.Status;
 import io.enmasse.address.model.types.AddressType;
 import io.enmasse.address.model.types.standard.StandardType;
+import io.enmasse.config.service.kubernetes.ResourceDelta;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
 import org.apache.qpid.proton.message.Message;
 import org.junit.Test;
@@ -17,11 +18,14 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class ConfigMessageEncoderTest {
     @Test
@@ -40,6 +44,23 @@ public class ConfigMessageEncoderTest {
 
     }
 
+    @Test
+    public void testDeltaEncoder() throws IOException {
+        ConfigMessageEncoder encoder = new ConfigMessageEncoder();
+        Address added = createAddress("c1", "myqueue", StandardType.QUEUE);
+
+        Message message = encoder.encodeDelta(new ResourceDelta<>(2, Arrays.asList(added), Collections.emptyList(), Arrays.asList("mytopic")));
+        String json = (String) ((AmqpValue) message.getBody()).getValue();
+        assertThat(message.getSubject(), is("enmasse.io/v1/AddressListDelta"));
+        assertThat(json, is("{\"apiVersion\":\"enmasse.io/v1\",\"kind\":\"AddressListDelta\",\"added\":[{\"metadata\":{\"name\":\"c1\",\"addressSpace\":\"unknown\",\"uuid\":\"1234\"},\"spec\":{\"type\":\"queue\",\"plan\":\"inmemory\",\"address\":\"myqueue\"},\"status\":{\"isReady\":false,\"phase\":\"Pending\"}}],\"modified\":[],\"deleted\":[\"mytopic\"]}"));
+
+        assertThat(encoder.getKey(added), is("myqueue"));
+        assertFalse(encoder.isModified(added, createAddress("c1", "myqueue", StandardType.QUEUE)));
+        Address ready = createAddress("c1", "myqueue", StandardType.QUEUE);
+        ready.getStatus().setReady(true);
+        assertTrue(encoder.isModified(added, ready));
+    }
+
     private Address createAddress(String name, String address, AddressType addressType) throws JsonProcessingException, UnsupportedEncodingException {
         return new Address.Builder()
                 .setName(name)
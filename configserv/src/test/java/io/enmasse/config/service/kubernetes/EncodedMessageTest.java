@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.config.service.kubernetes;
+
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.message.Message;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class EncodedMessageTest {
+    @Test
+    public void testEncodedOnce() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            body.append("address-").append(i).append(",");
+        }
+        Message message = Message.Factory.create();
+        message.setSubject("enmasse.io/v1/AddressList");
+        message.setContentType("application/json");
+        message.setApplicationProperties(new ApplicationProperties(Collections.singletonMap("resourceVersion", 3L)));
+        message.setBody(new AmqpValue(body.toString()));
+
+        EncodedMessage encoded = EncodedMessage.encode(message);
+        assertSame(encoded, EncodedMessage.encode(encoded));
+        assertThat(encoded.getSubject(), is("enmasse.io/v1/AddressList"));
+        assertThat(((AmqpValue) encoded.getBody()).getValue(), is(body.toString()));
+
+        // Same bytes as encoding the original message
+        byte[] expected = new byte[encoded.getEncodedSize()];
+        assertThat(message.encode(expected, 0, expected.length), is(expected.length));
+        byte[] actual = new byte[encoded.getEncodedSize() + 10];
+        assertThat(encoded.encode(actual, 10, encoded.getEncodedSize()), is(expected.length));
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual[10 + i], is(expected[i]));
+        }
+
+        Message decoded = Message.Factory.create();
+        decoded.decode(actual, 10, expected.length);
+        assertThat(decoded.getSubject(), is("enmasse.io/v1/AddressList"));
+        assertThat(decoded.getApplicationProperties().getValue().get("resourceVersion"), is(3L));
+        assertThat(((AmqpValue) decoded.getBody()).getValue(), is(body.toString()));
+
+        try {
+            encoded.encode(new byte[1024], 0, 1024);
+            fail("Expected buffer overflow");
+        } catch (BufferOverflowException e) {
+            // The sender retries with a larger buffer
+        }
+    }
+}
@@ -5,7 +5,11 @@
 
 package io.enmasse.config.service.kubernetes;
 
+import io.enmasse.address.model.Address;
+import io.enmasse.address.model.Status;
+import io.enmasse.address.model.types.standard.StandardType;
 import io.enmasse.config.service.TestResource;
+import io.enmasse.config.service.config.ConfigMessageEncoder;
 import io.enmasse.config.service.model.ObserverKey;
 import io.enmasse.config.service.model.Subscriber;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
@@ -17,12 +21,21 @@ import org.mockito.Captor;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -63,4 +76,325 @@ public class SubscriptionManagerTest {
         listener.resourcesUpdated(new HashSet<>(Arrays.asList(new TestResource("t2", "v2"), new TestResource("t3", "filtered"))));
         verifyZeroInteractions(mockSub);
     }
+
+    @Test
+    public void testSnapshotEncodedOnce() {
+        AtomicInteger encoded = new AtomicInteger(0);
+        MessageEncoder<TestResource> encoder = set -> {
+            encoded.incrementAndGet();
+            Message message = Message.Factory.create();
+            message.setBody(new AmqpValue("snapshot " + format(set)));
+            return message;
+        };
+        ObserverKey subKey = new ObserverKey(Collections.emptyMap(), Collections.emptyMap());
+        SubscriptionManager<TestResource> manager = new SubscriptionManager<>(subKey, encoder, resource -> true);
+
+        List<RecordingSubscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(false);
+            subscribers.add(subscriber);
+            manager.subscribe(subscriber);
+        }
+        manager.resourcesUpdated(resources("t1=v1"));
+        assertThat(encoded.get(), is(1));
+
+        // Subscribers joining later get the snapshot already encoded
+        for (int i = 0; i < 10; i++) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(false);
+            subscribers.add(subscriber);
+            manager.subscribe(subscriber);
+        }
+        assertThat(encoded.get(), is(1));
+
+        manager.resourcesUpdated(resources("t1=v1", "t2=v2"));
+        assertThat(encoded.get(), is(2));
+        for (RecordingSubscriber subscriber : subscribers) {
+            Message last = subscriber.messages.get(subscriber.messages.size() - 1);
+            assertTrue(last instanceof EncodedMessage);
+            assertThat(((AmqpValue) last.getBody()).getValue(), is("snapshot [t1=v1, t2=v2]"));
+        }
+    }
+
+    @Test
+    public void testSnapshotEncodedOncePerCodec() {
+        AtomicInteger encoded = new AtomicInteger(0);
+        ObserverKey subKey = new ObserverKey(Collections.emptyMap(), Collections.emptyMap());
+        SubscriptionManager<TestResource> manager = new SubscriptionManager<>(subKey, new TestCodecEncoder("json", encoded), resource -> true);
+
+        List<RecordingSubscriber> subscribers = new ArrayList<>();
+        for (String codec : Arrays.asList(null, "json", "binary", null, "json", "binary")) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(codec);
+            subscribers.add(subscriber);
+            manager.subscribe(subscriber);
+        }
+        manager.resourcesUpdated(resources("t1=v1"));
+        assertThat(encoded.get(), is(2));
+
+        for (RecordingSubscriber subscriber : subscribers) {
+            String codec = subscriber.getCodec() == null ? "json" : subscriber.getCodec();
+            assertThat(subscriber.bodies(), is(Collections.singletonList(codec + " [t1=v1]")));
+        }
+
+        try {
+            manager.subscribe(new RecordingSubscriber("nosuch"));
+            fail("Expected subscribing with an unknown codec to fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDeltaSubscriberReconnect() {
+        ObserverKey subKey = new ObserverKey(Collections.emptyMap(), Collections.emptyMap());
+        SubscriptionManager<TestResource> manager = new SubscriptionManager<>(subKey, new TestDeltaEncoder(), resource -> true, 2);
+
+        RecordingSubscriber first = new RecordingSubscriber(0);
+        manager.subscribe(first);
+        assertTrue(first.messages.isEmpty());
+
+        manager.resourcesUpdated(resources("t1=v1", "t2=v2"));
+        assertThat(first.bodies(), is(Arrays.asList("snapshot [t1=v1, t2=v2]")));
+
+        manager.resourcesUpdated(resources("t1=v1", "t2=v2b", "t3=v3"));
+        manager.resourcesUpdated(resources("t2=v2b", "t3=v3"));
+        assertThat(first.bodies().subList(1, 3), is(Arrays.asList("delta added=[t3=v3] modified=[t2=v2b] deleted=[]", "delta added=[] modified=[] deleted=[t1]")));
+        long[] versions = first.versions();
+        assertThat(versions[1], is(versions[0] + 1));
+        assertThat(versions[2], is(versions[0] + 2));
+
+        // Reconnecting mid-stream, after missing a delta
+        long lastSeen = versions[1];
+        manager.resourcesUpdated(resources("t2=v2b", "t3=v3", "t4=v4"));
+        RecordingSubscriber reconnected = new RecordingSubscriber(lastSeen);
+        manager.subscribe(reconnected);
+        assertThat(reconnected.bodies(), is(Arrays.asList("delta added=[] modified=[] deleted=[t1]", "delta added=[t4=v4] modified=[] deleted=[]")));
+
+        // Already up to date
+        RecordingSubscriber upToDate = new RecordingSubscriber(first.versions()[3]);
+        manager.subscribe(upToDate);
+        assertTrue(upToDate.messages.isEmpty());
+
+        // Too far behind for the deltas kept, resynced with a snapshot
+        RecordingSubscriber behind = new RecordingSubscriber(versions[0]);
+        manager.subscribe(behind);
+        assertThat(behind.bodies(), is(Arrays.asList("snapshot [t2=v2b, t3=v3, t4=v4]")));
+
+        // All subscribers continue with deltas
+        manager.resourcesUpdated(resources("t2=v2b", "t3=v3"));
+        for (RecordingSubscriber subscriber : Arrays.asList(first, reconnected, upToDate, behind)) {
+            assertThat(subscriber.bodies().get(subscriber.messages.size() - 1), is("delta added=[] modified=[] deleted=[t4]"));
+        }
+    }
+
+    @Test
+    public void testDeltaBytesSent() throws IOException {
+        int numAddresses = 10000;
+        int numSubscribers = 50;
+        int numChanges = 20;
+        ObserverKey subKey = new ObserverKey(Collections.emptyMap(), Collections.emptyMap());
+        SubscriptionManager<Address> fullManager = new SubscriptionManager<>(subKey, new ConfigMessageEncoder(), address -> true);
+        SubscriptionManager<Address> deltaManager = new SubscriptionManager<>(subKey, new ConfigMessageEncoder(), address -> true);
+
+        List<RecordingSubscriber> fullSubscribers = new ArrayList<>();
+        List<RecordingSubscriber> deltaSubscribers = new ArrayList<>();
+        for (int i = 0; i < numSubscribers; i++) {
+            RecordingSubscriber full = new RecordingSubscriber(false);
+            fullSubscribers.add(full);
+            fullManager.subscribe(full);
+            RecordingSubscriber delta = new RecordingSubscriber(0);
+            deltaSubscribers.add(delta);
+            deltaManager.subscribe(delta);
+        }
+
+        List<Address> addresses = new ArrayList<>();
+        for (int i = 0; i < numAddresses; i++) {
+            addresses.add(createAddress("address-" + i, false));
+        }
+        fullManager.resourcesUpdated(new HashSet<>(addresses));
+        deltaManager.resourcesUpdated(new HashSet<>(addresses));
+
+        for (int i = 0; i < numChanges; i++) {
+            addresses.set(i, createAddress("address-" + i, true));
+            fullManager.resourcesUpdated(new HashSet<>(addresses));
+            deltaManager.resourcesUpdated(new HashSet<>(addresses));
+        }
+
+        long fullBytes = 0;
+        long deltaBytes = 0;
+        for (int i = 0; i < numSubscribers; i++) {
+            assertThat(fullSubscribers.get(i).messages.size(), is(numChanges + 1));
+            assertThat(deltaSubscribers.get(i).messages.size(), is(numChanges + 1));
+            fullBytes += fullSubscribers.get(i).bytesReceived();
+            deltaBytes += deltaSubscribers.get(i).bytesReceived();
+        }
+        System.out.println("Bytes sent with snapshots: " + fullBytes + ", with deltas: " + deltaBytes);
+
+        // Same snapshot to start with, then only the changed address
+        long snapshotBytes = deltaSubscribers.get(0).bytesReceived(0);
+        assertThat(fullSubscribers.get(0).bytesReceived(0), is(snapshotBytes));
+        assertTrue(deltaBytes < fullBytes / 10);
+        assertTrue(deltaBytes - numSubscribers * snapshotBytes < numSubscribers * numChanges * 1000);
+    }
+
+    private static Address createAddress(String address, boolean ready) {
+        return new Address.Builder()
+                .setName(address)
+                .setAddress(address)
+                .setAddressSpace("myspace")
+                .setType(StandardType.QUEUE)
+                .setPlan(StandardType.QUEUE.getPlans().get(0))
+                .setUuid(address)
+                .setStatus(new Status(ready))
+                .build();
+    }
+
+    private static Set<TestResource> resources(String ... nameValues) {
+        Set<TestResource> resources = new LinkedHashSet<>();
+        for (String nameValue : nameValues) {
+            String [] parts = nameValue.split("=");
+            resources.add(new TestResource(parts[0], parts[1]));
+        }
+        return resources;
+    }
+
+    private static String format(Collection<TestResource> resources) {
+        return resources.stream()
+                .map(resource -> resource.getName() + "=" + resource.getValue())
+                .sorted()
+                .collect(Collectors.toList())
+                .toString();
+    }
+
+    private static class TestDeltaEncoder implements DeltaMessageEncoder<TestResource> {
+        @Override
+        public String getKey(TestResource resource) {
+            return resource.getName();
+        }
+
+        @Override
+        public Message encodeDelta(ResourceDelta<TestResource> delta) {
+            Message message = Message.Factory.create();
+            message.setBody(new AmqpValue("delta added=" + format(delta.getAdded()) + " modified=" + format(delta.getModified()) + " deleted=" + delta.getDeleted()));
+            return message;
+        }
+
+        @Override
+        public Message encode(Set<TestResource> set) {
+            Message message = Message.Factory.create();
+            message.setBody(new AmqpValue("snapshot " + format(set)));
+            return message;
+        }
+    }
+
+    private static class TestCodecEncoder implements MessageEncoder<TestResource> {
+        private final String codec;
+        private final AtomicInteger encoded;
+
+        TestCodecEncoder(String codec, AtomicInteger encoded) {
+            this.codec = codec;
+            this.encoded = encoded;
+        }
+
+        @Override
+        public Message encode(Set<TestResource> set) {
+            encoded.incrementAndGet();
+            Message message = Message.Factory.create();
+            message.setBody(new AmqpValue(codec + " " + format(set)));
+            return message;
+        }
+
+        @Override
+        public MessageEncoder<TestResource> withCodec(String name) {
+            if (name == null || name.equals(codec)) {
+                return this;
+            } else if (name.equals("binary")) {
+                return binaryEncoder;
+            }
+            throw new IllegalArgumentException("Unknown codec " + name);
+        }
+
+        private final MessageEncoder<TestResource> binaryEncoder = new MessageEncoder<TestResource>() {
+            @Override
+            public Message encode(Set<TestResource> set) {
+                encoded.incrementAndGet();
+                Message message = Message.Factory.create();
+                message.setBody(new AmqpValue("binary " + format(set)));
+                return message;
+            }
+        };
+    }
+
+    private static class RecordingSubscriber implements Subscriber {
+        private final boolean supportsDeltas;
+        private final long resourceVersion;
+        private final String codec;
+        private final List<Message> messages = new ArrayList<>();
+
+        RecordingSubscriber(long resourceVersion) {
+            this.supportsDeltas = true;
+            this.resourceVersion = resourceVersion;
+            this.codec = null;
+        }
+
+        RecordingSubscriber(boolean supportsDeltas) {
+            this.supportsDeltas = supportsDeltas;
+            this.resourceVersion = 0;
+            this.codec = null;
+        }
+
+        RecordingSubscriber(String codec) {
+            this.supportsDeltas = false;
+            this.resourceVersion = 0;
+            this.codec = codec;
+        }
+
+        @Override
+        public String getId() {
+            return "recording";
+        }
+
+        @Override
+        public void resourcesUpdated(Message message) {
+            messages.add(message);
+        }
+
+        @Override
+        public boolean supportsDeltas() {
+            return supportsDeltas;
+        }
+
+        @Override
+        public long getResourceVersion() {
+            return resourceVersion;
+        }
+
+        @Override
+        public String getCodec() {
+            return codec;
+        }
+
+        List<String> bodies() {
+            return messages.stream()
+                    .map(message -> (String) ((AmqpValue) message.getBody()).getValue())
+                    .collect(Collectors.toList());
+        }
+
+        long[] versions() {
+            return messages.stream()
+                    .mapToLong(message -> (Long) message.getApplicationProperties().getValue().get(SubscriptionManager.RESOURCE_VERSION))
+                    .toArray();
+        }
+
+        long bytesReceived(int index) {
+            return ((String) ((AmqpValue) messages.get(index).getBody()).getValue()).length();
+        }
+
+        long bytesReceived() {
+            long bytes = 0;
+            for (int i = 0; i < messages.size(); i++) {
+                bytes += bytesReceived(i);
+            }
+            return bytes;
+        }
+    }
 }
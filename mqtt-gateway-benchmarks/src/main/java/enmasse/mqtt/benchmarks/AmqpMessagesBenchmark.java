@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.benchmarks;
+
+import enmasse.mqtt.messages.AmqpPublishMessage;
+import enmasse.mqtt.messages.AmqpSubscribeMessage;
+import enmasse.mqtt.messages.AmqpTopicSubscription;
+import enmasse.mqtt.messages.AmqpWillMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.buffer.Buffer;
+import org.apache.qpid.proton.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the conversions of the MQTT over AMQP messages from/to raw AMQP messages
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AmqpMessagesBenchmark {
+
+    private static final String CLIENT_ID = "my_client_id";
+    private static final String TOPIC = "mytopic/foo/bar";
+
+    @Param({ "16", "1024", "65536" })
+    public int payloadSize;
+
+    @Param({ "1", "10" })
+    public int subscriptions;
+
+    private AmqpPublishMessage publishMessage;
+    private Message publishAmqpMessage;
+
+    private AmqpWillMessage willMessage;
+    private Message willAmqpMessage;
+
+    private AmqpSubscribeMessage subscribeMessage;
+    private Message subscribeAmqpMessage;
+
+    @Setup
+    public void setup() {
+
+        Buffer payload = Buffer.buffer(new byte[this.payloadSize]);
+
+        this.publishMessage = new AmqpPublishMessage(1, MqttQoS.AT_LEAST_ONCE, false, false, TOPIC, payload);
+        this.publishAmqpMessage = this.publishMessage.toAmqp();
+
+        this.willMessage = new AmqpWillMessage(false, TOPIC, MqttQoS.AT_LEAST_ONCE, payload);
+        this.willAmqpMessage = this.willMessage.toAmqp();
+
+        List<AmqpTopicSubscription> topicSubscriptions = new ArrayList<>();
+        for (int i = 0; i < this.subscriptions; i++) {
+            topicSubscriptions.add(new AmqpTopicSubscription(TOPIC + "/" + i, MqttQoS.AT_LEAST_ONCE));
+        }
+        this.subscribeMessage = new AmqpSubscribeMessage(CLIENT_ID, 1, topicSubscriptions);
+        this.subscribeAmqpMessage = this.subscribeMessage.toAmqp();
+    }
+
+    @Benchmark
+    public Message publishToAmqp() {
+        return this.publishMessage.toAmqp();
+    }
+
+    @Benchmark
+    public AmqpPublishMessage publishFrom() {
+        return AmqpPublishMessage.from(this.publishAmqpMessage);
+    }
+
+    @Benchmark
+    public Message willToAmqp() {
+        return this.willMessage.toAmqp();
+    }
+
+    @Benchmark
+    public AmqpWillMessage willFrom() {
+        return AmqpWillMessage.from(this.willAmqpMessage);
+    }
+
+    @Benchmark
+    public Message subscribeToAmqp() {
+        return this.subscribeMessage.toAmqp();
+    }
+
+    @Benchmark
+    public AmqpSubscribeMessage subscribeFrom() {
+        return AmqpSubscribeMessage.from(this.subscribeAmqpMessage);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.benchmarks;
+
+import enmasse.mqtt.MqttGateway;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mqtt.MqttClient;
+import io.vertx.mqtt.MqttClientOptions;
+import io.vertx.proton.ProtonServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the end to end publish of a message from an MQTT client, through the AMQP bridge,
+ * to an in-process AMQP server standing in for the messaging service.
+ * Just one message is in flight at time, so the throughput is the inverse of the publish latency
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PublishBenchmark {
+
+    private static final String BIND_ADDRESS = "localhost";
+    private static final String CLIENT_ID = "benchmark_client";
+    private static final String TOPIC = "mytopic";
+    private static final long TIMEOUT = 10000;
+
+    // QoS 0 completes when the message reaches the AMQP server, QoS 1 on the PUBACK to the MQTT client
+    @Param({ "AT_MOST_ONCE", "AT_LEAST_ONCE" })
+    public MqttQoS qos;
+
+    @Param({ "16", "1024" })
+    public int payloadSize;
+
+    private Vertx vertx;
+    // the MQTT client has to be used always from the same context
+    private Context clientContext;
+    private MqttClient client;
+
+    private Buffer payload;
+
+    private volatile CompletableFuture<Void> received;
+    private volatile CompletableFuture<Void> acknowledged;
+
+    @Setup
+    public void setup() throws Exception {
+
+        this.vertx = Vertx.vertx();
+        this.clientContext = this.vertx.getOrCreateContext();
+        this.payload = Buffer.buffer(new byte[this.payloadSize]);
+
+        int amqpPort = this.startServer();
+        int mqttPort = freePort();
+
+        MqttGateway mqttGateway = new MqttGateway();
+        mqttGateway
+                .setBindAddress(BIND_ADDRESS)
+                .setListenPort(mqttPort)
+                .setMessagingServiceHost(BIND_ADDRESS)
+                .setMessagingServicePort(amqpPort);
+
+        CompletableFuture<Void> deployed = new CompletableFuture<>();
+        this.vertx.deployVerticle(mqttGateway, done -> complete(deployed, done.succeeded(), done.cause()));
+        deployed.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        this.clientContext.runOnContext(v -> {
+
+            this.client = MqttClient.create(this.vertx, new MqttClientOptions().setClientId(CLIENT_ID).setCleanSession(true));
+            this.client.publishCompletionHandler(messageId -> this.acknowledged.complete(null));
+            this.client.connect(mqttPort, BIND_ADDRESS, done -> complete(connected, done.succeeded(), done.cause()));
+        });
+        connected.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        this.vertx.close(done -> complete(closed, done.succeeded(), done.cause()));
+        closed.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public void publish() throws Exception {
+
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        if (this.qos == MqttQoS.AT_MOST_ONCE) {
+            this.received = completed;
+        } else {
+            this.acknowledged = completed;
+        }
+
+        this.clientContext.runOnContext(v -> {
+            this.client.publish(TOPIC, this.payload, this.qos, false, false, done -> {
+                if (done.failed()) {
+                    completed.completeExceptionally(done.cause());
+                }
+            });
+        });
+        completed.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start the AMQP server stand-in for the messaging service, which opens all the links
+     * requested by the bridge and accepts all the deliveries
+     *
+     * @return  the port the server is listening on
+     */
+    private int startServer() throws Exception {
+
+        ProtonServer server = ProtonServer.create(this.vertx);
+        server.connectHandler(connection -> {
+
+            connection.sessionOpenHandler(session -> session.open());
+            connection.receiverOpenHandler(receiver -> {
+
+                String address = receiver.getRemoteTarget().getAddress();
+                receiver.handler((delivery, message) -> {
+                    if (TOPIC.equals(address) && (this.received != null)) {
+                        this.received.complete(null);
+                    }
+                });
+                receiver.setTarget(receiver.getRemoteTarget()).open();
+            });
+            connection.senderOpenHandler(sender -> sender.setSource(sender.getRemoteSource()).open());
+            connection.open();
+        });
+
+        CompletableFuture<Void> listening = new CompletableFuture<>();
+        server.listen(0, BIND_ADDRESS, done -> complete(listening, done.succeeded(), done.cause()));
+        listening.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        return server.actualPort();
+    }
+
+    private static int freePort() throws IOException {
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void complete(CompletableFuture<Void> future, boolean succeeded, Throwable cause) {
+
+        if (succeeded) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.benchmarks;
+
+import enmasse.mqtt.TopicMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * JMH benchmark comparing the regex based topic matching with the precompiled segment matcher
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TopicMatcherBenchmark {
+
+    @Param({ "mytopic/foo/bar", "mytopic/+/bar", "mytopic/#" })
+    public String wildcardedTopic;
+
+    public String topic = "mytopic/foo/bar";
+
+    @Benchmark
+    public boolean regexIsMatch() {
+
+        // the TopicMatcher.isMatch implementation before the segment matcher
+        String topicReplaced =
+                this.wildcardedTopic.replaceAll("\\+", "[^/]\\+").replaceAll("#", ".*");
+
+        return Pattern.compile(topicReplaced).matcher(this.topic).matches();
+    }
+
+    @Benchmark
+    public boolean isMatch() {
+
+        return TopicMatcher.isMatch(this.wildcardedTopic, this.topic);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        new Runner(new OptionsBuilder()
+                .include(TopicMatcherBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
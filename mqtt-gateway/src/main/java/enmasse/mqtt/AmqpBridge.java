@@ -7,7 +7,8 @@ package enmasse.mqtt;
 
 import enmasse.mqtt.endpoints.AmqpPublishData;
 import enmasse.mqtt.endpoints.AmqpPublishEndpoint;
-import enmasse.mqtt.endpoints.AmqpPublisher;
+import enmasse.mqtt.endpoints.AmqpPublisherCache;
+import enmasse.mqtt.endpoints.AmqpPublisherCacheOptions;
 import enmasse.mqtt.endpoints.AmqpReceiver;
 import enmasse.mqtt.endpoints.AmqpReceiverEndpoint;
 import enmasse.mqtt.endpoints.AmqpSubscriptionServiceEndpoint;
@@ -24,6 +25,7 @@ import enmasse.mqtt.messages.AmqpWillMessage;
 import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -33,9 +35,6 @@ import io.vertx.mqtt.MqttWill;
 import io.vertx.mqtt.messages.MqttPublishMessage;
 import io.vertx.mqtt.messages.MqttSubscribeMessage;
 import io.vertx.mqtt.messages.MqttUnsubscribeMessage;
-import io.vertx.proton.ProtonClient;
-import io.vertx.proton.ProtonClientOptions;
-import io.vertx.proton.ProtonConnection;
 import io.vertx.proton.ProtonDelivery;
 import io.vertx.proton.ProtonLinkOptions;
 import io.vertx.proton.ProtonReceiver;
@@ -46,9 +45,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -62,8 +60,10 @@ public class AmqpBridge {
 
     private Vertx vertx;
 
-    private ProtonClient client;
-    private ProtonConnection connection;
+    // pool providing the shared connection to the AMQP services
+    private AmqpConnectionPool connectionPool;
+    // session dedicated to this bridge on the shared connection
+    private AmqpPooledSession session;
 
     // local endpoint for handling remote connected MQTT client
     private MqttEndpoint mqttEndpoint;
@@ -77,51 +77,58 @@ public class AmqpBridge {
     // endpoint for publishing message on topic (via AMQP)
     private AmqpPublishEndpoint pubEndpoint;
 
+    // options for the cache of the publishers on topics
+    private AmqpPublisherCacheOptions publisherCacheOptions;
+
+    // metrics about the gateway, updated by the bridge
+    private MqttGatewayMetrics metrics;
+    // context of the bridge, where the counts read by the metrics are updated
+    private Context context;
+    // counts read by the metrics, the endpoints state can be read on the bridge context only
+    private final AtomicInteger senders = new AtomicInteger();
+    private final AtomicInteger pendingPublishDeliveries = new AtomicInteger();
+    private final AtomicInteger pendingReceiverDeliveries = new AtomicInteger();
+
     // callback called when the MQTT client closes connection
     private Handler<AmqpBridge> mqttEndpointCloseHandler;
 
     // topic subscriptions with granted QoS levels
-    private Map<String, MqttQoS> grantedQoSLevels;
+    private SubscriptionTrie grantedQoSLevels;
 
     /**
      * Constructor
      *
      * @param vertx Vert.x instance
      * @param mqttEndpoint  MQTT local endpoint
+     * @param connectionPool    pool providing the shared connection to the AMQP services
+     * @param publisherCacheOptions options for the cache of the publishers on topics
+     * @param metrics   metrics about the gateway
      */
-    public AmqpBridge(Vertx vertx, MqttEndpoint mqttEndpoint) {
+    public AmqpBridge(Vertx vertx, MqttEndpoint mqttEndpoint, AmqpConnectionPool connectionPool,
+                      AmqpPublisherCacheOptions publisherCacheOptions, MqttGatewayMetrics metrics) {
         this.vertx = vertx;
         this.mqttEndpoint = mqttEndpoint;
+        this.connectionPool = connectionPool;
+        this.publisherCacheOptions = publisherCacheOptions;
+        this.metrics = metrics;
     }
 
     /**
      * Open the bridge and connect to the AMQP service provider
      *
-     * @param address   AMQP service provider address
-     * @param port      AMQP service provider port
      * @param openHandler   handler called when the open is completed (with success or not)
      */
-    public void open(String address, int port, Handler<AsyncResult<AmqpBridge>> openHandler) {
-
-        this.client = ProtonClient.create(this.vertx);
-
-        // TODO: check correlation between MQTT and AMQP keep alive
-        ProtonClientOptions clientOptions = new ProtonClientOptions();
-        clientOptions.setHeartbeat(this.mqttEndpoint.keepAliveTimeSeconds() * 1000);
+    public void open(Handler<AsyncResult<AmqpBridge>> openHandler) {
 
         String userName = (this.mqttEndpoint.auth() != null) ? this.mqttEndpoint.auth().userName() : null;
         String password = (this.mqttEndpoint.auth() != null) ? this.mqttEndpoint.auth().password() : null;
-        // NOTE : if username/password are null then Vert.x Proton just provides SASL ANONYMOUS as supported mechanism
-        //        otherwise it provides PLAIN with username/password provided here
-        this.client.connect(clientOptions, address, port, userName, password, done -> {
+        // the connection is shared with other bridges using the same credentials, the bridge gets its own session on it
+        this.connectionPool.acquire(userName, password, done -> {
 
             if (done.succeeded()) {
 
-                this.connection = done.result();
-                this.connection
-                        .closeHandler(remoteClose -> handleRemoteConnectionClose(this.connection, remoteClose))
-                        .disconnectHandler(this::handleRemoteDisconnect)
-                        .open();
+                this.session = done.result();
+                this.session.closeHandler(this::handleRemoteSessionClose);
 
                 // setup MQTT endpoint handlers and AMQP endpoints
                 this.setupMqttEndpoint();
@@ -139,23 +146,26 @@ public class AmqpBridge {
 
                         AmqpSubscriptionsMessage amqpSubscriptionsMessage = ar.result();
 
+                        this.grantedQoSLevels = new SubscriptionTrie();
+
                         if (amqpSubscriptionsMessage != null) {
                             this.mqttEndpoint.accept(!amqpSubscriptionsMessage.topicSubscriptions().isEmpty());
                             // added topic subscriptions of a previous session in the local collection
-                            this.grantedQoSLevels = amqpSubscriptionsMessage.topicSubscriptions()
-                                    .stream()
-                                    .collect(Collectors.toMap(amqpTopicSubscription -> amqpTopicSubscription.topic(),
-                                            amqpTopicSubscription -> amqpTopicSubscription.qos()));
+                            amqpSubscriptionsMessage.topicSubscriptions().forEach(amqpTopicSubscription -> {
+                                this.grantedQoSLevels.add(amqpTopicSubscription.topic(), amqpTopicSubscription.qos());
+                            });
 
                         } else {
                             this.mqttEndpoint.accept(false);
-                            this.grantedQoSLevels = new HashMap<>();
                         }
                         LOG.info("CONNACK to MQTT client {} [accepted]", this.mqttEndpoint.clientIdentifier());
 
                         // open unique client publish address receiver
                         this.rcvEndpoint.openPublish();
 
+                        this.context = this.vertx.getOrCreateContext();
+                        this.metrics.bridgeOpened(this);
+
                         openHandler.handle(Future.succeededFuture(AmqpBridge.this));
 
                     } else {
@@ -187,7 +197,7 @@ public class AmqpBridge {
                     linkOptions.setLinkName(this.mqttEndpoint.clientIdentifier());
 
                     // setup and open AMQP endpoints to Last Will and Testament Service
-                    ProtonSender wsSender = this.connection.createSender(AmqpLwtServiceEndpoint.LWT_SERVICE_ENDPOINT, linkOptions);
+                    ProtonSender wsSender = this.session.createSender(AmqpLwtServiceEndpoint.LWT_SERVICE_ENDPOINT, linkOptions);
                     this.lwtEndpoint = new AmqpLwtServiceEndpoint(wsSender);
 
                     this.lwtEndpoint.open();
@@ -282,10 +292,13 @@ public class AmqpBridge {
         this.rcvEndpoint.close();
         this.pubEndpoint.close();
 
-        this.connection.close();
+        // detach all the links of the bridge without closing the shared connection
+        this.session.release();
 
         if (this.grantedQoSLevels != null)
             this.grantedQoSLevels.clear();
+
+        this.metrics.bridgeClosed(this);
     }
 
     /**
@@ -295,21 +308,12 @@ public class AmqpBridge {
      */
     private void publishHandler(MqttPublishMessage publish) {
 
-        LOG.info("PUBLISH [{}] from MQTT client {}", publish.messageId(), this.mqttEndpoint.clientIdentifier());
+        LOG.debug("PUBLISH [{}] from MQTT client {}", publish.messageId(), this.mqttEndpoint.clientIdentifier());
 
-        // TODO: simple way, without considering wildcards
+        long receivedTime = System.nanoTime();
+        this.metrics.publishReceived(publish.qosLevel());
 
-        // check if a publisher already exists for the requested topic
-        if (!this.pubEndpoint.isPublisher(publish.topicName())) {
-
-            // create two sender for publishing QoS 0/1 and QoS 2 messages
-            ProtonSender senderQoS01 = this.connection.createSender(publish.topicName());
-            ProtonSender senderQoS2 = this.connection.createSender(publish.topicName());
-
-            this.pubEndpoint.addPublisher(publish.topicName(), new AmqpPublisher(senderQoS01, senderQoS2));
-        }
-
-        // sending AMQP_PUBLISH
+        // sending AMQP_PUBLISH (the publisher for the topic is taken from the cache)
         AmqpPublishMessage amqpPublishMessage =
                 new AmqpPublishMessage(publish.messageId(),
                         publish.qosLevel(),
@@ -325,14 +329,16 @@ public class AmqpBridge {
                 ProtonDelivery delivery = done.result();
                 if (delivery != null) {
 
+                    this.metrics.publishAcknowledged(publish.qosLevel(), receivedTime);
+
                     if (publish.qosLevel() == MqttQoS.AT_LEAST_ONCE) {
 
                         this.mqttEndpoint.publishAcknowledge((int) amqpPublishMessage.messageId());
-                        LOG.info("PUBACK [{}] to MQTT client {}", amqpPublishMessage.messageId(), this.mqttEndpoint.clientIdentifier());
+                        LOG.debug("PUBACK [{}] to MQTT client {}", amqpPublishMessage.messageId(), this.mqttEndpoint.clientIdentifier());
                     } else {
 
                         this.mqttEndpoint.publishReceived((int) amqpPublishMessage.messageId());
-                        LOG.info("PUBREC [{}] to MQTT client {}", amqpPublishMessage.messageId(), this.mqttEndpoint.clientIdentifier());
+                        LOG.debug("PUBREC [{}] to MQTT client {}", amqpPublishMessage.messageId(), this.mqttEndpoint.clientIdentifier());
                     }
 
                 }
@@ -353,28 +359,26 @@ public class AmqpBridge {
         // defensive ... check that current bridge has information about subscriptions and related granted QoS
         // see https://github.com/EnMasseProject/subserv/issues/8
 
-        // try to get subscribed topic (that could have wildcards) that matches the publish topic
-        String topic = (this.grantedQoSLevels.size() == 0) ? null :
-                TopicMatcher.match(this.grantedQoSLevels.keySet().stream().collect(Collectors.toList()), publish.topic());
+        // get the maximum granted QoS between the subscribed topics (that could have wildcards) matching the publish topic
+        MqttQoS grantedQoS = this.grantedQoSLevels.match(publish.topic());
 
-        if (topic != null) {
+        if (grantedQoS != null) {
 
             // MQTT 3.1.1 spec :  The QoS of Payload Messages sent in response to a Subscription MUST be
             // the minimum of the QoS of the originally published message and the maximum QoS granted by the Server
-            MqttQoS qos = (publish.qos().value() < this.grantedQoSLevels.get(topic).value()) ?
+            MqttQoS qos = (publish.qos().value() < grantedQoS.value()) ?
                     publish.qos() :
-                    this.grantedQoSLevels.get(topic);
+                    grantedQoS;
 
             this.mqttEndpoint.publish(publish.topic(), publish.payload(), qos, publish.isDup(), publish.isRetain());
             // the the message identifier assigned to the published message
             amqpPublishData.setMessageId(this.mqttEndpoint.lastMessageId());
+            this.metrics.publishSent(qos);
 
-            LOG.info("PUBLISH [{}] to MQTT client {}", this.mqttEndpoint.lastMessageId(), this.mqttEndpoint.clientIdentifier());
+            LOG.debug("PUBLISH [{}] to MQTT client {}", this.mqttEndpoint.lastMessageId(), this.mqttEndpoint.clientIdentifier());
 
-            // for QoS 0, message settled immediately
-            if (qos == MqttQoS.AT_MOST_ONCE) {
-                this.rcvEndpoint.settle(amqpPublishData.messageId());
-            }
+            // for QoS 0, message settled immediately (no acknowledgement from the MQTT client)
+            amqpPublishData.setAcknowledged(qos == MqttQoS.AT_MOST_ONCE);
 
         } else {
 
@@ -391,7 +395,7 @@ public class AmqpBridge {
 
         this.mqttEndpoint.publishRelease((int) pubrel.messageId());
 
-        LOG.info("PUBREL [{}] to MQTT client {}", pubrel.messageId(), this.mqttEndpoint.clientIdentifier());
+        LOG.debug("PUBREL [{}] to MQTT client {}", pubrel.messageId(), this.mqttEndpoint.clientIdentifier());
     }
 
     /**
@@ -401,7 +405,7 @@ public class AmqpBridge {
      */
     private void subscribeHandler(MqttSubscribeMessage subscribe) {
 
-        LOG.info("SUBSCRIBE [{}] from MQTT client {}", subscribe.messageId(), this.mqttEndpoint.clientIdentifier());
+        LOG.debug("SUBSCRIBE [{}] from MQTT client {}", subscribe.messageId(), this.mqttEndpoint.clientIdentifier());
 
         // sending AMQP_SUBSCRIBE
 
@@ -431,7 +435,7 @@ public class AmqpBridge {
 
                     // add accepted topic subscriptions to the local collection
                     amqpSubscribeMessage.topicSubscriptions().stream().forEach(amqpTopicSubscription -> {
-                        this.grantedQoSLevels.put(amqpTopicSubscription.topic(), amqpTopicSubscription.qos());
+                        this.grantedQoSLevels.add(amqpTopicSubscription.topic(), amqpTopicSubscription.qos());
                     });
 
                 } else {
@@ -442,7 +446,7 @@ public class AmqpBridge {
 
                 this.mqttEndpoint.subscribeAcknowledge((int) amqpSubscribeMessage.messageId(), grantedQoSLevels);
 
-                LOG.info("SUBACK [{}] to MQTT client {}", amqpSubscribeMessage.messageId(), this.mqttEndpoint.clientIdentifier());
+                LOG.debug("SUBACK [{}] to MQTT client {}", amqpSubscribeMessage.messageId(), this.mqttEndpoint.clientIdentifier());
             }
         });
     }
@@ -454,7 +458,7 @@ public class AmqpBridge {
      */
     private void unsubscribeHandler(MqttUnsubscribeMessage unsubscribe) {
 
-        LOG.info("UNSUBSCRIBE [{}] from MQTT client {}", unsubscribe.messageId(), this.mqttEndpoint.clientIdentifier());
+        LOG.debug("UNSUBSCRIBE [{}] from MQTT client {}", unsubscribe.messageId(), this.mqttEndpoint.clientIdentifier());
 
         // sending AMQP_UNSUBSCRIBE
 
@@ -475,7 +479,7 @@ public class AmqpBridge {
                     this.grantedQoSLevels.remove(topic);
                 });
 
-                LOG.info("UNSUBACK [{}] to MQTT client {}", amqpUnsubscribeMessage.messageId(), this.mqttEndpoint.clientIdentifier());
+                LOG.debug("UNSUBACK [{}] to MQTT client {}", amqpUnsubscribeMessage.messageId(), this.mqttEndpoint.clientIdentifier());
             }
         });
     }
@@ -516,7 +520,7 @@ public class AmqpBridge {
      */
     private void pubackHandler(int messageId) {
 
-        LOG.info("PUBACK [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
+        LOG.debug("PUBACK [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
 
         // a PUBLISH message with QoS 1 was sent to remote MQTT client (not settled yet at source)
         // now PUBACK is received so it's time to settle
@@ -530,7 +534,7 @@ public class AmqpBridge {
      */
     private void pubrelHandler(int messageId) {
 
-        LOG.info("PUBREL [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
+        LOG.debug("PUBREL [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
 
         // a PUBLISH message with QoS 2 was received from remote MQTT client, PUBREC was already sent
         // as reply, now that PUBREL is coming it's time to settle and reply with PUBCOMP
@@ -538,7 +542,7 @@ public class AmqpBridge {
 
         this.mqttEndpoint.publishComplete(messageId);
 
-        LOG.info("PUBCOMP [{}] to MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
+        LOG.debug("PUBCOMP [{}] to MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
     }
 
     /**
@@ -548,7 +552,7 @@ public class AmqpBridge {
      */
     private void pubrecHandler(int messageId) {
 
-        LOG.info("PUBREC [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
+        LOG.debug("PUBREC [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
 
         AmqpPubrelMessage amqpPubrelMessage = new AmqpPubrelMessage(messageId);
 
@@ -568,7 +572,7 @@ public class AmqpBridge {
      */
     private void pubcompHandler(int messageId) {
 
-        LOG.info("PUBCOMP [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
+        LOG.debug("PUBCOMP [{}] from MQTT client {}", messageId, this.mqttEndpoint.clientIdentifier());
 
         // a PUBLISH message with QoS 2 was sent to remote MQTT client (not settled yet at source)
         // then PUBREC was received. The corresponding PUBREL was sent (after PUBLISH settlement at source)
@@ -603,17 +607,20 @@ public class AmqpBridge {
         //        connection is established (and CONNACK sent to the MQTT client)
 
         // setup and open AMQP endpoint for receiving on unique client control/publish addresses
-        ProtonReceiver receiverControl = this.connection.createReceiver(String.format(AmqpReceiverEndpoint.CLIENT_CONTROL_ENDPOINT_TEMPLATE, this.mqttEndpoint.clientIdentifier()));
-        ProtonReceiver receiverPublish = this.connection.createReceiver(String.format(AmqpReceiverEndpoint.CLIENT_PUBLISH_ENDPOINT_TEMPLATE, this.mqttEndpoint.clientIdentifier()));
-        this.rcvEndpoint = new AmqpReceiverEndpoint(new AmqpReceiver(receiverControl, receiverPublish));
+        ProtonReceiver receiverControl = this.session.createReceiver(String.format(AmqpReceiverEndpoint.CLIENT_CONTROL_ENDPOINT_TEMPLATE, this.mqttEndpoint.clientIdentifier()));
+        ProtonReceiver receiverPublish = this.session.createReceiver(String.format(AmqpReceiverEndpoint.CLIENT_PUBLISH_ENDPOINT_TEMPLATE, this.mqttEndpoint.clientIdentifier()));
+        this.rcvEndpoint = new AmqpReceiverEndpoint(this.vertx, new AmqpReceiver(receiverControl, receiverPublish));
 
         // setup and open AMQP endpoint to Subscription Service
-        ProtonSender ssSender = this.connection.createSender(AmqpSubscriptionServiceEndpoint.SUBSCRIPTION_SERVICE_ENDPOINT);
+        ProtonSender ssSender = this.session.createSender(AmqpSubscriptionServiceEndpoint.SUBSCRIPTION_SERVICE_ENDPOINT);
         this.ssEndpoint = new AmqpSubscriptionServiceEndpoint(ssSender);
 
         // setup and open AMQP endpoint for publishing
-        ProtonSender senderPubrel = this.connection.createSender(String.format(AmqpPublishEndpoint.AMQP_CLIENT_PUBREL_ENDPOINT_TEMPLATE, this.mqttEndpoint.clientIdentifier()));
-        this.pubEndpoint = new AmqpPublishEndpoint(senderPubrel);
+        ProtonSender senderPubrel = this.session.createSender(String.format(AmqpPublishEndpoint.AMQP_CLIENT_PUBREL_ENDPOINT_TEMPLATE, this.mqttEndpoint.clientIdentifier()));
+        boolean anonymousRelay = this.publisherCacheOptions.isAnonymousRelay() && this.session.isAnonymousRelaySupported();
+        AmqpPublisherCache publisherCache =
+                new AmqpPublisherCache(this.vertx, this.session::createSender, anonymousRelay, this.publisherCacheOptions);
+        this.pubEndpoint = new AmqpPublishEndpoint(senderPubrel, publisherCache);
 
         this.rcvEndpoint.openControl();
         this.ssEndpoint.open();
@@ -645,21 +652,13 @@ public class AmqpBridge {
     }
 
     /**
-     * Handle connection closed with remote AMQP container
+     * Handle the shared connection (so the session) closed with remote AMQP container
      *
-     * @param connection    current ProtonConnection instance
-     * @param result    result of remote connection closing
+     * @param session   current AmqpPooledSession instance
      */
-    private void handleRemoteConnectionClose(ProtonConnection connection, AsyncResult<ProtonConnection> result) {
+    private void handleRemoteSessionClose(AmqpPooledSession session) {
 
-        // NOTE : the connection parameter is needed because Vert.x doesn't provide the ProtonConnection
-        //        instance when the operation ends with errors (so exception). We need the instance for closing.
-        if (result.succeeded()) {
-            LOG.info("AMQP connection closed with {}", connection.getRemoteContainer());
-        } else {
-            LOG.info("AMQP connection closed with {} with error", connection.getRemoteContainer(), result.cause());
-        }
-        connection.close();
+        LOG.info("AMQP session closed with {}", session.connection().getRemoteContainer());
 
         try {
             this.mqttEndpoint.close();
@@ -669,29 +668,63 @@ public class AmqpBridge {
     }
 
     /**
-     * Handler disconnection with remote AMQP container
+     * AMQP bridge identifier
      *
-     * @param connection    current ProtonConnection instance
+     * @return
      */
-    private void handleRemoteDisconnect(ProtonConnection connection) {
+    public String id() {
+        // just the MQTT client identifier
+        return this.mqttEndpoint.clientIdentifier();
+    }
 
-        LOG.info("AMQP disconnection with {}", connection.getRemoteContainer());
-        connection.disconnect();
+    /**
+     * Update, on the bridge context, the counts read by the metrics
+     */
+    public void updateMetrics() {
 
-        try {
-            this.mqttEndpoint.close();
-        } catch (IllegalStateException e) {
-            LOG.warn("MQTT endpoint for client {} already closed", this.mqttEndpoint.clientIdentifier());
-        }
+        this.context.runOnContext(v -> {
+
+            this.senders.set((this.pubEndpoint != null) ? this.pubEndpoint.senders() : 0);
+            this.pendingPublishDeliveries.set((this.pubEndpoint != null) ? this.pubEndpoint.pendingDeliveries() : 0);
+            this.pendingReceiverDeliveries.set((this.rcvEndpoint != null) ? this.rcvEndpoint.pendingDeliveries() : 0);
+        });
     }
 
     /**
-     * AMQP bridge identifier
+     * Number of the AMQP deliveries, for messages published by the MQTT client, waiting for settlement,
+     * as of the last metrics update
      *
      * @return
      */
-    public String id() {
-        // just the MQTT client identifier
-        return this.mqttEndpoint.clientIdentifier();
+    public int pendingPublishDeliveries() {
+        return this.pendingPublishDeliveries.get();
+    }
+
+    /**
+     * Number of the AMQP deliveries, for messages to the MQTT client, waiting for settlement,
+     * as of the last metrics update
+     *
+     * @return
+     */
+    public int pendingReceiverDeliveries() {
+        return this.pendingReceiverDeliveries.get();
+    }
+
+    /**
+     * Number of AMQP senders opened by the bridge for publishing, as of the last metrics update
+     *
+     * @return
+     */
+    public int senders() {
+        return this.senders.get();
+    }
+
+    /**
+     * Cache of the publishers on topics used by the bridge
+     *
+     * @return
+     */
+    public AmqpPublisherCache publisherCache() {
+        return this.pubEndpoint.publishers();
     }
 }
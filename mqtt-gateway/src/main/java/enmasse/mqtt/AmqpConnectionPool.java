@@ -0,0 +1,348 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonClient;
+import io.vertx.proton.ProtonClientOptions;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pool of AMQP connections to the messaging service shared by the AMQP bridges of a verticle.
+ * Every bridge gets its own session on one of the pooled connections, so links of different
+ * MQTT clients are isolated but they don't need a dedicated connection (with TLS and SASL handshakes).
+ *
+ * Connections are pooled per credentials because the SASL authentication happens on connection
+ * so MQTT clients with different username/password can't share the same connection.
+ *
+ * The pool isn't thread safe, it has to be used from the context of the verticle deployment it belongs to only
+ * (as the bridges), every deployment of the gateway verticle has its own pool
+ */
+public class AmqpConnectionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmqpConnectionPool.class);
+
+    private final String host;
+    private final int port;
+    private final int maxConnections;
+    private final ProtonClientOptions clientOptions;
+
+    private final ProtonClient client;
+
+    // credentials -> pooled connections
+    private final Map<List<String>, List<PooledConnection>> connections = new HashMap<>();
+
+    /**
+     * Pooled connection with the sessions opened on it
+     */
+    static class PooledConnection {
+
+        private final List<String> credentials;
+        // null until the connection is established
+        private ProtonConnection connection;
+        // if the connection is opened by the remote as well
+        private boolean opened;
+        // sessions requested while the connection is still in progress
+        private final List<Handler<AsyncResult<AmqpPooledSession>>> waiters = new ArrayList<>();
+        private final Set<AmqpPooledSession> sessions = new HashSet<>();
+
+        PooledConnection(List<String> credentials) {
+            this.credentials = credentials;
+        }
+
+        int load() {
+            return this.sessions.size() + this.waiters.size();
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param host  AMQP service provider address
+     * @param port  AMQP service provider port
+     * @param maxConnections    max number of connections per credentials
+     * @param clientOptions options used for opening the connections
+     */
+    public AmqpConnectionPool(Vertx vertx, String host, int port, int maxConnections, ProtonClientOptions clientOptions) {
+
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("The max number of AMQP connections must be greater than 0");
+        }
+
+        this.host = host;
+        this.port = port;
+        this.maxConnections = maxConnections;
+        this.clientOptions = clientOptions;
+        this.client = ProtonClient.create(vertx);
+    }
+
+    /**
+     * Get a session dedicated to the caller on one of the pooled connections,
+     * opening a new connection if the max number isn't reached yet
+     *
+     * @param userName  username for authenticating the connection (null for SASL ANONYMOUS)
+     * @param password  password for authenticating the connection (null for SASL ANONYMOUS)
+     * @param handler   handler called when the session is available (with success or not)
+     */
+    public void acquire(String userName, String password, Handler<AsyncResult<AmqpPooledSession>> handler) {
+
+        List<String> credentials = Arrays.asList(userName, password);
+        List<PooledConnection> pooledConnections = this.connections.computeIfAbsent(credentials, c -> new ArrayList<>());
+
+        PooledConnection pooledConnection;
+        if (pooledConnections.size() < this.maxConnections) {
+
+            pooledConnection = new PooledConnection(credentials);
+            pooledConnections.add(pooledConnection);
+            this.connect(pooledConnection);
+
+        } else {
+
+            // the least loaded connection
+            pooledConnection = pooledConnections.get(0);
+            for (PooledConnection pc: pooledConnections) {
+                if (pc.load() < pooledConnection.load()) {
+                    pooledConnection = pc;
+                }
+            }
+        }
+
+        if (pooledConnection.opened) {
+            handler.handle(Future.succeededFuture(this.openSession(pooledConnection)));
+        } else {
+            pooledConnection.waiters.add(handler);
+        }
+    }
+
+    /**
+     * Release a session, closing it. The related connection is closed when it hasn't sessions anymore
+     *
+     * @param pooledSession session to release
+     */
+    void release(AmqpPooledSession pooledSession) {
+
+        PooledConnection pooledConnection = pooledSession.pooledConnection();
+        pooledConnection.sessions.remove(pooledSession);
+
+        // the connection could be already closed by the remote
+        if (this.isPooled(pooledConnection)) {
+
+            pooledSession.session().close();
+
+            if (pooledConnection.sessions.isEmpty() && pooledConnection.waiters.isEmpty()) {
+
+                this.remove(pooledConnection);
+                pooledConnection.connection.close();
+                LOG.debug("AMQP connection with {} closed, no more sessions", pooledConnection.connection.getRemoteContainer());
+            }
+        }
+    }
+
+    /**
+     * Close all the pooled connections
+     */
+    public void close() {
+
+        List<PooledConnection> pooledConnections = new ArrayList<>();
+        this.connections.values().forEach(pooledConnections::addAll);
+        this.connections.clear();
+
+        for (PooledConnection pooledConnection: pooledConnections) {
+
+            if (pooledConnection.connection != null) {
+                pooledConnection.connection.close();
+            }
+            this.failWaiters(pooledConnection, new IllegalStateException("AMQP connection pool closed"));
+        }
+    }
+
+    /**
+     * Number of the pooled connections (opened or in progress)
+     *
+     * @return
+     */
+    public int size() {
+        return this.connections.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Open the connection for the provided pooled connection
+     *
+     * @param pooledConnection  pooled connection to open
+     */
+    private void connect(PooledConnection pooledConnection) {
+
+        String userName = pooledConnection.credentials.get(0);
+        String password = pooledConnection.credentials.get(1);
+
+        // NOTE : if username/password are null then Vert.x Proton just provides SASL ANONYMOUS as supported mechanism
+        //        otherwise it provides PLAIN with username/password provided here
+        this.client.connect(this.clientOptions, this.host, this.port, userName, password, done -> {
+
+            if (done.succeeded()) {
+
+                pooledConnection.connection = done.result();
+
+                if (!this.isPooled(pooledConnection)) {
+                    // pool closed in the meantime
+                    pooledConnection.connection.close();
+                    return;
+                }
+
+                pooledConnection.connection
+                        .openHandler(remoteOpen -> this.handleRemoteConnectionOpen(pooledConnection, remoteOpen))
+                        .closeHandler(remoteClose -> this.handleRemoteConnectionClose(pooledConnection, remoteClose))
+                        .disconnectHandler(c -> this.handleRemoteDisconnect(pooledConnection))
+                        .open();
+
+            } else {
+
+                LOG.error("Error connecting to AMQP services ...", done.cause());
+
+                this.remove(pooledConnection);
+                this.failWaiters(pooledConnection, done.cause());
+            }
+        });
+    }
+
+    /**
+     * Handle connection opened by the remote AMQP container, so its capabilities are known.
+     * Now sessions can be provided to the waiting bridges
+     *
+     * @param pooledConnection  pooled connection opened
+     * @param result    result of remote connection opening
+     */
+    private void handleRemoteConnectionOpen(PooledConnection pooledConnection, AsyncResult<ProtonConnection> result) {
+
+        if (!this.isPooled(pooledConnection)) {
+            return;
+        }
+
+        if (result.succeeded()) {
+
+            pooledConnection.opened = true;
+
+            List<Handler<AsyncResult<AmqpPooledSession>>> waiters = new ArrayList<>(pooledConnection.waiters);
+            pooledConnection.waiters.clear();
+            for (Handler<AsyncResult<AmqpPooledSession>> waiter: waiters) {
+                waiter.handle(Future.succeededFuture(this.openSession(pooledConnection)));
+            }
+
+        } else {
+
+            LOG.error("Error opening connection with AMQP services ...", result.cause());
+
+            this.remove(pooledConnection);
+            pooledConnection.connection.close();
+            this.failWaiters(pooledConnection, result.cause());
+        }
+    }
+
+    /**
+     * Open a new session on the provided pooled connection
+     *
+     * @param pooledConnection  pooled connection on which opening the session
+     * @return  the pooled session
+     */
+    private AmqpPooledSession openSession(PooledConnection pooledConnection) {
+
+        ProtonSession session = pooledConnection.connection.createSession();
+        session.open();
+
+        AmqpPooledSession pooledSession = new AmqpPooledSession(this, pooledConnection, session);
+        pooledConnection.sessions.add(pooledSession);
+        return pooledSession;
+    }
+
+    /**
+     * Handle connection closed with remote AMQP container
+     *
+     * @param pooledConnection  pooled connection closed
+     * @param result    result of remote connection closing
+     */
+    private void handleRemoteConnectionClose(PooledConnection pooledConnection, AsyncResult<ProtonConnection> result) {
+
+        // NOTE : the pooled connection is needed because Vert.x doesn't provide the ProtonConnection
+        //        instance when the operation ends with errors (so exception). We need the instance for closing.
+        if (result.succeeded()) {
+            LOG.info("AMQP connection closed with {}", pooledConnection.connection.getRemoteContainer());
+        } else {
+            LOG.info("AMQP connection closed with {} with error", pooledConnection.connection.getRemoteContainer(), result.cause());
+        }
+        pooledConnection.connection.close();
+
+        this.handleConnectionLost(pooledConnection);
+    }
+
+    /**
+     * Handler disconnection with remote AMQP container
+     *
+     * @param pooledConnection  pooled connection disconnected
+     */
+    private void handleRemoteDisconnect(PooledConnection pooledConnection) {
+
+        LOG.info("AMQP disconnection with {}", pooledConnection.connection.getRemoteContainer());
+        pooledConnection.connection.disconnect();
+
+        this.handleConnectionLost(pooledConnection);
+    }
+
+    /**
+     * Remove the lost connection from the pool, notifying all the sessions opened on it
+     *
+     * @param pooledConnection  pooled connection lost
+     */
+    private void handleConnectionLost(PooledConnection pooledConnection) {
+
+        this.remove(pooledConnection);
+        this.failWaiters(pooledConnection, new IllegalStateException("AMQP connection lost"));
+
+        List<AmqpPooledSession> sessions = new ArrayList<>(pooledConnection.sessions);
+        pooledConnection.sessions.clear();
+        sessions.forEach(AmqpPooledSession::handleClose);
+    }
+
+    private void failWaiters(PooledConnection pooledConnection, Throwable cause) {
+
+        List<Handler<AsyncResult<AmqpPooledSession>>> waiters = new ArrayList<>(pooledConnection.waiters);
+        pooledConnection.waiters.clear();
+        for (Handler<AsyncResult<AmqpPooledSession>> waiter: waiters) {
+            waiter.handle(Future.failedFuture(cause));
+        }
+    }
+
+    private boolean isPooled(PooledConnection pooledConnection) {
+
+        List<PooledConnection> pooledConnections = this.connections.get(pooledConnection.credentials);
+        return (pooledConnections != null) && pooledConnections.contains(pooledConnection);
+    }
+
+    private void remove(PooledConnection pooledConnection) {
+
+        List<PooledConnection> pooledConnections = this.connections.get(pooledConnection.credentials);
+        if (pooledConnections != null) {
+            pooledConnections.remove(pooledConnection);
+            if (pooledConnections.isEmpty()) {
+                this.connections.remove(pooledConnection.credentials);
+            }
+        }
+    }
+}
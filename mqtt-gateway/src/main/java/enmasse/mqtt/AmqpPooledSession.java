@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import io.vertx.core.Handler;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonLinkOptions;
+import io.vertx.proton.ProtonReceiver;
+import io.vertx.proton.ProtonSender;
+import io.vertx.proton.ProtonSession;
+import org.apache.qpid.proton.amqp.Symbol;
+
+import java.util.Arrays;
+
+/**
+ * AMQP session dedicated to an AMQP bridge on a connection shared through the connection pool.
+ * All the links of the bridge are created on this session so that closing it detaches just them
+ */
+public class AmqpPooledSession {
+
+    private static final Symbol ANONYMOUS_RELAY = Symbol.valueOf("ANONYMOUS-RELAY");
+
+    private final AmqpConnectionPool pool;
+    private final AmqpConnectionPool.PooledConnection pooledConnection;
+    private final ProtonSession session;
+
+    // handler called when the underlying shared connection is closed
+    private Handler<AmqpPooledSession> closeHandler;
+
+    private boolean released;
+
+    /**
+     * Constructor
+     *
+     * @param pool  connection pool which the session belongs to
+     * @param pooledConnection  pooled connection on which the session is opened
+     * @param session   ProtonSession instance
+     */
+    AmqpPooledSession(AmqpConnectionPool pool, AmqpConnectionPool.PooledConnection pooledConnection, ProtonSession session) {
+        this.pool = pool;
+        this.pooledConnection = pooledConnection;
+        this.session = session;
+    }
+
+    /**
+     * Create a sender on the session
+     *
+     * @param address   target address
+     * @return  the ProtonSender instance
+     */
+    public ProtonSender createSender(String address) {
+        return this.session.createSender(address);
+    }
+
+    /**
+     * Create a sender on the session
+     *
+     * @param address   target address
+     * @param linkOptions   link options
+     * @return  the ProtonSender instance
+     */
+    public ProtonSender createSender(String address, ProtonLinkOptions linkOptions) {
+        return this.session.createSender(address, linkOptions);
+    }
+
+    /**
+     * Create a receiver on the session
+     *
+     * @param address   source address
+     * @return  the ProtonReceiver instance
+     */
+    public ProtonReceiver createReceiver(String address) {
+        return this.session.createReceiver(address);
+    }
+
+    /**
+     * If the remote AMQP container supports the anonymous relay on the shared connection
+     *
+     * @return
+     */
+    public boolean isAnonymousRelaySupported() {
+
+        Symbol[] capabilities = this.session.getConnection().getRemoteOfferedCapabilities();
+        return (capabilities != null) && Arrays.asList(capabilities).contains(ANONYMOUS_RELAY);
+    }
+
+    /**
+     * Shared connection on which the session is opened
+     *
+     * @return
+     */
+    public ProtonConnection connection() {
+        return this.session.getConnection();
+    }
+
+    /**
+     * Set the handler called when the underlying shared connection is closed
+     *
+     * @param handler   the handler
+     * @return  the current AmqpPooledSession instance
+     */
+    public AmqpPooledSession closeHandler(Handler<AmqpPooledSession> handler) {
+
+        this.closeHandler = handler;
+        return this;
+    }
+
+    /**
+     * Release the session, closing it (so detaching all the related links)
+     * and giving back the shared connection to the pool
+     */
+    public void release() {
+
+        if (!this.released) {
+            this.released = true;
+            this.pool.release(this);
+        }
+    }
+
+    /**
+     * If the session was already released
+     *
+     * @return
+     */
+    public boolean isReleased() {
+        return this.released;
+    }
+
+    /**
+     * Used for calling the close handler when the underlying shared connection is closed
+     */
+    void handleClose() {
+
+        if (!this.released && (this.closeHandler != null)) {
+            this.closeHandler.handle(this);
+        }
+    }
+
+    AmqpConnectionPool.PooledConnection pooledConnection() {
+        return this.pooledConnection;
+    }
+
+    ProtonSession session() {
+        return this.session;
+    }
+}
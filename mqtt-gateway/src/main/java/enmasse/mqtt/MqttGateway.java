@@ -5,12 +5,16 @@
 
 package enmasse.mqtt;
 
+import enmasse.mqtt.endpoints.AmqpPublisherCacheOptions;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.http.HttpServer;
 import io.vertx.core.net.PemKeyCertOptions;
 import io.vertx.mqtt.MqttEndpoint;
 import io.vertx.mqtt.MqttServer;
 import io.vertx.mqtt.MqttServerOptions;
+import io.vertx.proton.ProtonClientOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,6 +22,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -28,12 +33,21 @@ public class MqttGateway extends AbstractVerticle {
 
     private static final Logger LOG = LoggerFactory.getLogger(MqttGateway.class);
 
+    private static final String METRICS_PATH = "/metrics";
+    private static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
     // binding info for listening
     private String bindAddress;
     private int listenPort;
     // connection info to the messaging service
     private String messagingServiceHost;
     private int messagingServicePort;
+    // max number of shared AMQP connections (per credentials) to the messaging service
+    private int maxAmqpConnections;
+    // heartbeat (in ms) on the shared AMQP connections to the messaging service
+    private int amqpHeartbeat;
+    // port for exposing the metrics over HTTP (disabled if not greater than 0)
+    private int metricsPort;
 
     // SSL/TLS support stuff
     private boolean ssl;
@@ -41,9 +55,18 @@ public class MqttGateway extends AbstractVerticle {
     private String keyFile;
 
     private MqttServer server;
+    private HttpServer metricsServer;
 
     private Map<String, AmqpBridge> bridges;
 
+    // the same verticle instance is deployed more times, every deployment (context) has its own pool
+    private final Map<Context, AmqpConnectionPool> connectionPools = new ConcurrentHashMap<>();
+
+    // options for the cache of the publishers on topics of each bridge
+    private AmqpPublisherCacheOptions publisherCacheOptions = new AmqpPublisherCacheOptions();
+
+    private final MqttGatewayMetrics metrics = new MqttGatewayMetrics();
+
     /**
      * Set the IP address the MQTT gateway will bind to
      *
@@ -92,6 +115,78 @@ public class MqttGateway extends AbstractVerticle {
         return this;
     }
 
+    /**
+     * Set the max number of AMQP connections (per credentials) shared by the MQTT clients
+     *
+     * @param maxAmqpConnections    max number of AMQP connections
+     * @return  current MQTT gateway instance
+     */
+    @Value(value = "${enmasse.mqtt.maxamqpconnections:4}")
+    public MqttGateway setMaxAmqpConnections(int maxAmqpConnections) {
+        this.maxAmqpConnections = maxAmqpConnections;
+        return this;
+    }
+
+    /**
+     * Set the heartbeat on the shared AMQP connections, a connection not receiving anything within it is closed
+     *
+     * @param amqpHeartbeat heartbeat (in ms)
+     * @return  current MQTT gateway instance
+     */
+    @Value(value = "${enmasse.mqtt.amqpheartbeat:30000}")
+    public MqttGateway setAmqpHeartbeat(int amqpHeartbeat) {
+        this.amqpHeartbeat = amqpHeartbeat;
+        return this;
+    }
+
+    /**
+     * Set the max number of publishers on topics (with related AMQP links) cached by every bridge
+     *
+     * @param maxPublishers max number of cached publishers
+     * @return  current MQTT gateway instance
+     */
+    @Value(value = "${enmasse.mqtt.maxpublishers:" + AmqpPublisherCacheOptions.DEFAULT_MAX_SIZE + "}")
+    public MqttGateway setMaxPublishers(int maxPublishers) {
+        this.publisherCacheOptions.setMaxSize(maxPublishers);
+        return this;
+    }
+
+    /**
+     * Set the time after which a not used publisher on a topic (with related AMQP links) is evicted
+     *
+     * @param publisherIdleTimeout  idle timeout (in ms)
+     * @return  current MQTT gateway instance
+     */
+    @Value(value = "${enmasse.mqtt.publisheridletimeout:" + AmqpPublisherCacheOptions.DEFAULT_IDLE_TIMEOUT + "}")
+    public MqttGateway setPublisherIdleTimeout(long publisherIdleTimeout) {
+        this.publisherCacheOptions.setIdleTimeout(publisherIdleTimeout);
+        return this;
+    }
+
+    /**
+     * Set if an anonymous relay publisher has to be used, when the messaging service supports it
+     *
+     * @param anonymousRelay    if the anonymous relay has to be used
+     * @return  current MQTT gateway instance
+     */
+    @Value(value = "${enmasse.mqtt.anonymousrelay:false}")
+    public MqttGateway setAnonymousRelay(boolean anonymousRelay) {
+        this.publisherCacheOptions.setAnonymousRelay(anonymousRelay);
+        return this;
+    }
+
+    /**
+     * Set the port the MQTT gateway will listen on for HTTP requests of metrics (in the Prometheus format)
+     *
+     * @param metricsPort   the port to listen on (if not greater than 0, metrics aren't exposed)
+     * @return  current MQTT gateway instance
+     */
+    @Value(value = "${enmasse.mqtt.metricsport:8080}")
+    public MqttGateway setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+        return this;
+    }
+
     /**
      * Set the SSL/TLS support needed for the MQTT connections
      *
@@ -159,6 +254,9 @@ public class MqttGateway extends AbstractVerticle {
                     if (done.succeeded()) {
 
                         this.bridges = new HashMap<>();
+                        this.connectionPools.put(this.vertx.getOrCreateContext(),
+                                new AmqpConnectionPool(this.vertx, this.messagingServiceHost, this.messagingServicePort,
+                                        this.maxAmqpConnections, this.createClientOptions()));
 
                         LOG.info("MQTT gateway running on {}:{}", this.bindAddress, this.server.actualPort());
                         LOG.info("AMQP messaging service on {}:{}", this.messagingServiceHost, this.messagingServicePort);
@@ -171,6 +269,59 @@ public class MqttGateway extends AbstractVerticle {
                 });
     }
 
+    /**
+     * Options for the shared AMQP connections, which aren't bound to the keep alive of a single MQTT client
+     *
+     * @return
+     */
+    private ProtonClientOptions createClientOptions() {
+
+        ProtonClientOptions options = new ProtonClientOptions();
+        if (this.amqpHeartbeat > 0) {
+            // the heartbeat detects a not responding messaging service, the idle timeout a half-open TCP connection
+            options.setHeartbeat(this.amqpHeartbeat)
+                    .setIdleTimeout(Math.max(1, 2 * this.amqpHeartbeat / 1000));
+        }
+        return options;
+    }
+
+    /**
+     * Start the HTTP server exposing the metrics
+     *
+     * @param startFuture
+     */
+    private void bindMetricsServer(Future<Void> startFuture) {
+
+        if (this.metricsPort <= 0) {
+            startFuture.complete();
+            return;
+        }
+
+        this.metricsServer = this.vertx.createHttpServer();
+
+        this.metricsServer
+                .requestHandler(request -> {
+
+                    if (request.path().equals(METRICS_PATH)) {
+                        request.response()
+                                .putHeader("Content-Type", METRICS_CONTENT_TYPE)
+                                .end(this.metrics.scrape());
+                    } else {
+                        request.response().setStatusCode(404).end();
+                    }
+                })
+                .listen(this.metricsPort, this.bindAddress, done -> {
+
+                    if (done.succeeded()) {
+                        LOG.info("MQTT gateway metrics on {}:{}{}", this.bindAddress, this.metricsServer.actualPort(), METRICS_PATH);
+                        startFuture.complete();
+                    } else {
+                        LOG.error("Error while starting up MQTT gateway metrics", done.cause());
+                        startFuture.fail(done.cause());
+                    }
+                });
+    }
+
     /**
      * Handler for a connection request (CONNECT) received by a remote MQTT client
      *
@@ -179,16 +330,19 @@ public class MqttGateway extends AbstractVerticle {
     private void handleMqttEndpointConnection(MqttEndpoint mqttEndpoint) {
 
         LOG.info("CONNECT from MQTT client {}", mqttEndpoint.clientIdentifier());
+        this.metrics.connected();
 
-        AmqpBridge bridge = new AmqpBridge(this.vertx, mqttEndpoint);
+        AmqpConnectionPool connectionPool = this.connectionPools.get(this.vertx.getOrCreateContext());
+        AmqpBridge bridge = new AmqpBridge(this.vertx, mqttEndpoint, connectionPool, this.publisherCacheOptions, this.metrics);
 
         bridge.mqttEndpointCloseHandler(amqpBridge -> {
 
+            this.metrics.disconnected();
             this.bridges.remove(amqpBridge.id());
             amqpBridge.close();
             LOG.info("Closed AMQP bridge for client {}", amqpBridge.id());
 
-        }).open(this.messagingServiceHost, this.messagingServicePort, done -> {
+        }).open(done -> {
 
             if (done.succeeded()) {
 
@@ -204,7 +358,26 @@ public class MqttGateway extends AbstractVerticle {
     public void start(Future<Void> startFuture) throws Exception {
 
         LOG.info("Starting MQTT gateway verticle...");
-        this.bindMqttServer(startFuture);
+
+        Future<Void> mqttFuture = Future.future();
+        this.bindMqttServer(mqttFuture);
+
+        mqttFuture.compose(v -> {
+
+            Future<Void> metricsFuture = Future.future();
+            this.bindMetricsServer(metricsFuture);
+            return metricsFuture;
+
+        }).setHandler(startFuture.completer());
+    }
+
+    /**
+     * Metrics about the MQTT gateway
+     *
+     * @return
+     */
+    public MqttGatewayMetrics metrics() {
+        return this.metrics;
     }
 
     @Override
@@ -223,11 +396,19 @@ public class MqttGateway extends AbstractVerticle {
            }
         });
 
+        if (this.metricsServer != null) {
+            this.metricsServer.close();
+        }
+
         if (this.server != null) {
 
             this.bridges.entrySet().stream().forEach(entry -> {
                 entry.getValue().close();
             });
+            AmqpConnectionPool connectionPool = this.connectionPools.remove(this.vertx.getOrCreateContext());
+            if (connectionPool != null) {
+                connectionPool.close();
+            }
 
             this.server.close(shutdownTracker.completer());
         } else {
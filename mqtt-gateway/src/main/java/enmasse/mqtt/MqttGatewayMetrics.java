@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Metrics about the MQTT gateway and its AMQP bridges, exposed in the Prometheus text format.
+ *
+ * Counters and timers are updated by the bridges on their own event loop. The gauges sum counts kept
+ * by every bridge and updated on its own context when the metrics are scraped, so they report the
+ * state as of the previous scrape
+ */
+public class MqttGatewayMetrics {
+
+    private static final String QOS_TAG = "qos";
+    private static final String ENDPOINT_TAG = "endpoint";
+
+    private final PrometheusMeterRegistry registry;
+
+    private final AtomicInteger activeBridges = new AtomicInteger();
+    // open bridges, read by the gauges about senders and pending deliveries
+    private final Set<AmqpBridge> bridges = ConcurrentHashMap.newKeySet();
+
+    private final Counter connections;
+    private final Counter disconnections;
+
+    // indexed by the QoS level value
+    private final Counter[] publishesReceived = new Counter[3];
+    private final Counter[] publishesSent = new Counter[3];
+    private final Timer[] publishLatencies = new Timer[3];
+
+    /**
+     * Constructor
+     */
+    public MqttGatewayMetrics() {
+
+        this.registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+        Gauge.builder("mqtt.bridges.active", this.activeBridges, AtomicInteger::get)
+                .description("Number of active AMQP bridges (connected MQTT clients)")
+                .register(this.registry);
+
+        this.connections = Counter.builder("mqtt.connections")
+                .description("MQTT clients connected")
+                .register(this.registry);
+
+        this.disconnections = Counter.builder("mqtt.disconnections")
+                .description("MQTT clients disconnected")
+                .register(this.registry);
+
+        for (MqttQoS qos: new MqttQoS[] { MqttQoS.AT_MOST_ONCE, MqttQoS.AT_LEAST_ONCE, MqttQoS.EXACTLY_ONCE }) {
+
+            String qosValue = String.valueOf(qos.value());
+
+            this.publishesReceived[qos.value()] = Counter.builder("mqtt.publishes.received")
+                    .description("PUBLISH messages received from MQTT clients")
+                    .tag(QOS_TAG, qosValue)
+                    .register(this.registry);
+
+            this.publishesSent[qos.value()] = Counter.builder("mqtt.publishes.sent")
+                    .description("PUBLISH messages sent to MQTT clients")
+                    .tag(QOS_TAG, qosValue)
+                    .register(this.registry);
+
+            // QoS 0 has no acknowledgement
+            if (qos != MqttQoS.AT_MOST_ONCE) {
+                this.publishLatencies[qos.value()] = Timer.builder("mqtt.publish.latency")
+                        .description("Time from a PUBLISH received from an MQTT client to the related PUBACK/PUBREC")
+                        .tag(QOS_TAG, qosValue)
+                        .publishPercentileHistogram()
+                        .register(this.registry);
+            }
+        }
+
+        // not per bridge, a series per MQTT client wouldn't scale with the number of clients
+        Gauge.builder("mqtt.bridges.senders", this.bridges, bridges -> bridges.stream().mapToInt(AmqpBridge::senders).sum())
+                .description("AMQP senders opened by all the bridges for publishing")
+                .register(this.registry);
+
+        this.pendingDeliveriesGauge("publish", AmqpBridge::pendingPublishDeliveries);
+        this.pendingDeliveriesGauge("receiver", AmqpBridge::pendingReceiverDeliveries);
+    }
+
+    private void pendingDeliveriesGauge(String endpoint, ToIntFunction<AmqpBridge> pendingDeliveries) {
+
+        Gauge.builder("mqtt.deliveries.pending", this.bridges, bridges -> bridges.stream().mapToInt(pendingDeliveries).sum())
+                .description("AMQP deliveries waiting for settlement")
+                .tag(ENDPOINT_TAG, endpoint)
+                .register(this.registry);
+    }
+
+    /**
+     * Track an MQTT client connection
+     */
+    public void connected() {
+        this.connections.increment();
+    }
+
+    /**
+     * Track an MQTT client disconnection
+     */
+    public void disconnected() {
+        this.disconnections.increment();
+    }
+
+    /**
+     * Track an opened AMQP bridge
+     *
+     * @param bridge    AMQP bridge opened
+     */
+    public void bridgeOpened(AmqpBridge bridge) {
+
+        this.activeBridges.incrementAndGet();
+        this.bridges.add(bridge);
+    }
+
+    /**
+     * Track a closed AMQP bridge
+     *
+     * @param bridge    AMQP bridge closed
+     */
+    public void bridgeClosed(AmqpBridge bridge) {
+
+        if (this.bridges.remove(bridge)) {
+            this.activeBridges.decrementAndGet();
+        }
+    }
+
+    /**
+     * Track a PUBLISH received from an MQTT client
+     *
+     * @param qos   QoS level of the message
+     */
+    public void publishReceived(MqttQoS qos) {
+        this.publishesReceived[qos.value()].increment();
+    }
+
+    /**
+     * Track a PUBLISH sent to an MQTT client
+     *
+     * @param qos   QoS level of the message
+     */
+    public void publishSent(MqttQoS qos) {
+        this.publishesSent[qos.value()].increment();
+    }
+
+    /**
+     * Track the acknowledgement (PUBACK/PUBREC) for a PUBLISH received from an MQTT client
+     *
+     * @param qos   QoS level of the message
+     * @param receivedTime  time (in nanoseconds) when the PUBLISH was received
+     */
+    public void publishAcknowledged(MqttQoS qos, long receivedTime) {
+        this.publishLatencies[qos.value()].record(System.nanoTime() - receivedTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Metrics in the Prometheus text format
+     *
+     * @return
+     */
+    public String scrape() {
+
+        // the counts are ready for the next scrape
+        this.bridges.forEach(AmqpBridge::updateMetrics);
+        return this.registry.scrape();
+    }
+
+    /**
+     * Underlying metrics registry
+     *
+     * @return
+     */
+    public PrometheusMeterRegistry registry() {
+        return this.registry;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Level segmented trie of topic subscriptions (with "+" and "#" wildcards) and related granted QoS levels.
+ * It provides the maximum granted QoS for a fixed topic (for publishing) with one walk of the trie
+ * instead of matching the topic against every subscribed "wildcarded" topic
+ */
+public class SubscriptionTrie {
+
+    private static final String TOPIC_LEVEL_SEPARATOR = "/";
+    private static final String PLUS_WILDCARD = "+";
+    private static final String SHARP_WILDCARD = "#";
+
+    /**
+     * Trie node related to a topic level
+     */
+    private static class Node {
+
+        // child nodes for fixed topic levels
+        private Map<String, Node> children;
+        // child node for the "+" wildcard level
+        private Node plus;
+        // child node for the "#" wildcard level
+        private Node sharp;
+        // granted QoS if a subscription ends at this node, null otherwise
+        private MqttQoS qos;
+
+        boolean isEmpty() {
+            return (this.qos == null) && (this.plus == null) && (this.sharp == null) &&
+                    ((this.children == null) || this.children.isEmpty());
+        }
+    }
+
+    private final Node root = new Node();
+    // all subscribed "wildcarded" topics with granted QoS levels
+    private final Map<String, MqttQoS> subscriptions = new HashMap<>();
+
+    /**
+     * Add (or update) a topic subscription
+     *
+     * @param wildcardedTopic   topic with wildcards (for subscription)
+     * @param qos   granted QoS level
+     */
+    public void add(String wildcardedTopic, MqttQoS qos) {
+
+        Node node = this.root;
+        for (String level: wildcardedTopic.split(TOPIC_LEVEL_SEPARATOR, -1)) {
+
+            switch (level) {
+
+                case PLUS_WILDCARD:
+                    if (node.plus == null) {
+                        node.plus = new Node();
+                    }
+                    node = node.plus;
+                    break;
+
+                case SHARP_WILDCARD:
+                    if (node.sharp == null) {
+                        node.sharp = new Node();
+                    }
+                    node = node.sharp;
+                    break;
+
+                default:
+                    if (node.children == null) {
+                        node.children = new HashMap<>();
+                    }
+                    node = node.children.computeIfAbsent(level, l -> new Node());
+                    break;
+            }
+        }
+
+        node.qos = qos;
+        this.subscriptions.put(wildcardedTopic, qos);
+    }
+
+    /**
+     * Remove a topic subscription
+     *
+     * @param wildcardedTopic   topic with wildcards (for subscription)
+     * @return  the granted QoS level of the removed subscription, null if it didn't exist
+     */
+    public MqttQoS remove(String wildcardedTopic) {
+
+        MqttQoS qos = this.subscriptions.remove(wildcardedTopic);
+        if (qos != null) {
+            this.remove(this.root, wildcardedTopic.split(TOPIC_LEVEL_SEPARATOR, -1), 0);
+        }
+        return qos;
+    }
+
+    /**
+     * Remove the subscription under the provided node, pruning the nodes left empty
+     *
+     * @param node  current node
+     * @param levels    subscription topic levels
+     * @param index current topic level index
+     * @return  if the current node is empty after removal
+     */
+    private boolean remove(Node node, String[] levels, int index) {
+
+        if (index == levels.length) {
+            node.qos = null;
+            return node.isEmpty();
+        }
+
+        String level = levels[index];
+        switch (level) {
+
+            case PLUS_WILDCARD:
+                if (this.remove(node.plus, levels, index + 1)) {
+                    node.plus = null;
+                }
+                break;
+
+            case SHARP_WILDCARD:
+                if (this.remove(node.sharp, levels, index + 1)) {
+                    node.sharp = null;
+                }
+                break;
+
+            default:
+                if (this.remove(node.children.get(level), levels, index + 1)) {
+                    node.children.remove(level);
+                }
+                break;
+        }
+
+        return node.isEmpty();
+    }
+
+    /**
+     * Get the maximum granted QoS level between all the subscriptions matching the topic
+     *
+     * @param topic fixed topic (for publishing)
+     * @return  the maximum granted QoS level, null if there is no matching subscription
+     */
+    public MqttQoS match(String topic) {
+
+        if (this.subscriptions.isEmpty()) {
+            return null;
+        }
+
+        return this.match(this.root, topic.split(TOPIC_LEVEL_SEPARATOR, -1), 0, null);
+    }
+
+    /**
+     * Walk the trie from the provided node collecting the maximum granted QoS level
+     *
+     * @param node  current node
+     * @param levels    publishing topic levels
+     * @param index current topic level index
+     * @param qos   maximum granted QoS level found so far
+     * @return  maximum granted QoS level found
+     */
+    private MqttQoS match(Node node, String[] levels, int index, MqttQoS qos) {
+
+        if (index == levels.length) {
+            return max(qos, node.qos);
+        }
+
+        // "#" matches all the remaining levels (at least one)
+        if (node.sharp != null) {
+            qos = max(qos, node.sharp.qos);
+        }
+
+        String level = levels[index];
+
+        if (node.children != null) {
+            Node child = node.children.get(level);
+            if (child != null) {
+                qos = this.match(child, levels, index + 1, qos);
+            }
+        }
+
+        // "+" matches exactly one not empty level
+        if ((node.plus != null) && !level.isEmpty()) {
+            qos = this.match(node.plus, levels, index + 1, qos);
+        }
+
+        return qos;
+    }
+
+    private static MqttQoS max(MqttQoS qos1, MqttQoS qos2) {
+
+        if (qos1 == null) {
+            return qos2;
+        } else if (qos2 == null) {
+            return qos1;
+        } else {
+            return (qos1.value() >= qos2.value()) ? qos1 : qos2;
+        }
+    }
+
+    /**
+     * Remove all the topic subscriptions
+     */
+    public void clear() {
+
+        this.root.children = null;
+        this.root.plus = null;
+        this.root.sharp = null;
+        this.root.qos = null;
+        this.subscriptions.clear();
+    }
+
+    /**
+     * If there are no topic subscriptions
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return this.subscriptions.isEmpty();
+    }
+
+    /**
+     * Number of topic subscriptions
+     *
+     * @return
+     */
+    public int size() {
+        return this.subscriptions.size();
+    }
+}
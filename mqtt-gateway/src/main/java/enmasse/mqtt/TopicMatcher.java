@@ -6,7 +6,8 @@
 package enmasse.mqtt;
 
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides matching feature between "wildcarded" topics (for subscription)
@@ -14,27 +15,108 @@ import java.util.regex.Pattern;
  */
 public class TopicMatcher {
 
-    private static final String PLUS_WILDCARD = "\\+";
+    private static final char TOPIC_LEVEL_SEPARATOR = '/';
+    private static final String PLUS_WILDCARD = "+";
     private static final String SHARP_WILDCARD = "#";
 
-    private static final String PLUS_WILDCARD_REPLACE = "[^/]\\+";
-    private static final String SHARP_WILDCARD_REPLACE = ".*";
+    // max number of precompiled matchers in the cache
+    private static final int CACHE_MAX_SIZE = 10000;
+
+    // precompiled matchers ("wildcarded" topic -> matcher)
+    private static final Map<String, TopicMatcher> CACHE = new ConcurrentHashMap<>();
+
+    // "wildcarded" topic levels
+    private final String[] levels;
 
     /**
-     * Verify if the topic matches the "wildcarded" topic provided
+     * Constructor
+     *
+     * @param wildcardedTopic   topic with wildcards (for subscription)
+     */
+    private TopicMatcher(String wildcardedTopic) {
+        this.levels = wildcardedTopic.split(String.valueOf(TOPIC_LEVEL_SEPARATOR), -1);
+    }
+
+    /**
+     * Get a precompiled matcher for the "wildcarded" topic provided
      *
      * @param wildcardedTopic   topic with wildcards (for subscription)
+     * @return  the matcher
+     */
+    public static TopicMatcher compile(String wildcardedTopic) {
+
+        TopicMatcher matcher = CACHE.get(wildcardedTopic);
+        if (matcher == null) {
+
+            // just a coarse bound, the cache is filled again by the next matches
+            if (CACHE.size() >= CACHE_MAX_SIZE) {
+                CACHE.clear();
+            }
+            matcher = CACHE.computeIfAbsent(wildcardedTopic, TopicMatcher::new);
+        }
+        return matcher;
+    }
+
+    /**
+     * Verify if the topic matches the "wildcarded" topic related to this matcher
+     *
      * @param topic fixed topic (for publishing)
      * @return  if there is a match
      */
-    public static boolean isMatch(String wildcardedTopic, String topic) {
+    public boolean matches(String topic) {
+
+        int pos = 0;
+        for (int i = 0; i < this.levels.length; i++) {
 
-        String topicReplaced =
-                wildcardedTopic.replaceAll(PLUS_WILDCARD, PLUS_WILDCARD_REPLACE).replaceAll(SHARP_WILDCARD, SHARP_WILDCARD_REPLACE);
+            // every level after the first one starts after a separator
+            if (i > 0) {
+                if ((pos >= topic.length()) || (topic.charAt(pos) != TOPIC_LEVEL_SEPARATOR)) {
+                    return false;
+                }
+                pos++;
+            }
+
+            String level = this.levels[i];
+
+            if (level.equals(SHARP_WILDCARD)) {
+
+                // matches all the remaining levels
+                return true;
+
+            } else if (level.equals(PLUS_WILDCARD)) {
+
+                // matches one not empty level
+                int end = topic.indexOf(TOPIC_LEVEL_SEPARATOR, pos);
+                if (end == -1) {
+                    end = topic.length();
+                }
+                if (end == pos) {
+                    return false;
+                }
+                pos = end;
+
+            } else {
+
+                if (!topic.regionMatches(pos, level, 0, level.length())) {
+                    return false;
+                }
+                pos += level.length();
+            }
+        }
 
-        Pattern pattern = Pattern.compile(topicReplaced);
+        return pos == topic.length();
+    }
+
+    /**
+     * Verify if the topic matches the "wildcarded" topic provided
+     *
+     * @param wildcardedTopic   topic with wildcards (for subscription)
+     * @param topic fixed topic (for publishing)
+     * @return  if there is a match
+     */
+    public static boolean isMatch(String wildcardedTopic, String topic) {
 
-        return pattern.matcher(topic).matches();
+        return compile(wildcardedTopic).matches(topic);
     }
 
     /**
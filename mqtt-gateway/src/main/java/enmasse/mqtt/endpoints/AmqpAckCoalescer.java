@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.endpoints;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonDelivery;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coalescer for the settlement of the AMQP deliveries received by a bridge.
+ * The deliveries acknowledged by the MQTT client (so completed) aren't settled one by one: all the ones completed
+ * during an event loop tick are settled together on the next one, in a single task. Every delivery is settled
+ * as soon as it's completed, whatever the state of the ones received before it.
+ *
+ * It isn't thread safe, it has to be used from the bridge context only
+ */
+public class AmqpAckCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmqpAckCoalescer.class);
+
+    private final Vertx vertx;
+    private final Handler<Void> settleHandler = v -> this.settle();
+
+    // deliveries waiting for the acknowledgement (messageId -> delivery)
+    private final IntObjectHashMap<ProtonDelivery> deliveries = new IntObjectHashMap<>();
+    // deliveries acknowledged but not settled yet, in the completion order
+    private List<ProtonDelivery> completed = new ArrayList<>();
+    // spare list swapped with the completed one on every batch, for not allocating a list per batch
+    private List<ProtonDelivery> settling = new ArrayList<>();
+
+    private boolean closed;
+
+    private long batches;
+    private long settled;
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     */
+    public AmqpAckCoalescer(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Add a received delivery which needs settlement
+     *
+     * @param messageId MQTT message identifier assigned to the delivered message
+     * @param delivery  the delivery
+     */
+    public void add(int messageId, ProtonDelivery delivery) {
+
+        ProtonDelivery previous = this.deliveries.put(messageId, delivery);
+        if (previous != null) {
+            // MQTT message identifier reused before the acknowledgement, settle the old one anyway
+            LOG.warn("MQTT message identifier [{}] reused before acknowledgement", messageId);
+            this.schedule(previous);
+        }
+    }
+
+    /**
+     * Complete the delivery related to the acknowledged message, it will be settled on the next tick
+     * together with the other deliveries completed in the meantime
+     *
+     * @param messageId MQTT message identifier
+     * @return  if there was a pending delivery for the message identifier
+     */
+    public boolean complete(int messageId) {
+
+        ProtonDelivery delivery = this.deliveries.remove(messageId);
+        if (delivery == null) {
+            return false;
+        }
+
+        this.schedule(delivery);
+        return true;
+    }
+
+    /**
+     * Close the coalescer, the pending deliveries are dropped without settlement
+     */
+    public void close() {
+
+        this.closed = true;
+        this.deliveries.clear();
+        this.completed.clear();
+    }
+
+    /**
+     * Number of deliveries not settled yet (waiting for acknowledgement or for the next batch)
+     *
+     * @return
+     */
+    public int pending() {
+        return this.deliveries.size() + this.completed.size();
+    }
+
+    /**
+     * Number of batches of settlements executed
+     *
+     * @return
+     */
+    public long batches() {
+        return this.batches;
+    }
+
+    /**
+     * Number of deliveries settled
+     *
+     * @return
+     */
+    public long settled() {
+        return this.settled;
+    }
+
+    private void schedule(ProtonDelivery delivery) {
+
+        // the first delivery completed in this tick schedules the batch
+        if (this.completed.isEmpty()) {
+            this.vertx.runOnContext(this.settleHandler);
+        }
+        this.completed.add(delivery);
+    }
+
+    /**
+     * Settle all the deliveries completed since the previous batch
+     */
+    private void settle() {
+
+        if (this.closed || this.completed.isEmpty()) {
+            return;
+        }
+
+        // deliveries completed while settling go in the next batch
+        List<ProtonDelivery> batch = this.completed;
+        this.completed = this.settling;
+        this.settling = batch;
+
+        for (ProtonDelivery delivery: batch) {
+            delivery.disposition(Accepted.getInstance(), true);
+        }
+
+        this.batches++;
+        this.settled += batch.size();
+        LOG.debug("AMQP settled {} deliveries", batch.size());
+        batch.clear();
+    }
+}
@@ -15,6 +15,7 @@ public class AmqpPublishData {
 
     private AmqpPublishMessage amqpPublishMessage;
     private int messageId;
+    private boolean acknowledged;
 
     /**
      * AMQP_PUBLISH message to send
@@ -51,4 +52,22 @@ public class AmqpPublishData {
         this.messageId = messageId;
         return this;
     }
+
+    /**
+     * If the AMQP_PUBLISH message sent doesn't need an acknowledgement from the MQTT client (QoS 0)
+     * @return
+     */
+    public boolean isAcknowledged() {
+        return this.acknowledged;
+    }
+
+    /**
+     * Set if the AMQP_PUBLISH message sent doesn't need an acknowledgement from the MQTT client (QoS 0)
+     * @param acknowledged  if no acknowledgement is needed
+     * @return  current instance of the AmqpPublishData
+     */
+    public AmqpPublishData setAcknowledged(boolean acknowledged) {
+        this.acknowledged = acknowledged;
+        return this;
+    }
 }
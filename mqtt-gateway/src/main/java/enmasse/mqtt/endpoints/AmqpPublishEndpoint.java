@@ -8,6 +8,7 @@ package enmasse.mqtt.endpoints;
 import enmasse.mqtt.messages.AmqpPublishMessage;
 import enmasse.mqtt.messages.AmqpPubrelMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.collection.IntObjectHashMap;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -18,9 +19,6 @@ import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Publisher endpoint
  */
@@ -31,9 +29,9 @@ public class AmqpPublishEndpoint {
     public static final String AMQP_CLIENT_PUBREL_ENDPOINT_TEMPLATE = "$mqtt.%s.pubrel";
 
     // all delivery for published messages if they need settlement (messageId -> delivery)
-    private Map<Object, ProtonDelivery> deliveries;
+    private IntObjectHashMap<UnsettledDelivery> deliveries;
     // links for publishing message on topic (topic -> link/senders couple)
-    private Map<String, AmqpPublisher> publishers;
+    private AmqpPublisherCache publishers;
     // sender for PUBREL messages
     private ProtonSender senderPubrel;
 
@@ -41,9 +39,11 @@ public class AmqpPublishEndpoint {
      * Constructor
      *
      * @param senderPubrel  ProtonSender instance related to client PUBREL address
+     * @param publishers    cache of the publishers for topics
      */
-    public AmqpPublishEndpoint(ProtonSender senderPubrel) {
+    public AmqpPublishEndpoint(ProtonSender senderPubrel, AmqpPublisherCache publishers) {
         this.senderPubrel = senderPubrel;
+        this.publishers = publishers;
     }
 
     /**
@@ -51,33 +51,17 @@ public class AmqpPublishEndpoint {
      */
     public void open() {
 
-        this.deliveries = new HashMap<>();
-        this.publishers = new HashMap<>();
-    }
-
-    /**
-     * Check if a publisher already exists for the specified topic
-     *
-     * @param topic topic to check the publisher
-     * @return  if publisher already exists
-     */
-    public boolean isPublisher(String topic) {
-
-        return this.publishers.containsKey(topic);
+        this.deliveries = new IntObjectHashMap<>();
+        this.publishers.open();
     }
 
     /**
-     * Add a publisher to the endpoint
+     * Cache of the publishers for topics
      *
-     * @param topic topic for which adding the publisher
-     * @param amqpPublisher publisher to add
+     * @return
      */
-    public void addPublisher(String topic, AmqpPublisher amqpPublisher) {
-
-        if (this.publishers.containsKey(topic)) {
-            throw new IllegalStateException(String.format("AMQP publisher for %s already exists !", topic));
-        }
-        this.publishers.put(topic, amqpPublisher);
+    public AmqpPublisherCache publishers() {
+        return this.publishers;
     }
 
     /**
@@ -89,7 +73,7 @@ public class AmqpPublishEndpoint {
 
         // send AMQP_PUBLISH message
 
-        AmqpPublisher publisher = this.publishers.get(amqpPublishMessage.topic());
+        AmqpPublisher publisher = this.publishers.publisher(amqpPublishMessage.topic());
 
         // use sender for QoS 0/1 messages
         if (amqpPublishMessage.qos() != MqttQoS.EXACTLY_ONCE) {
@@ -100,21 +84,19 @@ public class AmqpPublishEndpoint {
                 publisher.senderQoS01()
                         .setQoS(ProtonQoS.AT_LEAST_ONCE)
                         .open();
-
-                // TODO: think about starting a timer for inactivity on this link for detaching ?
             }
 
             if (amqpPublishMessage.qos() == MqttQoS.AT_MOST_ONCE) {
 
-                publisher.senderQoS01().send(amqpPublishMessage.toAmqp());
+                publisher.send(publisher.senderQoS01(), amqpPublishMessage.toAmqp(), null);
                 handler.handle(Future.succeededFuture(null));
 
             } else {
 
-                publisher.senderQoS01().send(amqpPublishMessage.toAmqp(), delivery -> {
+                publisher.send(publisher.senderQoS01(), amqpPublishMessage.toAmqp(), delivery -> {
 
                     if (delivery.getRemoteState() == Accepted.getInstance()) {
-                        LOG.info("AMQP publish delivery {}", delivery.getRemoteState());
+                        LOG.debug("AMQP publish delivery {}", delivery.getRemoteState());
                         handler.handle(Future.succeededFuture(delivery));
                     } else {
                         handler.handle(Future.failedFuture(String.format("AMQP publish delivery %s", delivery.getRemoteState())));
@@ -132,18 +114,18 @@ public class AmqpPublishEndpoint {
                 publisher.senderQoS2()
                         // TODO: Vert.x Proton doesn't support EXACTLY_ONCE
                         .open();
-
-                // TODO: think about starting a timer for inactivity on this link for detaching ?
             }
 
-            publisher.senderQoS2().send(amqpPublishMessage.toAmqp(), delivery -> {
+            publisher.send(publisher.senderQoS2(), amqpPublishMessage.toAmqp(), delivery -> {
 
                 if (delivery.getRemoteState() == Accepted.getInstance()) {
-                    LOG.info("AMQP publish delivery {}", delivery.getRemoteState());
+                    LOG.debug("AMQP publish delivery {}", delivery.getRemoteState());
 
                     // received disposition not settled, store for future settlement
                     if (!delivery.remotelySettled()) {
-                        this.deliveries.put(amqpPublishMessage.messageId(), delivery);
+                        // the publisher links aren't closed until it's settled
+                        publisher.awaitSettlement();
+                        this.deliveries.put((int) amqpPublishMessage.messageId(), new UnsettledDelivery(publisher, delivery));
                     }
 
                     handler.handle(Future.succeededFuture(delivery));
@@ -176,7 +158,7 @@ public class AmqpPublishEndpoint {
         this.senderPubrel.send(amqpPubrelMessage.toAmqp(), delivery -> {
 
             if (delivery.getRemoteState() == Accepted.getInstance()) {
-                LOG.info("AMQP pubrel delivery {}", delivery.getRemoteState());
+                LOG.debug("AMQP pubrel delivery {}", delivery.getRemoteState());
                 handler.handle(Future.succeededFuture(delivery));
             } else {
                 handler.handle(Future.failedFuture(String.format("AMQP pubrel delivery %s", delivery.getRemoteState())));
@@ -191,32 +173,57 @@ public class AmqpPublishEndpoint {
     public void close() {
 
         // detach links
-        for (Map.Entry<String, AmqpPublisher> entry: this.publishers.entrySet()) {
-
-            AmqpPublisher publisher = entry.getValue();
-            if (publisher.isOpen()) {
-                publisher.close();
-            }
-        }
+        this.publishers.close();
 
         if (this.senderPubrel.isOpen()) {
             this.senderPubrel.close();
         }
 
-        this.publishers.clear();
         this.deliveries.clear();
     }
 
+    /**
+     * Number of opened senders for publishing (on topics and for PUBREL)
+     *
+     * @return
+     */
+    public int senders() {
+        return this.publishers.senders() + (this.senderPubrel.isOpen() ? 1 : 0);
+    }
+
+    /**
+     * Number of deliveries waiting for settlement
+     *
+     * @return
+     */
+    public int pendingDeliveries() {
+        return (this.deliveries != null) ? this.deliveries.size() : 0;
+    }
+
     /**
      * Settle the delivery for a received message
      *
      * @param messageId message identifier to settle
      */
-    public void settle(Object messageId) {
+    public void settle(int messageId) {
+
+        UnsettledDelivery unsettled = this.deliveries.remove(messageId);
+        if (unsettled != null) {
+            unsettled.publisher.settle(unsettled.delivery);
+        }
+    }
+
+    /**
+     * Delivery waiting for settlement, with the publisher it was sent through
+     */
+    private static class UnsettledDelivery {
+
+        private final AmqpPublisher publisher;
+        private final ProtonDelivery delivery;
 
-        if (this.deliveries.containsKey(messageId)) {
-            ProtonDelivery delivery = this.deliveries.remove(messageId);
-            delivery.disposition(Accepted.getInstance(), true);
+        UnsettledDelivery(AmqpPublisher publisher, ProtonDelivery delivery) {
+            this.publisher = publisher;
+            this.delivery = delivery;
         }
     }
 }
@@ -5,25 +5,119 @@
 
 package enmasse.mqtt.endpoints;
 
+import io.vertx.core.Handler;
+import io.vertx.proton.ProtonDelivery;
 import io.vertx.proton.ProtonSender;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.message.Message;
+
+import java.util.function.Function;
 
 /**
  * AMQP publisher with links couple for publishing with QoS 0/1 and QoS 2
  */
 public class AmqpPublisher {
 
-    private final ProtonSender senderQoS01;
-    private final ProtonSender senderQoS2;
+    // publishing address, null for an anonymous relay publisher
+    private final String address;
+    // factory for the senders (address -> sender)
+    private final Function<String, ProtonSender> senderFactory;
+
+    private ProtonSender senderQoS01;
+    private ProtonSender senderQoS2;
+
+    // last time the publisher was used (in ms)
+    private long lastUsed;
+    // deliveries sent but without a disposition yet
+    private int inFlight;
+    // deliveries with a disposition but waiting for the local settlement (QoS 2, on PUBREL)
+    private int unsettled;
+    // if the publisher has to be closed as soon as all the deliveries are settled
+    private boolean closing;
 
     /**
      * Constructor
      *
-     * @param senderQoS01   ProtonSender instance related to the publishing address for QoS 0 and 1
-     * @param senderQoS2    ProtonSender instance related to the publishing address for QoS 2
+     * @param address   publishing address, null for an anonymous relay publisher
+     * @param senderFactory factory used for creating the senders on first use
+     */
+    public AmqpPublisher(String address, Function<String, ProtonSender> senderFactory) {
+        this.address = address;
+        this.senderFactory = senderFactory;
+    }
+
+    /**
+     * Send a message on the provided sender (of this publisher) tracking it as in flight until its disposition
+     *
+     * @param sender    sender to use
+     * @param message   message to send
+     * @param handler   handler called on delivery updates
+     * @return  the delivery
      */
-    public AmqpPublisher(ProtonSender senderQoS01, ProtonSender senderQoS2) {
-        this.senderQoS01 = senderQoS01;
-        this.senderQoS2 = senderQoS2;
+    public ProtonDelivery send(ProtonSender sender, Message message, Handler<ProtonDelivery> handler) {
+
+        this.inFlight++;
+        boolean[] updated = new boolean[1];
+
+        return sender.send(message, delivery -> {
+
+            if (!updated[0]) {
+                updated[0] = true;
+                this.inFlight--;
+            }
+
+            if (handler != null) {
+                handler.handle(delivery);
+            }
+
+            this.closeIfSettled();
+        });
+    }
+
+    /**
+     * Keep a delivery (of this publisher) with a disposition as unsettled until {@link #settle(ProtonDelivery)},
+     * the links are not closed before that
+     */
+    public void awaitSettlement() {
+
+        this.unsettled++;
+    }
+
+    /**
+     * Settle a delivery (of this publisher) kept as unsettled, closing the links if it was the last one
+     * and the publisher is closing
+     *
+     * @param delivery  delivery to settle
+     */
+    public void settle(ProtonDelivery delivery) {
+
+        delivery.disposition(Accepted.getInstance(), true);
+        this.unsettled--;
+        this.closeIfSettled();
+    }
+
+    private void closeIfSettled() {
+
+        if (this.closing && (this.inFlight == 0) && (this.unsettled == 0)) {
+            this.close();
+        }
+    }
+
+    /**
+     * Number of opened senders
+     *
+     * @return
+     */
+    public int senders() {
+
+        int senders = 0;
+        if ((this.senderQoS01 != null) && this.senderQoS01.isOpen()) {
+            senders++;
+        }
+        if ((this.senderQoS2 != null) && this.senderQoS2.isOpen()) {
+            senders++;
+        }
+        return senders;
     }
 
     /**
@@ -31,22 +125,46 @@ public class AmqpPublisher {
      */
     public void close() {
 
-        if (this.senderQoS01.isOpen()) {
+        this.closing = false;
+
+        if ((this.senderQoS01 != null) && this.senderQoS01.isOpen()) {
             this.senderQoS01.close();
         }
 
-        if (this.senderQoS2.isOpen()) {
+        if ((this.senderQoS2 != null) && this.senderQoS2.isOpen()) {
             this.senderQoS2.close();
         }
     }
 
+    /**
+     * Close and detach the links as soon as all the in flight deliveries get a disposition, and all the
+     * unsettled ones are settled
+     */
+    public void closeWhenSettled() {
+
+        if ((this.inFlight == 0) && (this.unsettled == 0)) {
+            this.close();
+        } else {
+            this.closing = true;
+        }
+    }
+
     /**
      * If the publisher is opened
      * @return
      */
     public boolean isOpen() {
 
-        return (this.senderQoS01.isOpen() || this.senderQoS2.isOpen());
+        return ((this.senderQoS01 != null) && this.senderQoS01.isOpen()) ||
+                ((this.senderQoS2 != null) && this.senderQoS2.isOpen());
+    }
+
+    /**
+     * Publishing address, null for an anonymous relay publisher
+     * @return
+     */
+    public String address() {
+        return this.address;
     }
 
     /**
@@ -54,6 +172,10 @@ public class AmqpPublisher {
      * @return
      */
     public ProtonSender senderQoS01() {
+
+        if (this.senderQoS01 == null) {
+            this.senderQoS01 = this.senderFactory.apply(this.address);
+        }
         return this.senderQoS01;
     }
 
@@ -62,6 +184,43 @@ public class AmqpPublisher {
      * @return
      */
     public ProtonSender senderQoS2() {
+
+        if (this.senderQoS2 == null) {
+            this.senderQoS2 = this.senderFactory.apply(this.address);
+        }
         return this.senderQoS2;
     }
+
+    /**
+     * Number of deliveries sent but without a disposition yet
+     * @return
+     */
+    public int inFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Number of deliveries with a disposition but waiting for the local settlement
+     * @return
+     */
+    public int unsettled() {
+        return this.unsettled;
+    }
+
+    /**
+     * Last time the publisher was used (in ms)
+     * @return
+     */
+    public long lastUsed() {
+        return this.lastUsed;
+    }
+
+    /**
+     * Set the last time the publisher was used
+     *
+     * @param lastUsed  last time the publisher was used (in ms)
+     */
+    void lastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
 }
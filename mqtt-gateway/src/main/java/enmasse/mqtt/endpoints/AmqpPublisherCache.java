@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.endpoints;
+
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache of the AMQP publishers (one per topic) used by a bridge.
+ * It's bounded in size, evicting the least recently used publisher, and not used publishers
+ * are evicted after an idle timeout. The links of an evicted publisher are detached as soon as
+ * its in flight deliveries get a disposition.
+ * When the anonymous relay is used, just one publisher (with anonymous senders) is used for all the topics
+ */
+public class AmqpPublisherCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmqpPublisherCache.class);
+
+    private final Vertx vertx;
+    // factory for the senders (address -> sender, null address for anonymous relay)
+    private final Function<String, ProtonSender> senderFactory;
+    private final AmqpPublisherCacheOptions options;
+    private final boolean anonymousRelay;
+
+    // publishers in least recently used order (topic -> publisher)
+    private final LinkedHashMap<String, AmqpPublisher> publishers;
+    // the only publisher used when the anonymous relay is used
+    private AmqpPublisher anonymousPublisher;
+
+    private long idleTimer = -1;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param senderFactory factory for the senders (address -> sender, null address for anonymous relay)
+     * @param anonymousRelay    if the anonymous relay has to be used
+     * @param options   cache options
+     */
+    public AmqpPublisherCache(Vertx vertx, Function<String, ProtonSender> senderFactory, boolean anonymousRelay, AmqpPublisherCacheOptions options) {
+
+        this.vertx = vertx;
+        this.senderFactory = senderFactory;
+        this.anonymousRelay = anonymousRelay;
+        this.options = options;
+
+        this.publishers = new LinkedHashMap<String, AmqpPublisher>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AmqpPublisher> eldest) {
+
+                if (this.size() > AmqpPublisherCache.this.options.getMaxSize()) {
+                    AmqpPublisherCache.this.evict(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Open the cache, starting the idle publishers eviction
+     */
+    public void open() {
+
+        if (!this.anonymousRelay && (this.options.getIdleTimeout() > 0)) {
+            this.idleTimer = this.vertx.setPeriodic(Math.max(this.options.getIdleTimeout() / 2, 1), t -> this.evictIdle());
+        }
+    }
+
+    /**
+     * Get the publisher for the provided topic, creating it if it doesn't exist
+     *
+     * @param topic topic on which publishing
+     * @return  the publisher
+     */
+    public AmqpPublisher publisher(String topic) {
+
+        AmqpPublisher publisher;
+
+        if (this.anonymousRelay) {
+
+            if (this.anonymousPublisher == null) {
+                this.misses++;
+                this.anonymousPublisher = new AmqpPublisher(null, this.senderFactory);
+            } else {
+                this.hits++;
+            }
+            publisher = this.anonymousPublisher;
+
+        } else {
+
+            publisher = this.publishers.get(topic);
+            if (publisher == null) {
+                this.misses++;
+                publisher = new AmqpPublisher(topic, this.senderFactory);
+                this.publishers.put(topic, publisher);
+            } else {
+                this.hits++;
+            }
+        }
+
+        publisher.lastUsed(System.currentTimeMillis());
+        return publisher;
+    }
+
+    /**
+     * Close the cache, detaching the links of all the publishers
+     */
+    public void close() {
+
+        if (this.idleTimer != -1) {
+            this.vertx.cancelTimer(this.idleTimer);
+            this.idleTimer = -1;
+        }
+
+        for (AmqpPublisher publisher: this.publishers.values()) {
+            publisher.close();
+        }
+        this.publishers.clear();
+
+        if (this.anonymousPublisher != null) {
+            this.anonymousPublisher.close();
+            this.anonymousPublisher = null;
+        }
+    }
+
+    /**
+     * Evict the publishers not used since the idle timeout
+     */
+    private void evictIdle() {
+
+        long now = System.currentTimeMillis();
+
+        // least recently used publishers come first
+        Iterator<Map.Entry<String, AmqpPublisher>> iterator = this.publishers.entrySet().iterator();
+        while (iterator.hasNext()) {
+
+            Map.Entry<String, AmqpPublisher> entry = iterator.next();
+            if (now - entry.getValue().lastUsed() < this.options.getIdleTimeout()) {
+                break;
+            }
+            iterator.remove();
+            this.evict(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void evict(String topic, AmqpPublisher publisher) {
+
+        LOG.debug("Evicting AMQP publisher for {}", topic);
+        this.evictions++;
+        publisher.closeWhenSettled();
+    }
+
+    /**
+     * If the anonymous relay is used
+     *
+     * @return
+     */
+    public boolean isAnonymousRelay() {
+        return this.anonymousRelay;
+    }
+
+    /**
+     * Number of publishers in the cache
+     *
+     * @return
+     */
+    public int size() {
+        return this.anonymousRelay ? ((this.anonymousPublisher != null) ? 1 : 0) : this.publishers.size();
+    }
+
+    /**
+     * Number of opened senders by the publishers in the cache
+     *
+     * @return
+     */
+    public int senders() {
+
+        if (this.anonymousRelay) {
+            return (this.anonymousPublisher != null) ? this.anonymousPublisher.senders() : 0;
+        }
+
+        int senders = 0;
+        for (AmqpPublisher publisher: this.publishers.values()) {
+            senders += publisher.senders();
+        }
+        return senders;
+    }
+
+    /**
+     * Number of requests served by a publisher already in the cache
+     *
+     * @return
+     */
+    public long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Number of requests which needed a new publisher
+     *
+     * @return
+     */
+    public long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Number of publishers evicted (for size or idle timeout)
+     *
+     * @return
+     */
+    public long evictions() {
+        return this.evictions;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.endpoints;
+
+/**
+ * Options for the cache of the AMQP publishers used by a bridge
+ */
+public class AmqpPublisherCacheOptions {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000; // in ms
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private boolean anonymousRelay;
+
+    /**
+     * Max number of publishers (one per topic) in the cache
+     *
+     * @return
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Set the max number of publishers (one per topic) in the cache
+     *
+     * @param maxSize   max number of publishers
+     * @return  current AmqpPublisherCacheOptions instance
+     */
+    public AmqpPublisherCacheOptions setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Time after which a not used publisher is evicted
+     *
+     * @return
+     */
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * Set the time after which a not used publisher is evicted (0 for disabling the idle eviction)
+     *
+     * @param idleTimeout   idle timeout (in ms)
+     * @return  current AmqpPublisherCacheOptions instance
+     */
+    public AmqpPublisherCacheOptions setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * If an anonymous relay publisher has to be used when the messaging service supports it
+     *
+     * @return
+     */
+    public boolean isAnonymousRelay() {
+        return this.anonymousRelay;
+    }
+
+    /**
+     * Set if an anonymous relay publisher has to be used when the messaging service supports it.
+     * NOTE : addresses reachable through link routes only (i.e. topics on brokers) can't be used with it
+     *
+     * @param anonymousRelay    if the anonymous relay has to be used
+     * @return  current AmqpPublisherCacheOptions instance
+     */
+    public AmqpPublisherCacheOptions setAnonymousRelay(boolean anonymousRelay) {
+        this.anonymousRelay = anonymousRelay;
+        return this;
+    }
+}
@@ -9,16 +9,15 @@ import enmasse.mqtt.messages.AmqpPublishMessage;
 import enmasse.mqtt.messages.AmqpPubrelMessage;
 import enmasse.mqtt.messages.AmqpSubscriptionsMessage;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.proton.ProtonDelivery;
 import io.vertx.proton.ProtonQoS;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
 import org.apache.qpid.proton.message.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Receiver endpoint
  */
@@ -29,6 +28,7 @@ public class AmqpReceiverEndpoint {
     public static final String CLIENT_CONTROL_ENDPOINT_TEMPLATE = "$mqtt.to.%s.control";
     public static final String CLIENT_PUBLISH_ENDPOINT_TEMPLATE = "$mqtt.to.%s.publish";
 
+    private Vertx vertx;
     private AmqpReceiver receiver;
 
     // handler called when AMQP_SUBSCRIPTIONS is received
@@ -37,15 +37,17 @@ public class AmqpReceiverEndpoint {
     private Handler<AmqpPublishData> publishHandler;
     // handler called when AMQP_PUBREL is received
     private Handler<AmqpPubrelMessage> pubrelHandler;
-    // all delivery for received messages if they need settlement (messageId -> delivery)
-    private Map<Object, ProtonDelivery> deliveries;
+    // all delivery for received messages if they need settlement, settled in batches
+    private AmqpAckCoalescer deliveries;
 
     /**
      * Constructor
      *
+     * @param vertx Vert.x instance
      * @param receiver  receiver instance related to unique client addresses
      */
-    public AmqpReceiverEndpoint(AmqpReceiver receiver) {
+    public AmqpReceiverEndpoint(Vertx vertx, AmqpReceiver receiver) {
+        this.vertx = vertx;
         this.receiver = receiver;
     }
 
@@ -94,7 +96,7 @@ public class AmqpReceiverEndpoint {
      */
     private void messageHandler(ProtonDelivery delivery, Message message) {
 
-        LOG.info("Received {}", message);
+        LOG.debug("Received {}", message);
 
         // messages without subject are just AMQP_PUBLISH messages
         if (message.getSubject() == null) {
@@ -106,7 +108,11 @@ public class AmqpReceiverEndpoint {
             // settlement depends on the QoS levels that could be different from the current one in the
             // publish message. The AMQP bridge checks the granted QoS as well (MQTT 3.1.1)
             if (!delivery.remotelySettled()) {
-                this.deliveries.put(amqpPublishData.messageId(), delivery);
+                this.deliveries.add(amqpPublishData.messageId(), delivery);
+                // QoS 0, nothing to wait from the MQTT client
+                if (amqpPublishData.isAcknowledged()) {
+                    this.deliveries.complete(amqpPublishData.messageId());
+                }
             }
 
         } else {
@@ -122,8 +128,14 @@ public class AmqpReceiverEndpoint {
 
                 case AmqpPubrelMessage.AMQP_SUBJECT:
 
+                    // only an MQTT message identifier can be acknowledged by the MQTT client
+                    if (!(message.getMessageId() instanceof Integer)) {
+                        LOG.warn("AMQP_PUBREL with invalid message identifier [{}]", message.getMessageId());
+                        delivery.disposition(new Rejected(), true);
+                        break;
+                    }
                     if (!delivery.remotelySettled()) {
-                        this.deliveries.put(message.getMessageId(), delivery);
+                        this.deliveries.add((Integer) message.getMessageId(), delivery);
                     }
                     this.handlePubrel(AmqpPubrelMessage.from(message));
 
@@ -139,7 +151,7 @@ public class AmqpReceiverEndpoint {
      */
     public void openControl() {
 
-        this.deliveries = new HashMap<>();
+        this.deliveries = new AmqpAckCoalescer(this.vertx);
 
         // attach receiver link on the $mqtt.to.<client-id>.control address for receiving messages (from SS)
         // define handler for received messages
@@ -175,23 +187,30 @@ public class AmqpReceiverEndpoint {
             this.receiver.close();
         }
 
-        this.deliveries.clear();
+        this.deliveries.close();
     }
 
     /**
-     * Settle the delivery for a received message
+     * Settle the delivery for a received message, it happens in a batch on the next tick
      *
      * @param messageId message identifier to settle
      */
-    public void settle(Object messageId) {
+    public void settle(int messageId) {
 
-        if (this.deliveries.containsKey(messageId)) {
-            ProtonDelivery delivery = this.deliveries.remove(messageId);
-            delivery.disposition(Accepted.getInstance(), true);
-            LOG.info("AMQP message [{}] settled", messageId);
+        if (this.deliveries.complete(messageId)) {
+            LOG.debug("AMQP message [{}] completed", messageId);
         }
     }
 
+    /**
+     * Number of deliveries waiting for settlement
+     *
+     * @return
+     */
+    public int pendingDeliveries() {
+        return (this.deliveries != null) ? this.deliveries.pending() : 0;
+    }
+
     /**
      * Used for calling the session handler when AMQP_SUBSCRIPTIONS is received
      *
@@ -5,6 +5,11 @@
 
 package enmasse.mqtt.messages;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.apache.qpid.proton.amqp.Binary;
+
 /**
  * Helper class for AMQP side
  */
@@ -68,4 +73,32 @@ public final class AmqpHelper {
 
         return address.substring(address.indexOf("$mqtt.") + "$mqtt.".length(), address.indexOf(".pubrel"));
     }
+
+    /**
+     * Return an AMQP binary with the payload content, sharing the same
+     * byte array (without copy) when the payload is backed by one
+     *
+     * @param payload   the payload
+     * @return  the AMQP binary
+     */
+    public static Binary toBinary(Buffer payload) {
+
+        ByteBuf byteBuf = payload.getByteBuf();
+        if (byteBuf.hasArray()) {
+            return new Binary(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes());
+        } else {
+            return new Binary(payload.getBytes());
+        }
+    }
+
+    /**
+     * Return a payload wrapping the AMQP binary content (without copy)
+     *
+     * @param binary    the AMQP binary
+     * @return  the payload
+     */
+    public static Buffer toBuffer(Binary binary) {
+
+        return Buffer.buffer(Unpooled.wrappedBuffer(binary.getArray(), binary.getArrayOffset(), binary.getLength()));
+    }
 }
@@ -8,7 +8,6 @@ package enmasse.mqtt.messages;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.proton.ProtonHelper;
-import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
 import org.apache.qpid.proton.amqp.messaging.Data;
@@ -25,8 +24,8 @@ import java.util.Map;
  */
 public class AmqpPublishMessage {
 
-    private static final String AMQP_RETAIN_ANNOTATION = "x-opt-retain-message";
-    private static final String AMQP_QOS_ANNOTATION = "x-opt-mqtt-qos";
+    private static final Symbol AMQP_RETAIN_ANNOTATION = Symbol.valueOf("x-opt-retain-message");
+    private static final Symbol AMQP_QOS_ANNOTATION = Symbol.valueOf("x-opt-mqtt-qos");
 
     private final Object messageId;
     private final MqttQoS qos;
@@ -78,12 +77,14 @@ public class AmqpPublishMessage {
 
         } else {
 
-            if (messageAnnotations.getValue().containsKey(Symbol.valueOf(AMQP_RETAIN_ANNOTATION))) {
-                isRetain = (boolean) messageAnnotations.getValue().get(Symbol.valueOf(AMQP_RETAIN_ANNOTATION));
+            Object retain = messageAnnotations.getValue().get(AMQP_RETAIN_ANNOTATION);
+            if (retain != null) {
+                isRetain = (boolean) retain;
             }
 
-            if (messageAnnotations.getValue().containsKey(Symbol.valueOf(AMQP_QOS_ANNOTATION))) {
-                int value = (int) messageAnnotations.getValue().get(Symbol.valueOf(AMQP_QOS_ANNOTATION));
+            Object qosValue = messageAnnotations.getValue().get(AMQP_QOS_ANNOTATION);
+            if (qosValue != null) {
+                int value = (int) qosValue;
                 qos = MqttQoS.valueOf(value);
             } else {
 
@@ -112,7 +113,7 @@ public class AmqpPublishMessage {
         Section section = message.getBody();
         if ((section != null) && (section instanceof Data)) {
 
-            Buffer payload = Buffer.buffer(((Data) section).getValue().getArray());
+            Buffer payload = AmqpHelper.toBuffer(((Data) section).getValue());
             return new AmqpPublishMessage(message.getMessageId(), qos, isDup, isRetain, topic, payload);
 
         } else {
@@ -131,9 +132,10 @@ public class AmqpPublishMessage {
 
         message.setMessageId(this.messageId);
 
-        Map<Symbol, Object> map = new HashMap<>();
-        map.put(Symbol.valueOf(AMQP_RETAIN_ANNOTATION), this.isRetain);
-        map.put(Symbol.valueOf(AMQP_QOS_ANNOTATION), this.qos.value());
+        // sized for the two annotations
+        Map<Symbol, Object> map = new HashMap<>(4);
+        map.put(AMQP_RETAIN_ANNOTATION, this.isRetain);
+        map.put(AMQP_QOS_ANNOTATION, this.qos.value());
         MessageAnnotations messageAnnotations = new MessageAnnotations(map);
         message.setMessageAnnotations(messageAnnotations);
 
@@ -147,7 +149,7 @@ public class AmqpPublishMessage {
 
         // the payload could be null (or empty)
         if (this.payload != null)
-            message.setBody(new Data(new Binary(this.payload.getBytes())));
+            message.setBody(new Data(AmqpHelper.toBinary(this.payload)));
 
         return message;
     }
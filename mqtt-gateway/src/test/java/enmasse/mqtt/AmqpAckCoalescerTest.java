@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.endpoints.AmqpAckCoalescer;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.proton.ProtonDelivery;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tests related to the coalescer of the AMQP deliveries settlement
+ */
+@RunWith(VertxUnitRunner.class)
+public class AmqpAckCoalescerTest {
+
+    private static final int DELIVERIES = 1000;
+
+    private Vertx vertx;
+    // the coalescer has to be used always from the same context (as the bridge does)
+    private Context context;
+    private AmqpAckCoalescer coalescer;
+
+    // settled deliveries as [batch, sequence] in settlement order
+    private List<long[]> settlements;
+
+    @Before
+    public void before() {
+
+        this.vertx = Vertx.vertx();
+        this.context = this.vertx.getOrCreateContext();
+        this.coalescer = new AmqpAckCoalescer(this.vertx);
+        this.settlements = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void after(TestContext context) {
+
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void randomAckInterleavings(TestContext context) {
+
+        Random random = new Random();
+
+        List<Integer> messageIds = new ArrayList<>();
+        this.runOnContext(context, () -> {
+
+            for (int i = 1; i <= DELIVERIES; i++) {
+                this.coalescer.add(i, this.delivery(i));
+                messageIds.add(i);
+            }
+            Collections.shuffle(messageIds, random);
+        });
+
+        // acknowledgements in random order, spread on more event loop ticks
+        int index = 0;
+        while (index < DELIVERIES) {
+
+            int from = index;
+            int to = Math.min(DELIVERIES, index + 1 + random.nextInt(50));
+            this.runOnContext(context, () -> {
+                for (int i = from; i < to; i++) {
+                    context.assertTrue(this.coalescer.complete(messageIds.get(i)));
+                }
+            });
+            index = to;
+        }
+
+        this.waitFor(context, () -> this.settlements.size() == DELIVERIES);
+
+        this.runOnContext(context, () -> {
+
+            context.assertEquals(0, this.coalescer.pending());
+            context.assertEquals((long) DELIVERIES, this.coalescer.settled());
+            // settlements are coalesced
+            context.assertTrue(this.coalescer.batches() < DELIVERIES);
+
+            // every delivery settled just once, in the acknowledgement order
+            boolean[] settled = new boolean[DELIVERIES + 1];
+            for (int i = 0; i < this.settlements.size(); i++) {
+                long[] settlement = this.settlements.get(i);
+                context.assertFalse(settled[(int) settlement[1]]);
+                settled[(int) settlement[1]] = true;
+                context.assertEquals((long) messageIds.get(i), settlement[1]);
+            }
+        });
+    }
+
+    @Test
+    public void reverseAckSingleBatch(TestContext context) {
+
+        this.runOnContext(context, () -> {
+
+            for (int i = 1; i <= 10; i++) {
+                this.coalescer.add(i, this.delivery(i));
+            }
+            for (int i = 10; i >= 1; i--) {
+                this.coalescer.complete(i);
+            }
+            // nothing settled until the next tick
+            context.assertTrue(this.settlements.isEmpty());
+            context.assertEquals(10, this.coalescer.pending());
+        });
+
+        this.waitFor(context, () -> this.settlements.size() == 10);
+
+        this.runOnContext(context, () -> {
+
+            context.assertEquals(1L, this.coalescer.batches());
+            for (int i = 0; i < 10; i++) {
+                context.assertEquals((long) 10 - i, this.settlements.get(i)[1]);
+            }
+        });
+    }
+
+    @Test
+    public void oldestNotAcknowledged(TestContext context) {
+
+        this.runOnContext(context, () -> {
+
+            for (int i = 1; i <= 10; i++) {
+                this.coalescer.add(i, this.delivery(i));
+            }
+            for (int i = 2; i <= 10; i++) {
+                this.coalescer.complete(i);
+            }
+        });
+
+        // the oldest delivery isn't acknowledged yet, the ones after it are settled anyway
+        this.waitFor(context, () -> this.settlements.size() == 9);
+
+        this.runOnContext(context, () -> {
+
+            context.assertEquals(1, this.coalescer.pending());
+            context.assertEquals(1L, this.coalescer.batches());
+
+            this.coalescer.complete(1);
+        });
+
+        this.waitFor(context, () -> this.settlements.size() == 10);
+
+        this.runOnContext(context, () -> {
+
+            context.assertEquals(0, this.coalescer.pending());
+            context.assertEquals(2L, this.coalescer.batches());
+            context.assertEquals(1L, this.settlements.get(9)[1]);
+        });
+    }
+
+    @Test
+    public void messageIdReused(TestContext context) {
+
+        this.runOnContext(context, () -> {
+
+            this.coalescer.add(1, this.delivery(1));
+            context.assertTrue(this.coalescer.complete(1));
+            // the same MQTT message identifier can be used again just after the acknowledgement
+            this.coalescer.add(1, this.delivery(2));
+            context.assertTrue(this.coalescer.complete(1));
+            context.assertFalse(this.coalescer.complete(1));
+        });
+
+        this.waitFor(context, () -> this.settlements.size() == 2);
+
+        this.runOnContext(context, () -> context.assertEquals(0, this.coalescer.pending()));
+    }
+
+    @Test
+    public void close(TestContext context) {
+
+        this.runOnContext(context, () -> {
+
+            for (int i = 1; i <= 10; i++) {
+                this.coalescer.add(i, this.delivery(i));
+            }
+            this.coalescer.complete(1);
+            this.coalescer.close();
+            context.assertEquals(0, this.coalescer.pending());
+        });
+
+        // the scheduled batch doesn't settle anything after close
+        this.runOnContext(context, () -> {
+            context.assertTrue(this.settlements.isEmpty());
+            context.assertEquals(0L, this.coalescer.settled());
+        });
+    }
+
+    /**
+     * Create a delivery tracking its settlement
+     *
+     * @param sequence  receiving order of the delivery
+     * @return  the delivery
+     */
+    private ProtonDelivery delivery(long sequence) {
+
+        return (ProtonDelivery) Proxy.newProxyInstance(ProtonDelivery.class.getClassLoader(), new Class<?>[] { ProtonDelivery.class },
+                (proxy, method, args) -> {
+
+                    if (method.getName().equals("disposition")) {
+                        if ((args[0] == Accepted.getInstance()) && ((boolean) args[1])) {
+                            this.settlements.add(new long[] { this.coalescer.batches(), sequence });
+                        }
+                        return proxy;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private void runOnContext(TestContext context, Runnable runnable) {
+
+        Async async = context.async();
+        this.context.runOnContext(v -> {
+            runnable.run();
+            async.complete();
+        });
+        async.awaitSuccess(10000);
+    }
+
+    private void waitFor(TestContext context, BooleanSupplier condition) {
+
+        Async async = context.async();
+        this.vertx.setPeriodic(10, timer -> {
+            if (condition.getAsBoolean()) {
+                this.vertx.cancelTimer(timer);
+                async.complete();
+            }
+        });
+        async.awaitSuccess(10000);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.proton.ProtonClientOptions;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonServer;
+import io.vertx.proton.ProtonSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tests related to the AMQP connection pool shared by the AMQP bridges
+ */
+@RunWith(VertxUnitRunner.class)
+public class AmqpConnectionPoolTest {
+
+    private static final int MAX_CONNECTIONS = 2;
+    private static final int SESSIONS = 20;
+
+    private Vertx vertx;
+    // the pool has to be used always from the same context (as the verticle does)
+    private Context clientContext;
+    private volatile Context serverContext;
+    private ProtonServer server;
+
+    private AtomicInteger acceptedConnections = new AtomicInteger();
+    private AtomicInteger openedReceivers = new AtomicInteger();
+    private AtomicInteger closedSessions = new AtomicInteger();
+    // addresses of the links detached explicitly or ending with their session
+    private Set<String> closedAddresses = ConcurrentHashMap.newKeySet();
+    private Map<ProtonSession, List<String>> sessionAddresses = new ConcurrentHashMap<>();
+    private List<ProtonConnection> connections = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void before(TestContext context) {
+
+        this.vertx = Vertx.vertx();
+        this.clientContext = this.vertx.getOrCreateContext();
+
+        // server stand-in counting the accepted connections and the links attached on them
+        this.server = ProtonServer.create(this.vertx);
+        this.server.connectHandler(connection -> {
+
+            this.acceptedConnections.incrementAndGet();
+            this.connections.add(connection);
+            this.serverContext = this.vertx.getOrCreateContext();
+
+            connection.sessionOpenHandler(session -> {
+                session.closeHandler(ar -> {
+                    List<String> addresses = this.sessionAddresses.remove(session);
+                    if (addresses != null) {
+                        this.closedAddresses.addAll(addresses);
+                    }
+                    this.closedSessions.incrementAndGet();
+                    session.close();
+                });
+                session.open();
+            });
+            connection.receiverOpenHandler(receiver -> {
+                this.openedReceivers.incrementAndGet();
+                this.sessionAddresses.computeIfAbsent(receiver.getSession(), session -> new CopyOnWriteArrayList<>())
+                        .add(receiver.getRemoteTarget().getAddress());
+                receiver.closeHandler(ar -> {
+                    this.closedAddresses.add(receiver.getRemoteTarget().getAddress());
+                    receiver.close();
+                });
+                receiver.setTarget(receiver.getRemoteTarget()).open();
+            });
+            connection.closeHandler(ar -> connection.close());
+            connection.open();
+
+        }).listen(0, "localhost", context.asyncAssertSuccess());
+    }
+
+    @After
+    public void after(TestContext context) {
+
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void sharedConnections(TestContext context) {
+
+        Async async = context.async();
+
+        this.clientContext.runOnContext(v -> {
+
+            AmqpConnectionPool pool =
+                    new AmqpConnectionPool(this.vertx, "localhost", this.server.actualPort(), MAX_CONNECTIONS, new ProtonClientOptions());
+
+            List<AmqpPooledSession> sessions = new ArrayList<>();
+
+            for (int i = 0; i < SESSIONS; i++) {
+
+                pool.acquire(null, null, context.asyncAssertSuccess(session -> {
+
+                    sessions.add(session);
+                    session.createSender("client-" + sessions.size()).open();
+
+                    if (sessions.size() == SESSIONS) {
+                        context.assertEquals(MAX_CONNECTIONS, pool.size());
+                        async.complete();
+                    }
+                }));
+            }
+        });
+
+        async.awaitSuccess();
+
+        Async attached = context.async();
+        this.waitFor(() -> this.openedReceivers.get() == SESSIONS, attached);
+        attached.awaitSuccess();
+
+        context.assertEquals(MAX_CONNECTIONS, this.acceptedConnections.get());
+    }
+
+    @Test
+    public void releaseDetachesOnlyClientLinks(TestContext context) {
+
+        Async async = context.async();
+
+        AmqpConnectionPool[] pool = new AmqpConnectionPool[1];
+        List<AmqpPooledSession> sessions = new ArrayList<>();
+
+        this.clientContext.runOnContext(v -> {
+
+            pool[0] = new AmqpConnectionPool(this.vertx, "localhost", this.server.actualPort(), 1, new ProtonClientOptions());
+
+            for (int i = 0; i < 3; i++) {
+
+                pool[0].acquire(null, null, context.asyncAssertSuccess(session -> {
+
+                    sessions.add(session);
+                    // two links per client
+                    session.createSender("client-" + sessions.size() + "/a").open();
+                    session.createSender("client-" + sessions.size() + "/b").open();
+
+                    if (sessions.size() == 3) {
+                        async.complete();
+                    }
+                }));
+            }
+        });
+
+        async.awaitSuccess();
+
+        Async attached = context.async();
+        this.waitFor(() -> this.openedReceivers.get() == 6, attached);
+        attached.awaitSuccess();
+
+        // the first client disconnects
+        this.clientContext.runOnContext(v -> sessions.get(0).release());
+
+        Async released = context.async();
+        this.waitFor(() -> this.closedSessions.get() == 1 && this.closedAddresses.size() == 2, released);
+        released.awaitSuccess();
+
+        Async check = context.async();
+        this.clientContext.runOnContext(v -> {
+
+            // the other clients are still using the same connection
+            context.assertEquals(1, this.acceptedConnections.get());
+            context.assertEquals(1, pool[0].size());
+            // just the links of the first client are detached
+            context.assertEquals(new HashSet<>(Arrays.asList("client-1/a", "client-1/b")), new HashSet<>(this.closedAddresses));
+
+            sessions.get(1).release();
+            sessions.get(2).release();
+
+            // no more sessions, connection closed
+            context.assertEquals(0, pool[0].size());
+            check.complete();
+        });
+    }
+
+    @Test
+    public void connectionLostNotifiesSessions(TestContext context) {
+
+        Async async = context.async(2);
+        Async acquired = context.async(2);
+
+        this.clientContext.runOnContext(v -> {
+
+            AmqpConnectionPool pool =
+                    new AmqpConnectionPool(this.vertx, "localhost", this.server.actualPort(), 1, new ProtonClientOptions());
+
+            for (int i = 0; i < 2; i++) {
+
+                pool.acquire(null, null, context.asyncAssertSuccess(session -> {
+
+                    session.closeHandler(s -> {
+                        context.assertEquals(0, pool.size());
+                        async.countDown();
+                    });
+                    acquired.countDown();
+                }));
+            }
+        });
+
+        acquired.awaitSuccess();
+
+        Async connected = context.async();
+        this.waitFor(() -> this.connections.size() == 1, connected);
+        connected.awaitSuccess();
+
+        // the remote closes the shared connection
+        this.serverContext.runOnContext(v -> this.connections.get(0).close());
+    }
+
+    @Test
+    public void connectionFailure(TestContext context) {
+
+        this.clientContext.runOnContext(v -> {
+
+            // nothing listening on this port
+            AmqpConnectionPool pool =
+                    new AmqpConnectionPool(this.vertx, "localhost", 1, MAX_CONNECTIONS, new ProtonClientOptions());
+
+            pool.acquire(null, null, context.asyncAssertFailure(t -> {
+                context.assertEquals(0, pool.size());
+            }));
+        });
+    }
+
+    private void waitFor(BooleanSupplier condition, Async async) {
+
+        this.vertx.setPeriodic(10, timer -> {
+            if (condition.getAsBoolean()) {
+                this.vertx.cancelTimer(timer);
+                async.complete();
+            }
+        });
+    }
+}
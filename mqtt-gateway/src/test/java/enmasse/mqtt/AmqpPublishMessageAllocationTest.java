@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.messages.AmqpPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.buffer.Buffer;
+import org.apache.qpid.proton.message.Message;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests related to the memory allocated converting AMQP_PUBLISH messages from/to raw AMQP messages
+ */
+public class AmqpPublishMessageAllocationTest {
+
+    private static final int PAYLOAD_SIZE = 64 * 1024;
+    private static final int MESSAGES = 1000;
+    // the payload isn't copied anymore, so just the message "envelope" is allocated
+    private static final long MAX_ALLOCATED_BYTES_PER_MESSAGE = PAYLOAD_SIZE / 8;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void before() {
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        this.threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(this.threadMXBean.isThreadAllocatedMemorySupported());
+        this.threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void toAmqpPayloadNotCopied() {
+
+        byte[] bytes = new byte[PAYLOAD_SIZE];
+        Arrays.fill(bytes, (byte) 'a');
+        AmqpPublishMessage amqpPublishMessage =
+                new AmqpPublishMessage(1, MqttQoS.AT_LEAST_ONCE, false, false, "mytopic", Buffer.buffer(bytes));
+
+        // warm up
+        for (int i = 0; i < MESSAGES; i++) {
+            amqpPublishMessage.toAmqp();
+        }
+
+        long allocated = this.allocatedBytes();
+        for (int i = 0; i < MESSAGES; i++) {
+            amqpPublishMessage.toAmqp();
+        }
+        long perMessage = (this.allocatedBytes() - allocated) / MESSAGES;
+
+        assertTrue(String.format("%d bytes allocated per message", perMessage), perMessage < MAX_ALLOCATED_BYTES_PER_MESSAGE);
+    }
+
+    @Test
+    public void fromPayloadNotCopied() {
+
+        byte[] bytes = new byte[PAYLOAD_SIZE];
+        Arrays.fill(bytes, (byte) 'a');
+        Message message =
+                new AmqpPublishMessage(1, MqttQoS.AT_LEAST_ONCE, false, false, "mytopic", Buffer.buffer(bytes)).toAmqp();
+
+        // warm up
+        for (int i = 0; i < MESSAGES; i++) {
+            AmqpPublishMessage.from(message);
+        }
+
+        long allocated = this.allocatedBytes();
+        for (int i = 0; i < MESSAGES; i++) {
+            AmqpPublishMessage.from(message);
+        }
+        long perMessage = (this.allocatedBytes() - allocated) / MESSAGES;
+
+        assertTrue(String.format("%d bytes allocated per message", perMessage), perMessage < MAX_ALLOCATED_BYTES_PER_MESSAGE);
+    }
+
+    @Test
+    public void roundTrip() {
+
+        byte[] bytes = new byte[PAYLOAD_SIZE];
+        Arrays.fill(bytes, (byte) 'a');
+        Buffer payload = Buffer.buffer(bytes);
+
+        AmqpPublishMessage amqpPublishMessage =
+                AmqpPublishMessage.from(new AmqpPublishMessage(1, MqttQoS.EXACTLY_ONCE, false, true, "mytopic", payload).toAmqp());
+
+        assertEquals(MqttQoS.EXACTLY_ONCE, amqpPublishMessage.qos());
+        assertTrue(amqpPublishMessage.isRetain());
+        assertEquals("mytopic", amqpPublishMessage.topic());
+        assertEquals(payload, amqpPublishMessage.payload());
+    }
+
+    private long allocatedBytes() {
+        return this.threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
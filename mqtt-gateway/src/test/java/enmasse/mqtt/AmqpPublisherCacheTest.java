@@ -0,0 +1,317 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.endpoints.AmqpPublishEndpoint;
+import enmasse.mqtt.endpoints.AmqpPublisherCache;
+import enmasse.mqtt.endpoints.AmqpPublisherCacheOptions;
+import enmasse.mqtt.messages.AmqpPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.proton.ProtonClient;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonServer;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tests related to the cache of the AMQP publishers on topics
+ */
+@RunWith(VertxUnitRunner.class)
+public class AmqpPublisherCacheTest {
+
+    private static final int TOPICS = 2000;
+
+    private Vertx vertx;
+    // the endpoint has to be used always from the same context (as the bridge does)
+    private Context clientContext;
+    private ProtonServer server;
+    private ProtonConnection connection;
+
+    private AtomicInteger attachedLinks = new AtomicInteger();
+    private AtomicInteger detachedLinks = new AtomicInteger();
+    private AtomicInteger receivedMessages = new AtomicInteger();
+    private Set<String> targetAddresses = ConcurrentHashMap.newKeySet();
+    private Set<String> messageAddresses = ConcurrentHashMap.newKeySet();
+    // if the server stand-in settles the deliveries, or accepts them leaving them unsettled
+    private boolean settle = true;
+
+    @After
+    public void after(TestContext context) {
+
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void sizeEviction(TestContext context) {
+
+        this.setup(context, false);
+
+        AmqpPublisherCacheOptions options = new AmqpPublisherCacheOptions()
+                .setMaxSize(100)
+                .setIdleTimeout(0);
+
+        AmqpPublishEndpoint endpoint = this.createEndpoint(context, false, options);
+
+        this.publish(context, endpoint, "mytopic/", TOPICS);
+
+        this.waitFor(context, () -> this.receivedMessages.get() == TOPICS);
+        this.waitFor(context, () -> this.attachedLinks.get() - this.detachedLinks.get() == 100);
+
+        Async check = context.async();
+        this.clientContext.runOnContext(v -> {
+
+            AmqpPublisherCache cache = endpoint.publishers();
+            context.assertEquals(100, cache.size());
+            context.assertEquals((long) TOPICS, cache.misses());
+            context.assertEquals(0L, cache.hits());
+            context.assertEquals((long) TOPICS - 100, cache.evictions());
+            context.assertEquals(TOPICS, this.targetAddresses.size());
+
+            // the most recently used topics are still in the cache
+            this.publish(context, endpoint, "mytopic/", TOPICS - 10, TOPICS);
+            context.assertEquals(10L, cache.hits());
+            context.assertEquals((long) TOPICS - 100, cache.evictions());
+
+            endpoint.close();
+            check.complete();
+        });
+        check.awaitSuccess();
+
+        this.waitFor(context, () -> this.attachedLinks.get() == this.detachedLinks.get());
+    }
+
+    @Test
+    public void idleEviction(TestContext context) {
+
+        this.setup(context, false);
+
+        AmqpPublisherCacheOptions options = new AmqpPublisherCacheOptions()
+                .setIdleTimeout(200);
+
+        AmqpPublishEndpoint endpoint = this.createEndpoint(context, false, options);
+
+        this.publish(context, endpoint, "mytopic/", 50);
+
+        this.waitFor(context, () -> this.receivedMessages.get() == 50);
+        this.waitFor(context, () -> (this.attachedLinks.get() == 50) && (this.detachedLinks.get() == 50));
+
+        Async check = context.async();
+        this.clientContext.runOnContext(v -> {
+
+            AmqpPublisherCache cache = endpoint.publishers();
+            context.assertEquals(0, cache.size());
+            context.assertEquals(50L, cache.evictions());
+            endpoint.close();
+            check.complete();
+        });
+    }
+
+    @Test
+    public void unsettledNotEvicted(TestContext context) {
+
+        this.settle = false;
+        this.setup(context, false);
+
+        AmqpPublisherCacheOptions options = new AmqpPublisherCacheOptions()
+                .setIdleTimeout(200);
+
+        AmqpPublishEndpoint endpoint = this.createEndpoint(context, false, options);
+
+        Async published = context.async();
+        this.clientContext.runOnContext(v -> {
+            this.publish(context, endpoint, "mytopic/", 0, 10, MqttQoS.EXACTLY_ONCE);
+            published.complete();
+        });
+        published.awaitSuccess();
+
+        this.waitFor(context, () -> this.receivedMessages.get() == 10);
+
+        // evicted from the cache, but the links stay attached until the deliveries are settled on PUBREL
+        Async evicted = context.async();
+        this.vertx.setTimer(1000, t -> this.clientContext.runOnContext(v -> {
+
+            context.assertEquals(0, endpoint.publishers().size());
+            context.assertEquals(10L, endpoint.publishers().evictions());
+            context.assertEquals(10, endpoint.pendingDeliveries());
+            context.assertEquals(0, this.detachedLinks.get());
+
+            for (int i = 0; i < 10; i++) {
+                endpoint.settle(i);
+            }
+            context.assertEquals(0, endpoint.pendingDeliveries());
+            evicted.complete();
+        }));
+        evicted.awaitSuccess();
+
+        this.waitFor(context, () -> this.detachedLinks.get() == 10);
+
+        Async check = context.async();
+        this.clientContext.runOnContext(v -> {
+            endpoint.close();
+            check.complete();
+        });
+    }
+
+    @Test
+    public void anonymousRelay(TestContext context) {
+
+        this.setup(context, true);
+
+        AmqpPublisherCacheOptions options = new AmqpPublisherCacheOptions()
+                .setAnonymousRelay(true);
+
+        AmqpPublishEndpoint endpoint = this.createEndpoint(context, true, options);
+
+        this.publish(context, endpoint, "mytopic/", TOPICS);
+
+        this.waitFor(context, () -> this.receivedMessages.get() == TOPICS);
+
+        Async check = context.async();
+        this.clientContext.runOnContext(v -> {
+
+            AmqpPublisherCache cache = endpoint.publishers();
+            context.assertTrue(cache.isAnonymousRelay());
+            context.assertEquals(1, cache.size());
+            context.assertEquals(1L, cache.misses());
+            context.assertEquals((long) TOPICS - 1, cache.hits());
+
+            // just one anonymous link, messages carry the topic as address
+            context.assertEquals(1, this.attachedLinks.get());
+            context.assertTrue(this.targetAddresses.isEmpty());
+            context.assertEquals(TOPICS, this.messageAddresses.size());
+
+            endpoint.close();
+            check.complete();
+        });
+    }
+
+    /**
+     * Start the server stand-in and connect to it
+     *
+     * @param context   test context
+     * @param anonymousRelay    if the server offers the anonymous relay capability
+     */
+    private void setup(TestContext context, boolean anonymousRelay) {
+
+        this.vertx = Vertx.vertx();
+        this.clientContext = this.vertx.getOrCreateContext();
+
+        Async listening = context.async();
+
+        this.server = ProtonServer.create(this.vertx);
+        this.server.connectHandler(connection -> {
+
+            if (anonymousRelay) {
+                connection.setOfferedCapabilities(new Symbol[] { Symbol.valueOf("ANONYMOUS-RELAY") });
+            }
+            connection.sessionOpenHandler(session -> session.open());
+            connection.receiverOpenHandler(receiver -> {
+
+                this.attachedLinks.incrementAndGet();
+                if (receiver.getRemoteTarget().getAddress() != null) {
+                    this.targetAddresses.add(receiver.getRemoteTarget().getAddress());
+                }
+
+                receiver.closeHandler(ar -> {
+                    this.detachedLinks.incrementAndGet();
+                    receiver.close();
+                });
+                receiver.setAutoAccept(this.settle);
+                receiver.handler((delivery, message) -> {
+                    if (!this.settle) {
+                        delivery.disposition(Accepted.getInstance(), false);
+                    }
+                    this.messageAddresses.add(message.getAddress());
+                    this.receivedMessages.incrementAndGet();
+                });
+                receiver.setTarget(receiver.getRemoteTarget()).open();
+            });
+            connection.open();
+
+        }).listen(0, "localhost", context.asyncAssertSuccess(s -> listening.complete()));
+
+        listening.awaitSuccess();
+
+        Async connected = context.async();
+        this.clientContext.runOnContext(v -> {
+
+            ProtonClient.create(this.vertx).connect("localhost", this.server.actualPort(), context.asyncAssertSuccess(connection -> {
+
+                this.connection = connection;
+                this.connection.openHandler(context.asyncAssertSuccess(c -> connected.complete())).open();
+            }));
+        });
+        connected.awaitSuccess();
+    }
+
+    private AmqpPublishEndpoint createEndpoint(TestContext context, boolean anonymousRelay, AmqpPublisherCacheOptions options) {
+
+        AmqpPublishEndpoint[] endpoint = new AmqpPublishEndpoint[1];
+
+        Async created = context.async();
+        this.clientContext.runOnContext(v -> {
+
+            AmqpPublisherCache cache = new AmqpPublisherCache(this.vertx, this.connection::createSender, anonymousRelay, options);
+            endpoint[0] = new AmqpPublishEndpoint(this.connection.createSender("$mqtt.client.pubrel"), cache);
+            endpoint[0].open();
+            created.complete();
+        });
+        created.awaitSuccess();
+
+        return endpoint[0];
+    }
+
+    private void publish(TestContext context, AmqpPublishEndpoint endpoint, String topicPrefix, int count) {
+
+        Async published = context.async();
+        this.clientContext.runOnContext(v -> {
+            this.publish(context, endpoint, topicPrefix, 0, count);
+            published.complete();
+        });
+        published.awaitSuccess();
+    }
+
+    private void publish(TestContext context, AmqpPublishEndpoint endpoint, String topicPrefix, int from, int to) {
+
+        this.publish(context, endpoint, topicPrefix, from, to, MqttQoS.AT_LEAST_ONCE);
+    }
+
+    private void publish(TestContext context, AmqpPublishEndpoint endpoint, String topicPrefix, int from, int to, MqttQoS qos) {
+
+        for (int i = from; i < to; i++) {
+
+            AmqpPublishMessage message =
+                    new AmqpPublishMessage(i, qos, false, false, topicPrefix + i, Buffer.buffer("payload"));
+            endpoint.publish(message, context.asyncAssertSuccess());
+        }
+    }
+
+    private void waitFor(TestContext context, BooleanSupplier condition) {
+
+        Async async = context.async();
+        this.vertx.setPeriodic(10, timer -> {
+            if (condition.getAsBoolean()) {
+                this.vertx.cancelTimer(timer);
+                async.complete();
+            }
+        });
+        async.awaitSuccess(10000);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import io.vertx.core.http.HttpClient;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.function.Predicate;
+
+/**
+ * Tests related to the metrics exposed by the gateway
+ */
+@RunWith(VertxUnitRunner.class)
+public class MetricsTest extends MockMqttGatewayTestBase {
+
+    private static final String MQTT_TOPIC = "mytopic";
+    private static final String MQTT_MESSAGE = "Hello MQTT on EnMasse";
+    private static final String CLIENT_ID = "my_publisher_id";
+
+    private static final int QOS0_MESSAGES = 5;
+    private static final int QOS1_MESSAGES = 10;
+
+    @Before
+    public void before(TestContext context) {
+        super.setup(context, false);
+    }
+
+    @After
+    public void after(TestContext context) {
+        super.tearDown(context);
+    }
+
+    @Test
+    public void publishMetrics(TestContext context) throws MqttException {
+
+        MqttClient client = new MqttClient(String.format("tcp://%s:%d", MQTT_BIND_ADDRESS, MQTT_LISTEN_PORT), CLIENT_ID, new MemoryPersistence());
+        client.connect();
+
+        for (int i = 0; i < QOS0_MESSAGES; i++) {
+            client.publish(MQTT_TOPIC, MQTT_MESSAGE.getBytes(), 0, false);
+        }
+        // QoS 1 publish returns on PUBACK
+        for (int i = 0; i < QOS1_MESSAGES; i++) {
+            client.publish(MQTT_TOPIC, MQTT_MESSAGE.getBytes(), 1, false);
+        }
+
+        // the senders gauge is updated by the bridge when scraping, so reported on the next scrape
+        String metrics = this.waitForMetrics(context, m -> value(m, "mqtt_publishes_received_total", "qos=\"0\"") == QOS0_MESSAGES &&
+                value(m, "mqtt_bridges_senders") == 1.0);
+
+        context.assertEquals(1.0, value(metrics, "mqtt_connections_total"));
+        context.assertEquals(1.0, value(metrics, "mqtt_bridges_active"));
+        context.assertEquals((double) QOS1_MESSAGES, value(metrics, "mqtt_publishes_received_total", "qos=\"1\""));
+        context.assertEquals(0.0, value(metrics, "mqtt_publishes_received_total", "qos=\"2\""));
+        context.assertEquals((double) QOS1_MESSAGES, value(metrics, "mqtt_publish_latency_seconds_count", "qos=\"1\""));
+        context.assertTrue(value(metrics, "mqtt_publish_latency_seconds_bucket", "qos=\"1\"", "le=\"+Inf\"") == QOS1_MESSAGES);
+        // QoS 0 and 1 messages are published through the same sender on the topic
+        context.assertEquals(1.0, value(metrics, "mqtt_bridges_senders"));
+        context.assertEquals(0.0, value(metrics, "mqtt_deliveries_pending", "endpoint=\"publish\""));
+        context.assertEquals(0.0, value(metrics, "mqtt_deliveries_pending", "endpoint=\"receiver\""));
+
+        client.disconnect();
+
+        metrics = this.waitForMetrics(context, m -> value(m, "mqtt_bridges_active") == 0.0);
+
+        context.assertEquals(1.0, value(metrics, "mqtt_disconnections_total"));
+        // the senders of the closed bridge aren't counted anymore
+        context.assertEquals(0.0, value(metrics, "mqtt_bridges_senders"));
+    }
+
+    @Test
+    public void notFound(TestContext context) {
+
+        HttpClient client = this.vertx.createHttpClient();
+        client.getNow(METRICS_PORT, MQTT_BIND_ADDRESS, "/notfound", context.asyncAssertSuccess(response -> {
+            context.assertEquals(404, response.statusCode());
+        }));
+    }
+
+    /**
+     * Scrape the metrics until the provided condition is verified
+     *
+     * @param context   test context
+     * @param condition condition on the scraped metrics
+     * @return  the scraped metrics
+     */
+    private String waitForMetrics(TestContext context, Predicate<String> condition) {
+
+        String metrics = null;
+        for (int i = 0; i < 100; i++) {
+
+            metrics = this.scrape(context);
+            if (condition.test(metrics)) {
+                return metrics;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        context.fail("Condition on metrics not verified : " + metrics);
+        return metrics;
+    }
+
+    private String scrape(TestContext context) {
+
+        String[] metrics = new String[1];
+        Async scraped = context.async();
+
+        HttpClient client = this.vertx.createHttpClient();
+        client.getNow(METRICS_PORT, MQTT_BIND_ADDRESS, "/metrics", response -> {
+
+            context.assertEquals(200, response.statusCode());
+            context.assertTrue(response.getHeader("Content-Type").startsWith("text/plain"));
+            response.bodyHandler(body -> {
+                metrics[0] = body.toString();
+                client.close();
+                scraped.complete();
+            });
+        });
+        scraped.awaitSuccess(5000);
+
+        return metrics[0];
+    }
+
+    /**
+     * Value of a sample in the Prometheus text format
+     *
+     * @param metrics   scraped metrics
+     * @param name  sample name
+     * @param labels    labels (as name="value") the sample has to have
+     * @return  the sample value, NaN if the sample isn't present
+     */
+    private static double value(String metrics, String name, String... labels) {
+
+        for (String line: metrics.split("\n")) {
+
+            if (line.startsWith("#") || !(line.startsWith(name + " ") || line.startsWith(name + "{"))) {
+                continue;
+            }
+
+            boolean matching = true;
+            for (String label: labels) {
+                matching &= line.contains(label);
+            }
+
+            if (matching) {
+                return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+            }
+        }
+        return Double.NaN;
+    }
+}
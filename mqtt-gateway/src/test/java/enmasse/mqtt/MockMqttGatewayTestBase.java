@@ -29,6 +29,8 @@ public abstract class MockMqttGatewayTestBase {
     public static final String MQTT_BIND_ADDRESS = "localhost";
     public static final int MQTT_LISTEN_PORT = 1883;
     public static final int MQTT_TLS_LISTEN_PORT = 8883;
+    public static final int MAX_AMQP_CONNECTIONS = 2;
+    public static final int METRICS_PORT = 8090;
 
 
     public static final String MESSAGING_SERVICE_HOST = "localhost";
@@ -69,7 +71,9 @@ public abstract class MockMqttGatewayTestBase {
                 .setBindAddress(MQTT_BIND_ADDRESS)
                 .setListenPort(port)
                 .setMessagingServiceHost(MESSAGING_SERVICE_HOST)
-                .setMessagingServicePort(router.getNormalPort());
+                .setMessagingServicePort(router.getNormalPort())
+                .setMaxAmqpConnections(MAX_AMQP_CONNECTIONS)
+                .setMetricsPort(METRICS_PORT);
 
         if (ssl) {
             this.mqttGateway
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests related to the topic subscriptions trie
+ */
+public class SubscriptionTrieTest {
+
+    private static final String[] LEVELS = { "a", "b", "c", "foo", "bar", "" };
+    private static final MqttQoS[] QOS_LEVELS = { MqttQoS.AT_MOST_ONCE, MqttQoS.AT_LEAST_ONCE, MqttQoS.EXACTLY_ONCE };
+
+    @Test
+    public void testFixedTopicMatch() {
+
+        SubscriptionTrie trie = new SubscriptionTrie();
+        trie.add("mytopic/foo", MqttQoS.AT_LEAST_ONCE);
+
+        assertEquals(MqttQoS.AT_LEAST_ONCE, trie.match("mytopic/foo"));
+        assertNull(trie.match("mytopic/bar"));
+        assertNull(trie.match("mytopic"));
+    }
+
+    @Test
+    public void testWildcardsMatch() {
+
+        SubscriptionTrie trie = new SubscriptionTrie();
+        trie.add("mytopic/#", MqttQoS.AT_MOST_ONCE);
+        trie.add("mytopic/+/bar", MqttQoS.EXACTLY_ONCE);
+
+        assertEquals(MqttQoS.AT_MOST_ONCE, trie.match("mytopic/foo"));
+        assertEquals(MqttQoS.EXACTLY_ONCE, trie.match("mytopic/foo/bar"));
+        assertNull(trie.match("mytopic"));
+        assertNull(trie.match("anothertopic/foo/bar"));
+    }
+
+    @Test
+    public void testMaxGrantedQoS() {
+
+        SubscriptionTrie trie = new SubscriptionTrie();
+        trie.add("mytopic/foo", MqttQoS.AT_MOST_ONCE);
+        trie.add("mytopic/+", MqttQoS.EXACTLY_ONCE);
+        trie.add("#", MqttQoS.AT_LEAST_ONCE);
+
+        assertEquals(MqttQoS.EXACTLY_ONCE, trie.match("mytopic/foo"));
+
+        trie.remove("mytopic/+");
+        assertEquals(MqttQoS.AT_LEAST_ONCE, trie.match("mytopic/foo"));
+
+        trie.remove("#");
+        assertEquals(MqttQoS.AT_MOST_ONCE, trie.match("mytopic/foo"));
+
+        // subscription update
+        trie.add("mytopic/foo", MqttQoS.AT_LEAST_ONCE);
+        assertEquals(MqttQoS.AT_LEAST_ONCE, trie.match("mytopic/foo"));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void testRemove() {
+
+        SubscriptionTrie trie = new SubscriptionTrie();
+        trie.add("mytopic/foo", MqttQoS.AT_LEAST_ONCE);
+        trie.add("mytopic/foo/bar", MqttQoS.AT_LEAST_ONCE);
+
+        assertEquals(MqttQoS.AT_LEAST_ONCE, trie.remove("mytopic/foo"));
+        assertNull(trie.remove("mytopic/foo"));
+        assertNull(trie.remove("mytopic/+"));
+
+        assertNull(trie.match("mytopic/foo"));
+        assertEquals(MqttQoS.AT_LEAST_ONCE, trie.match("mytopic/foo/bar"));
+
+        trie.remove("mytopic/foo/bar");
+        assertTrue(trie.isEmpty());
+        assertNull(trie.match("mytopic/foo/bar"));
+    }
+
+    @Test
+    public void testRandomizedMatchAgainstTopicMatcher() {
+
+        Random random = new Random(42);
+
+        for (int run = 0; run < 50; run++) {
+
+            SubscriptionTrie trie = new SubscriptionTrie();
+            Map<String, MqttQoS> subscriptions = new HashMap<>();
+
+            for (int i = 0; i < 30; i++) {
+                String wildcardedTopic = randomWildcardedTopic(random);
+                MqttQoS qos = QOS_LEVELS[random.nextInt(QOS_LEVELS.length)];
+                trie.add(wildcardedTopic, qos);
+                subscriptions.put(wildcardedTopic, qos);
+            }
+
+            // remove some of them for checking the trie pruning as well
+            List<String> wildcardedTopics = new ArrayList<>(subscriptions.keySet());
+            for (int i = 0; i < 5; i++) {
+                String wildcardedTopic = wildcardedTopics.get(random.nextInt(wildcardedTopics.size()));
+                assertEquals(subscriptions.remove(wildcardedTopic), trie.remove(wildcardedTopic));
+            }
+
+            assertEquals(subscriptions.size(), trie.size());
+
+            for (int i = 0; i < 200; i++) {
+                String topic = randomTopic(random);
+                assertEquals(String.format("topic '%s' subscriptions %s", topic, subscriptions),
+                        expectedQoS(subscriptions, topic), trie.match(topic));
+            }
+        }
+    }
+
+    private static MqttQoS expectedQoS(Map<String, MqttQoS> subscriptions, String topic) {
+
+        MqttQoS qos = null;
+        for (Map.Entry<String, MqttQoS> entry: subscriptions.entrySet()) {
+
+            if (TopicMatcher.isMatch(entry.getKey(), topic) &&
+                    ((qos == null) || (entry.getValue().value() > qos.value()))) {
+                qos = entry.getValue();
+            }
+        }
+        return qos;
+    }
+
+    private static String randomTopic(Random random) {
+
+        int levels = 1 + random.nextInt(4);
+        StringBuilder topic = new StringBuilder();
+        for (int i = 0; i < levels; i++) {
+            if (i > 0) {
+                topic.append("/");
+            }
+            topic.append(LEVELS[random.nextInt(LEVELS.length)]);
+        }
+        return topic.toString();
+    }
+
+    private static String randomWildcardedTopic(Random random) {
+
+        int levels = 1 + random.nextInt(4);
+        StringBuilder wildcardedTopic = new StringBuilder();
+        for (int i = 0; i < levels; i++) {
+            if (i > 0) {
+                wildcardedTopic.append("/");
+            }
+
+            int choice = random.nextInt(10);
+            if (choice < 2) {
+                wildcardedTopic.append("+");
+            } else if ((choice < 3) || ((choice < 4) && (i == levels - 1))) {
+                // "#" is allowed only as last level
+                wildcardedTopic.append("#");
+                break;
+            } else {
+                wildcardedTopic.append(LEVELS[random.nextInt(LEVELS.length)]);
+            }
+        }
+        return wildcardedTopic.toString();
+    }
+}
@@ -6,6 +6,10 @@
 package enmasse.mqtt;
 
 import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import static org.junit.Assert.*;
 
 /**
@@ -94,4 +98,74 @@ public class TopicMatcherTest {
 
         assertFalse(TopicMatcher.isMatch(subTopic, pubTopic));
     }
+
+    @Test
+    public void testFixedTopicWithRegexCharsNotMatch() {
+
+        String subTopic = "mytopic/a.b";
+        String pubTopic = "mytopic/axb";
+
+        assertFalse(TopicMatcher.isMatch(subTopic, pubTopic));
+
+        subTopic = "mytopic/(foo)";
+        pubTopic = "mytopic/(foo)";
+
+        assertTrue(TopicMatcher.isMatch(subTopic, pubTopic));
+    }
+
+    @Test
+    public void testCompiledMatcherReused() {
+
+        assertSame(TopicMatcher.compile("mytopic/+/bar"), TopicMatcher.compile("mytopic/+/bar"));
+    }
+
+    @Test
+    public void testRandomizedMatchAgainstRegex() {
+
+        String[] levels = { "a", "b", "foo", "bar", "" };
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10000; i++) {
+
+            String subTopic = randomTopic(random, levels, true);
+            String pubTopic = randomTopic(random, levels, false);
+
+            assertEquals(String.format("'%s' vs '%s'", subTopic, pubTopic),
+                    isMatchRegex(subTopic, pubTopic), TopicMatcher.isMatch(subTopic, pubTopic));
+        }
+    }
+
+    /**
+     * The regex based matching used before the segment matcher
+     */
+    private static boolean isMatchRegex(String wildcardedTopic, String topic) {
+
+        String topicReplaced =
+                wildcardedTopic.replaceAll("\\+", "[^/]\\+").replaceAll("#", ".*");
+
+        return Pattern.compile(topicReplaced).matcher(topic).matches();
+    }
+
+    private static String randomTopic(Random random, String[] levels, boolean wildcards) {
+
+        int count = 1 + random.nextInt(4);
+        StringBuilder topic = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                topic.append("/");
+            }
+
+            int choice = random.nextInt(10);
+            if (wildcards && (choice < 2)) {
+                topic.append("+");
+            } else if (wildcards && (choice < 3)) {
+                // "#" is allowed only as last level
+                topic.append("#");
+                break;
+            } else {
+                topic.append(levels[random.nextInt(levels.length)]);
+            }
+        }
+        return topic.toString();
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.benchmarks;
+
+import enmasse.mqtt.messages.AmqpWillMessage;
+import enmasse.mqtt.storage.LwtStorage;
+import enmasse.mqtt.storage.impl.InMemoryLwtStorage;
+import enmasse.mqtt.storage.impl.ShardedLwtStorage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the in memory LWT storage, which has to be used from a single context,
+ * with the sharded one used at the same time from more contexts (as more MQTT LWT verticle instances do).
+ * Every operation is an upsert of the will followed by a get, as on client connection and brute disconnection
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LwtStorageBenchmark {
+
+    private static final int OPERATIONS = 10000;
+    private static final int CLIENTS = 1000;
+    private static final long TIMEOUT = 10000;
+
+    @Param({ "memory", "sharded" })
+    public String storage;
+
+    @Param({ "4" })
+    public int callers;
+
+    private Vertx vertx;
+    private Context[] contexts;
+    private LwtStorage lwtStorage;
+
+    private String[] clientIds;
+    private AmqpWillMessage willMessage;
+
+    @Setup
+    public void setup() throws Exception {
+
+        this.vertx = Vertx.vertx();
+
+        // the in memory storage isn't thread safe, so all the operations are executed on the same context
+        int count = this.storage.equals("memory") ? 1 : this.callers;
+        this.contexts = new Context[count];
+        for (int i = 0; i < count; i++) {
+            this.contexts[i] = this.vertx.getOrCreateContext();
+        }
+
+        this.lwtStorage = this.storage.equals("memory") ? new InMemoryLwtStorage() : new ShardedLwtStorage().setShardCount(this.callers);
+
+        CompletableFuture<Void> opened = new CompletableFuture<>();
+        this.contexts[0].runOnContext(v -> this.lwtStorage.open(done -> {
+            if (done.succeeded()) {
+                opened.complete(null);
+            } else {
+                opened.completeExceptionally(done.cause());
+            }
+        }));
+        opened.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        this.clientIds = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            this.clientIds[i] = "client" + i;
+        }
+        this.willMessage = new AmqpWillMessage(false, "will_topic", MqttQoS.AT_LEAST_ONCE, Buffer.buffer("will"));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+
+        this.lwtStorage.close();
+
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        this.vertx.close(done -> closed.complete(null));
+        closed.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void upsertAndGet() throws Exception {
+
+        CountDownLatch latch = new CountDownLatch(OPERATIONS);
+
+        int perContext = OPERATIONS / this.contexts.length;
+        for (int c = 0; c < this.contexts.length; c++) {
+
+            int first = c * perContext;
+            this.contexts[c].runOnContext(v -> {
+
+                for (int i = first; i < first + perContext; i++) {
+                    String clientId = this.clientIds[i % CLIENTS];
+                    this.lwtStorage.upsert(clientId, this.willMessage, done -> {
+                        this.lwtStorage.get(clientId, done1 -> latch.countDown());
+                    });
+                }
+            });
+        }
+
+        if (!latch.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Operations not completed");
+        }
+    }
+}
@@ -7,6 +7,7 @@ package enmasse.mqtt;
 
 import enmasse.mqtt.endpoints.AmqpLwtEndpoint;
 import enmasse.mqtt.endpoints.AmqpPublishEndpoint;
+import enmasse.mqtt.endpoints.WillPublisherOptions;
 import enmasse.mqtt.messages.AmqpPublishMessage;
 import enmasse.mqtt.messages.AmqpWillMessage;
 import enmasse.mqtt.storage.LwtStorage;
@@ -36,9 +37,14 @@ public class MqttLwt extends AbstractVerticle {
     private static final String CONTAINER_ID = "lwt-service";
 
     private static final int MAX_MESSAGE_ID = 65535;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
 
     private String certDir;
 
+    private int creditWindow = AmqpLwtEndpoint.DEFAULT_CREDIT_WINDOW;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private final WillPublisherOptions willPublisherOptions = new WillPublisherOptions();
+
     // connection info to the messaging service
     private String host;
     private int normalPort;
@@ -81,88 +87,88 @@ public class MqttLwt extends AbstractVerticle {
 
         ProtonClientOptions options = this.createClientOptions();
 
+        Future<Void> storageFuture = Future.future();
 
-        Future<ProtonConnection> lwtConnFuture = Future.future();
-
-        // connecting to the messaging service internal (router network)
-        this.client.connect(options, this.host, this.routeContainerPort, done -> {
+        // connecting to the storage service first, the LWT endpoint stores the will updates as soon as it's opened
+        this.lwtStorage.open(done -> {
 
             if (done.succeeded()) {
 
-                ProtonConnection connection = done.result();
-                connection.setContainer(CONTAINER_ID);
-
-                // TODO
-                this.lwtEndpoint = new AmqpLwtEndpoint(connection);
-                this.lwtEndpoint
-                        .willHandler(this::handleWill)
-                        .disconnectionHandler(this::handleDisconnection);
-                this.lwtEndpoint.open();
+                LOG.info("MQTT LWT service connected to the storage service ...");
 
-                connection.openHandler(o -> {
-                    LOG.info("MQTT LWT service connected to the messaging service internal ...");
-                    lwtConnFuture.complete();
-                });
+                storageFuture.complete();
 
             } else {
 
-                LOG.error("Error connecting MQTT LWT service to the messaging service internal ...", done.cause());
+                LOG.error("Error connecting MQTT LWT service to the storage service ...", done.cause());
 
-                lwtConnFuture.fail(done.cause());
+                storageFuture.fail(done.cause());
             }
 
         });
 
-        // compose the connection with messaging service
-        lwtConnFuture.compose(v -> {
+        // compose the connection to the storage service with connection to the messaging service internal
+        storageFuture.compose(v -> {
 
-            Future<ProtonConnection> publishConnFuture = Future.future();
+            Future<ProtonConnection> lwtConnFuture = Future.future();
 
-            this.client.connect(options, this.host, this.normalPort, done -> {
+            // connecting to the messaging service internal (router network)
+            this.client.connect(options, this.host, this.routeContainerPort, done -> {
 
                 if (done.succeeded()) {
 
-
                     ProtonConnection connection = done.result();
                     connection.setContainer(CONTAINER_ID);
 
-                    // TODO
-                    this.publishEndpoint = new AmqpPublishEndpoint(connection);
-                    this.publishEndpoint.open();
+                    // will updates received on this connection are stored in batches
+                    WillBatcher willBatcher = new WillBatcher(this.vertx, this.lwtStorage, this.maxBatchSize);
+
+                    this.lwtEndpoint = new AmqpLwtEndpoint(connection);
+                    this.lwtEndpoint
+                            .creditWindow(this.creditWindow)
+                            .willHandler(willData -> this.handleWill(willBatcher, willData))
+                            .disconnectionHandler(disconnectionData -> this.handleDisconnection(willBatcher, disconnectionData));
+                    this.lwtEndpoint.open();
 
                     connection.openHandler(o -> {
-                        LOG.info("MQTT LWT service connected to the messaging service ...");
-                        publishConnFuture.complete();
+                        LOG.info("MQTT LWT service connected to the messaging service internal ...");
+                        lwtConnFuture.complete();
                     });
 
                 } else {
 
-                    LOG.error("Error connecting MQTT LWT service to the messaging service ...", done.cause());
+                    LOG.error("Error connecting MQTT LWT service to the messaging service internal ...", done.cause());
 
-                    publishConnFuture.fail(done.cause());
+                    lwtConnFuture.fail(done.cause());
                 }
 
             });
 
-            return publishConnFuture;
+            return lwtConnFuture;
 
-        // compose the connection to the messaging service with connection to storage service
+        // compose the connection to the messaging service internal with connection to the messaging service
         }).compose(v -> {
 
-            // connecting to the storage service
-            this.lwtStorage.open(done -> {
+            this.client.connect(options, this.host, this.normalPort, done -> {
 
                 if (done.succeeded()) {
 
-                    LOG.info("MQTT LWT service connected to the storage service ...");
+
+                    ProtonConnection connection = done.result();
+                    connection.setContainer(CONTAINER_ID);
 
                     // TODO
+                    this.publishEndpoint = new AmqpPublishEndpoint(this.vertx, connection, this.willPublisherOptions);
+                    this.publishEndpoint.open();
 
-                    startFuture.complete();
+                    connection.openHandler(o -> {
+                        LOG.info("MQTT LWT service connected to the messaging service ...");
+                        startFuture.complete();
+                    });
 
                 } else {
 
-                    LOG.error("Error connecting MQTT LWT service to the storage service ...", done.cause());
+                    LOG.error("Error connecting MQTT LWT service to the messaging service ...", done.cause());
 
                     startFuture.fail(done.cause());
                 }
@@ -196,26 +202,26 @@ public class MqttLwt extends AbstractVerticle {
         return options;
     }
 
-    private void handleWill(WillData willData) {
+    private void handleWill(WillBatcher willBatcher, WillData willData) {
 
-        // will message received, check for updating or adding
-        this.lwtStorage.get(willData.clientId(), done -> {
+        // will message received, adding or updating it with the others in the same batch
+        willBatcher.add(willData.clientId(), willData.amqpWillMessage(), done -> {
 
             if (done.succeeded()) {
-                this.lwtStorage.update(willData.clientId(), willData.amqpWillMessage(), ar -> {
-
-                    LOG.info("Updated will for client {}", willData.clientId());
-                });
-            } else {
-                this.lwtStorage.add(willData.clientId(), willData.amqpWillMessage(), ar -> {
-
-                    LOG.info("Added will for client {}", willData.clientId());
-                });
+                LOG.debug("Stored will for client {}", willData.clientId());
+                // a new will for the client, so it has to be published on the next brute disconnection
+                if (this.publishEndpoint != null) {
+                    this.publishEndpoint.forget(willData.clientId());
+                }
             }
+            willData.complete(done);
         });
     }
 
-    private void handleDisconnection(DisconnectionData disconnectionData) {
+    private void handleDisconnection(WillBatcher willBatcher, DisconnectionData disconnectionData) {
+
+        // pending will updates have to be stored before handling the disconnection
+        willBatcher.flush();
 
         // clean disconnection, just delete will message
         if (!disconnectionData.isError()) {
@@ -240,7 +246,7 @@ public class MqttLwt extends AbstractVerticle {
                     AmqpPublishMessage amqpPublishMessage =
                             new AmqpPublishMessage(messageId, amqpWillMessage.qos(), false, amqpWillMessage.isRetain(), amqpWillMessage.topic(), amqpWillMessage.payload());
 
-                    this.publishEndpoint.publish(amqpPublishMessage, ar1 -> {
+                    this.publishEndpoint.publish(disconnectionData.clientId(), amqpPublishMessage, ar1 -> {
 
                         if (ar1.succeeded()) {
 
@@ -250,6 +256,9 @@ public class MqttLwt extends AbstractVerticle {
 
                                 LOG.info("Deleted will for client {}", disconnectionData.clientId());
                             });
+                        } else {
+
+                            LOG.error("Error publishing will message for client {}", disconnectionData.clientId(), ar1.cause());
                         }
                     });
                 }
@@ -318,6 +327,90 @@ public class MqttLwt extends AbstractVerticle {
         return this;
     }
 
+    /**
+     * Set the credit window granted to every client link for sending will messages
+     *
+     * @param creditWindow  credit window
+     * @return  current MQTT LWT instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.creditwindow:16}")
+    public MqttLwt setCreditWindow(int creditWindow) {
+        this.creditWindow = creditWindow;
+        return this;
+    }
+
+    /**
+     * Set the max number of will updates stored with a single storage operation
+     *
+     * @param maxBatchSize  max batch size
+     * @return  current MQTT LWT instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.maxbatchsize:256}")
+    public MqttLwt setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Set the max number of senders used for publishing will messages
+     *
+     * @param poolSize  max number of senders
+     * @return  current MQTT LWT instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.publisher.poolsize:4}")
+    public MqttLwt setPublisherPoolSize(int poolSize) {
+        this.willPublisherOptions.setPoolSize(poolSize);
+        return this;
+    }
+
+    /**
+     * Set the max number of will messages not settled yet on a sender
+     *
+     * @param pipelineDepth max number of not settled will messages
+     * @return  current MQTT LWT instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.publisher.pipelinedepth:32}")
+    public MqttLwt setPublisherPipelineDepth(int pipelineDepth) {
+        this.willPublisherOptions.setPipelineDepth(pipelineDepth);
+        return this;
+    }
+
+    /**
+     * Set the max number of attempts for publishing a will message
+     *
+     * @param maxAttempts   max number of attempts
+     * @return  current MQTT LWT instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.publisher.maxattempts:5}")
+    public MqttLwt setPublisherMaxAttempts(int maxAttempts) {
+        this.willPublisherOptions.setMaxAttempts(maxAttempts);
+        return this;
+    }
+
+    /**
+     * Set the base delay before retrying the publish of a will message
+     *
+     * @param retryDelay    base retry delay (in ms)
+     * @return  current MQTT LWT instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.publisher.retrydelay:100}")
+    public MqttLwt setPublisherRetryDelay(long retryDelay) {
+        this.willPublisherOptions.setRetryDelay(retryDelay);
+        return this;
+    }
+
+    /**
+     * Set if an anonymous relay sender has to be used for publishing will messages, when the messaging service supports it
+     *
+     * @param anonymousRelay    if the anonymous relay has to be used
+     * @return  current MQTT LWT instance
+     */
+    @Value(value = "${enmasse.mqtt.anonymousrelay:false}")
+    public MqttLwt setAnonymousRelay(boolean anonymousRelay) {
+        this.willPublisherOptions.setAnonymousRelay(anonymousRelay);
+        return this;
+    }
+
     /**
      * Set the LWT Storage service implementation to use
      *
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.messages.AmqpWillMessage;
+import enmasse.mqtt.storage.LwtStorage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Micro-batcher for the "will" updates received by the LWT service.
+ * The updates are grouped per storage shard and stored with a single batch operation
+ * on the next event loop tick (or as soon as a batch reaches the max size).
+ *
+ * It isn't thread safe, it has to be used from the LWT endpoint context only
+ */
+public class WillBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WillBatcher.class);
+
+    private final Vertx vertx;
+    private final LwtStorage lwtStorage;
+    private final int maxBatchSize;
+
+    // batches being filled (shard -> batch)
+    private final Map<Integer, Batch> batches = new HashMap<>();
+    private boolean scheduled;
+
+    private long stored;
+
+    /**
+     * Updates to store together on the same shard
+     */
+    private static class Batch {
+
+        // if the same client updates the "will" more times, just the last one is stored
+        private final Map<String, AmqpWillMessage> willMessages = new LinkedHashMap<>();
+        private final List<Handler<AsyncResult<Void>>> handlers = new ArrayList<>();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param lwtStorage    LWT Storage service instance
+     * @param maxBatchSize  max number of updates in a batch
+     */
+    public WillBatcher(Vertx vertx, LwtStorage lwtStorage, int maxBatchSize) {
+        this.vertx = vertx;
+        this.lwtStorage = lwtStorage;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Add a "will" update to the batch for the related shard
+     *
+     * @param clientId  client identifier
+     * @param willMessage   "will" information to store
+     * @param handler   handler called when the batch containing the update is stored
+     */
+    public void add(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Void>> handler) {
+
+        int shard = this.lwtStorage.shardOf(clientId);
+
+        Batch batch = this.batches.computeIfAbsent(shard, s -> new Batch());
+        batch.willMessages.put(clientId, willMessage);
+        batch.handlers.add(handler);
+
+        if (batch.handlers.size() >= this.maxBatchSize) {
+            this.batches.remove(shard);
+            this.store(batch);
+        } else if (!this.scheduled) {
+            this.scheduled = true;
+            this.vertx.runOnContext(v -> this.flush());
+        }
+    }
+
+    /**
+     * Store all the pending batches now, so that any next storage operation
+     * (i.e. delete on disconnection) is executed after them
+     */
+    public void flush() {
+
+        this.scheduled = false;
+        if (this.batches.isEmpty()) {
+            return;
+        }
+
+        for (Batch batch: this.batches.values()) {
+            this.store(batch);
+        }
+        this.batches.clear();
+    }
+
+    /**
+     * Number of batches stored
+     *
+     * @return
+     */
+    public long stored() {
+        return this.stored;
+    }
+
+    private void store(Batch batch) {
+
+        this.stored++;
+        this.lwtStorage.upsertAll(batch.willMessages, done -> {
+
+            AsyncResult<Void> result;
+            if (done.succeeded()) {
+                LOG.debug("Stored batch of {} wills", batch.willMessages.size());
+                result = Future.succeededFuture();
+            } else {
+                LOG.error("Error storing batch of {} wills", batch.willMessages.size(), done.cause());
+                result = Future.failedFuture(done.cause());
+            }
+
+            for (Handler<AsyncResult<Void>> handler: batch.handlers) {
+                handler.handle(result);
+            }
+        });
+    }
+}
@@ -6,6 +6,8 @@
 package enmasse.mqtt;
 
 import enmasse.mqtt.messages.AmqpWillMessage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
 
 /**
  * Provides "will" information
@@ -14,6 +16,7 @@ public class WillData {
 
     private AmqpWillMessage amqpWillMessage;
     private String clientId;
+    private Handler<AsyncResult<Void>> completionHandler;
 
     /**
      * Constructor
@@ -22,8 +25,32 @@ public class WillData {
      * @param amqpWillMessage   AMQP_WILL message
      */
     public WillData(String clientId, AmqpWillMessage amqpWillMessage) {
+        this(clientId, amqpWillMessage, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param clientId  client identifier related to the AMQP_WILL message
+     * @param amqpWillMessage   AMQP_WILL message
+     * @param completionHandler handler called when the "will" information is handled
+     */
+    public WillData(String clientId, AmqpWillMessage amqpWillMessage, Handler<AsyncResult<Void>> completionHandler) {
         this.clientId = clientId;
         this.amqpWillMessage = amqpWillMessage;
+        this.completionHandler = completionHandler;
+    }
+
+    /**
+     * Complete the handling of the "will" information (i.e. stored or not)
+     *
+     * @param result    result of the handling
+     */
+    public void complete(AsyncResult<Void> result) {
+
+        if (this.completionHandler != null) {
+            this.completionHandler.handle(result);
+        }
     }
 
     /**
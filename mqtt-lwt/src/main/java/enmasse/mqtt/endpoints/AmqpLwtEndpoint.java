@@ -15,6 +15,7 @@ import io.vertx.proton.ProtonDelivery;
 import io.vertx.proton.ProtonQoS;
 import io.vertx.proton.ProtonReceiver;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
 import org.apache.qpid.proton.amqp.transport.AmqpError;
 import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.message.Message;
@@ -28,10 +29,11 @@ public class AmqpLwtEndpoint {
 
     private static final Logger LOG = LoggerFactory.getLogger(AmqpLwtEndpoint.class);
 
-    public static final int AMQP_WILL_CREDITS = 1;
+    public static final int DEFAULT_CREDIT_WINDOW = 16;
     public static final String LWT_SERVICE_ENDPOINT = "$lwt";
 
     private ProtonConnection connection;
+    private int creditWindow = DEFAULT_CREDIT_WINDOW;
 
     private Handler<WillData> willHandler;
     private Handler<DisconnectionData> disconnectionHandler;
@@ -45,6 +47,35 @@ public class AmqpLwtEndpoint {
         this.connection = connection;
     }
 
+    /**
+     * Credit window on a client link, replenished when half of it is used
+     */
+    private static class CreditWindow {
+
+        private final ProtonReceiver receiver;
+        private final int window;
+        // deliveries processed since the last credit replenishment
+        private int processed;
+
+        CreditWindow(ProtonReceiver receiver, int window) {
+            this.receiver = receiver;
+            this.window = window;
+        }
+
+        void open() {
+            this.receiver.flow(this.window);
+        }
+
+        void processed() {
+
+            this.processed++;
+            if (this.processed >= Math.max(1, this.window / 2)) {
+                this.receiver.flow(this.processed);
+                this.processed = 0;
+            }
+        }
+    }
+
     /**
      * Open the endpoint, opening the connection
      */
@@ -86,10 +117,12 @@ public class AmqpLwtEndpoint {
                     .close();
         } else {
 
+            CreditWindow creditWindow = new CreditWindow(receiver, this.creditWindow);
+
             receiver.setTarget(receiver.getRemoteTarget())
                     .setQoS(ProtonQoS.AT_LEAST_ONCE)
                     .handler((delivery, message) -> {
-                        this.messageHandler(receiver, delivery, message);
+                        this.messageHandler(receiver, creditWindow, delivery, message);
                     })
                     .closeHandler(ar -> {
                         this.closeHandler(receiver, ar);
@@ -100,26 +133,37 @@ public class AmqpLwtEndpoint {
                     .setPrefetch(0)
                     .open();
 
-            receiver.flow(AMQP_WILL_CREDITS);
+            creditWindow.open();
         }
     }
 
-    private void messageHandler(ProtonReceiver receiver, ProtonDelivery delivery, Message message) {
+    private void messageHandler(ProtonReceiver receiver, CreditWindow creditWindow, ProtonDelivery delivery, Message message) {
 
         try {
 
             AmqpWillMessage amqpWillMessage = AmqpWillMessage.from(message);
 
-            LOG.info("Received will on topic [{}] by client [{}]", amqpWillMessage.topic(), receiver.getName());
+            LOG.debug("Received will on topic [{}] by client [{}]", amqpWillMessage.topic(), receiver.getName());
+
+            // the delivery is settled when the will is stored
+            this.willHandler.handle(new WillData(receiver.getName(), amqpWillMessage, done -> {
 
-            // TODO : having a callback to check if handling went well and send right disposition ?
-            this.willHandler.handle(new WillData(receiver.getName(), amqpWillMessage));
+                if (!receiver.isOpen()) {
+                    return;
+                }
 
-            delivery.disposition(Accepted.getInstance(), true);
+                if (done.succeeded()) {
+                    delivery.disposition(Accepted.getInstance(), true);
+                } else {
+                    Rejected rejected = new Rejected();
+                    rejected.setError(new ErrorCondition(AmqpError.INTERNAL_ERROR, "Error storing the will message"));
+                    delivery.disposition(rejected, true);
+                }
 
-            // NOTE : after receiving the AMQP_WILL, a new credit is issued because
-            //        with AMQP we want to change the "will" message during the client life
-            receiver.flow(AMQP_WILL_CREDITS);
+                // NOTE : credits are issued again because with AMQP
+                //        we want to change the "will" message during the client life
+                creditWindow.processed();
+            }));
 
         } catch (IllegalArgumentException ex) {
 
@@ -172,6 +216,18 @@ public class AmqpLwtEndpoint {
         return this;
     }
 
+    /**
+     * Set the credit window granted on every client link
+     *
+     * @param creditWindow  the credit window
+     * @return  a reference to the current AmqpLwtEndpoint instance
+     */
+    public AmqpLwtEndpoint creditWindow(int creditWindow) {
+
+        this.creditWindow = creditWindow;
+        return this;
+    }
+
     /**
      * Set the handler called when a client disconnect on this endpoint
      *
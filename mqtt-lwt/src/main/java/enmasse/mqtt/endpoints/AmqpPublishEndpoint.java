@@ -6,18 +6,16 @@
 package enmasse.mqtt.endpoints;
 
 import enmasse.mqtt.messages.AmqpPublishMessage;
-import io.netty.handler.codec.mqtt.MqttQoS;
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.proton.ProtonConnection;
-import io.vertx.proton.ProtonDelivery;
-import io.vertx.proton.ProtonQoS;
-import io.vertx.proton.ProtonSender;
-import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.Symbol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 /**
  * Publisher endpoint
  */
@@ -25,15 +23,25 @@ public class AmqpPublishEndpoint {
 
     private static final Logger LOG = LoggerFactory.getLogger(AmqpPublishEndpoint.class);
 
+    private static final Symbol ANONYMOUS_RELAY = Symbol.valueOf("ANONYMOUS-RELAY");
+
+    private final Vertx vertx;
+    private final WillPublisherOptions options;
     private ProtonConnection connection;
+    // read by the LWT endpoint for forgetting published wills
+    private volatile WillPublisher willPublisher;
 
     /**
      * Constructor
      *
+     * @param vertx Vert.x instance
      * @param connection    ProtonConnection instance
+     * @param options   options for publishing the will messages
      */
-    public AmqpPublishEndpoint(ProtonConnection connection) {
+    public AmqpPublishEndpoint(Vertx vertx, ProtonConnection connection, WillPublisherOptions options) {
+        this.vertx = vertx;
         this.connection = connection;
+        this.options = options;
     }
 
     /**
@@ -49,49 +57,38 @@ public class AmqpPublishEndpoint {
     /**
      * Send the AMQP_PUBLISH to the attached topic/address
      *
+     * @param clientId  client identifier the will message belongs to
      * @param amqpPublishMessage   AMQP_PUBLISH message
+     * @param handler   handler called when the message is published or can't be published
      */
-    public void publish(AmqpPublishMessage amqpPublishMessage, Handler<AsyncResult<ProtonDelivery>> handler) {
-
-        // send AMQP_PUBLISH message
+    public void publish(String clientId, AmqpPublishMessage amqpPublishMessage, Handler<AsyncResult<Void>> handler) {
 
         LOG.info("Will ready for publishing on topic [{}]", amqpPublishMessage.topic());
 
-        // use sender for QoS 0/1 messages
-        if (amqpPublishMessage.qos() != MqttQoS.EXACTLY_ONCE) {
-
-            ProtonSender sender = this.connection.createSender(amqpPublishMessage.topic());
-
-            sender.setQoS(ProtonQoS.AT_LEAST_ONCE)
-                  .open();
-
-            if (amqpPublishMessage.qos() == MqttQoS.AT_MOST_ONCE) {
-
-                sender.send(amqpPublishMessage.toAmqp());
-                sender.close();
-                LOG.info("AMQP published on {}", amqpPublishMessage.topic());
-
-                handler.handle(Future.succeededFuture(null));
+        // the remote capabilities are known only when the connection is opened
+        if (this.willPublisher == null) {
 
-            } else {
+            Symbol[] capabilities = this.connection.getRemoteOfferedCapabilities();
+            boolean anonymousRelay = this.options.isAnonymousRelay() &&
+                    (capabilities != null) && Arrays.asList(capabilities).contains(ANONYMOUS_RELAY);
 
-                sender.send(amqpPublishMessage.toAmqp(), delivery -> {
-
-                    if (delivery.getRemoteState() == Accepted.getInstance()) {
-                        LOG.info("AMQP publish delivery {}", delivery.getRemoteState());
-                        handler.handle(Future.succeededFuture(delivery));
-                    } else {
-                        handler.handle(Future.failedFuture(String.format("AMQP publish delivery %s", delivery.getRemoteState())));
-                    }
+            this.willPublisher = new WillPublisher(this.vertx, this.connection::createSender, anonymousRelay, this.options);
+        }
 
-                    sender.close();
-                });
-            }
+        this.willPublisher.publish(clientId, amqpPublishMessage, handler);
+    }
 
-        // use sender for QoS 2 messages
-        } else {
+    /**
+     * Forget the will published for a client, so that a new one will be published
+     * on the next brute disconnection
+     *
+     * @param clientId  client identifier
+     */
+    public void forget(String clientId) {
 
-            // TODO
+        WillPublisher willPublisher = this.willPublisher;
+        if (willPublisher != null) {
+            willPublisher.forget(clientId);
         }
     }
 
@@ -100,7 +97,9 @@ public class AmqpPublishEndpoint {
      */
     public void close() {
 
-        // TODO : check what to close other than connection while this class evolves
+        if (this.willPublisher != null) {
+            this.willPublisher.close();
+        }
         if (this.connection != null) {
             this.connection.close();
         }
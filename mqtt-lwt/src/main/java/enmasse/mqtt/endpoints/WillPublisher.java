@@ -0,0 +1,454 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.endpoints;
+
+import enmasse.mqtt.messages.AmqpPublishMessage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonQoS;
+import io.vertx.proton.ProtonSender;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Engine for publishing will messages when a lot of clients disconnect at the same time.
+ *
+ * The will messages are sent through a bounded pool of senders, each one with a limited number
+ * of not settled deliveries (pipelining depth); the ones exceeding the pool capacity are queued.
+ * A will not accepted (rejected, released, not settled in time or on a closed sender) is published
+ * again after a jittered exponential backoff, with the same message identifier and the duplicate flag.
+ * The client identifiers with a will being published or just published are tracked, so that
+ * a will isn't published twice.
+ *
+ * It isn't thread safe, it has to be used from the publish endpoint context only
+ * (but for {@link #forget(String)})
+ */
+public class WillPublisher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WillPublisher.class);
+
+    private final Vertx vertx;
+    // factory for the senders (address -> sender, null address for anonymous relay)
+    private final Function<String, ProtonSender> senderFactory;
+    private final boolean anonymousRelay;
+    private final WillPublisherOptions options;
+    private final Random random = new Random();
+
+    private final List<PooledSender> senders = new ArrayList<>();
+    // wills waiting for a sender with room for them
+    private final Deque<PendingWill> queue = new ArrayDeque<>();
+    // wills being published (client identifier -> will)
+    private final Map<String, PendingWill> inProgress = new HashMap<>();
+    // wills published (client identifier -> publishing time in ms), updated by the LWT endpoint as well
+    private final Map<String, Long> published = new ConcurrentHashMap<>();
+    private final long dedupTimer;
+
+    private long attempts;
+    private long retries;
+    private boolean closed;
+
+    /**
+     * Sender in the pool with its not settled deliveries
+     */
+    private static class PooledSender {
+
+        private final String address;
+        private final ProtonSender sender;
+        private final Set<Attempt> attempts = new LinkedHashSet<>();
+
+        PooledSender(String address, ProtonSender sender) {
+            this.address = address;
+            this.sender = sender;
+        }
+    }
+
+    /**
+     * Will message to publish for a client
+     */
+    private static class PendingWill {
+
+        private final String clientId;
+        private final AmqpPublishMessage amqpPublishMessage;
+        // handlers of all the requests for publishing the will of the client
+        private final List<Handler<AsyncResult<Void>>> handlers = new ArrayList<>();
+        private int attempt;
+        private boolean completed;
+
+        PendingWill(String clientId, AmqpPublishMessage amqpPublishMessage) {
+            this.clientId = clientId;
+            this.amqpPublishMessage = amqpPublishMessage;
+        }
+    }
+
+    /**
+     * Single attempt of sending a will message
+     */
+    private static class Attempt {
+
+        private final PendingWill will;
+        private final PooledSender sender;
+        private long timer;
+        private boolean done;
+
+        Attempt(PendingWill will, PooledSender sender) {
+            this.will = will;
+            this.sender = sender;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param vertx Vert.x instance
+     * @param senderFactory factory for the senders (address -> sender, null address for anonymous relay)
+     * @param anonymousRelay    if the anonymous relay has to be used
+     * @param options   options for the publisher
+     */
+    public WillPublisher(Vertx vertx, Function<String, ProtonSender> senderFactory, boolean anonymousRelay, WillPublisherOptions options) {
+
+        this.vertx = vertx;
+        this.senderFactory = senderFactory;
+        this.anonymousRelay = anonymousRelay;
+        this.options = options;
+
+        this.dedupTimer = this.vertx.setPeriodic(options.getDedupTimeout(), t -> {
+            long now = System.currentTimeMillis();
+            this.published.values().removeIf(time -> now - time >= this.options.getDedupTimeout());
+        });
+    }
+
+    /**
+     * Publish the will message for a client
+     *
+     * @param clientId  client identifier
+     * @param amqpPublishMessage    AMQP_PUBLISH message for the will
+     * @param handler   handler called when the will is published or when the max number of attempts is reached
+     */
+    public void publish(String clientId, AmqpPublishMessage amqpPublishMessage, Handler<AsyncResult<Void>> handler) {
+
+        if (this.closed) {
+            handler.handle(Future.failedFuture(new IllegalStateException("Will publisher closed")));
+            return;
+        }
+
+        Long time = this.published.get(clientId);
+        if ((time != null) && (System.currentTimeMillis() - time < this.options.getDedupTimeout())) {
+            LOG.debug("Will for client {} already published", clientId);
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        PendingWill will = this.inProgress.get(clientId);
+        if (will != null) {
+            LOG.debug("Will for client {} already being published", clientId);
+            will.handlers.add(handler);
+            return;
+        }
+
+        will = new PendingWill(clientId, amqpPublishMessage);
+        will.handlers.add(handler);
+        this.inProgress.put(clientId, will);
+        this.queue.add(will);
+        this.drain();
+    }
+
+    /**
+     * Forget the will published for a client, so that a new one can be published
+     * (i.e. the client connected again). It's thread safe
+     *
+     * @param clientId  client identifier
+     */
+    public void forget(String clientId) {
+        this.published.remove(clientId);
+    }
+
+    /**
+     * Close the publisher, failing all the wills not published yet
+     */
+    public void close() {
+
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.vertx.cancelTimer(this.dedupTimer);
+
+        for (PooledSender pooledSender: this.senders) {
+            for (Attempt attempt: pooledSender.attempts) {
+                this.vertx.cancelTimer(attempt.timer);
+            }
+            pooledSender.sender.close();
+        }
+        this.senders.clear();
+        this.queue.clear();
+
+        List<PendingWill> wills = new ArrayList<>(this.inProgress.values());
+        for (PendingWill will: wills) {
+            this.complete(will, Future.failedFuture(new IllegalStateException("Will publisher closed")));
+        }
+    }
+
+    /**
+     * Number of sending attempts (retries included)
+     *
+     * @return
+     */
+    public long attempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Number of retries
+     *
+     * @return
+     */
+    public long retries() {
+        return this.retries;
+    }
+
+    /**
+     * Number of senders in the pool
+     *
+     * @return
+     */
+    public int senders() {
+        return this.senders.size();
+    }
+
+    /**
+     * Number of wills being published (queued, in flight or waiting for a retry)
+     *
+     * @return
+     */
+    public int pending() {
+        return this.inProgress.size();
+    }
+
+    /**
+     * Send the queued wills while there are senders with room for them
+     */
+    private void drain() {
+
+        int count = this.queue.size();
+        for (int i = 0; (i < count) && !this.closed; i++) {
+
+            PendingWill will = this.queue.poll();
+            PooledSender pooledSender = this.sender(will.amqpPublishMessage.topic());
+            if (pooledSender != null) {
+                this.send(pooledSender, will);
+            } else {
+                this.queue.add(will);
+                // all the wills share the anonymous senders, there is no room for the others as well
+                if (this.anonymousRelay) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a sender with room for a will on the provided topic, the least loaded one or a new one
+     * if all are loaded and the pool isn't full
+     *
+     * @param topic topic of the will
+     * @return  the sender, null if there is no room
+     */
+    private PooledSender sender(String topic) {
+
+        String address = this.anonymousRelay ? null : topic;
+
+        PooledSender best = null;
+        PooledSender idle = null;
+        for (PooledSender pooledSender: this.senders) {
+
+            int inFlight = pooledSender.attempts.size();
+            if (Objects.equals(pooledSender.address, address)) {
+                if ((inFlight < this.options.getPipelineDepth()) && ((best == null) || (inFlight < best.attempts.size()))) {
+                    best = pooledSender;
+                }
+            } else if ((inFlight == 0) && (idle == null)) {
+                idle = pooledSender;
+            }
+        }
+
+        if ((best != null) && best.attempts.isEmpty()) {
+            return best;
+        }
+
+        // the pool grows only when the available senders are loaded
+        if (this.senders.size() < this.options.getPoolSize()) {
+            return this.createSender(address);
+        }
+
+        if (best != null) {
+            return best;
+        }
+
+        // a sender not used for a different topic makes room for the new one
+        if (idle != null) {
+            this.senders.remove(idle);
+            idle.sender.close();
+            return this.createSender(address);
+        }
+
+        return null;
+    }
+
+    private PooledSender createSender(String address) {
+
+        ProtonSender sender = this.senderFactory.apply(address);
+        PooledSender pooledSender = new PooledSender(address, sender);
+
+        sender.setQoS(ProtonQoS.AT_LEAST_ONCE)
+                .closeHandler(ar -> this.senderClosed(pooledSender))
+                .detachHandler(ar -> this.senderClosed(pooledSender))
+                .open();
+
+        this.senders.add(pooledSender);
+        LOG.debug("Created sender for {}", (address != null) ? address : "anonymous relay");
+        return pooledSender;
+    }
+
+    private void senderClosed(PooledSender pooledSender) {
+
+        if (!this.senders.remove(pooledSender)) {
+            return;
+        }
+        LOG.warn("Sender for {} closed with {} not settled deliveries", pooledSender.address, pooledSender.attempts.size());
+
+        pooledSender.sender.close();
+        // deliveries on a closed sender will never be settled
+        for (Attempt attempt: new ArrayList<>(pooledSender.attempts)) {
+            this.failed(attempt, "sender closed");
+        }
+        this.drain();
+    }
+
+    private void send(PooledSender pooledSender, PendingWill will) {
+
+        will.attempt++;
+        this.attempts++;
+
+        Attempt attempt = new Attempt(will, pooledSender);
+        pooledSender.attempts.add(attempt);
+        attempt.timer = this.vertx.setTimer(this.options.getDeliveryTimeout(), t -> this.failed(attempt, "delivery timeout"));
+
+        // a retried will keeps the same message identifier, flagged as duplicate
+        AmqpPublishMessage amqpPublishMessage = will.amqpPublishMessage;
+        if (will.attempt > 1) {
+            amqpPublishMessage = new AmqpPublishMessage(amqpPublishMessage.messageId(), amqpPublishMessage.qos(), true,
+                    amqpPublishMessage.isRetain(), amqpPublishMessage.topic(), amqpPublishMessage.payload());
+        }
+
+        pooledSender.sender.send(amqpPublishMessage.toAmqp(), delivery -> {
+
+            if (delivery.getRemoteState() instanceof Accepted) {
+                this.accepted(attempt);
+            } else {
+                this.failed(attempt, String.valueOf(delivery.getRemoteState()));
+            }
+        });
+    }
+
+    private boolean done(Attempt attempt) {
+
+        if (attempt.done) {
+            return false;
+        }
+        attempt.done = true;
+        this.vertx.cancelTimer(attempt.timer);
+        attempt.sender.attempts.remove(attempt);
+        return true;
+    }
+
+    private void accepted(Attempt attempt) {
+
+        boolean done = this.done(attempt);
+
+        // even a late acceptance (after a timeout) avoids a retry
+        if (!attempt.will.completed) {
+            LOG.debug("Will for client {} published at attempt {}", attempt.will.clientId, attempt.will.attempt);
+            this.complete(attempt.will, Future.succeededFuture());
+        }
+
+        if (done) {
+            this.drain();
+        }
+    }
+
+    private void failed(Attempt attempt, String reason) {
+
+        if (!this.done(attempt)) {
+            return;
+        }
+
+        PendingWill will = attempt.will;
+        if (!will.completed && !this.closed) {
+
+            if (will.attempt >= this.options.getMaxAttempts()) {
+
+                LOG.error("Will for client {} not published after {} attempts ({})", will.clientId, will.attempt, reason);
+                this.complete(will, Future.failedFuture(String.format("Will not published after %d attempts (%s)", will.attempt, reason)));
+
+            } else {
+
+                long delay = this.backoff(will.attempt);
+                LOG.debug("Will for client {} not published ({}), retry in {} ms", will.clientId, reason, delay);
+                this.retries++;
+                this.vertx.setTimer(delay, t -> {
+                    if (!will.completed && !this.closed) {
+                        this.queue.add(will);
+                        this.drain();
+                    }
+                });
+            }
+        }
+
+        this.drain();
+    }
+
+    /**
+     * Delay before the next attempt, random up to an exponentially growing bound ("full jitter")
+     * so that wills failed together are not retried together
+     *
+     * @param attempt   number of the failed attempt
+     * @return  delay in ms
+     */
+    private long backoff(int attempt) {
+
+        long bound = Math.min(this.options.getMaxRetryDelay(), this.options.getRetryDelay() << Math.min(attempt - 1, 20));
+        return 1 + (long) (this.random.nextDouble() * bound);
+    }
+
+    private void complete(PendingWill will, AsyncResult<Void> result) {
+
+        will.completed = true;
+        this.inProgress.remove(will.clientId);
+        if (result.succeeded()) {
+            this.published.put(will.clientId, System.currentTimeMillis());
+        }
+
+        for (Handler<AsyncResult<Void>> handler: will.handlers) {
+            handler.handle(result);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.endpoints;
+
+/**
+ * Options for the engine publishing the will messages
+ */
+public class WillPublisherOptions {
+
+    public static final int DEFAULT_POOL_SIZE = 4;
+    public static final int DEFAULT_PIPELINE_DEPTH = 32;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_RETRY_DELAY = 100; // in ms
+    public static final long DEFAULT_MAX_RETRY_DELAY = 5000; // in ms
+    public static final long DEFAULT_DELIVERY_TIMEOUT = 10000; // in ms
+    public static final long DEFAULT_DEDUP_TIMEOUT = 60000; // in ms
+
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private int pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private long maxRetryDelay = DEFAULT_MAX_RETRY_DELAY;
+    private long deliveryTimeout = DEFAULT_DELIVERY_TIMEOUT;
+    private long dedupTimeout = DEFAULT_DEDUP_TIMEOUT;
+    private boolean anonymousRelay;
+
+    /**
+     * Max number of senders used for publishing
+     *
+     * @return
+     */
+    public int getPoolSize() {
+        return this.poolSize;
+    }
+
+    /**
+     * Set the max number of senders used for publishing
+     *
+     * @param poolSize  max number of senders
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    /**
+     * Max number of not settled deliveries on a sender
+     *
+     * @return
+     */
+    public int getPipelineDepth() {
+        return this.pipelineDepth;
+    }
+
+    /**
+     * Set the max number of not settled deliveries on a sender
+     *
+     * @param pipelineDepth max number of not settled deliveries
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
+        return this;
+    }
+
+    /**
+     * Max number of attempts for publishing a will message
+     *
+     * @return
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Set the max number of attempts for publishing a will message
+     *
+     * @param maxAttempts   max number of attempts
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Base delay before retrying a failed publish, doubled on every attempt
+     *
+     * @return
+     */
+    public long getRetryDelay() {
+        return this.retryDelay;
+    }
+
+    /**
+     * Set the base delay before retrying a failed publish, doubled on every attempt
+     *
+     * @param retryDelay    base retry delay (in ms)
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+        return this;
+    }
+
+    /**
+     * Upper bound for the delay before retrying a failed publish
+     *
+     * @return
+     */
+    public long getMaxRetryDelay() {
+        return this.maxRetryDelay;
+    }
+
+    /**
+     * Set the upper bound for the delay before retrying a failed publish
+     *
+     * @param maxRetryDelay max retry delay (in ms)
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setMaxRetryDelay(long maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+        return this;
+    }
+
+    /**
+     * Time after which a not settled delivery is considered failed
+     *
+     * @return
+     */
+    public long getDeliveryTimeout() {
+        return this.deliveryTimeout;
+    }
+
+    /**
+     * Set the time after which a not settled delivery is considered failed
+     *
+     * @param deliveryTimeout   delivery timeout (in ms)
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setDeliveryTimeout(long deliveryTimeout) {
+        this.deliveryTimeout = deliveryTimeout;
+        return this;
+    }
+
+    /**
+     * Time for which a published will isn't published again for the same client
+     *
+     * @return
+     */
+    public long getDedupTimeout() {
+        return this.dedupTimeout;
+    }
+
+    /**
+     * Set the time for which a published will isn't published again for the same client
+     *
+     * @param dedupTimeout  dedup timeout (in ms)
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setDedupTimeout(long dedupTimeout) {
+        this.dedupTimeout = dedupTimeout;
+        return this;
+    }
+
+    /**
+     * If an anonymous relay sender has to be used when the messaging service supports it
+     *
+     * @return
+     */
+    public boolean isAnonymousRelay() {
+        return this.anonymousRelay;
+    }
+
+    /**
+     * Set if an anonymous relay sender has to be used when the messaging service supports it.
+     * NOTE : addresses reachable through link routes only (i.e. topics on brokers) can't be used with it
+     *
+     * @param anonymousRelay    if the anonymous relay has to be used
+     * @return  current WillPublisherOptions instance
+     */
+    public WillPublisherOptions setAnonymousRelay(boolean anonymousRelay) {
+        this.anonymousRelay = anonymousRelay;
+        return this;
+    }
+}
@@ -9,6 +9,8 @@ import enmasse.mqtt.messages.AmqpWillMessage;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 
+import java.util.Map;
+
 /**
  * LWT Storage Service interface
  */
@@ -47,6 +49,34 @@ public interface LwtStorage {
      */
     void update(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler);
 
+    /**
+     * Store the provided "will" information, adding it or updating the existing one for the client
+     * as a single atomic operation
+     *
+     * @param clientId  client identifier for the "will" information
+     * @param willMessage   "will" information to store
+     * @param handler   handler called with the result code
+     */
+    void upsert(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler);
+
+    /**
+     * Store the provided "will" information for more clients at once, adding or updating
+     * the existing ones
+     *
+     * @param willMessages  "will" information to store (client identifier -> "will" information)
+     * @param handler   handler called with the number of "will" information stored
+     */
+    void upsertAll(Map<String, AmqpWillMessage> willMessages, Handler<AsyncResult<Integer>> handler);
+
+    /**
+     * Shard (partition) of the storage owning the "will" information for the specified client,
+     * storages not partitioned return always 0
+     *
+     * @param clientId  client identifier
+     * @return  the shard index
+     */
+    int shardOf(String clientId);
+
     /**
      * Delete "will" information for the specified client
      *
@@ -0,0 +1,831 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.storage.impl;
+
+import enmasse.mqtt.messages.AmqpWillMessage;
+import enmasse.mqtt.storage.LwtStorage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * File based implementation of the LWT Storage service.
+ *
+ * The wills are written to an append-only log made by memory-mapped segments of fixed size,
+ * with an in memory index (client identifier -> position of the current will in the log) in front of it.
+ * Every record is CRC checked, so on opening the log is replayed until the first incomplete record
+ * (i.e. the one written during a crash) which is discarded with everything after it.
+ *
+ * An add/update/delete operation completes only when the related record is forced to the disk; the force
+ * is executed on the Vert.x worker pool and it's shared by all the operations requested in the meantime (group commit).
+ * Segments where most of the records are superseded or deleted wills are compacted periodically,
+ * copying the still valid records at the end of the log and deleting the segment file.
+ *
+ * The storage can be used from more verticle instances, the handlers are called on the caller context
+ */
+@Component
+@ConditionalOnProperty(name = "enmasse.mqtt.lwt.storage", havingValue = "file")
+public class FileLwtStorage implements LwtStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileLwtStorage.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final long DEFAULT_COMPACTION_INTERVAL = 60000;
+    private static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    private File directory;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private long compactionInterval = DEFAULT_COMPACTION_INTERVAL;
+    private double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+    private Vertx vertx;
+    private long compactionTimer = -1;
+    private boolean opened;
+    private boolean closed;
+    // handlers of open requests, called when the log recovery ends
+    private List<Handler<AsyncResult<Void>>> openHandlers;
+
+    // client identifier -> position of the current will in the log
+    private final Map<String, Location> index = new HashMap<>();
+    // segments in the log order, the last one is where the records are appended
+    private final List<LogSegment> segments = new ArrayList<>();
+    private LogSegment active;
+
+    // segments with records not forced to the disk yet
+    private final Set<LogSegment> dirty = new LinkedHashSet<>();
+    // operations waiting for the next force
+    private List<PendingCommit> commits = new ArrayList<>();
+    private boolean syncing;
+    private boolean compacting;
+
+    private long syncs;
+
+    /**
+     * Position of a record in the log
+     */
+    private static class Location {
+
+        private final LogSegment segment;
+        private final int offset;
+        private final int length;
+
+        Location(LogSegment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Operation waiting for its record to be forced to the disk
+     */
+    private static class PendingCommit {
+
+        private final Context context;
+        private final Handler<AsyncResult<Integer>> handler;
+
+        PendingCommit(Context context, Handler<AsyncResult<Integer>> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+
+        void complete(AsyncResult<Integer> result) {
+
+            if (this.context != null) {
+                this.context.runOnContext(v -> this.handler.handle(result));
+            } else {
+                this.handler.handle(result);
+            }
+        }
+    }
+
+    @Override
+    public void open(Handler<AsyncResult<Void>> handler) {
+
+        Context context = Vertx.currentContext();
+        if (context == null) {
+            handler.handle(Future.failedFuture(new IllegalStateException("The storage has to be opened from a Vert.x context")));
+            return;
+        }
+
+        synchronized (this) {
+
+            // opened by more verticle instances, the log is recovered just once
+            if (this.opened) {
+                context.runOnContext(v -> handler.handle(Future.succeededFuture()));
+                return;
+            }
+            if (this.openHandlers != null) {
+                this.openHandlers.add(result -> context.runOnContext(v -> handler.handle(result)));
+                return;
+            }
+            this.openHandlers = new ArrayList<>();
+            this.openHandlers.add(handler);
+            this.vertx = context.owner();
+        }
+
+        this.vertx.<Void>executeBlocking(future -> {
+
+            try {
+                this.recover();
+                future.complete();
+            } catch (Exception e) {
+                future.fail(e);
+            }
+
+        }, done -> {
+
+            List<Handler<AsyncResult<Void>>> handlers;
+            synchronized (this) {
+                handlers = this.openHandlers;
+                this.openHandlers = null;
+                this.opened = done.succeeded();
+                if (this.opened && (this.compactionInterval > 0)) {
+                    this.compactionTimer = this.vertx.setPeriodic(this.compactionInterval, t -> this.scheduleCompaction());
+                }
+            }
+
+            if (done.succeeded()) {
+                LOG.info("Recovered {} wills from {} segments in {}", this.size(), this.segments(), this.directory);
+            } else {
+                LOG.error("Error opening the LWT storage in {}", this.directory, done.cause());
+            }
+
+            for (Handler<AsyncResult<Void>> h: handlers) {
+                h.handle(done);
+            }
+        });
+    }
+
+    @Override
+    public void add(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler) {
+
+        AsyncResult<Integer> failure;
+        synchronized (this) {
+
+            if (this.index.containsKey(clientId)) {
+                LOG.warn("Will already existing for the client {}", clientId);
+                failure = Future.failedFuture(new IllegalArgumentException("Will already existing for the client"));
+            } else {
+                failure = this.write(PUT, clientId, willMessage);
+            }
+        }
+
+        if (failure != null) {
+            handler.handle(failure);
+        } else {
+            LOG.debug("Will added for the client {}", clientId);
+            this.commit(handler);
+        }
+    }
+
+    @Override
+    public void get(String clientId, Handler<AsyncResult<AmqpWillMessage>> handler) {
+
+        AmqpWillMessage willMessage = null;
+        synchronized (this) {
+
+            Location location = this.index.get(clientId);
+            if (location != null) {
+                willMessage = decode(location.segment.slice(location.offset, location.length));
+            }
+        }
+
+        if (willMessage == null) {
+            LOG.warn("No will for the client {}", clientId);
+            handler.handle(Future.failedFuture(new IllegalArgumentException("No will for the client")));
+        } else {
+            LOG.debug("Will retrieved for the client {}", clientId);
+            handler.handle(Future.succeededFuture(willMessage));
+        }
+    }
+
+    @Override
+    public void update(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler) {
+
+        AsyncResult<Integer> failure;
+        synchronized (this) {
+
+            if (!this.index.containsKey(clientId)) {
+                LOG.warn("No will for the client {}", clientId);
+                failure = Future.failedFuture(new IllegalArgumentException("No will for the client"));
+            } else {
+                failure = this.write(PUT, clientId, willMessage);
+            }
+        }
+
+        if (failure != null) {
+            handler.handle(failure);
+        } else {
+            LOG.debug("Will updated for the client {}", clientId);
+            this.commit(handler);
+        }
+    }
+
+    @Override
+    public void upsert(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler) {
+
+        AsyncResult<Integer> failure;
+        synchronized (this) {
+            failure = this.write(PUT, clientId, willMessage);
+        }
+
+        if (failure != null) {
+            handler.handle(failure);
+        } else {
+            LOG.debug("Will stored for the client {}", clientId);
+            this.commit(handler);
+        }
+    }
+
+    @Override
+    public void upsertAll(Map<String, AmqpWillMessage> willMessages, Handler<AsyncResult<Integer>> handler) {
+
+        AsyncResult<Integer> failure = null;
+        synchronized (this) {
+
+            // all the records are forced to the disk together
+            for (Map.Entry<String, AmqpWillMessage> entry: willMessages.entrySet()) {
+                failure = this.write(PUT, entry.getKey(), entry.getValue());
+                if (failure != null) {
+                    break;
+                }
+            }
+        }
+
+        if (failure != null) {
+            handler.handle(failure);
+        } else {
+            LOG.debug("Wills stored for {} clients", willMessages.size());
+            this.commit(result -> handler.handle(result.succeeded() ? Future.succeededFuture(willMessages.size()) : result));
+        }
+    }
+
+    @Override
+    public int shardOf(String clientId) {
+        return 0;
+    }
+
+    @Override
+    public void delete(String clientId, Handler<AsyncResult<Integer>> handler) {
+
+        AsyncResult<Integer> failure;
+        synchronized (this) {
+
+            if (!this.index.containsKey(clientId)) {
+                LOG.warn("No will for the client {}", clientId);
+                failure = Future.failedFuture(new IllegalArgumentException("No will for the client"));
+            } else {
+                failure = this.write(DELETE, clientId, null);
+            }
+        }
+
+        if (failure != null) {
+            handler.handle(failure);
+        } else {
+            LOG.debug("Will deleted for the client {}", clientId);
+            this.commit(handler);
+        }
+    }
+
+    @Override
+    public void close() {
+
+        synchronized (this) {
+
+            if (this.closed || !this.opened) {
+                return;
+            }
+            this.closed = true;
+
+            if (this.compactionTimer != -1) {
+                this.vertx.cancelTimer(this.compactionTimer);
+            }
+
+            for (LogSegment segment: this.segments) {
+                try {
+                    segment.force();
+                    segment.close();
+                } catch (IOException e) {
+                    LOG.error("Error closing segment {}", segment, e);
+                }
+            }
+            this.dirty.clear();
+            this.index.clear();
+        }
+    }
+
+    /**
+     * Compact the segments where the ratio between the records still valid and
+     * the written ones is under the compaction threshold. It's blocking, so it has to be executed
+     * on a worker thread
+     *
+     * @return  number of compacted (so deleted) segments
+     * @throws IOException
+     */
+    public int compact() throws IOException {
+
+        List<LogSegment> candidates = new ArrayList<>();
+        synchronized (this) {
+
+            if (this.compacting || this.closed || !this.opened) {
+                return 0;
+            }
+            this.compacting = true;
+
+            for (LogSegment segment: this.segments) {
+                if ((segment != this.active) && (segment.liveBytes() <= segment.writePosition() * this.compactionThreshold)) {
+                    candidates.add(segment);
+                }
+            }
+        }
+
+        int compacted = 0;
+        try {
+
+            for (LogSegment segment: candidates) {
+
+                List<LogSegment> targets;
+                synchronized (this) {
+
+                    if (this.closed) {
+                        break;
+                    }
+                    targets = this.copyLiveRecords(segment);
+                }
+
+                // the copies have to be on the disk before deleting the original records
+                for (LogSegment target: targets) {
+                    target.force();
+                }
+
+                synchronized (this) {
+                    this.segments.remove(segment);
+                    this.dirty.remove(segment);
+                }
+                segment.delete();
+                compacted++;
+
+                LOG.debug("Compacted segment {}", segment);
+            }
+
+        } finally {
+
+            synchronized (this) {
+                this.compacting = false;
+            }
+        }
+
+        if (compacted > 0) {
+            LOG.info("Compacted {} segments", compacted);
+        }
+        return compacted;
+    }
+
+    /**
+     * Number of wills in the storage
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Number of segments in the log
+     *
+     * @return
+     */
+    public synchronized int segments() {
+        return this.segments.size();
+    }
+
+    /**
+     * Number of forces to the disk executed for committing operations
+     *
+     * @return
+     */
+    public synchronized long syncs() {
+        return this.syncs;
+    }
+
+    /**
+     * Set the directory where the log segments are stored
+     *
+     * @param directory path to the log directory
+     * @return  current LWT Storage instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.storage.dir:/var/lib/mqtt-lwt}")
+    public FileLwtStorage setDirectory(String directory) {
+        this.directory = new File(directory);
+        return this;
+    }
+
+    /**
+     * Set the size of the log segments
+     *
+     * @param segmentSize   segment size in bytes, it's the max size for a will too
+     * @return  current LWT Storage instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.storage.segmentsize:67108864}")
+    public FileLwtStorage setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Set the interval for the periodic compaction of the log
+     *
+     * @param compactionInterval    compaction interval in milliseconds (0 disables compaction)
+     * @return  current LWT Storage instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.storage.compactioninterval:60000}")
+    public FileLwtStorage setCompactionInterval(long compactionInterval) {
+        this.compactionInterval = compactionInterval;
+        return this;
+    }
+
+    /**
+     * Set the ratio of valid records in a segment under which the segment is compacted
+     *
+     * @param compactionThreshold   compaction threshold (between 0 and 1)
+     * @return  current LWT Storage instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.storage.compactionthreshold:0.5}")
+    public FileLwtStorage setCompactionThreshold(double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+        return this;
+    }
+
+    /**
+     * Replay the log segments for rebuilding the index
+     *
+     * @throws IOException
+     */
+    private synchronized void recover() throws IOException {
+
+        Files.createDirectories(this.directory.toPath());
+
+        File[] files = this.directory.listFiles((dir, name) -> LogSegment.isSegment(name));
+        if (files == null) {
+            throw new IOException("Error listing segments in " + this.directory);
+        }
+        // the segment identifier is zero padded in the name
+        Arrays.sort(files);
+
+        for (File file: files) {
+
+            LogSegment segment = LogSegment.open(file);
+            this.segments.add(segment);
+
+            ByteBuffer buffer = segment.slice(0, segment.capacity());
+            int position = 0;
+            boolean corrupted = false;
+
+            while (position + LogSegment.HEADER_SIZE <= segment.capacity()) {
+
+                int crc = buffer.getInt(position);
+                int length = buffer.getInt(position + 4);
+
+                // end of the written part of the segment
+                if ((crc == 0) && (length == 0)) {
+                    break;
+                }
+
+                if ((length <= 0) || (length > segment.capacity() - position - LogSegment.HEADER_SIZE) ||
+                        (crc != crc(buffer, position, length))) {
+                    corrupted = true;
+                    break;
+                }
+
+                int recordLength = LogSegment.HEADER_SIZE + length;
+                ByteBuffer record = segment.slice(position, recordLength);
+                this.index(clientId(record), (type(record) == PUT) ? new Location(segment, position, recordLength) : null);
+                position += recordLength;
+            }
+
+            segment.writePosition(position);
+            if (corrupted) {
+                // partially written record, discard it with everything after
+                LOG.warn("Discarding corrupted records in segment {} from offset {}", segment, position);
+                segment.truncate(position);
+                this.dirty.add(segment);
+            }
+        }
+
+        if (this.segments.isEmpty()) {
+            this.segments.add(LogSegment.create(this.directory, 0, this.segmentSize));
+        }
+        this.active = this.segments.get(this.segments.size() - 1);
+    }
+
+    /**
+     * Append a record to the log and update the index
+     *
+     * @param type  record type
+     * @param clientId  client identifier
+     * @param willMessage   will for a PUT record, null for a DELETE one
+     * @return  the failure or null if written
+     */
+    private AsyncResult<Integer> write(byte type, String clientId, AmqpWillMessage willMessage) {
+
+        if (this.closed || !this.opened) {
+            return Future.failedFuture(new IllegalStateException("The storage isn't open"));
+        }
+
+        ByteBuffer record = encode(type, clientId, willMessage);
+        if (record.remaining() > this.segmentSize) {
+            LOG.warn("Will for the client {} too big", clientId);
+            return Future.failedFuture(new IllegalArgumentException("Will bigger than the segment size"));
+        }
+
+        try {
+            Location location = this.append(record);
+            this.index(clientId, (type == PUT) ? location : null);
+        } catch (IOException e) {
+            LOG.error("Error writing the will for the client {}", clientId, e);
+            return Future.failedFuture(e);
+        }
+        return null;
+    }
+
+    /**
+     * Append a record at the end of the log, rolling to a new segment if the active one is full
+     *
+     * @param record    the record to append
+     * @return  position of the record in the log
+     * @throws IOException
+     */
+    private Location append(ByteBuffer record) throws IOException {
+
+        int length = record.remaining();
+        int offset = this.active.append(record.duplicate());
+        if (offset == -1) {
+
+            this.dirty.add(this.active);
+            this.active = LogSegment.create(this.directory, this.active.id() + 1, Math.max(this.segmentSize, length));
+            this.segments.add(this.active);
+            offset = this.active.append(record.duplicate());
+        }
+        this.dirty.add(this.active);
+        return new Location(this.active, offset, length);
+    }
+
+    /**
+     * Update the index with the new position of the will for a client, keeping track
+     * of the valid records in the segments
+     *
+     * @param clientId  client identifier
+     * @param location  position of the new will, null if the will was deleted
+     */
+    private void index(String clientId, Location location) {
+
+        Location previous = (location != null) ? this.index.put(clientId, location) : this.index.remove(clientId);
+        if (previous != null) {
+            previous.segment.addLiveBytes(-previous.length);
+        }
+        if (location != null) {
+            location.segment.addLiveBytes(location.length);
+        }
+    }
+
+    /**
+     * Copy the records still needed from a segment at the end of the log
+     *
+     * @param segment   segment to compact
+     * @return  segments where records were copied
+     * @throws IOException
+     */
+    private List<LogSegment> copyLiveRecords(LogSegment segment) throws IOException {
+
+        Set<LogSegment> targets = new LinkedHashSet<>();
+        // a delete has to be kept only if an older segment could have a will for the same client
+        boolean oldest = (this.segments.get(0) == segment);
+
+        int position = 0;
+        while (position < segment.writePosition()) {
+
+            int length = LogSegment.HEADER_SIZE + segment.slice(position, LogSegment.HEADER_SIZE).getInt(4);
+            ByteBuffer record = segment.slice(position, length);
+            String clientId = clientId(record);
+            Location current = this.index.get(clientId);
+
+            if (type(record) == PUT) {
+
+                if ((current != null) && (current.segment == segment) && (current.offset == position)) {
+                    Location location = this.append(record);
+                    this.index(clientId, location);
+                    targets.add(location.segment);
+                }
+
+            } else if (!oldest && (current == null)) {
+
+                targets.add(this.append(record).segment);
+            }
+
+            position += length;
+        }
+
+        return new ArrayList<>(targets);
+    }
+
+    private void scheduleCompaction() {
+
+        this.vertx.<Void>executeBlocking(future -> {
+
+            try {
+                this.compact();
+                future.complete();
+            } catch (Exception e) {
+                future.fail(e);
+            }
+
+        }, false, done -> {
+
+            if (done.failed()) {
+                LOG.error("Error compacting the LWT storage", done.cause());
+            }
+        });
+    }
+
+    /**
+     * Complete the operation when its record is forced to the disk, with all the other
+     * operations requested in the meantime
+     *
+     * @param handler   handler called when the operation is committed
+     */
+    private void commit(Handler<AsyncResult<Integer>> handler) {
+
+        boolean sync;
+        synchronized (this) {
+            this.commits.add(new PendingCommit(Vertx.currentContext(), handler));
+            sync = !this.syncing;
+            this.syncing = true;
+        }
+
+        if (sync) {
+            this.sync();
+        }
+    }
+
+    private void sync() {
+
+        List<PendingCommit> batch;
+        List<LogSegment> forcing;
+        synchronized (this) {
+            batch = this.commits;
+            this.commits = new ArrayList<>();
+            forcing = new ArrayList<>(this.dirty);
+            this.dirty.clear();
+        }
+
+        this.vertx.<Void>executeBlocking(future -> {
+
+            for (LogSegment segment: forcing) {
+                segment.force();
+            }
+            future.complete();
+
+        }, false, done -> {
+
+            AsyncResult<Integer> result = done.succeeded() ? Future.succeededFuture() : Future.failedFuture(done.cause());
+            if (done.failed()) {
+                LOG.error("Error forcing the LWT storage to the disk", done.cause());
+            }
+
+            boolean next;
+            synchronized (this) {
+                this.syncs++;
+                next = !this.commits.isEmpty();
+                this.syncing = next;
+            }
+
+            for (PendingCommit commit: batch) {
+                commit.complete(result);
+            }
+
+            // operations requested during the force are committed by the next one
+            if (next) {
+                this.sync();
+            }
+        });
+    }
+
+    /**
+     * Encode a record
+     *
+     * Body layout : [type (1)][client id length (4)][client id]
+     * and for a PUT : [retain (1)][qos (1)][topic length (4)][topic][payload length (4)][payload]
+     *
+     * @param type  record type
+     * @param clientId  client identifier
+     * @param willMessage   will for a PUT record, null for a DELETE one
+     * @return  the record
+     */
+    private static ByteBuffer encode(byte type, String clientId, AmqpWillMessage willMessage) {
+
+        byte[] clientIdBytes = clientId.getBytes(StandardCharsets.UTF_8);
+        byte[] topicBytes = null;
+        Buffer payload = null;
+        int length = 1 + 4 + clientIdBytes.length;
+        if (type == PUT) {
+            topicBytes = willMessage.topic().getBytes(StandardCharsets.UTF_8);
+            // the payload could be null, stored as empty
+            payload = (willMessage.payload() != null) ? willMessage.payload() : Buffer.buffer();
+            length += 1 + 1 + 4 + topicBytes.length + 4 + payload.length();
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(LogSegment.HEADER_SIZE + length);
+        record.putInt(0).putInt(length);
+        record.put(type).putInt(clientIdBytes.length).put(clientIdBytes);
+        if (type == PUT) {
+            record.put((byte) (willMessage.isRetain() ? 1 : 0))
+                    .put((byte) willMessage.qos().value())
+                    .putInt(topicBytes.length).put(topicBytes)
+                    .putInt(payload.length()).put(payload.getByteBuf().nioBuffer());
+        }
+        record.putInt(0, crc(record, 0, length));
+        record.flip();
+        return record;
+    }
+
+    private static byte type(ByteBuffer record) {
+        return record.get(LogSegment.HEADER_SIZE);
+    }
+
+    private static String clientId(ByteBuffer record) {
+
+        int length = record.getInt(LogSegment.HEADER_SIZE + 1);
+        byte[] clientId = new byte[length];
+        ByteBuffer view = record.duplicate();
+        view.position(LogSegment.HEADER_SIZE + 5);
+        view.get(clientId);
+        return new String(clientId, StandardCharsets.UTF_8);
+    }
+
+    private static AmqpWillMessage decode(ByteBuffer record) {
+
+        ByteBuffer view = record.duplicate();
+        view.position(LogSegment.HEADER_SIZE + 1);
+        view.position(view.position() + 4 + view.getInt(view.position()));
+
+        boolean isRetain = view.get() == 1;
+        MqttQoS qos = MqttQoS.valueOf(view.get());
+
+        byte[] topic = new byte[view.getInt()];
+        view.get(topic);
+
+        // copied, the segment could be deleted by a compaction
+        byte[] payload = new byte[view.getInt()];
+        view.get(payload);
+
+        return new AmqpWillMessage(isRetain, new String(topic, StandardCharsets.UTF_8), qos, Buffer.buffer(payload));
+    }
+
+    /**
+     * CRC32 of a record length and body
+     *
+     * @param buffer    buffer containing the record
+     * @param position  record position in the buffer
+     * @param length    record body length
+     * @return  the CRC32
+     */
+    private static int crc(ByteBuffer buffer, int position, int length) {
+
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + LogSegment.HEADER_SIZE + length).position(position + 4);
+
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
@@ -12,6 +12,7 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
@@ -21,6 +22,7 @@ import java.util.Map;
  * In memory implementation of the LWT Storage service
  */
 @Component
+@ConditionalOnProperty(name = "enmasse.mqtt.lwt.storage", havingValue = "memory", matchIfMissing = true)
 public class InMemoryLwtStorage implements LwtStorage {
 
     public static final Logger LOG = LoggerFactory.getLogger(InMemoryLwtStorage.class);
@@ -75,6 +77,30 @@ public class InMemoryLwtStorage implements LwtStorage {
         }
     }
 
+    @Override
+    public void upsert(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler) {
+
+        if (this.wills.put(clientId, willMessage) == null) {
+            LOG.info("Will added for the client {}", clientId);
+        } else {
+            LOG.info("Will updated for the client {}", clientId);
+        }
+        handler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public void upsertAll(Map<String, AmqpWillMessage> willMessages, Handler<AsyncResult<Integer>> handler) {
+
+        this.wills.putAll(willMessages);
+        LOG.info("Wills stored for {} clients", willMessages.size());
+        handler.handle(Future.succeededFuture(willMessages.size()));
+    }
+
+    @Override
+    public int shardOf(String clientId) {
+        return 0;
+    }
+
     @Override
     public void delete(String clientId, Handler<AsyncResult<Integer>> handler) {
 
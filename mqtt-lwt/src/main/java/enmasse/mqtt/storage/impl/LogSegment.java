@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+/**
+ * Segment of the append-only log used by the file based LWT Storage service.
+ * The segment is a file with a fixed size, memory-mapped, where records are appended one after the other;
+ * the not written part of the file is made by zeroes.
+ *
+ * Record layout : [crc (4)][length (4)][body (length)] with the CRC32 computed on length and body
+ */
+class LogSegment {
+
+    static final String PREFIX = "lwt-";
+    static final String SUFFIX = ".log";
+
+    static final int HEADER_SIZE = 8;
+
+    private final long id;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+
+    // position where the next record will be appended
+    private int writePosition;
+    // bytes of records which are still the current will for a client
+    private int liveBytes;
+
+    private LogSegment(long id, File file, int size) throws IOException {
+
+        this.id = id;
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        if (this.raf.length() < size) {
+            this.raf.setLength(size);
+        }
+        this.buffer = this.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.raf.length());
+    }
+
+    /**
+     * Create a new empty segment
+     *
+     * @param dir   directory for the segment file
+     * @param id    segment identifier (it defines the order of the segments in the log)
+     * @param size  segment size
+     * @return  the segment
+     * @throws IOException
+     */
+    static LogSegment create(File dir, long id, int size) throws IOException {
+
+        File file = new File(dir, name(id));
+        if (file.exists()) {
+            throw new IOException("Segment " + file + " already existing");
+        }
+        return new LogSegment(id, file, size);
+    }
+
+    /**
+     * Open an existing segment, the records have to be recovered by scanning it
+     *
+     * @param file  segment file
+     * @return  the segment
+     * @throws IOException
+     */
+    static LogSegment open(File file) throws IOException {
+
+        String name = file.getName();
+        long id = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        return new LogSegment(id, file, 0);
+    }
+
+    static boolean isSegment(String name) {
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private static String name(long id) {
+        return String.format("%s%020d%s", PREFIX, id, SUFFIX);
+    }
+
+    /**
+     * Append a record to the segment
+     *
+     * @param record    the record (from position to limit) to append
+     * @return  offset of the record in the segment or -1 if there is no room for it
+     */
+    int append(ByteBuffer record) {
+
+        if (record.remaining() > this.buffer.capacity() - this.writePosition) {
+            return -1;
+        }
+
+        int offset = this.writePosition;
+        ByteBuffer target = this.buffer.duplicate();
+        target.position(offset);
+        target.put(record);
+
+        this.writePosition = target.position();
+        return offset;
+    }
+
+    /**
+     * Read only view on a part of the segment
+     *
+     * @param offset    offset in the segment
+     * @param length    number of bytes
+     * @return  the view
+     */
+    ByteBuffer slice(int offset, int length) {
+
+        ByteBuffer slice = this.buffer.asReadOnlyBuffer();
+        slice.limit(offset + length).position(offset);
+        return slice.slice();
+    }
+
+    /**
+     * Discard everything from the provided position to the end of the segment, used for
+     * removing a partially written record after a crash
+     *
+     * @param position  position from which the segment is zeroed
+     */
+    void truncate(int position) {
+
+        for (int i = position; i < this.buffer.capacity(); i++) {
+            this.buffer.put(i, (byte) 0);
+        }
+        this.writePosition = position;
+    }
+
+    /**
+     * Force the appended records to the disk
+     */
+    void force() {
+        this.buffer.force();
+    }
+
+    void close() throws IOException {
+        this.raf.close();
+    }
+
+    /**
+     * Close and delete the segment file. The mapping is released by the JVM when the buffer is garbage collected
+     *
+     * @throws IOException
+     */
+    void delete() throws IOException {
+
+        this.close();
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    long id() {
+        return this.id;
+    }
+
+    int capacity() {
+        return this.buffer.capacity();
+    }
+
+    int writePosition() {
+        return this.writePosition;
+    }
+
+    void writePosition(int writePosition) {
+        this.writePosition = writePosition;
+    }
+
+    int liveBytes() {
+        return this.liveBytes;
+    }
+
+    void addLiveBytes(int bytes) {
+        this.liveBytes += bytes;
+    }
+
+    @Override
+    public String toString() {
+        return this.file.getName();
+    }
+}
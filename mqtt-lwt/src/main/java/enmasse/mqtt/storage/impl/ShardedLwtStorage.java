@@ -0,0 +1,312 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt.storage.impl;
+
+import enmasse.mqtt.messages.AmqpWillMessage;
+import enmasse.mqtt.storage.LwtStorage;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sharded implementation of the LWT Storage service.
+ *
+ * The client identifiers are partitioned across independent shards, each one an in memory storage
+ * owned by its own Vert.x context (so by an event loop thread). Every operation is executed on the
+ * context of the shard owning the client identifier and the handler is called back on the caller context,
+ * so the storage can be used from more verticle instances without locking
+ */
+@Component
+@ConditionalOnProperty(name = "enmasse.mqtt.lwt.storage", havingValue = "sharded")
+public class ShardedLwtStorage implements LwtStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedLwtStorage.class);
+
+    private int shardCount;
+
+    private Vertx vertx;
+    // read on every operation, without locking
+    private volatile Shard[] shards;
+    private boolean opened;
+    // handlers of open requests, called when all the shards are deployed
+    private List<Handler<AsyncResult<Void>>> openHandlers;
+
+    /**
+     * Shard of the storage, a verticle so that it has its own context
+     */
+    private static class Shard extends AbstractVerticle {
+
+        private final LwtStorage lwtStorage = new InMemoryLwtStorage();
+        private String deploymentId;
+
+        @Override
+        public void start(Future<Void> startFuture) throws Exception {
+            this.lwtStorage.open(startFuture.completer());
+        }
+
+        @Override
+        public void stop() throws Exception {
+            this.lwtStorage.close();
+        }
+
+        /**
+         * Execute an operation on the shard context
+         *
+         * @param operation operation to execute, with the handler for its result
+         * @param handler   handler called on the caller context with the operation result
+         */
+        <T> void execute(Consumer<Handler<AsyncResult<T>>> operation, Handler<AsyncResult<T>> handler) {
+
+            Context caller = Vertx.currentContext();
+            if (caller == this.context) {
+                operation.accept(handler);
+            } else {
+                this.context.runOnContext(v -> {
+                    operation.accept(result -> {
+                        if (caller != null) {
+                            caller.runOnContext(v1 -> handler.handle(result));
+                        } else {
+                            handler.handle(result);
+                        }
+                    });
+                });
+            }
+        }
+    }
+
+    @Override
+    public void open(Handler<AsyncResult<Void>> handler) {
+
+        Context context = Vertx.currentContext();
+        if (context == null) {
+            handler.handle(Future.failedFuture(new IllegalStateException("The storage has to be opened from a Vert.x context")));
+            return;
+        }
+
+        synchronized (this) {
+
+            // opened by more verticle instances, the shards are deployed just once
+            if (this.opened) {
+                context.runOnContext(v -> handler.handle(Future.succeededFuture()));
+                return;
+            }
+            if (this.openHandlers != null) {
+                this.openHandlers.add(result -> context.runOnContext(v -> handler.handle(result)));
+                return;
+            }
+            this.openHandlers = new ArrayList<>();
+            this.openHandlers.add(handler);
+            this.vertx = context.owner();
+        }
+
+        // a shard per available processor by default
+        int count = (this.shardCount > 0) ? this.shardCount : Runtime.getRuntime().availableProcessors();
+        Shard[] shards = new Shard[count];
+
+        List<Future> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+
+            Shard shard = new Shard();
+            shards[i] = shard;
+
+            Future<String> result = Future.future();
+            results.add(result);
+            this.vertx.deployVerticle(shard, done -> {
+                if (done.succeeded()) {
+                    shard.deploymentId = done.result();
+                }
+                result.handle(done);
+            });
+        }
+
+        CompositeFuture.all(results).setHandler(done -> {
+
+            List<Handler<AsyncResult<Void>>> handlers;
+            synchronized (this) {
+                handlers = this.openHandlers;
+                this.openHandlers = null;
+                this.opened = done.succeeded();
+                if (this.opened) {
+                    this.shards = shards;
+                }
+            }
+
+            if (done.succeeded()) {
+                LOG.info("LWT storage opened with {} shards", count);
+            } else {
+                LOG.error("Error opening the LWT storage", done.cause());
+                this.undeploy(shards);
+            }
+
+            AsyncResult<Void> result = done.succeeded() ? Future.succeededFuture() : Future.failedFuture(done.cause());
+            for (Handler<AsyncResult<Void>> h: handlers) {
+                h.handle(result);
+            }
+        });
+    }
+
+    @Override
+    public void add(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler) {
+        this.execute(clientId, lwtStorage -> h -> lwtStorage.add(clientId, willMessage, h), handler);
+    }
+
+    @Override
+    public void get(String clientId, Handler<AsyncResult<AmqpWillMessage>> handler) {
+        this.execute(clientId, lwtStorage -> h -> lwtStorage.get(clientId, h), handler);
+    }
+
+    @Override
+    public void update(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler) {
+        this.execute(clientId, lwtStorage -> h -> lwtStorage.update(clientId, willMessage, h), handler);
+    }
+
+    @Override
+    public void upsert(String clientId, AmqpWillMessage willMessage, Handler<AsyncResult<Integer>> handler) {
+        this.execute(clientId, lwtStorage -> h -> lwtStorage.upsert(clientId, willMessage, h), handler);
+    }
+
+    @Override
+    public void upsertAll(Map<String, AmqpWillMessage> willMessages, Handler<AsyncResult<Integer>> handler) {
+
+        Shard[] shards = this.shards;
+        if (shards == null) {
+            handler.handle(Future.failedFuture(new IllegalStateException("The storage isn't open")));
+            return;
+        }
+
+        // splitting the wills per shard, a single batch is executed on every involved shard
+        Map<Integer, Map<String, AmqpWillMessage>> batches = new HashMap<>();
+        for (Map.Entry<String, AmqpWillMessage> entry: willMessages.entrySet()) {
+            batches.computeIfAbsent(index(entry.getKey(), shards.length), i -> new HashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+
+        List<Future> results = new ArrayList<>();
+        for (Map.Entry<Integer, Map<String, AmqpWillMessage>> batch: batches.entrySet()) {
+
+            Shard shard = shards[batch.getKey()];
+            Future<Integer> result = Future.future();
+            results.add(result);
+            shard.execute(h -> shard.lwtStorage.upsertAll(batch.getValue(), h), result.completer());
+        }
+
+        CompositeFuture.all(results).setHandler(done -> {
+
+            if (done.succeeded()) {
+                handler.handle(Future.succeededFuture(willMessages.size()));
+            } else {
+                handler.handle(Future.failedFuture(done.cause()));
+            }
+        });
+    }
+
+    @Override
+    public void delete(String clientId, Handler<AsyncResult<Integer>> handler) {
+        this.execute(clientId, lwtStorage -> h -> lwtStorage.delete(clientId, h), handler);
+    }
+
+    @Override
+    public void close() {
+
+        Shard[] shards;
+        synchronized (this) {
+            shards = this.shards;
+            this.shards = null;
+            this.opened = false;
+        }
+
+        if (shards != null) {
+            this.undeploy(shards);
+        }
+    }
+
+    /**
+     * Number of shards
+     *
+     * @return
+     */
+    public int shards() {
+
+        Shard[] shards = this.shards;
+        return (shards != null) ? shards.length : 0;
+    }
+
+    @Override
+    public int shardOf(String clientId) {
+
+        int shards = this.shards();
+        if (shards == 0) {
+            throw new IllegalStateException("The storage isn't open");
+        }
+        return index(clientId, shards);
+    }
+
+    /**
+     * Set the number of shards
+     *
+     * @param shardCount    number of shards (0 for the number of available processors)
+     * @return  current LWT Storage instance
+     */
+    @Value(value = "${enmasse.mqtt.lwt.storage.shards:0}")
+    public ShardedLwtStorage setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+        return this;
+    }
+
+    /**
+     * Execute an operation on the shard owning the client identifier
+     *
+     * @param clientId  client identifier
+     * @param operation provides the operation to execute on the shard storage
+     * @param handler   handler called on the caller context with the operation result
+     */
+    private <T> void execute(String clientId, Function<LwtStorage, Consumer<Handler<AsyncResult<T>>>> operation, Handler<AsyncResult<T>> handler) {
+
+        Shard[] shards = this.shards;
+        if (shards == null) {
+            handler.handle(Future.failedFuture(new IllegalStateException("The storage isn't open")));
+        } else {
+            Shard shard = shards[index(clientId, shards.length)];
+            shard.execute(operation.apply(shard.lwtStorage), handler);
+        }
+    }
+
+    private static int index(String clientId, int shards) {
+
+        int hash = clientId.hashCode();
+        // spreading the higher bits, client identifiers often differ only in the last chars
+        return Math.floorMod(hash ^ (hash >>> 16), shards);
+    }
+
+    private void undeploy(Shard[] shards) {
+
+        for (Shard shard: shards) {
+            if (shard.deploymentId != null) {
+                this.vertx.undeploy(shard.deploymentId, done -> {
+                    if (done.failed()) {
+                        LOG.error("Error closing LWT storage shard", done.cause());
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.messages.AmqpWillMessage;
+import enmasse.mqtt.storage.impl.FileLwtStorage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Tests related to the file based LWT storage service
+ */
+@RunWith(VertxUnitRunner.class)
+public class FileLwtStorageTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileLwtStorageTest.class);
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final long TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Vertx vertx;
+    // the storage operations are requested from a verticle context as the LWT service does
+    private Context context;
+    private FileLwtStorage lwtStorage;
+
+    @Before
+    public void before(TestContext context) {
+
+        this.vertx = Vertx.vertx();
+        this.context = this.vertx.getOrCreateContext();
+        this.lwtStorage = this.open(context, SEGMENT_SIZE);
+    }
+
+    @After
+    public void after(TestContext context) {
+
+        this.lwtStorage.close();
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void addGetUpdateDelete(TestContext context) {
+
+        context.assertTrue(this.await(context, h -> this.lwtStorage.get("client", h)).failed());
+        context.assertTrue(this.await(context, h -> this.lwtStorage.update("client", will("client", 1), h)).failed());
+        context.assertTrue(this.await(context, h -> this.lwtStorage.delete("client", h)).failed());
+
+        context.assertTrue(this.await(context, h -> this.lwtStorage.add("client", will("client", 0), h)).succeeded());
+        context.assertTrue(this.await(context, h -> this.lwtStorage.add("client", will("client", 0), h)).failed());
+        this.assertWill(context, "client", 0);
+
+        context.assertTrue(this.await(context, h -> this.lwtStorage.update("client", will("client", 1), h)).succeeded());
+        this.assertWill(context, "client", 1);
+
+        context.assertTrue(this.await(context, h -> this.lwtStorage.delete("client", h)).succeeded());
+        context.assertTrue(this.await(context, h -> this.lwtStorage.get("client", h)).failed());
+        context.assertEquals(0, this.lwtStorage.size());
+
+        // upsert adds the will and then updates it
+        context.assertTrue(this.await(context, h -> this.lwtStorage.upsert("client", will("client", 2), h)).succeeded());
+        this.assertWill(context, "client", 2);
+        context.assertTrue(this.await(context, h -> this.lwtStorage.upsert("client", will("client", 3), h)).succeeded());
+        this.assertWill(context, "client", 3);
+    }
+
+    @Test
+    public void recoveryAfterReopen(TestContext context) {
+
+        for (int i = 0; i < 100; i++) {
+            this.add(context, "client" + i, 0);
+        }
+        for (int i = 0; i < 50; i++) {
+            this.update(context, "client" + i, 1);
+        }
+        for (int i = 0; i < 25; i++) {
+            this.delete(context, "client" + i);
+        }
+        context.assertTrue(this.lwtStorage.segments() > 1);
+
+        this.reopen(context);
+
+        context.assertEquals(75, this.lwtStorage.size());
+        for (int i = 0; i < 100; i++) {
+            String clientId = "client" + i;
+            if (i < 25) {
+                context.assertTrue(this.await(context, h -> this.lwtStorage.get(clientId, h)).failed());
+            } else {
+                this.assertWill(context, clientId, (i < 50) ? 1 : 0);
+            }
+        }
+    }
+
+    @Test
+    public void truncatedTail(TestContext context) throws IOException {
+
+        for (int i = 0; i < 3; i++) {
+            this.add(context, "client" + i, 0);
+        }
+        this.lwtStorage.close();
+
+        // crash in the middle of writing the last record, the file ends before the record
+        File segment = this.segmentFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(writtenLength(file) - 3);
+        }
+
+        this.lwtStorage = this.open(context, SEGMENT_SIZE);
+
+        context.assertEquals(2, this.lwtStorage.size());
+        this.assertWill(context, "client0", 0);
+        this.assertWill(context, "client1", 0);
+        context.assertTrue(this.await(context, h -> this.lwtStorage.get("client2", h)).failed());
+
+        // the log is still usable after the recovery
+        this.add(context, "client2", 1);
+        this.reopen(context);
+
+        context.assertEquals(3, this.lwtStorage.size());
+        this.assertWill(context, "client2", 1);
+    }
+
+    @Test
+    public void tornWrite(TestContext context) throws IOException {
+
+        for (int i = 0; i < 3; i++) {
+            this.add(context, "client" + i, 0);
+        }
+        this.lwtStorage.close();
+
+        // crash before the last bytes of the record reached the disk, the file has the segment size
+        File segment = this.segmentFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long written = writtenLength(file);
+            file.seek(written - 4);
+            file.write(new byte[4]);
+        }
+
+        this.lwtStorage = this.open(context, SEGMENT_SIZE);
+
+        context.assertEquals(2, this.lwtStorage.size());
+        context.assertTrue(this.await(context, h -> this.lwtStorage.get("client2", h)).failed());
+
+        // the new record takes the place of the discarded one
+        this.add(context, "client3", 0);
+        this.reopen(context);
+
+        context.assertEquals(3, this.lwtStorage.size());
+        this.assertWill(context, "client3", 0);
+        context.assertEquals(1, this.segmentFiles().length);
+    }
+
+    @Test
+    public void compaction(TestContext context) throws IOException {
+
+        for (int i = 0; i < 20; i++) {
+            this.add(context, "client" + i, 0);
+        }
+        for (int version = 1; version <= 10; version++) {
+            for (int i = 0; i < 20; i++) {
+                this.update(context, "client" + i, version);
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            this.delete(context, "client" + i);
+        }
+
+        int segments = this.lwtStorage.segments();
+        int compacted = this.lwtStorage.compact();
+
+        context.assertTrue(compacted > 0);
+        context.assertTrue(this.lwtStorage.segments() < segments);
+        context.assertEquals(this.lwtStorage.segments(), this.segmentFiles().length);
+        LOG.info("Compacted {} segments of {}", compacted, segments);
+
+        this.assertCompacted(context);
+
+        // the compacted log is recovered to the same state, deleted wills aren't back
+        this.reopen(context);
+        this.assertCompacted(context);
+
+        // nothing more to compact
+        this.lwtStorage.compact();
+        this.reopen(context);
+        this.assertCompacted(context);
+    }
+
+    @Test
+    public void throughput(TestContext context) {
+
+        int clients = 2000;
+        int updates = 3;
+
+        this.lwtStorage.close();
+        this.lwtStorage = this.open(context, 1024 * 1024);
+
+        long start = System.nanoTime();
+
+        this.all(context, clients, i -> h -> this.lwtStorage.add("client" + i, will("client" + i, 0), h));
+        for (int version = 1; version <= updates; version++) {
+            int v = version;
+            this.all(context, clients, i -> h -> this.lwtStorage.update("client" + i, will("client" + i, v), h));
+        }
+        this.all(context, clients, i -> h -> this.lwtStorage.delete("client" + i, h));
+
+        long elapsed = System.nanoTime() - start;
+        int operations = clients * (updates + 2);
+
+        LOG.info("{} operations in {} ms ({} ops/sec) with {} syncs", operations, elapsed / 1000000,
+                (long) (operations / (elapsed / 1e9)), this.lwtStorage.syncs());
+
+        context.assertEquals(0, this.lwtStorage.size());
+        // concurrent operations share the same force to the disk
+        context.assertTrue(this.lwtStorage.syncs() < operations);
+    }
+
+    private void assertCompacted(TestContext context) {
+
+        context.assertEquals(10, this.lwtStorage.size());
+        for (int i = 0; i < 20; i++) {
+            String clientId = "client" + i;
+            if (i < 10) {
+                context.assertTrue(this.await(context, h -> this.lwtStorage.get(clientId, h)).failed());
+            } else {
+                this.assertWill(context, clientId, 10);
+            }
+        }
+    }
+
+    private FileLwtStorage open(TestContext context, int segmentSize) {
+
+        FileLwtStorage lwtStorage = new FileLwtStorage()
+                .setDirectory(this.folder.getRoot().getAbsolutePath())
+                .setSegmentSize(segmentSize)
+                .setCompactionInterval(0);
+
+        context.assertTrue(this.await(context, lwtStorage::open).succeeded());
+        return lwtStorage;
+    }
+
+    private void reopen(TestContext context) {
+
+        this.lwtStorage.close();
+        this.lwtStorage = this.open(context, SEGMENT_SIZE);
+    }
+
+    private void add(TestContext context, String clientId, int version) {
+        context.assertTrue(this.await(context, h -> this.lwtStorage.add(clientId, will(clientId, version), h)).succeeded());
+    }
+
+    private void update(TestContext context, String clientId, int version) {
+        context.assertTrue(this.await(context, h -> this.lwtStorage.update(clientId, will(clientId, version), h)).succeeded());
+    }
+
+    private void delete(TestContext context, String clientId) {
+        context.assertTrue(this.await(context, h -> this.lwtStorage.delete(clientId, h)).succeeded());
+    }
+
+    private void assertWill(TestContext context, String clientId, int version) {
+
+        AsyncResult<AmqpWillMessage> result = this.await(context, h -> this.lwtStorage.get(clientId, h));
+        context.assertTrue(result.succeeded());
+
+        AmqpWillMessage expected = will(clientId, version);
+        context.assertEquals(expected.isRetain(), result.result().isRetain());
+        context.assertEquals(expected.topic(), result.result().topic());
+        context.assertEquals(expected.qos(), result.result().qos());
+        context.assertEquals(expected.payload(), result.result().payload());
+    }
+
+    /**
+     * Will message for a client, different for every version
+     */
+    private static AmqpWillMessage will(String clientId, int version) {
+        return new AmqpWillMessage(version % 2 == 0, "will/" + clientId, MqttQoS.valueOf(version % 3), Buffer.buffer("will " + clientId + " " + version));
+    }
+
+    /**
+     * Execute an operation on the storage from the test context, waiting for its result
+     *
+     * @param context   test context
+     * @param operation operation to execute with the result handler
+     * @return  the operation result
+     */
+    private <T> AsyncResult<T> await(TestContext context, Consumer<Handler<AsyncResult<T>>> operation) {
+
+        AtomicReference<AsyncResult<T>> result = new AtomicReference<>();
+        Async async = context.async();
+        this.context.runOnContext(v -> operation.accept(ar -> {
+            result.set(ar);
+            async.complete();
+        }));
+        async.awaitSuccess(TIMEOUT);
+        return result.get();
+    }
+
+    /**
+     * Execute a number of operations all together, waiting for all their results
+     *
+     * @param context   test context
+     * @param count number of operations
+     * @param operation provides the i-th operation to execute with the result handler
+     */
+    private void all(TestContext context, int count, IntFunction<Consumer<Handler<AsyncResult<Integer>>>> operation) {
+
+        AtomicInteger succeeded = new AtomicInteger();
+        Async async = context.async(count);
+        this.context.runOnContext(v -> {
+            for (int i = 0; i < count; i++) {
+                operation.apply(i).accept(ar -> {
+                    if (ar.succeeded()) {
+                        succeeded.incrementAndGet();
+                    }
+                    async.countDown();
+                });
+            }
+        });
+        async.awaitSuccess(TIMEOUT * 3);
+        context.assertEquals(count, succeeded.get());
+    }
+
+    private File[] segmentFiles() {
+        return this.folder.getRoot().listFiles((dir, name) -> name.endsWith(".log"));
+    }
+
+    /**
+     * Length of the written part of a segment file (the rest is made by zeroes)
+     */
+    private static long writtenLength(RandomAccessFile file) throws IOException {
+
+        byte[] content = new byte[(int) file.length()];
+        file.seek(0);
+        file.readFully(content);
+
+        int length = content.length;
+        while (length > 0 && content[length - 1] == 0) {
+            length--;
+        }
+        return length;
+    }
+}
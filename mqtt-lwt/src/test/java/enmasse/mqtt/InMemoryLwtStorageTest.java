@@ -156,6 +156,31 @@ public class InMemoryLwtStorageTest {
         });
     }
 
+    @Test
+    public void upsertWill(TestContext context) {
+
+        Async async = context.async();
+
+        this.lwtStorage.upsert(CLIENT_ID, WILL_MESSAGE, done -> {
+
+            context.assertTrue(done.succeeded());
+
+            AmqpWillMessage willMessage1 = new AmqpWillMessage(false, "will_topic_1", MqttQoS.AT_LEAST_ONCE, Buffer.buffer("Hello_1"));
+            this.lwtStorage.upsert(CLIENT_ID, willMessage1, done1 -> {
+
+                context.assertTrue(done1.succeeded());
+
+                this.lwtStorage.get(CLIENT_ID, done2 -> {
+
+                    // added by the first upsert, updated by the second one
+                    context.assertTrue(done2.succeeded() && willMessage1.equals(done2.result()));
+                    LOG.info("Will added and updated by upsert");
+                    async.complete();
+                });
+            });
+        });
+    }
+
     @Test
     public void deleteExistingWill(TestContext context) {
 
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.messages.AmqpWillMessage;
+import enmasse.mqtt.storage.impl.ShardedLwtStorage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Tests related to the sharded LWT storage service used concurrently by more contexts
+ */
+@RunWith(VertxUnitRunner.class)
+public class ShardedLwtStorageTest {
+
+    private static final int SHARDS = 4;
+    // contexts using the storage at the same time, as more MQTT LWT verticle instances do
+    private static final int CALLERS = 8;
+    private static final int CLIENTS = 1000;
+    private static final long TIMEOUT = 30000;
+
+    private Vertx vertx;
+    private List<Context> callers;
+    private ShardedLwtStorage lwtStorage;
+
+    @Before
+    public void before(TestContext context) {
+
+        this.vertx = Vertx.vertx();
+        this.callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            // a new context for every call from a not Vert.x thread
+            this.callers.add(this.vertx.getOrCreateContext());
+        }
+
+        this.lwtStorage = new ShardedLwtStorage().setShardCount(SHARDS);
+
+        // opened by all the callers, but just once
+        Async opened = context.async(CALLERS);
+        for (Context caller: this.callers) {
+            caller.runOnContext(v -> this.lwtStorage.open(done -> {
+                context.assertTrue(done.succeeded());
+                context.assertEquals(caller, Vertx.currentContext());
+                opened.countDown();
+            }));
+        }
+        opened.awaitSuccess(TIMEOUT);
+        context.assertEquals(SHARDS, this.lwtStorage.shards());
+    }
+
+    @After
+    public void after(TestContext context) {
+
+        this.lwtStorage.close();
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void concurrentAdd(TestContext context) {
+
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        // all the callers try to add a will for the same clients
+        this.runOnCallers(context, CALLERS * CLIENTS, (caller, done) -> {
+
+            for (int i = 0; i < CLIENTS; i++) {
+                this.lwtStorage.add("client" + i, will(caller, 0), ar -> {
+                    (ar.succeeded() ? added : failed).incrementAndGet();
+                    done.handle(null);
+                });
+            }
+        });
+
+        // just one add succeeded for every client
+        context.assertEquals(CLIENTS, added.get());
+        context.assertEquals((CALLERS - 1) * CLIENTS, failed.get());
+    }
+
+    @Test
+    public void concurrentUpsert(TestContext context) {
+
+        AtomicInteger failed = new AtomicInteger();
+
+        // all the callers add or update the will for the same clients, in different order
+        this.runOnCallers(context, CALLERS * CLIENTS, (caller, done) -> {
+
+            List<Integer> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(i);
+            }
+            Collections.shuffle(clients, new Random(caller));
+
+            for (int i: clients) {
+                this.lwtStorage.upsert("client" + i, will(caller, i), ar -> {
+                    if (ar.failed()) {
+                        failed.incrementAndGet();
+                    }
+                    done.handle(null);
+                });
+            }
+        });
+
+        context.assertEquals(0, failed.get());
+
+        // every client has the will stored by one of the callers
+        this.runOnCallers(context, CLIENTS, (caller, done) -> {
+
+            if (caller == 0) {
+                for (int i = 0; i < CLIENTS; i++) {
+                    int client = i;
+                    this.lwtStorage.get("client" + i, ar -> {
+                        context.assertTrue(ar.succeeded());
+                        context.assertTrue(ar.result().payload().toString().endsWith("-" + client));
+                        done.handle(null);
+                    });
+                }
+            }
+        });
+    }
+
+    @Test
+    public void mixedOperations(TestContext context) {
+
+        int cycles = 50;
+        int clients = CLIENTS / CALLERS;
+        AtomicInteger failed = new AtomicInteger();
+
+        // every caller works on its own clients, all the operations have to succeed
+        this.runOnCallers(context, CALLERS * clients * cycles, (caller, done) -> {
+
+            Context callerContext = Vertx.currentContext();
+            for (int i = 0; i < clients; i++) {
+                this.cycle(callerContext, "client" + caller + "-" + i, caller, 1, cycles, failed, done);
+            }
+        });
+
+        context.assertEquals(0, failed.get());
+
+        this.runOnCallers(context, CALLERS * clients, (caller, done) -> {
+
+            for (int i = 0; i < clients; i++) {
+                this.lwtStorage.get("client" + caller + "-" + i, ar -> {
+                    context.assertTrue(ar.succeeded());
+                    context.assertEquals("will-" + caller + "-" + cycles, ar.result().payload().toString());
+                    done.handle(null);
+                });
+            }
+        });
+    }
+
+    @Test
+    public void shardDistribution(TestContext context) {
+
+        int clients = 10000;
+        int[] counts = new int[SHARDS];
+        for (int i = 0; i < clients; i++) {
+            counts[this.lwtStorage.shardOf("client" + i)]++;
+        }
+
+        for (int count: counts) {
+            context.assertTrue(count > clients / SHARDS / 2 && count < clients / SHARDS * 3 / 2);
+        }
+    }
+
+    /**
+     * Execute add, update, delete and upsert on the will for a client, one after the other;
+     * the cycle is repeated (deleting the will first) until the last one
+     */
+    private void cycle(Context caller, String clientId, int callerIndex, int cycle, int cycles, AtomicInteger failed, Handler<Void> done) {
+
+        Handler<AsyncResult<Integer>> check = ar -> {
+            // the handler has to be called on the caller context
+            if (ar.failed() || (Vertx.currentContext() != caller)) {
+                failed.incrementAndGet();
+            }
+        };
+
+        this.lwtStorage.add(clientId, will(callerIndex, 0), ar -> {
+            check.handle(ar);
+            this.lwtStorage.update(clientId, will(callerIndex, 1), ar1 -> {
+                check.handle(ar1);
+                this.lwtStorage.delete(clientId, ar2 -> {
+                    check.handle(ar2);
+                    this.lwtStorage.upsert(clientId, will(callerIndex, cycle), ar3 -> {
+                        check.handle(ar3);
+                        done.handle(null);
+                        if (cycle < cycles) {
+                            this.lwtStorage.delete(clientId, ar4 -> {
+                                check.handle(ar4);
+                                this.cycle(caller, clientId, callerIndex, cycle + 1, cycles, failed, done);
+                            });
+                        }
+                    });
+                });
+            });
+        });
+    }
+
+    /**
+     * Run the same task on all the callers contexts, waiting for the provided number of completions
+     *
+     * @param context   test context
+     * @param completions   number of completions to wait for
+     * @param task  task executed with the caller index and the handler to call on every completion
+     */
+    private void runOnCallers(TestContext context, int completions, BiConsumer<Integer, Handler<Void>> task) {
+
+        Async async = context.async(completions);
+        for (int i = 0; i < CALLERS; i++) {
+            int caller = i;
+            this.callers.get(i).runOnContext(v -> task.accept(caller, x -> async.countDown()));
+        }
+        async.awaitSuccess(TIMEOUT);
+    }
+
+    private static AmqpWillMessage will(int caller, int version) {
+        return new AmqpWillMessage(false, "will_topic", MqttQoS.AT_LEAST_ONCE, Buffer.buffer("will-" + caller + "-" + version));
+    }
+}
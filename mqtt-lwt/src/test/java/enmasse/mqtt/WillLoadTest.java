@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.endpoints.AmqpLwtEndpoint;
+import enmasse.mqtt.messages.AmqpWillMessage;
+import enmasse.mqtt.storage.impl.ShardedLwtStorage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.proton.ProtonClient;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonLinkOptions;
+import io.vertx.proton.ProtonSender;
+import io.vertx.proton.ProtonServer;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Load tests on the LWT endpoint, with the will updates stored in batches on the sharded storage
+ */
+@RunWith(VertxUnitRunner.class)
+public class WillLoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WillLoadTest.class);
+
+    private static final String BIND_ADDRESS = "localhost";
+    private static final int SHARDS = 4;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long TIMEOUT = 60000;
+
+    private Vertx vertx;
+    private ShardedLwtStorage lwtStorage;
+    private ProtonServer server;
+    private List<WillBatcher> willBatchers;
+
+    @Before
+    public void before(TestContext context) {
+
+        this.vertx = Vertx.vertx();
+        this.willBatchers = new CopyOnWriteArrayList<>();
+
+        this.lwtStorage = new ShardedLwtStorage().setShardCount(SHARDS);
+        Context storageContext = this.vertx.getOrCreateContext();
+        Async opened = context.async();
+        storageContext.runOnContext(v -> this.lwtStorage.open(context.asyncAssertSuccess(v1 -> opened.complete())));
+        opened.awaitSuccess(TIMEOUT);
+    }
+
+    @After
+    public void after(TestContext context) {
+
+        this.lwtStorage.close();
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void reconnectionStorm(TestContext context) {
+
+        int clients = 10000;
+        int updates = 2;
+
+        this.startServer(context, AmqpLwtEndpoint.DEFAULT_CREDIT_WINDOW);
+
+        // the messaging service attaching a link for every client, each one sending will updates
+        AtomicInteger accepted = new AtomicInteger();
+        Async drained = context.async(clients * updates);
+
+        long start = System.nanoTime();
+        this.connect(context, connection -> {
+
+            for (int i = 0; i < clients; i++) {
+
+                String clientId = "client" + i;
+                ProtonSender sender = connection.createSender(AmqpLwtEndpoint.LWT_SERVICE_ENDPOINT, new ProtonLinkOptions().setLinkName(clientId));
+                sender.open();
+
+                for (int update = 0; update < updates; update++) {
+                    sender.send(will(clientId, update).toAmqp(), delivery -> {
+                        if (delivery.getRemoteState() instanceof Accepted) {
+                            accepted.incrementAndGet();
+                        }
+                        drained.countDown();
+                    });
+                }
+            }
+        });
+
+        drained.awaitSuccess(TIMEOUT);
+        long elapsed = System.nanoTime() - start;
+
+        long batches = this.willBatchers.stream().mapToLong(WillBatcher::stored).sum();
+        LOG.info("{} will updates from {} clients drained in {} ms with {} batches", clients * updates, clients, elapsed / 1000000, batches);
+
+        context.assertEquals(clients * updates, accepted.get());
+        // updates grouped in batches
+        context.assertTrue(batches < clients * updates);
+
+        // the last update for every client is stored
+        Async checked = context.async(clients);
+        this.vertx.getOrCreateContext().runOnContext(v -> {
+            for (int i = 0; i < clients; i++) {
+                String clientId = "client" + i;
+                this.lwtStorage.get(clientId, ar -> {
+                    context.assertTrue(ar.succeeded());
+                    context.assertEquals(will(clientId, updates - 1).payload(), ar.result().payload());
+                    checked.countDown();
+                });
+            }
+        });
+        checked.awaitSuccess(TIMEOUT);
+    }
+
+    @Test
+    public void creditWindow(TestContext context) {
+
+        int creditWindow = 8;
+        int updates = 100;
+
+        this.startServer(context, creditWindow);
+
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger maxCredit = new AtomicInteger();
+        Async drained = context.async(updates);
+
+        this.connect(context, connection -> {
+
+            ProtonSender sender = connection.createSender(AmqpLwtEndpoint.LWT_SERVICE_ENDPOINT, new ProtonLinkOptions().setLinkName("client"));
+            sender.open();
+
+            for (int update = 0; update < updates; update++) {
+                sender.send(will("client", update).toAmqp(), delivery -> {
+                    if (delivery.getRemoteState() instanceof Accepted) {
+                        accepted.incrementAndGet();
+                    }
+                    maxCredit.accumulateAndGet(sender.getCredit(), Math::max);
+                    drained.countDown();
+                });
+            }
+        });
+
+        drained.awaitSuccess(TIMEOUT);
+
+        // more updates than the window, so the credit was replenished but never over the window
+        context.assertEquals(updates, accepted.get());
+        context.assertTrue(maxCredit.get() <= creditWindow);
+    }
+
+    /**
+     * Start the AMQP server accepting the connection from the messaging service, where
+     * the LWT endpoint handles the client links
+     *
+     * @param context   test context
+     * @param creditWindow  credit window on the client links
+     */
+    private void startServer(TestContext context, int creditWindow) {
+
+        this.server = ProtonServer.create(this.vertx);
+        this.server.connectHandler(connection -> {
+
+            WillBatcher willBatcher = new WillBatcher(this.vertx, this.lwtStorage, MAX_BATCH_SIZE);
+            this.willBatchers.add(willBatcher);
+
+            new AmqpLwtEndpoint(connection)
+                    .creditWindow(creditWindow)
+                    .willHandler(willData -> willBatcher.add(willData.clientId(), willData.amqpWillMessage(), willData::complete))
+                    .disconnectionHandler(disconnectionData -> willBatcher.flush())
+                    .open();
+        });
+
+        Async listening = context.async();
+        this.server.listen(0, BIND_ADDRESS, context.asyncAssertSuccess(s -> listening.complete()));
+        listening.awaitSuccess(TIMEOUT);
+    }
+
+    private void connect(TestContext context, Consumer<ProtonConnection> opened) {
+
+        ProtonClient client = ProtonClient.create(this.vertx);
+        client.connect(BIND_ADDRESS, this.server.actualPort(), context.asyncAssertSuccess(connection -> {
+            connection.openHandler(context.asyncAssertSuccess(opened::accept)).open();
+        }));
+    }
+
+    private static AmqpWillMessage will(String clientId, int update) {
+        return new AmqpWillMessage(false, "will/" + clientId, MqttQoS.AT_LEAST_ONCE, Buffer.buffer("will " + update));
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.mqtt;
+
+import enmasse.mqtt.endpoints.AmqpPublishEndpoint;
+import enmasse.mqtt.endpoints.WillPublisher;
+import enmasse.mqtt.endpoints.WillPublisherOptions;
+import enmasse.mqtt.messages.AmqpPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.proton.ProtonClient;
+import io.vertx.proton.ProtonServer;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.message.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Tests related to the engine publishing will messages, against a fake router
+ * delaying and rejecting the dispositions
+ */
+@RunWith(VertxUnitRunner.class)
+public class WillPublisherTest {
+
+    private static final String BIND_ADDRESS = "localhost";
+    private static final Symbol ANONYMOUS_RELAY = Symbol.valueOf("ANONYMOUS-RELAY");
+    private static final long TIMEOUT = 60000;
+
+    private Vertx vertx;
+    private ProtonServer server;
+    private Context publisherContext;
+    private WillPublisher willPublisher;
+
+    // fake router state
+    private final Map<Object, AtomicInteger> received = new ConcurrentHashMap<>();
+    private final Map<Object, AtomicInteger> accepted = new ConcurrentHashMap<>();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final AtomicInteger receivers = new AtomicInteger();
+    // target addresses of the receivers, empty for the anonymous relay
+    private final Set<String> targets = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Before
+    public void before(TestContext context) {
+        this.vertx = Vertx.vertx();
+    }
+
+    @After
+    public void after(TestContext context) {
+
+        if (this.willPublisher != null) {
+            this.publisherContext.runOnContext(v -> this.willPublisher.close());
+        }
+        this.vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void boundedConcurrency(TestContext context) {
+
+        int wills = 2000;
+        WillPublisherOptions options = new WillPublisherOptions().setPoolSize(4).setPipelineDepth(8);
+
+        // dispositions delayed up to 10 ms, all accepted
+        this.startRouter(context, true, 10, (message, attempt) -> Accepted.getInstance());
+        this.startPublisher(context, true, options);
+
+        this.publishAll(context, wills, 0);
+
+        context.assertEquals(wills, this.accepted.size());
+        context.assertTrue(this.receivers.get() <= options.getPoolSize());
+        context.assertTrue(this.maxInFlight.get() <= options.getPoolSize() * options.getPipelineDepth());
+        context.assertEquals(0L, this.willPublisher.retries());
+    }
+
+    @Test
+    public void retryOnRejection(TestContext context) {
+
+        int wills = 500;
+        WillPublisherOptions options = new WillPublisherOptions().setRetryDelay(5).setMaxRetryDelay(50);
+
+        // every will rejected or released twice before being accepted
+        this.startRouter(context, true, 5, (message, attempt) -> {
+            switch (attempt) {
+                case 1: return new Rejected();
+                case 2: return Released.getInstance();
+                default: return Accepted.getInstance();
+            }
+        });
+        this.startPublisher(context, true, options);
+
+        this.publishAll(context, wills, 0);
+
+        context.assertEquals(wills, this.accepted.size());
+        for (AtomicInteger count: this.received.values()) {
+            context.assertEquals(3, count.get());
+        }
+        context.assertEquals(2L * wills, this.willPublisher.retries());
+    }
+
+    @Test
+    public void retryOnTimeout(TestContext context) {
+
+        int wills = 100;
+        WillPublisherOptions options = new WillPublisherOptions().setRetryDelay(5).setDeliveryTimeout(200);
+
+        // the first delivery of every will is never settled
+        this.startRouter(context, true, 0, (message, attempt) -> (attempt == 1) ? null : Accepted.getInstance());
+        this.startPublisher(context, true, options);
+
+        this.publishAll(context, wills, 0);
+
+        context.assertEquals(wills, this.accepted.size());
+        // retried with the same message identifier, flagged as duplicate
+        context.assertEquals(wills, this.duplicates.get());
+    }
+
+    @Test
+    public void maxAttempts(TestContext context) {
+
+        WillPublisherOptions options = new WillPublisherOptions().setRetryDelay(5).setMaxAttempts(3);
+
+        this.startRouter(context, true, 0, (message, attempt) -> new Rejected());
+        this.startPublisher(context, true, options);
+
+        Async failed = context.async();
+        this.publisherContext.runOnContext(v -> {
+            this.willPublisher.publish("client", will(1), ar -> {
+                context.assertTrue(ar.failed());
+                failed.complete();
+            });
+        });
+        failed.awaitSuccess(TIMEOUT);
+
+        context.assertEquals(3, this.received.get(1).get());
+        context.assertEquals(0, this.willPublisher.pending());
+    }
+
+    @Test
+    public void dedup(TestContext context) {
+
+        WillPublisherOptions options = new WillPublisherOptions().setRetryDelay(5);
+
+        // the first attempt rejected, so the will is being retried when published again
+        this.startRouter(context, true, 20, (message, attempt) -> (attempt == 1) ? new Rejected() : Accepted.getInstance());
+        this.startPublisher(context, true, options);
+
+        // the same client disconnection handled more times, while the will is being published and after that
+        Async published = context.async(3);
+        this.publisherContext.runOnContext(v -> {
+            this.willPublisher.publish("client", will(1), context.asyncAssertSuccess(v1 -> {
+                published.countDown();
+                this.willPublisher.publish("client", will(3), context.asyncAssertSuccess(v2 -> published.countDown()));
+            }));
+            this.willPublisher.publish("client", will(2), context.asyncAssertSuccess(v1 -> published.countDown()));
+        });
+        published.awaitSuccess(TIMEOUT);
+
+        context.assertEquals(1, this.accepted.size());
+        context.assertEquals(1, this.accepted.get(1).get());
+        context.assertFalse(this.received.containsKey(2));
+        context.assertFalse(this.received.containsKey(3));
+
+        // a new will for the client is published
+        Async republished = context.async();
+        this.publisherContext.runOnContext(v -> {
+            this.willPublisher.forget("client");
+            this.willPublisher.publish("client", will(4), context.asyncAssertSuccess(v1 -> republished.complete()));
+        });
+        republished.awaitSuccess(TIMEOUT);
+
+        context.assertEquals(1, this.accepted.get(4).get());
+    }
+
+    @Test
+    public void sendersPerTopic(TestContext context) {
+
+        int wills = 500;
+        WillPublisherOptions options = new WillPublisherOptions().setPoolSize(4).setPipelineDepth(8);
+
+        // no anonymous relay, a sender for every topic, more topics than the pool size
+        this.startRouter(context, false, 5, (message, attempt) -> Accepted.getInstance());
+        this.startPublisher(context, false, options);
+
+        this.publishAll(context, wills, 10);
+
+        context.assertEquals(wills, this.accepted.size());
+        context.assertTrue(this.willPublisher.senders() <= options.getPoolSize());
+        context.assertTrue(this.maxInFlight.get() <= options.getPoolSize() * options.getPipelineDepth());
+    }
+
+    @Test
+    public void anonymousRelayOptIn(TestContext context) {
+
+        // the anonymous relay offered by the router but not enabled, a sender for the topic is used
+        this.startRouter(context, true, 0, (message, attempt) -> Accepted.getInstance());
+        this.publishWithEndpoint(context, new WillPublisherOptions(), "will/topic");
+        context.assertEquals(1, this.targets.size());
+        context.assertTrue(this.targets.contains("will/topic"));
+    }
+
+    @Test
+    public void anonymousRelayEnabled(TestContext context) {
+
+        this.startRouter(context, true, 0, (message, attempt) -> Accepted.getInstance());
+        this.publishWithEndpoint(context, new WillPublisherOptions().setAnonymousRelay(true), "will/topic");
+        context.assertEquals(1, this.targets.size());
+        context.assertTrue(this.targets.contains(""));
+    }
+
+    /**
+     * Publish a will through a publish endpoint connected to the fake router, waiting for it to be published
+     *
+     * @param context   test context
+     * @param options   options for publishing the will
+     * @param topic topic of the will
+     */
+    private void publishWithEndpoint(TestContext context, WillPublisherOptions options, String topic) {
+
+        Async published = context.async();
+        this.vertx.runOnContext(v -> {
+
+            ProtonClient client = ProtonClient.create(this.vertx);
+            client.connect(BIND_ADDRESS, this.server.actualPort(), context.asyncAssertSuccess(connection -> {
+
+                AmqpPublishEndpoint endpoint = new AmqpPublishEndpoint(this.vertx, connection, options);
+                connection.openHandler(context.asyncAssertSuccess(c -> {
+                    endpoint.publish("client", will(1, topic), context.asyncAssertSuccess(v1 -> published.complete()));
+                }));
+                endpoint.open();
+            }));
+        });
+        published.awaitSuccess(TIMEOUT);
+    }
+
+    /**
+     * Publish a will for every client, waiting for all of them to be published
+     *
+     * @param context   test context
+     * @param wills number of wills (and clients)
+     * @param topics    number of topics used by the wills, 0 for a topic per will
+     */
+    private void publishAll(TestContext context, int wills, int topics) {
+
+        Async published = context.async(wills);
+        this.publisherContext.runOnContext(v -> {
+            for (int i = 0; i < wills; i++) {
+                AmqpPublishMessage will = (topics > 0) ? will(i, "will/" + (i % topics)) : will(i);
+                this.willPublisher.publish("client" + i, will, context.asyncAssertSuccess(v1 -> published.countDown()));
+            }
+        });
+        published.awaitSuccess(TIMEOUT);
+    }
+
+    /**
+     * Start a fake router, delaying the disposition of every delivery by a random time
+     *
+     * @param context   test context
+     * @param anonymousRelay    if the anonymous relay has to be offered
+     * @param maxDelay  max delay for the disposition (in ms)
+     * @param disposition   provides the disposition for a message at the provided attempt, null for not settling it
+     */
+    private void startRouter(TestContext context, boolean anonymousRelay, long maxDelay, BiFunction<Message, Integer, DeliveryState> disposition) {
+
+        Random random = new Random();
+
+        this.server = ProtonServer.create(this.vertx);
+        this.server.connectHandler(connection -> {
+
+            if (anonymousRelay) {
+                connection.setOfferedCapabilities(new Symbol[] { ANONYMOUS_RELAY });
+            }
+            connection.sessionOpenHandler(session -> session.open());
+            connection.receiverOpenHandler(receiver -> {
+
+                this.receivers.incrementAndGet();
+                String target = (receiver.getRemoteTarget() != null) ? receiver.getRemoteTarget().getAddress() : null;
+                this.targets.add((target != null) ? target : "");
+                receiver.setTarget(receiver.getRemoteTarget())
+                        .setAutoAccept(false)
+                        .handler((delivery, message) -> {
+
+                            int current = this.inFlight.incrementAndGet();
+                            this.maxInFlight.accumulateAndGet(current, Math::max);
+
+                            int attempt = this.received.computeIfAbsent(message.getMessageId(), id -> new AtomicInteger()).incrementAndGet();
+                            if (message.getDeliveryCount() > 0) {
+                                this.duplicates.incrementAndGet();
+                            }
+
+                            DeliveryState state = disposition.apply(message, attempt);
+                            if (state == null) {
+                                this.inFlight.decrementAndGet();
+                                return;
+                            }
+
+                            long delay = (maxDelay > 0) ? 1 + (long) (random.nextDouble() * maxDelay) : 0;
+                            Runnable settle = () -> {
+                                this.inFlight.decrementAndGet();
+                                if (state instanceof Accepted) {
+                                    this.accepted.computeIfAbsent(message.getMessageId(), id -> new AtomicInteger()).incrementAndGet();
+                                }
+                                delivery.disposition(state, true);
+                            };
+                            if (delay > 0) {
+                                this.vertx.setTimer(delay, t -> settle.run());
+                            } else {
+                                settle.run();
+                            }
+                        })
+                        .open();
+            });
+            connection.open();
+        });
+
+        Async listening = context.async();
+        this.server.listen(0, BIND_ADDRESS, context.asyncAssertSuccess(s -> listening.complete()));
+        listening.awaitSuccess(TIMEOUT);
+    }
+
+    /**
+     * Connect to the fake router, creating the publisher on the connection context
+     *
+     * @param context   test context
+     * @param anonymousRelay    if the anonymous relay has to be used
+     * @param options   options for the publisher
+     */
+    private void startPublisher(TestContext context, boolean anonymousRelay, WillPublisherOptions options) {
+
+        Async started = context.async();
+        this.publisherContext = this.vertx.getOrCreateContext();
+        this.publisherContext.runOnContext(v -> {
+
+            ProtonClient client = ProtonClient.create(this.vertx);
+            client.connect(BIND_ADDRESS, this.server.actualPort(), context.asyncAssertSuccess(connection -> {
+                connection.openHandler(context.asyncAssertSuccess(c -> {
+
+                    this.willPublisher = new WillPublisher(this.vertx, connection::createSender, anonymousRelay, options);
+                    started.complete();
+                })).open();
+            }));
+        });
+        started.awaitSuccess(TIMEOUT);
+    }
+
+    private static AmqpPublishMessage will(int messageId) {
+        return will(messageId, "will/" + messageId);
+    }
+
+    private static AmqpPublishMessage will(int messageId, String topic) {
+        return new AmqpPublishMessage(messageId, MqttQoS.AT_LEAST_ONCE, false, false, topic, Buffer.buffer("will " + messageId));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.queue.scheduler.benchmarks;
+
+import io.enmasse.queue.scheduler.BalancedPlacement;
+import io.enmasse.queue.scheduler.ConsistentHashPlacement;
+import io.enmasse.queue.scheduler.PlacementStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the balancer placing queues on the broker with the least queues with the consistent
+ * hashing with bounded loads, when placing new queues on a group of brokers with queues already and when placing
+ * all the queues again after a broker joined the group (the ring has to be rebuilt)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlacementBenchmark {
+
+    private static final int EXISTING_QUEUES = 10000;
+    private static final int NEW_QUEUES = 1000;
+
+    @Param({ "balanced", "consistent-hashing" })
+    public String strategy;
+
+    @Param({ "10", "100" })
+    public int brokers;
+
+    private PlacementStrategy placementStrategy;
+    private Map<String, Set<String>> queuesByBroker;
+    private Map<String, Set<String>> emptyBrokers;
+    private Map<String, Set<String>> emptyBrokersWithNewBroker;
+    private List<String> newQueues;
+    private List<String> allQueues;
+    private boolean withNewBroker;
+
+    @Setup
+    public void setup() {
+
+        this.placementStrategy = this.strategy.equals("balanced") ? new BalancedPlacement() : new ConsistentHashPlacement();
+
+        this.allQueues = new ArrayList<>();
+        this.queuesByBroker = new LinkedHashMap<>();
+        for (int b = 0; b < this.brokers; b++) {
+            this.queuesByBroker.put("broker-" + b, new HashSet<>());
+        }
+        for (int i = 0; i < EXISTING_QUEUES; i++) {
+            String queue = "queue-" + i;
+            this.queuesByBroker.get("broker-" + (i % this.brokers)).add(queue);
+            this.allQueues.add(queue);
+        }
+
+        this.emptyBrokers = new LinkedHashMap<>();
+        for (String broker : this.queuesByBroker.keySet()) {
+            this.emptyBrokers.put(broker, new HashSet<>());
+        }
+        this.emptyBrokersWithNewBroker = new LinkedHashMap<>(this.emptyBrokers);
+        this.emptyBrokersWithNewBroker.put("broker-" + this.brokers, new HashSet<>());
+
+        this.newQueues = new ArrayList<>();
+        for (int i = 0; i < NEW_QUEUES; i++) {
+            this.newQueues.add("new-queue-" + i);
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> placeNewQueues() {
+        return this.placementStrategy.place(this.queuesByBroker, this.newQueues);
+    }
+
+    @Benchmark
+    public Map<String, String> placeAllAfterChurn() {
+        // a broker joining and leaving the group on every invocation
+        this.withNewBroker = !this.withNewBroker;
+        Map<String, Set<String>> brokers = this.withNewBroker ? this.emptyBrokersWithNewBroker : this.emptyBrokers;
+        return this.placementStrategy.place(brokers, this.allQueues);
+    }
+}
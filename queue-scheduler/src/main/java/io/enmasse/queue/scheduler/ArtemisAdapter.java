@@ -8,47 +8,163 @@ import io.enmasse.amqp.Artemis;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * Adapts Artemis to the Broker interface used by the queue scheduler
  */
 public class ArtemisAdapter implements Broker {
     private static final Logger log = LoggerFactory.getLogger(ArtemisAdapter.class);
+    private static final int defaultMaxInFlight = 100;
+    // broker errors meaning that a step of a previous, partially failed, operation on the queue already went through
+    private static final String alreadyExists = "already exists";
+    private static final String doesNotExist = "does not exist";
     private final Artemis artemis;
+    private final int maxInFlight;
     private static final String messagingHost = System.getenv("MESSAGING_SERVICE_HOST");
     private static final String messagingPort = System.getenv("MESSAGING_SERVICE_PORT_AMQPS_BROKER");
 
     public ArtemisAdapter(Artemis artemis) {
+        this(artemis, defaultMaxInFlight);
+    }
+
+    /**
+     * @param maxInFlight max number of queue operations in flight at the same time during a batch
+     */
+    public ArtemisAdapter(Artemis artemis, int maxInFlight) {
         this.artemis = artemis;
+        this.maxInFlight = maxInFlight;
     }
 
     @Override
     public Set<String> getQueueNames() throws TimeoutException {
-        Set<String> queues = artemis.getQueueNames();
+        CompletableFuture<Set<String>> queues = artemis.getQueueNamesAsync();
         Set<String> connectors = artemis.getConnectorNames();
 
-        queues.retainAll(connectors);
-        return queues;
+        Set<String> result = await(queues);
+        result.retainAll(connectors);
+        return result;
     }
 
     @Override
     public void createQueue(String address) throws TimeoutException {
-        artemis.createQueue(address, address);
+        await(createQueueAsync(address));
+    }
+
+    @Override
+    public void deleteQueue(String address) throws TimeoutException {
+        await(deleteQueueAsync(address));
+    }
+
+    /**
+     * Create the queues pipelining the management requests, up to maxInFlight queues at the same time.
+     */
+    @Override
+    public BatchResult createQueues(Collection<String> addresses) {
+        return runBatch(addresses, this::createQueueAsync);
+    }
+
+    /**
+     * Delete the queues pipelining the management requests, up to maxInFlight queues at the same time.
+     */
+    @Override
+    public BatchResult deleteQueues(Collection<String> addresses) {
+        return runBatch(addresses, this::deleteQueueAsync);
+    }
+
+    private CompletableFuture<Void> createQueueAsync(String address) {
         Map<String, String> connectorParams = new HashMap<>();
         connectorParams.put("host", messagingHost);
         connectorParams.put("port", messagingPort);
         connectorParams.put("containerId", address);
         connectorParams.put("clusterId", address);
-        artemis.createConnectorService(address, connectorParams);
+        return ignoreError(address, artemis.createQueueAsync(address, address), alreadyExists)
+                .thenCompose(created -> ignoreError(address, artemis.createConnectorServiceAsync(address, connectorParams), alreadyExists));
     }
 
-    @Override
-    public void deleteQueue(String address) throws TimeoutException {
-        artemis.destroyConnectorService(address);
-        artemis.destroyQueue(address);
+    /**
+     * Destroy the queue even if destroying its connector service failed: without the connector the queue isn't
+     * reported by getQueueNames, so it would never be deleted later.
+     */
+    private CompletableFuture<Void> deleteQueueAsync(String address) {
+        return ignoreError(address, artemis.destroyConnectorServiceAsync(address), doesNotExist)
+                .handle((destroyed, connectorError) -> connectorError)
+                .thenCompose(connectorError -> ignoreError(address, artemis.destroyQueueAsync(address), doesNotExist)
+                        .thenApply(destroyed -> {
+                            if (connectorError != null) {
+                                throw new CompletionException(connectorError);
+                            }
+                            return null;
+                        }));
+    }
+
+    /**
+     * Complete the operation successfully if the broker failed it with the given error.
+     */
+    private static CompletableFuture<Void> ignoreError(String address, CompletableFuture<Void> operation, String ignoredError) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        operation.whenComplete((done, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null) {
+                result.complete(null);
+            } else if (cause instanceof IllegalStateException && cause.getMessage() != null && cause.getMessage().contains(ignoredError)) {
+                log.debug("Ignoring error for queue {}: {}", address, cause.getMessage());
+                result.complete(null);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    private BatchResult runBatch(Collection<String> addresses, Function<String, CompletableFuture<Void>> operation) {
+        BatchResult result = new BatchResult();
+        Semaphore window = new Semaphore(maxInFlight);
+        List<CompletableFuture<Void>> operations = new ArrayList<>();
+        for (String address : addresses) {
+            window.acquireUninterruptibly();
+            operations.add(operation.apply(address).whenComplete((done, error) -> {
+                window.release();
+                if (error == null) {
+                    result.succeeded(address);
+                } else {
+                    result.failed(address, error);
+                }
+            }));
+        }
+        CompletableFuture.allOf(operations.toArray(new CompletableFuture[0]))
+                .handle((done, error) -> null)
+                .join();
+        if (!result.isSuccess()) {
+            log.warn("Failed operations on {} of {} queues", result.getFailed().size(), addresses.size());
+        }
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws TimeoutException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw (TimeoutException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
     }
 }
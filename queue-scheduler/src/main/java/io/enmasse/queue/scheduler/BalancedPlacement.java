@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.queue.scheduler;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Places every queue on the broker with the least queues.
+ */
+public class BalancedPlacement implements PlacementStrategy {
+    @Override
+    public Map<String, String> place(Map<String, Set<String>> queuesByBroker, Collection<String> addresses) {
+        Map<String, String> placement = new LinkedHashMap<>();
+        if (queuesByBroker.isEmpty()) {
+            return placement;
+        }
+
+        PriorityQueue<BrokerLoad> brokerByNumQueues = new PriorityQueue<>(queuesByBroker.size(), (a, b) -> Integer.compare(a.numQueues, b.numQueues));
+        for (Map.Entry<String, Set<String>> entry : queuesByBroker.entrySet()) {
+            brokerByNumQueues.add(new BrokerLoad(entry.getKey(), entry.getValue().size()));
+        }
+
+        for (String address : addresses) {
+            BrokerLoad brokerLoad = brokerByNumQueues.poll();
+            placement.put(address, brokerLoad.brokerId);
+            brokerLoad.numQueues++;
+            brokerByNumQueues.offer(brokerLoad);
+        }
+        return placement;
+    }
+
+    private static class BrokerLoad {
+        final String brokerId;
+        int numQueues;
+
+        private BrokerLoad(String brokerId, int numQueues) {
+            this.brokerId = brokerId;
+            this.numQueues = numQueues;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.queue.scheduler;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Outcome of a batch of queue operations on a broker, per address.
+ */
+public class BatchResult {
+    private final Set<String> succeeded = new LinkedHashSet<>();
+    private final Map<String, Throwable> failed = new LinkedHashMap<>();
+
+    public synchronized void succeeded(String address) {
+        succeeded.add(address);
+    }
+
+    public synchronized void failed(String address, Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        failed.put(address, cause);
+    }
+
+    public synchronized Set<String> getSucceeded() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(succeeded));
+    }
+
+    public synchronized Map<String, Throwable> getFailed() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+
+    public synchronized boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+    /**
+     * Throw if any of the operations failed, as a TimeoutException if one of them timed out.
+     */
+    public synchronized void throwIfFailed() throws TimeoutException {
+        if (failed.isEmpty()) {
+            return;
+        }
+        String message = "Operations failed for " + failed.size() + " of " + (failed.size() + succeeded.size()) + " addresses: " + failed.keySet();
+        Throwable cause = failed.values().iterator().next();
+        if (failed.values().stream().anyMatch(error -> error instanceof TimeoutException)) {
+            TimeoutException exception = new TimeoutException(message);
+            exception.initCause(cause);
+            throw exception;
+        }
+        throw new RuntimeException(message, cause);
+    }
+}
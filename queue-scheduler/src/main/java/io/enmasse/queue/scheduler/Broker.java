@@ -5,6 +5,7 @@
 
 package io.enmasse.queue.scheduler;
 
+import java.util.Collection;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
@@ -15,4 +16,36 @@ public interface Broker {
     Set<String> getQueueNames() throws TimeoutException;
     void createQueue(String address) throws TimeoutException;
     void deleteQueue(String address) throws TimeoutException;
+
+    /**
+     * Create a batch of queues, going on with the others when one of them fails.
+     */
+    default BatchResult createQueues(Collection<String> addresses) {
+        BatchResult result = new BatchResult();
+        for (String address : addresses) {
+            try {
+                createQueue(address);
+                result.succeeded(address);
+            } catch (Exception e) {
+                result.failed(address, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delete a batch of queues, going on with the others when one of them fails.
+     */
+    default BatchResult deleteQueues(Collection<String> addresses) {
+        BatchResult result = new BatchResult();
+        for (String address : addresses) {
+            try {
+                deleteQueue(address);
+                result.succeeded(address);
+            } catch (Exception e) {
+                result.failed(address, e);
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.queue.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Places the queues with consistent hashing with bounded loads: brokers are hashed on a ring at a number of virtual
+ * nodes, and a queue goes to the first broker found walking the ring clockwise from the queue hash which is below
+ * its capacity, that is the load factor times the average number of queues per broker.
+ *
+ * A queue is placed on the same broker as long as the brokers don't change, and adding or removing a broker moves
+ * only about 1/N of the queues, while the load factor bounds how unbalanced the brokers can be.
+ */
+public class ConsistentHashPlacement implements PlacementStrategy {
+    public static final int DEFAULT_VIRTUAL_NODES = 100;
+    public static final double DEFAULT_LOAD_FACTOR = 1.25;
+    // max number of rings kept, one per broker set (group), the least recently used one is dropped
+    private static final int MAX_RINGS = 64;
+
+    private final int virtualNodes;
+    private final double loadFactor;
+
+    // the same instance places the queues of all the groups, each with its own brokers, so a ring per broker set
+    private final Map<Set<String>, Ring> rings = new LinkedHashMap<Set<String>, Ring>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<String>, Ring> eldest) {
+            return size() > MAX_RINGS;
+        }
+    };
+    private int ringsBuilt = 0;
+
+    public ConsistentHashPlacement() {
+        this(DEFAULT_VIRTUAL_NODES, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * @param virtualNodes number of points of every broker on the ring
+     * @param loadFactor max queues on a broker, relative to the average (greater than 1)
+     */
+    public ConsistentHashPlacement(int virtualNodes, double loadFactor) {
+        if (virtualNodes < 1 || loadFactor <= 1) {
+            throw new IllegalArgumentException("Invalid consistent hashing parameters");
+        }
+        this.virtualNodes = virtualNodes;
+        this.loadFactor = loadFactor;
+    }
+
+    @Override
+    public synchronized Map<String, String> place(Map<String, Set<String>> queuesByBroker, Collection<String> addresses) {
+        Map<String, String> placement = new LinkedHashMap<>();
+        if (queuesByBroker.isEmpty()) {
+            return placement;
+        }
+        Ring ring = rings.get(queuesByBroker.keySet());
+        if (ring == null) {
+            ring = buildRing(queuesByBroker.keySet());
+            rings.put(new HashSet<>(queuesByBroker.keySet()), ring);
+            ringsBuilt++;
+        }
+
+        Map<String, Integer> loads = new HashMap<>();
+        int totalQueues = addresses.size();
+        for (Map.Entry<String, Set<String>> entry : queuesByBroker.entrySet()) {
+            loads.put(entry.getKey(), entry.getValue().size());
+            totalQueues += entry.getValue().size();
+        }
+        int capacity = (int) Math.ceil(loadFactor * totalQueues / queuesByBroker.size());
+
+        // placed in a fixed order, as with bounded loads the placement of a queue depends on the ones before it
+        List<String> sorted = new ArrayList<>(addresses);
+        Collections.sort(sorted);
+        for (String address : sorted) {
+            String brokerId = lookup(ring, hash(address), loads, capacity);
+            placement.put(address, brokerId);
+            loads.merge(brokerId, 1, Integer::sum);
+        }
+        return placement;
+    }
+
+    /**
+     * Walk the ring from the hash to the first broker below the capacity. There is always one, as the capacity of
+     * all the brokers together is greater than the number of queues.
+     */
+    private static String lookup(Ring ring, long hash, Map<String, Integer> loads, int capacity) {
+        int start = Arrays.binarySearch(ring.hashes, hash);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        for (int i = 0; i < ring.hashes.length; i++) {
+            String brokerId = ring.owners[(start + i) % ring.hashes.length];
+            if (loads.get(brokerId) < capacity) {
+                return brokerId;
+            }
+        }
+        return ring.owners[start % ring.hashes.length];
+    }
+
+    private Ring buildRing(Set<String> brokers) {
+        List<long[]> points = new ArrayList<>(brokers.size() * virtualNodes);
+        List<String> owners = new ArrayList<>(brokers.size());
+        for (String brokerId : brokers) {
+            owners.add(brokerId);
+            for (int i = 0; i < virtualNodes; i++) {
+                points.add(new long[]{hash(brokerId + "#" + i), owners.size() - 1});
+            }
+        }
+        // ties broken by broker id, so that the ring doesn't depend on the order of the brokers
+        points.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : owners.get((int) a[1]).compareTo(owners.get((int) b[1])));
+
+        Ring ring = new Ring(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            ring.hashes[i] = points.get(i)[0];
+            ring.owners[i] = owners.get((int) points.get(i)[1]);
+        }
+        return ring;
+    }
+
+    synchronized int getRingsBuilt() {
+        return ringsBuilt;
+    }
+
+    /**
+     * Points of the brokers on the ring, sorted by hash.
+     */
+    private static class Ring {
+        private final long[] hashes;
+        private final String[] owners;
+
+        private Ring(int size) {
+            this.hashes = new long[size];
+            this.owners = new String[size];
+        }
+    }
+
+    /**
+     * Position of a key on the ring. The virtual nodes of a broker differ only in their last chars, so the FNV-1a
+     * hash alone would put them close to each other: the MurmurHash3 finalizer spreads them all over the ring.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -21,6 +21,9 @@ public class Main {
         int listenPort = Integer.parseInt(getEnvOrThrow("LISTEN_PORT"));
         String requestTimeoutStr = System.getenv("DEFAULT_BROKER_REQUEST_TIMEOUT");
         Long requestTimeout = requestTimeoutStr != null ? Long.parseLong(requestTimeoutStr) : null;
+        PlacementStrategy placementStrategy = "consistent-hashing".equals(System.getenv("QUEUE_PLACEMENT_STRATEGY"))
+                ? new ConsistentHashPlacement()
+                : new BalancedPlacement();
 
         QueueScheduler scheduler = new QueueScheduler(
                 connection -> {
@@ -39,7 +42,7 @@ public class Main {
                     });
                     return broker;
                 },
-                new SchedulerState(),
+                new SchedulerState(placementStrategy),
                 listenPort,
                 certDir);
 
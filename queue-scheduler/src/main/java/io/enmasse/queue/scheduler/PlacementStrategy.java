@@ -0,0 +1,22 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package io.enmasse.queue.scheduler;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides on which broker of a group the queues are placed.
+ */
+public interface PlacementStrategy {
+    /**
+     * @param queuesByBroker queues already on every broker of the group, by broker id
+     * @param addresses addresses to place, not on any broker yet
+     * @return the id of the broker every address is placed on
+     */
+    Map<String, String> place(Map<String, Set<String>> queuesByBroker, Collection<String> addresses);
+}
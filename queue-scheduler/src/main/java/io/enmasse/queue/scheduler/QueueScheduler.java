@@ -82,14 +82,12 @@ public class QueueScheduler extends AbstractVerticle implements ConfigListener {
                 connectionOpened(connection);
             }).closeHandler(conn -> {
                 log.info("Broker connection " + connection.getRemoteContainer() + " closed");
-                executeBlocking(() -> schedulerState.brokerRemoved(getGroupId(connection), connection.getRemoteContainer()),
-                        "Error removing broker");
+                schedulerState.brokerRemoved(getGroupId(connection), connection.getRemoteContainer());
                 connection.close();
                 connection.disconnect();
             }).disconnectHandler(protonConnection -> {
                 log.info("Broker connection " + connection.getRemoteContainer() + " disconnected");
-                executeBlocking(() -> schedulerState.brokerRemoved(getGroupId(connection), connection.getRemoteContainer()),
-                        "Error removing broker");
+                schedulerState.brokerRemoved(getGroupId(connection), connection.getRemoteContainer());
                 connection.disconnect();
             });
         });
@@ -108,7 +106,7 @@ public class QueueScheduler extends AbstractVerticle implements ConfigListener {
         Future<Broker> broker = brokerFactory.createBroker(connection);
         broker.setHandler(result -> {
             if (result.succeeded()) {
-                executeBlocking(() -> schedulerState.brokerAdded(getGroupId(connection), connection.getRemoteContainer(), result.result()), "Error adding broker");
+                schedulerState.brokerAdded(getGroupId(connection), connection.getRemoteContainer(), result.result());
             } else {
                 log.info("Error getting broker instance", result.cause());
             }
@@ -121,30 +119,12 @@ public class QueueScheduler extends AbstractVerticle implements ConfigListener {
         if (server != null) {
             server.close();
         }
+        schedulerState.close();
     }
 
     @Override
     public void addressesChanged(Map<String, Set<Address>> addressMap) {
-        executeBlocking(() -> schedulerState.addressesChanged(addressMap), "Error handling address change");
-    }
-
-    private void executeBlocking(Task task, String errorMessage) {
-        vertx.executeBlocking(promise -> {
-            try {
-                task.run();
-                promise.complete();
-            } catch (Exception e) {
-                promise.fail(e);
-            }
-        }, true, result -> {
-            if (result.failed()) {
-                log.error(errorMessage, result.cause());
-            }
-        });
-    }
-
-    private interface Task {
-        void run() throws Exception;
+        schedulerState.addressesChanged(addressMap);
     }
 
     public int getPort() {
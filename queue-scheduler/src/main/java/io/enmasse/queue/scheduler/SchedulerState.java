@@ -10,28 +10,95 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.TimeoutException;
-import java.util.function.Function;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * Contains the mapping from queue to broker and ensures there is only one modifying the state at a time.
+ *
+ * The state is owned by a single thread: address and broker events are queued on a lock-free queue and handled one
+ * at a time on it, without blocking the callers. The work on the brokers (fetching the queues, creating and deleting
+ * them) is dispatched to a pool of workers, in order for every broker, and its outcome comes back as an event. The
+ * queues on every broker are tracked by the state, so that placing new queues doesn't need to ask the brokers.
  */
-public class SchedulerState implements StateListener {
+public class SchedulerState implements StateListener, AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(SchedulerState.class.getName());
-    private final Map<String, Map<String, Broker>> brokerGroupMap = new LinkedHashMap<>();
+    private static final int defaultBrokerWorkers = 16;
+
+    private final Map<String, Map<String, BrokerState>> brokerGroupMap = new LinkedHashMap<>();
     private final Map<String, Set<Address>> addressMap = new LinkedHashMap<>();
     private final StateListener chainedListener;
+    private final PlacementStrategy placementStrategy;
 
-    public SchedulerState(StateListener chainedListener) {
+    private final ExecutorService loopThread;
+    private final ExecutorService brokerWorkers;
+    private final SerialExecutor events;
+
+    public SchedulerState(StateListener chainedListener, PlacementStrategy placementStrategy, int numBrokerWorkers) {
         this.chainedListener = chainedListener;
+        this.placementStrategy = placementStrategy;
+        this.loopThread = Executors.newSingleThreadExecutor(threadFactory("scheduler-state"));
+        this.brokerWorkers = Executors.newFixedThreadPool(numBrokerWorkers, threadFactory("scheduler-broker-worker"));
+        this.events = new SerialExecutor(loopThread);
+    }
+
+    public SchedulerState(StateListener chainedListener, PlacementStrategy placementStrategy) {
+        this(chainedListener, placementStrategy, defaultBrokerWorkers);
+    }
+
+    public SchedulerState(StateListener chainedListener) {
+        this(chainedListener, new BalancedPlacement());
+    }
+
+    public SchedulerState(PlacementStrategy placementStrategy) {
+        this(null, placementStrategy);
     }
 
     public SchedulerState() {
-        this(null);
+        this(null, new BalancedPlacement());
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void close() {
+        loopThread.shutdown();
+        brokerWorkers.shutdown();
+    }
+
+    @Override
+    public void addressesChanged(Map<String, Set<Address>> updatedMap) {
+        events.execute(() -> handleAddressesChanged(updatedMap));
+    }
+
+    @Override
+    public void brokerAdded(String groupId, String brokerId, Broker broker) {
+        events.execute(() -> handleBrokerAdded(groupId, brokerId, broker));
     }
 
-    public synchronized void addressesChanged(Map<String, Set<Address>> updatedMap) throws TimeoutException {
+    @Override
+    public void brokerRemoved(String groupId, String brokerId) {
+        events.execute(() -> handleBrokerRemoved(groupId, brokerId));
+    }
+
+    /**
+     * @return number of events waiting to be handled
+     */
+    public int getPendingEvents() {
+        return events.getPending();
+    }
+
+    private void handleAddressesChanged(Map<String, Set<Address>> updatedMap) {
         Set<String> removedGroups = new HashSet<>(addressMap.keySet());
         removedGroups.removeAll(updatedMap.keySet());
         removedGroups.forEach(addressMap::remove);
@@ -40,11 +107,15 @@ public class SchedulerState implements StateListener {
             groupUpdated(entry.getKey(), entry.getValue());
         }
         if (chainedListener != null) {
-            chainedListener.addressesChanged(updatedMap);
+            try {
+                chainedListener.addressesChanged(updatedMap);
+            } catch (Exception e) {
+                log.error("Error notifying address change", e);
+            }
         }
     }
 
-    private synchronized void groupUpdated(String groupId, Set<Address> addresses) throws TimeoutException {
+    private void groupUpdated(String groupId, Set<Address> addresses) {
         Set<Address> existing = addressMap.getOrDefault(groupId, Collections.emptySet());
 
         Set<Address> removed = new HashSet<>(existing);
@@ -56,50 +127,60 @@ public class SchedulerState implements StateListener {
 
         Set<Address> added = new HashSet<>(addresses);
         added.removeAll(existing);
+        addressMap.put(groupId, addresses);
         if (!added.isEmpty()) {
             log.info("Adding addresses for {}: {}", groupId, added);
             addAddresses(groupId, addresses, added);
         }
 
-        addressMap.put(groupId, addresses);
         log.info("Updated addresses for {}", groupId);
     }
 
+    private void handleBrokerAdded(String groupId, String brokerId, Broker broker) {
+        Map<String, BrokerState> brokerMap = brokerGroupMap.computeIfAbsent(groupId, id -> new LinkedHashMap<>());
+        if (brokerMap.containsKey(brokerId)) {
+            log.error("Broker with id " + brokerId + " already exists in group " + groupId);
+            return;
+        }
+        BrokerState brokerState = new BrokerState(groupId, brokerId, broker, new SerialExecutor(brokerWorkers));
+        brokerMap.put(brokerId, brokerState);
+        log.info("Broker " + brokerId + " in group " + groupId + " was added, fetching its queues");
+        fetchQueues(brokerState);
 
-    public synchronized void brokerAdded(String groupId, String brokerId, Broker broker) throws TimeoutException {
-        if (!brokerGroupMap.containsKey(groupId)) {
-            brokerGroupMap.put(groupId, new LinkedHashMap<>());
+        if (chainedListener != null) {
+            try {
+                chainedListener.brokerAdded(groupId, brokerId, broker);
+            } catch (Exception e) {
+                log.error("Error notifying broker added", e);
+            }
         }
+    }
 
-        if (brokerGroupMap.get(groupId).containsKey(brokerId)) {
-            throw new IllegalArgumentException("Broker with id " + brokerId + " already exists in group " + groupId);
+    /**
+     * The queues on the broker are known, so queues can be placed on it.
+     */
+    private void handleBrokerReady(BrokerState brokerState, Set<String> queueNames) {
+        if (!isCurrent(brokerState)) {
+            return;
         }
-        brokerGroupMap.get(groupId).put(brokerId, broker);
+        brokerState.fetching = false;
+        brokerState.ready = true;
+        brokerState.queues.addAll(queueNames);
 
-        Set<Address> addresses = addressMap.getOrDefault(groupId, Collections.emptySet());
-        log.info("Broker " + brokerId + " in group " + groupId + " was added, distributing addresses: " + addresses);
+        Set<Address> addresses = addressMap.getOrDefault(brokerState.groupId, Collections.emptySet());
+        log.info("Broker " + brokerState.brokerId + " in group " + brokerState.groupId + " is ready, distributing addresses: " + addresses);
         if (addresses.size() == 1) {
-            deployQueue(broker, addresses.iterator().next().getAddress());
+            distributeAddressesAll(brokerState.groupId, addresses);
         } else {
-            distributeAddressesByNumQueues(groupId, addresses);
+            distributeAddressesByNumQueues(brokerState.groupId, addresses);
         }
-        if (chainedListener != null) {
-            chainedListener.brokerAdded(groupId, brokerId, broker);
-        }
-    }
-
-    private static void deployQueue(Broker broker, String address) throws TimeoutException {
-        broker.createQueue(address);
-    }
-
-    private static void deleteQueue(Broker broker, String address) throws TimeoutException {
-        broker.deleteQueue(address);
     }
 
-    public synchronized void brokerRemoved(String groupId, String brokerId) throws TimeoutException {
-        Map<String, Broker> brokerMap = brokerGroupMap.get(groupId);
+    private void handleBrokerRemoved(String groupId, String brokerId) {
+        Map<String, BrokerState> brokerMap = brokerGroupMap.get(groupId);
         if (brokerMap != null && brokerMap.containsKey(brokerId)) {
-            brokerMap.remove(brokerId);
+            BrokerState brokerState = brokerMap.remove(brokerId);
+            brokerState.removed = true;
             if (brokerMap.isEmpty()) {
                 brokerGroupMap.remove(groupId);
             }
@@ -113,11 +194,15 @@ public class SchedulerState implements StateListener {
             log.info("Broker was already removed, ignoring");
         }
         if (chainedListener != null) {
-            chainedListener.brokerRemoved(groupId, brokerId);
+            try {
+                chainedListener.brokerRemoved(groupId, brokerId);
+            } catch (Exception e) {
+                log.error("Error notifying broker removed", e);
+            }
         }
     }
 
-    private void addAddresses(String groupId, Set<Address> addresses, Set<Address> added) throws TimeoutException {
+    private void addAddresses(String groupId, Set<Address> addresses, Set<Address> added) {
 
         // TODO: Fetch this information from somewhere, but assume > 1 address means shared flavor
         if (addresses.size() > 1) {
@@ -127,70 +212,143 @@ public class SchedulerState implements StateListener {
         }
     }
 
-    private void distributeAddressesByNumQueues(String groupId, Set<Address> addresses) throws TimeoutException {
-        Map<String, Broker> brokerMap = brokerGroupMap.get(groupId);
-        if (brokerMap == null) {
+    private void distributeAddressesByNumQueues(String groupId, Set<Address> addresses) {
+        List<BrokerState> brokers = readyBrokers(groupId);
+        if (brokers.isEmpty()) {
             return;
         }
 
-
-        Map<String, Address> addressesToDeploy = addresses.stream().collect(Collectors.toMap(Address::getAddress, Function.identity()));
-
         // Remove addresses that are already distributed. This is to avoid changes in broker list to affect where queues are scheduler
+        Set<String> addressesToDeploy = addresses.stream().map(Address::getAddress).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, Set<String>> queuesByBroker = new LinkedHashMap<>();
+        for (BrokerState brokerState : brokers) {
+            addressesToDeploy.removeAll(brokerState.queues);
+            queuesByBroker.put(brokerState.brokerId, Collections.unmodifiableSet(brokerState.queues));
+        }
+        if (addressesToDeploy.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<String>> queuesToDeploy = new LinkedHashMap<>();
+        for (Map.Entry<String, String> placement : placementStrategy.place(queuesByBroker, addressesToDeploy).entrySet()) {
+            queuesToDeploy.computeIfAbsent(placement.getValue(), b -> new ArrayList<>()).add(placement.getKey());
+        }
 
-        List<BrokerInfo> brokerInfos = new ArrayList<>();
-        for (Map.Entry<String, Broker> entry : brokerMap.entrySet()) {
-            BrokerInfo brokerInfo = new BrokerInfo(entry.getKey(), entry.getValue(), entry.getValue().getQueueNames());
-            addressesToDeploy.keySet().removeAll(brokerInfo.queueNames);
-            brokerInfos.add(brokerInfo);
+        Map<String, BrokerState> brokerMap = brokerGroupMap.get(groupId);
+        for (Map.Entry<String, List<String>> entry : queuesToDeploy.entrySet()) {
+            deployQueues(brokerMap.get(entry.getKey()), entry.getValue());
         }
+    }
 
-        PriorityQueue<BrokerInfo> brokerByNumQueues = new PriorityQueue<>(brokerInfos.size(), (a, b) -> {
-            if (a.queueNames.size() < b.queueNames.size()) {
-                return -1;
-            } else if (a.queueNames.size() > b.queueNames.size()) {
-                return 1;
-            } else {
-                return 0;
+    private void distributeAddressesAll(String groupId, Set<Address> addresses) {
+        for (BrokerState brokerState : readyBrokers(groupId)) {
+            List<String> missing = addresses.stream()
+                    .map(Address::getAddress)
+                    .filter(address -> !brokerState.queues.contains(address))
+                    .collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                deployQueues(brokerState, missing);
             }
-        });
+        }
+    }
 
-        brokerByNumQueues.addAll(brokerInfos);
+    private void deleteAddresses(String groupId, Set<Address> removed) {
+        List<String> queues = removed.stream().map(Address::getAddress).collect(Collectors.toList());
+        for (BrokerState brokerState : brokerGroupMap.getOrDefault(groupId, Collections.emptyMap()).values()) {
+            deleteQueues(brokerState, queues);
+        }
+    }
 
-        for (Address address : addressesToDeploy.values()) {
-            BrokerInfo brokerInfo = brokerByNumQueues.poll();
-            Broker broker = brokerInfo.broker;
-            deployQueue(broker, address.getAddress());
-            brokerInfo.queueNames.add(address.getAddress());
-            brokerByNumQueues.offer(brokerInfo);
+    /**
+     * Brokers of the group whose queues are known. The ones whose queues couldn't be fetched are retried.
+     */
+    private List<BrokerState> readyBrokers(String groupId) {
+        List<BrokerState> brokers = new ArrayList<>();
+        for (BrokerState brokerState : brokerGroupMap.getOrDefault(groupId, Collections.emptyMap()).values()) {
+            if (brokerState.ready) {
+                brokers.add(brokerState);
+            } else if (!brokerState.fetching) {
+                fetchQueues(brokerState);
+            }
         }
+        return brokers;
     }
 
-    private static class BrokerInfo {
-        final String brokerId;
-        final Broker broker;
-        final Set<String> queueNames;
+    private boolean isCurrent(BrokerState brokerState) {
+        return brokerGroupMap.getOrDefault(brokerState.groupId, Collections.emptyMap()).get(brokerState.brokerId) == brokerState;
+    }
 
-        private BrokerInfo(String brokerId, Broker broker, Set<String> queueNames) {
-            this.brokerId = brokerId;
-            this.broker = broker;
-            this.queueNames = new HashSet<>(queueNames);
-        }
+    private void fetchQueues(BrokerState brokerState) {
+        brokerState.fetching = true;
+        brokerState.worker.execute(() -> {
+            if (brokerState.removed) {
+                return;
+            }
+            try {
+                Set<String> queueNames = new HashSet<>(brokerState.broker.getQueueNames());
+                events.execute(() -> handleBrokerReady(brokerState, queueNames));
+            } catch (Exception e) {
+                log.warn("Error fetching queues of broker " + brokerState.brokerId, e);
+                events.execute(() -> {
+                    if (isCurrent(brokerState)) {
+                        brokerState.fetching = false;
+                    }
+                });
+            }
+        });
     }
 
-    private void distributeAddressesAll(String groupId, Set<Address> addresses) throws TimeoutException {
-        for (Address address : addresses) {
-            for (Broker  broker : brokerGroupMap.getOrDefault(groupId, Collections.emptyMap()).values()) {
-                deployQueue(broker, address.getAddress());
+    /**
+     * Track the queues on the broker and create them. The ones that fail are not tracked anymore, so that they are
+     * placed again on the next change.
+     */
+    private void deployQueues(BrokerState brokerState, List<String> addresses) {
+        brokerState.queues.addAll(addresses);
+        brokerState.worker.execute(() -> {
+            if (brokerState.removed) {
+                return;
             }
-        }
+            BatchResult result = brokerState.broker.createQueues(addresses);
+            if (!result.isSuccess()) {
+                log.warn("Error deploying queues {} on broker {}", result.getFailed().keySet(), brokerState.brokerId);
+                events.execute(() -> brokerState.queues.removeAll(result.getFailed().keySet()));
+            }
+        });
     }
 
-    private void deleteAddresses(String groupId, Set<Address> removed) throws TimeoutException {
-        for (Broker broker : brokerGroupMap.getOrDefault(groupId, Collections.emptyMap()).values()) {
-            for (Address address : removed) {
-                deleteQueue(broker, address.getAddress());
+    private void deleteQueues(BrokerState brokerState, List<String> addresses) {
+        brokerState.queues.removeAll(addresses);
+        brokerState.worker.execute(() -> {
+            if (brokerState.removed) {
+                return;
+            }
+            BatchResult result = brokerState.broker.deleteQueues(addresses);
+            if (!result.isSuccess()) {
+                log.warn("Error deleting queues {} on broker {}", result.getFailed().keySet(), brokerState.brokerId);
             }
+        });
+    }
+
+    /**
+     * A broker as seen by the state. Only accessed by the state thread, apart from the removed flag read by the
+     * broker worker.
+     */
+    private static class BrokerState {
+        final String groupId;
+        final String brokerId;
+        final Broker broker;
+        // runs the work on the broker, in order
+        final SerialExecutor worker;
+        final Set<String> queues = new HashSet<>();
+        boolean ready = false;
+        boolean fetching = false;
+        volatile boolean removed = false;
+
+        private BrokerState(String groupId, String brokerId, Broker broker, SerialExecutor worker) {
+            this.groupId = groupId;
+            this.brokerId = brokerId;
+            this.broker = broker;
+            this.worker = worker;
         }
     }
 }
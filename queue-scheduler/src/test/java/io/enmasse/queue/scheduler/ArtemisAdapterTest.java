@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.queue.scheduler;
+
+import io.enmasse.amqp.Artemis;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.proton.ProtonClientOptions;
+import io.vertx.proton.ProtonHelper;
+import io.vertx.proton.ProtonSender;
+import io.vertx.proton.ProtonServer;
+import io.vertx.proton.ProtonSession;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.message.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArtemisAdapterTest {
+    private static final long brokerLatencyMillis = 5;
+
+    private Vertx vertx;
+    private ProtonServer server;
+    private volatile ProtonSender replySender;
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final AtomicInteger outstanding = new AtomicInteger(0);
+    private volatile int maxOutstanding = 0;
+    // state of the fake broker
+    private final Set<String> queues = ConcurrentHashMap.newKeySet();
+    private final Set<String> connectors = ConcurrentHashMap.newKeySet();
+    private final Set<String> failingConnectors = ConcurrentHashMap.newKeySet();
+    private final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        server = ProtonServer.create(vertx);
+        server.connectHandler(connection -> {
+            connection.setContainer("fake-broker");
+            connection.openHandler(result -> connection.open());
+            connection.sessionOpenHandler(ProtonSession::open);
+            connection.senderOpenHandler(sender -> {
+                Source source = new Source();
+                source.setAddress("management-replies");
+                sender.setSource(source);
+                sender.open();
+                replySender = sender;
+            });
+            connection.receiverOpenHandler(receiver -> {
+                receiver.setTarget(receiver.getRemoteTarget());
+                receiver.handler((delivery, request) -> {
+                    ProtonHelper.accepted(delivery, true);
+                    requests.incrementAndGet();
+                    maxOutstanding = Math.max(maxOutstanding, outstanding.incrementAndGet());
+                    vertx.setTimer(brokerLatencyMillis, id -> {
+                        outstanding.decrementAndGet();
+                        replySender.send(createReply(request));
+                    });
+                });
+                receiver.open();
+            });
+        });
+        CompletableFuture<Void> listening = new CompletableFuture<>();
+        server.listen(0, result -> listening.complete(null));
+        listening.get(1, TimeUnit.MINUTES);
+    }
+
+    @After
+    public void teardown() {
+        vertx.close();
+    }
+
+    /**
+     * Operations on queues named "bad..." fail, the others change the state of the fake broker failing like Artemis
+     * on existing or missing queues and connector services.
+     */
+    private Message createReply(Message request) {
+        String operation = (String) request.getApplicationProperties().getValue().get("_AMQ_OperationName");
+        Object[] parameters = new JsonArray((String) ((AmqpValue) request.getBody()).getValue()).getList().toArray();
+        String name = (String) parameters[0];
+        operations.add(operation + " " + name);
+
+        String error = null;
+        if (name.startsWith("bad")) {
+            error = "Error on " + operation;
+        } else if ("createQueue".equals(operation) && !queues.add(name)) {
+            error = "AMQ119019: Queue " + name + " already exists";
+        } else if ("destroyQueue".equals(operation) && !queues.remove(name)) {
+            error = "AMQ119017: Queue " + name + " does not exist";
+        } else if ("createConnectorService".equals(operation) && failingConnectors.remove(name)) {
+            error = "Error on " + operation;
+        } else if ("createConnectorService".equals(operation) && !connectors.add(name)) {
+            error = "Connector service " + name + " already exists";
+        } else if ("destroyConnectorService".equals(operation) && !connectors.remove(name)) {
+            error = "Connector service " + name + " does not exist";
+        }
+
+        Message reply = Message.Factory.create();
+        reply.setAddress(request.getReplyTo());
+        reply.setCorrelationId(request.getMessageId());
+        reply.setApplicationProperties(new ApplicationProperties(Collections.singletonMap("_AMQ_OperationSucceeded", error == null)));
+        reply.setBody(new AmqpValue(error != null ? error : "[null]"));
+        return reply;
+    }
+
+    private ArtemisAdapter createAdapter(int maxInFlight) throws Exception {
+        CompletableFuture<Artemis> artemis = new CompletableFuture<>();
+        Artemis.create(vertx, new ProtonClientOptions(), "localhost", server.actualPort()).setHandler(result -> {
+            if (result.succeeded()) {
+                artemis.complete(result.result());
+            } else {
+                artemis.completeExceptionally(result.cause());
+            }
+        });
+        return new ArtemisAdapter(artemis.get(1, TimeUnit.MINUTES), maxInFlight);
+    }
+
+    private static List<String> addresses(String prefix, int count) {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            addresses.add(prefix + i);
+        }
+        return addresses;
+    }
+
+    @Test
+    public void testPipelinedCreate() throws Exception {
+        int numQueues = 500;
+        int maxInFlight = 50;
+        ArtemisAdapter adapter = createAdapter(maxInFlight);
+
+        long start = System.nanoTime();
+        BatchResult result = adapter.createQueues(addresses("queue", numQueues));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(result.isSuccess());
+        assertEquals(numQueues, result.getSucceeded().size());
+        // create queue and create connector service for every queue
+        assertEquals(2 * numQueues, requests.get());
+        // requests pipelined, up to the window
+        assertTrue("max outstanding " + maxOutstanding, maxOutstanding > 1);
+        assertTrue("max outstanding " + maxOutstanding, maxOutstanding <= maxInFlight);
+        // far from the sequential round trips
+        assertTrue("elapsed " + elapsedMillis + " ms", elapsedMillis < 2 * numQueues * brokerLatencyMillis / 2);
+    }
+
+    @Test
+    public void testPartialFailure() throws Exception {
+        ArtemisAdapter adapter = createAdapter(10);
+        List<String> addresses = new ArrayList<>(addresses("queue", 20));
+        addresses.add(5, "bad1");
+        addresses.add(15, "bad2");
+
+        BatchResult result = adapter.createQueues(addresses);
+
+        assertFalse(result.isSuccess());
+        assertEquals(20, result.getSucceeded().size());
+        assertEquals(2, result.getFailed().size());
+        assertTrue(result.getFailed().containsKey("bad1"));
+        assertTrue(result.getFailed().containsKey("bad2"));
+        // no connector service created for the failed queues
+        assertEquals(2 * 20 + 2, requests.get());
+
+        try {
+            result.throwIfFailed();
+            fail("Expected an exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("bad1"));
+        } catch (TimeoutException e) {
+            fail("Unexpected timeout");
+        }
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        ArtemisAdapter adapter = createAdapter(10);
+        assertTrue(adapter.createQueues(addresses("queue", 100)).isSuccess());
+        requests.set(0);
+
+        BatchResult result = adapter.deleteQueues(addresses("queue", 100));
+
+        assertTrue(result.isSuccess());
+        assertEquals(200, requests.get());
+        assertTrue(queues.isEmpty());
+        assertTrue(connectors.isEmpty());
+    }
+
+    @Test
+    public void testCreateAfterPartialFailure() throws Exception {
+        ArtemisAdapter adapter = createAdapter(10);
+        failingConnectors.add("queue3");
+
+        BatchResult result = adapter.createQueues(addresses("queue", 5));
+        assertFalse(result.isSuccess());
+        assertEquals(Collections.singleton("queue3"), result.getFailed().keySet());
+        // the queue is there, without its connector service
+        assertTrue(queues.contains("queue3"));
+        assertFalse(connectors.contains("queue3"));
+
+        // placed again as it's not reported by the broker without the connector service
+        result = adapter.createQueues(Collections.singletonList("queue3"));
+        assertTrue(result.isSuccess());
+        assertTrue(connectors.contains("queue3"));
+    }
+
+    @Test
+    public void testDeleteWithoutConnector() throws Exception {
+        ArtemisAdapter adapter = createAdapter(10);
+        failingConnectors.add("queue3");
+        adapter.createQueues(addresses("queue", 5));
+        operations.clear();
+
+        BatchResult result = adapter.deleteQueues(Collections.singletonList("queue3"));
+
+        assertTrue(result.isSuccess());
+        assertTrue(operations.contains("destroyQueue queue3"));
+        assertFalse(queues.contains("queue3"));
+    }
+
+    @Test
+    public void testDeleteAfterConnectorFailure() throws Exception {
+        ArtemisAdapter adapter = createAdapter(10);
+
+        BatchResult result = adapter.deleteQueues(Collections.singletonList("bad0"));
+
+        // the queue is destroyed even if destroying the connector service failed, but the failure is reported
+        assertFalse(result.isSuccess());
+        assertEquals(2, operations.size());
+        assertEquals("destroyQueue bad0", operations.get(1));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.queue.scheduler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashPlacementTest {
+    private static final int numQueues = 10_000;
+
+    @Test
+    public void testMovementAndBalanceOnChurn() {
+        List<String> queues = queues(numQueues);
+        ConsistentHashPlacement strategy = new ConsistentHashPlacement();
+        Random random = new Random(1);
+
+        List<String> brokers = new ArrayList<>();
+        int nextBroker = 0;
+        for (int i = 0; i < 10; i++) {
+            brokers.add("broker-" + nextBroker++);
+        }
+        Map<String, String> previous = strategy.place(emptyBrokers(brokers), queues);
+
+        for (int step = 0; step < 50; step++) {
+            // a random broker going away or a new one coming
+            if (random.nextBoolean() && brokers.size() > 3) {
+                brokers.remove(random.nextInt(brokers.size()));
+            } else {
+                brokers.add("broker-" + nextBroker++);
+            }
+            Map<String, String> current = strategy.place(emptyBrokers(brokers), queues);
+            assertEquals(numQueues, current.size());
+
+            int moved = 0;
+            for (String queue : queues) {
+                if (!previous.get(queue).equals(current.get(queue))) {
+                    moved++;
+                }
+            }
+            // about 1/N of the queues moved
+            double movedPerBroker = (double) moved / numQueues * brokers.size();
+            assertTrue("moved " + moved + " queues with " + brokers.size() + " brokers", movedPerBroker < 2);
+
+            // no broker over the bound
+            int capacity = (int) Math.ceil(ConsistentHashPlacement.DEFAULT_LOAD_FACTOR * numQueues / brokers.size());
+            for (int load : loads(current).values()) {
+                assertTrue("load " + load + " over " + capacity, load <= capacity);
+            }
+            previous = current;
+        }
+    }
+
+    @Test
+    public void testRingPerBrokerGroup() {
+        List<String> queues = queues(100);
+        List<String> group1 = new ArrayList<>();
+        List<String> group2 = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            group1.add("group1-broker-" + i);
+            group2.add("group2-broker-" + i);
+        }
+        ConsistentHashPlacement strategy = new ConsistentHashPlacement();
+        Map<String, String> placement1 = strategy.place(emptyBrokers(group1), queues);
+        Map<String, String> placement2 = strategy.place(emptyBrokers(group2), queues);
+
+        // groups placed alternately don't rebuild their rings
+        for (int i = 0; i < 10; i++) {
+            assertEquals(placement1, strategy.place(emptyBrokers(group1), queues));
+            assertEquals(placement2, strategy.place(emptyBrokers(group2), queues));
+        }
+        assertEquals(2, strategy.getRingsBuilt());
+    }
+
+    @Test
+    public void testStablePlacement() {
+        List<String> queues = queues(1000);
+        List<String> brokers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            brokers.add("broker-" + i);
+        }
+        Map<String, String> placement = new ConsistentHashPlacement().place(emptyBrokers(brokers), queues);
+
+        // same placement regardless of the order of the brokers and the queues
+        Collections.reverse(brokers);
+        Collections.reverse(queues);
+        assertEquals(placement, new ConsistentHashPlacement().place(emptyBrokers(brokers), queues));
+    }
+
+    @Test
+    public void testExistingLoadBounded() {
+        ConsistentHashPlacement strategy = new ConsistentHashPlacement(100, 1.25);
+        Map<String, Set<String>> queuesByBroker = new LinkedHashMap<>();
+        queuesByBroker.put("broker-0", new HashSet<>(queues(600)));
+        queuesByBroker.put("broker-1", new HashSet<>());
+        queuesByBroker.put("broker-2", new HashSet<>());
+
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            added.add("new-queue-" + i);
+        }
+        Map<String, Integer> loads = loads(strategy.place(queuesByBroker, added));
+
+        // the broker with the existing queues gets only what fits below the bound
+        int capacity = (int) Math.ceil(1.25 * 1800 / 3);
+        assertTrue(loads.getOrDefault("broker-0", 0) <= capacity - 600);
+        assertEquals(1200, loads.values().stream().mapToInt(Integer::intValue).sum());
+        for (int load : loads.values()) {
+            assertTrue(load <= capacity);
+        }
+    }
+
+    private static List<String> queues(int count) {
+        List<String> queues = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            queues.add("queue-" + i);
+        }
+        return queues;
+    }
+
+    private static Map<String, Set<String>> emptyBrokers(List<String> brokers) {
+        Map<String, Set<String>> queuesByBroker = new LinkedHashMap<>();
+        for (String broker : brokers) {
+            queuesByBroker.put(broker, Collections.emptySet());
+        }
+        return queuesByBroker;
+    }
+
+    private static Map<String, Integer> loads(Map<String, String> placement) {
+        Map<String, Integer> loads = new HashMap<>();
+        for (String broker : placement.values()) {
+            loads.merge(broker, 1, Integer::sum);
+        }
+        return loads;
+    }
+}
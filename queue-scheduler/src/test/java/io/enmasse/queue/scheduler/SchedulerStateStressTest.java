@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.enmasse.queue.scheduler;
+
+import io.enmasse.address.model.Address;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Brokers joining from many threads while the addresses grow, measuring the time from an address being added to its
+ * queue being created on a broker.
+ */
+public class SchedulerStateStressTest {
+    private static final Logger log = LoggerFactory.getLogger(SchedulerStateStressTest.class.getName());
+    private static final int numGroups = 10;
+    private static final int brokersPerGroup = 10;
+    private static final int numQueues = 50_000;
+    private static final int numSnapshots = 50;
+
+    private SchedulerState state;
+    private final Map<String, Long> addedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> deployedAt = new ConcurrentHashMap<>();
+    private final Map<String, String> deployedOn = new ConcurrentHashMap<>();
+    private final AtomicInteger duplicates = new AtomicInteger(0);
+
+    @Before
+    public void setup() {
+        state = new SchedulerState();
+    }
+
+    @After
+    public void teardown() {
+        state.close();
+    }
+
+    @Test
+    public void testAssignmentLatency() throws Exception {
+        List<Thread> brokerThreads = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong slowestCall = new AtomicLong(0);
+        for (int g = 0; g < numGroups; g++) {
+            for (int b = 0; b < brokersPerGroup; b++) {
+                String groupId = "group-" + g;
+                SimulatedBroker broker = new SimulatedBroker(groupId + "-broker-" + b);
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                        long before = System.nanoTime();
+                        state.brokerAdded(groupId, broker.brokerId, broker);
+                        slowestCall.accumulateAndGet(System.nanoTime() - before, Math::max);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                thread.start();
+                brokerThreads.add(thread);
+            }
+        }
+
+        start.countDown();
+        // the addresses growing while the brokers join
+        Map<String, Set<Address>> addresses = new HashMap<>();
+        int queuesPerSnapshot = numQueues / numSnapshots;
+        for (int s = 0; s < numSnapshots; s++) {
+            for (int i = s * queuesPerSnapshot; i < (s + 1) * queuesPerSnapshot; i++) {
+                String groupId = "group-" + (i % numGroups);
+                String queue = groupId + "/queue-" + i;
+                addedAt.put(queue, System.nanoTime());
+                addresses.computeIfAbsent(groupId, g -> new HashSet<>()).add(createQueue(queue));
+            }
+            Map<String, Set<Address>> snapshot = new HashMap<>();
+            addresses.forEach((groupId, set) -> snapshot.put(groupId, new HashSet<>(set)));
+
+            long before = System.nanoTime();
+            state.addressesChanged(snapshot);
+            slowestCall.accumulateAndGet(System.nanoTime() - before, Math::max);
+            Thread.sleep(10);
+        }
+        for (Thread thread : brokerThreads) {
+            thread.join();
+        }
+
+        long endTime = System.currentTimeMillis() + 120_000;
+        while (deployedAt.size() < numQueues && System.currentTimeMillis() < endTime) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(numQueues, deployedAt.size());
+        assertEquals(0, duplicates.get());
+        for (Map.Entry<String, String> entry : deployedOn.entrySet()) {
+            // on a broker of its group
+            assertTrue(entry.getValue().startsWith(entry.getKey().substring(0, entry.getKey().indexOf('/')) + "-"));
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : deployedAt.entrySet()) {
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(entry.getValue() - addedAt.get(entry.getKey())));
+        }
+        Collections.sort(latencies);
+        log.info("Assignment latency (ms) p50 {} p99 {} max {}, slowest event submission {} us",
+                latencies.get(latencies.size() / 2), latencies.get(latencies.size() * 99 / 100), latencies.get(latencies.size() - 1),
+                TimeUnit.NANOSECONDS.toMicros(slowestCall.get()));
+
+        // submitting an event doesn't wait for the scheduling
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(slowestCall.get()) < 1000);
+    }
+
+    private static Address createQueue(String name) {
+        return new Address.Builder()
+                .setAddress(name)
+                .setName(name.replace('/', '-'))
+                .setType("queue")
+                .setPlan("pooled-inmemory")
+                .build();
+    }
+
+    /**
+     * A broker taking a millisecond for every management round trip.
+     */
+    private class SimulatedBroker implements Broker {
+        private final String brokerId;
+        private final Set<String> queues = ConcurrentHashMap.newKeySet();
+
+        SimulatedBroker(String brokerId) {
+            this.brokerId = brokerId;
+        }
+
+        @Override
+        public Set<String> getQueueNames() {
+            roundTrip();
+            return new HashSet<>(queues);
+        }
+
+        @Override
+        public void createQueue(String address) {
+            createQueues(Collections.singletonList(address));
+        }
+
+        @Override
+        public void deleteQueue(String address) {
+            deleteQueues(Collections.singletonList(address));
+        }
+
+        @Override
+        public BatchResult createQueues(Collection<String> addresses) {
+            roundTrip();
+            BatchResult result = new BatchResult();
+            long now = System.nanoTime();
+            for (String address : addresses) {
+                queues.add(address);
+                if (deployedOn.putIfAbsent(address, brokerId) != null) {
+                    duplicates.incrementAndGet();
+                }
+                deployedAt.putIfAbsent(address, now);
+                result.succeeded(address);
+            }
+            return result;
+        }
+
+        @Override
+        public BatchResult deleteQueues(Collection<String> addresses) {
+            roundTrip();
+            BatchResult result = new BatchResult();
+            for (String address : addresses) {
+                queues.remove(address);
+                result.succeeded(address);
+            }
+            return result;
+        }
+
+        private void roundTrip() {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -33,6 +33,7 @@ public class AddressController extends AbstractVerticle implements Watcher<Addre
     private final Kubernetes kubernetes;
     private final BrokerSetGenerator clusterGenerator;
     private Watch watch;
+    private RouterStatusCollector routerStatusCollector;
     private final String certDir;
     private final EventLogger eventLogger;
     private final SchemaProvider schemaProvider;
@@ -76,6 +77,11 @@ public class AddressController extends AbstractVerticle implements Watcher<Addre
         if (watch != null) {
             watch.close();
         }
+        synchronized (this) {
+            if (routerStatusCollector != null) {
+                routerStatusCollector.close();
+            }
+        }
     }
 
     @Override
@@ -213,6 +219,14 @@ public class AddressController extends AbstractVerticle implements Watcher<Addre
         }
     }
 
+    // created on the first check, keeping the connections to the routers for the next ones
+    private synchronized RouterStatusCollector getRouterStatusCollector() {
+        if (routerStatusCollector == null) {
+            routerStatusCollector = new RouterStatusCollector(vertx, certDir);
+        }
+        return routerStatusCollector;
+    }
+
     private Map<Address, Integer> checkStatuses(Set<Address> addresses, AddressResolver addressResolver) throws Exception {
         Map<Address, Integer> numOk = new HashMap<>();
         if (addresses.isEmpty()) {
@@ -223,12 +237,11 @@ public class AddressController extends AbstractVerticle implements Watcher<Addre
         }
         // TODO: Instead of going to the routers directly, list routers, and perform a request against the
         // router agent to do the check
-        RouterStatusCollector routerStatusCollector = new RouterStatusCollector(vertx, certDir);
         List<RouterStatus> routerStatusList = new ArrayList<>();
         for (Pod router : kubernetes.listRouters()) {
             if (Readiness.isPodReady(router)) {
                 try {
-                    RouterStatus routerStatus = routerStatusCollector.collect(router);
+                    RouterStatus routerStatus = getRouterStatusCollector().collect(router);
                     if (routerStatus != null) {
                         routerStatusList.add(routerStatus);
                     }
@@ -4,6 +4,7 @@
  */
 package io.enmasse.controller.standard;
 
+import io.enmasse.amqp.PooledRequestClient;
 import io.enmasse.amqp.SyncRequestClient;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.ContainerPort;
@@ -23,14 +24,29 @@ import java.io.File;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
-class RouterStatusCollector {
+class RouterStatusCollector implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(RouterStatusCollector.class);
-    private final Vertx vertx;
-    private final String certDir;
+    // connections to the routers are reused by the checks within this time
+    private static final long connectionIdleTimeoutMillis = 5 * 60_000;
+    private final PooledRequestClient requestClient;
 
     public RouterStatusCollector(Vertx vertx, String certDir) {
-        this.vertx = vertx;
-        this.certDir = certDir;
+        ProtonClientOptions clientOptions = new ProtonClientOptions()
+                .setSsl(true)
+                .addEnabledSaslMechanism("EXTERNAL")
+                .setHostnameVerificationAlgorithm("")
+                .setPemTrustOptions(new PemTrustOptions()
+                        .addCertPath(new File(certDir, "ca.crt").getAbsolutePath()))
+                .setPemKeyCertOptions(new PemKeyCertOptions()
+                        .setCertPath(new File(certDir, "tls.crt").getAbsolutePath())
+                        .setKeyPath(new File(certDir, "tls.key").getAbsolutePath()));
+        this.requestClient = new PooledRequestClient(vertx, clientOptions)
+                .setIdleTimeout(connectionIdleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        requestClient.close();
     }
 
     public RouterStatus collect(Pod router) throws Exception {
@@ -47,16 +63,7 @@ class RouterStatusCollector {
 
         if (port != 0) {
             log.debug("Checking router status of router " + router.getStatus().getPodIP());
-            ProtonClientOptions clientOptions = new ProtonClientOptions()
-                    .setSsl(true)
-                    .addEnabledSaslMechanism("EXTERNAL")
-                    .setHostnameVerificationAlgorithm("")
-                    .setPemTrustOptions(new PemTrustOptions()
-                            .addCertPath(new File(certDir, "ca.crt").getAbsolutePath()))
-                    .setPemKeyCertOptions(new PemKeyCertOptions()
-                            .setCertPath(new File(certDir, "tls.crt").getAbsolutePath())
-                            .setKeyPath(new File(certDir, "tls.key").getAbsolutePath()));
-            SyncRequestClient client = new SyncRequestClient(router.getStatus().getPodIP(), port, vertx, clientOptions);
+            SyncRequestClient client = new SyncRequestClient(router.getStatus().getPodIP(), port, requestClient);
 
             List<String> addresses = filterOnAttribute(collectRouter(client,"org.apache.qpid.dispatch.router.config.address",
                     Arrays.asList("prefix")), 0);
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.broker.forwarder;
+
+import java.util.Arrays;
+
+/**
+ * A time-windowed filter of already seen keys, made of rotating bloom filters (generations).
+ *
+ * Keys are added to the current generation and looked up in all of them. On every rotation the oldest
+ * generation is cleared and becomes the current one, so a key is remembered for at least (generations - 1)
+ * rotation intervals. Keys can't be removed, so only the keys that must not be seen again have to be added.
+ * Not thread safe.
+ */
+public class DedupFilter {
+    private final Generation[] generations;
+    private final int numBits;
+    private final int numHashes;
+    private int current = 0;
+
+    /**
+     * Create a filter sized for the given number of keys per generation.
+     *
+     * @param expectedKeys number of keys added during a rotation interval
+     * @param falsePositiveProbability target probability of reporting a key never added as seen
+     * @param numGenerations number of generations (at least 2)
+     */
+    public DedupFilter(int expectedKeys, double falsePositiveProbability, int numGenerations) {
+        if (expectedKeys <= 0 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1 || numGenerations < 2) {
+            throw new IllegalArgumentException("Invalid dedup filter parameters");
+        }
+        // a lookup goes through all the generations, each one gets its share of the false positives
+        double generationProbability = falsePositiveProbability / numGenerations;
+        double bits = -expectedKeys * Math.log(generationProbability) / (Math.log(2) * Math.log(2));
+        this.numBits = (int) Math.min(Integer.MAX_VALUE - Long.SIZE, Math.ceil(bits));
+        this.numHashes = Math.max(1, (int) Math.round(bits / expectedKeys * Math.log(2)));
+
+        this.generations = new Generation[numGenerations];
+        for (int i = 0; i < numGenerations; i++) {
+            generations[i] = new Generation(numBits);
+        }
+    }
+
+    /**
+     * Add a key to the filter if it wasn't seen yet.
+     *
+     * @return true if the key was added, false if it was (probably) already seen
+     */
+    public boolean putIfAbsent(String key) {
+        long hash = hash(key);
+        if (contains(hash)) {
+            return false;
+        }
+        generations[current].add(hash);
+        return true;
+    }
+
+    /**
+     * @return true if the key was (probably) already seen
+     */
+    public boolean mightContain(String key) {
+        return contains(hash(key));
+    }
+
+    /**
+     * Start a new generation, forgetting the keys in the oldest one.
+     */
+    public void rotate() {
+        current = (current + 1) % generations.length;
+        generations[current].clear();
+    }
+
+    /**
+     * @return memory used by the bits of all the generations, in bytes
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Generation generation : generations) {
+            bytes += (long) generation.words.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * Look the key up in all the generations, starting from the current one.
+     */
+    private boolean contains(long hash) {
+        for (int i = 0; i < generations.length; i++) {
+            if (generations[Math.floorMod(current - i, generations.length)].contains(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hash of a key, split in two halves for deriving the bit indexes. The message ids of a broker share long
+     * prefixes, so the FNV-1a hash is finalized with MurmurHash3 for spreading the few differing chars on both halves.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * A bloom filter, with the bits packed in longs. The bit indexes are derived from the two halves
+     * of the key hash (double hashing).
+     */
+    private class Generation {
+        private final long[] words;
+
+        Generation(int numBits) {
+            this.words = new long[(numBits + Long.SIZE - 1) / Long.SIZE];
+        }
+
+        boolean contains(long hash) {
+            for (int i = 0; i < numHashes; i++) {
+                int index = index(hash, i);
+                if ((words[index / Long.SIZE] & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long hash) {
+            for (int i = 0; i < numHashes; i++) {
+                int index = index(hash, i);
+                words[index / Long.SIZE] |= 1L << index;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(words, 0);
+        }
+
+        private int index(long hash, int i) {
+            long combined = (hash >>> 32) + i * (hash & 0xffffffffL);
+            return (int) Math.floorMod(combined, (long) numBits);
+        }
+    }
+}
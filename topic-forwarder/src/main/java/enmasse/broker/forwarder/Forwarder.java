@@ -6,11 +6,13 @@
 package enmasse.broker.forwarder;
 
 import enmasse.discovery.Endpoint;
+import io.micrometer.core.instrument.Counter;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.net.PemKeyCertOptions;
 import io.vertx.core.net.PemTrustOptions;
 import io.vertx.proton.*;
 import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.messaging.Target;
@@ -20,11 +22,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 
 /**
  * A forwarder forwards AMQP messages from one host to another, using durable subscriptions, flow control and linked acknowledgement.
+ *
+ * Messages are pipelined: up to a window of messages can be in flight towards the destination, a received message is settled
+ * only when the destination settles the forwarded one, and credit for a new message is granted at the same time.
+ *
+ * Messages accepted by the destination are tracked by message id and origin broker in a time-windowed {@link DedupFilter},
+ * so that a message delivered again by the broker (i.e. after a reconnection) isn't forwarded twice.
  */
 public class Forwarder extends AbstractVerticle {
     private static final Logger log = LoggerFactory.getLogger(Forwarder.class.getName());
@@ -33,6 +43,9 @@ public class Forwarder extends AbstractVerticle {
     private final Endpoint from;
     private final Endpoint to;
     private final long connectionRetryInterval;
+    private final int inFlightWindow;
+    private final ForwarderMetrics metrics;
+    private final String origin;
 
     private volatile Optional<ProtonConnection> senderConnection = Optional.empty();
     private volatile Optional<ProtonConnection> receiverConnection = Optional.empty();
@@ -41,16 +54,55 @@ public class Forwarder extends AbstractVerticle {
     private static Symbol topic = Symbol.getSymbol("topic");
     private final String certDir;
 
+    public static final int DEFAULT_IN_FLIGHT_WINDOW = 100;
+    public static final long DEDUP_WINDOW = 60_000;
+    public static final int DEDUP_EXPECTED_MESSAGES = 100_000;
+    public static final double DEDUP_FALSE_POSITIVE_PROBABILITY = 0.0001;
+
+    private DedupFilter dedupFilter;
+    private Counter duplicatesDropped;
+    private Counter falsePositives;
+    private long dedupTimer;
+    private ReconnectScheduler reconnectScheduler;
+
     public Forwarder(Endpoint from, Endpoint to, String address, long connectionRetryInterval, String certDir) {
+        this(from, to, address, connectionRetryInterval, certDir, DEFAULT_IN_FLIGHT_WINDOW);
+    }
+
+    public Forwarder(Endpoint from, Endpoint to, String address, long connectionRetryInterval, String certDir, int inFlightWindow) {
+        this(from, to, address, connectionRetryInterval, certDir, inFlightWindow, new ForwarderMetrics());
+    }
+
+    public Forwarder(Endpoint from, Endpoint to, String address, long connectionRetryInterval, String certDir, int inFlightWindow, ForwarderMetrics metrics) {
+        this(from, to, address, connectionRetryInterval, certDir, inFlightWindow, metrics, null);
+    }
+
+    /**
+     * @param reconnectScheduler scheduler shared with the other forwarders, if null reconnections are attempted
+     *                           every connectionRetryInterval
+     */
+    public Forwarder(Endpoint from, Endpoint to, String address, long connectionRetryInterval, String certDir, int inFlightWindow, ForwarderMetrics metrics, ReconnectScheduler reconnectScheduler) {
         this.from = from;
         this.to = to;
         this.address = address;
         this.connectionRetryInterval = connectionRetryInterval;
         this.certDir = certDir;
+        this.inFlightWindow = inFlightWindow;
+        this.metrics = metrics;
+        this.origin = from.hostname() + ":" + from.port();
+        this.reconnectScheduler = reconnectScheduler;
     }
 
     @Override
     public void start() {
+        // messages are remembered for one to two dedup windows
+        dedupFilter = new DedupFilter(DEDUP_EXPECTED_MESSAGES, DEDUP_FALSE_POSITIVE_PROBABILITY, 2);
+        dedupTimer = vertx.setPeriodic(DEDUP_WINDOW, id -> dedupFilter.rotate());
+        duplicatesDropped = metrics.duplicatesDropped(toString());
+        falsePositives = metrics.falsePositives(toString());
+        if (reconnectScheduler == null) {
+            reconnectScheduler = new ReconnectScheduler(ReconnectScheduler.vertxClock(vertx), connectionRetryInterval, connectionRetryInterval, 1000, 1000, new Random());
+        }
         startSender();
     }
 
@@ -74,6 +126,7 @@ public class Forwarder extends AbstractVerticle {
                 receiver.setAutoAccept(false);
                 receiver.openHandler(handler -> {
                     log.info(this + ": receiver opened to " + connection.getRemoteContainer());
+                    reconnectScheduler.connected(getReceiverKey());
                 });
                 receiver.closeHandler(result -> {
                     if (result.succeeded()) {
@@ -82,17 +135,17 @@ public class Forwarder extends AbstractVerticle {
                     } else {
                         log.warn(this + ": receiver closed with error: " + result.cause().getMessage());
                         closeReceiver();
-                        vertx.setTimer(connectionRetryInterval, timerId -> startReceiver(sender, containerId));
+                        scheduleReconnect(getReceiverKey(), () -> startReceiver(sender, containerId));
                     }
                 });
                 receiver.setPrefetch(0);
-                receiver.flow(sender.getCredit());
+                receiver.flow(inFlightWindow);
                 receiver.setSource(source);
                 receiver.handler(((delivery, message) -> handleMessage(sender, receiver, delivery, message)));
                 receiver.open();
             } else {
                 log.info(this + ": connection failed, retrying: " + event.cause().getMessage());
-                vertx.setTimer(connectionRetryInterval, timerId -> startReceiver(sender, containerId));
+                scheduleReconnect(getReceiverKey(), () -> startReceiver(sender, containerId));
             }
         });
     }
@@ -133,6 +186,7 @@ public class Forwarder extends AbstractVerticle {
                 ProtonSender sender = connection.createSender(address);
                 sender.openHandler(handler -> {
                     log.info(this + ": sender opened to " + connection.getRemoteContainer());
+                    reconnectScheduler.connected(getSenderKey());
                     startReceiver(sender, connection.getRemoteContainer());
 
                 });
@@ -143,7 +197,7 @@ public class Forwarder extends AbstractVerticle {
                     } else {
                         closeReceiver();
                         log.warn(this + ": sender closed with error: " + result.cause().getMessage());
-                        vertx.setTimer(connectionRetryInterval, timerId -> startSender());
+                        scheduleReconnect(getSenderKey(), this::startSender);
                     }
                 });
 
@@ -156,11 +210,24 @@ public class Forwarder extends AbstractVerticle {
             } else {
                 closeReceiver();
                 log.info(this + ": connection failed: " + event.cause().getMessage());
-                vertx.setTimer(connectionRetryInterval, timerId -> startSender());
+                scheduleReconnect(getSenderKey(), this::startSender);
             }
         });
     }
 
+    private void scheduleReconnect(String key, Runnable reconnect) {
+        long delay = reconnectScheduler.schedule(key, () -> context.runOnContext(v -> reconnect.run()));
+        log.debug(this + ": reconnecting " + key + " in " + delay + " ms");
+    }
+
+    private String getSenderKey() {
+        return this + " sender";
+    }
+
+    private String getReceiverKey() {
+        return this + " receiver";
+    }
+
     private void closeReceiver() {
         receiverConnection.ifPresent(ProtonConnection::close);
     }
@@ -169,31 +236,68 @@ public class Forwarder extends AbstractVerticle {
         if (log.isDebugEnabled()) {
             log.debug(this + ": forwarding message");
         }
-        if (!isMessageReplicated(message)) {
-            forwardMessage(protonSender, protonReceiver, protonDelivery, message);
+        if (isMessageReplicated(message)) {
+            // already forwarded by a peer, it's settled here so that its credit isn't lost
+            protonDelivery.disposition(Accepted.getInstance(), true);
+            protonReceiver.flow(1);
+            return;
         }
+
+        String dedupKey = getDedupKey(message);
+        if (dedupKey != null && dedupFilter.mightContain(dedupKey)) {
+            // seen already, but only a redelivery can be a duplicate
+            if (message.getDeliveryCount() > 0) {
+                log.debug(this + ": dropping duplicate message " + message.getMessageId());
+                duplicatesDropped.increment();
+                protonDelivery.disposition(Accepted.getInstance(), true);
+                protonReceiver.flow(1);
+                return;
+            }
+            falsePositives.increment();
+        }
+        forwardMessage(protonSender, protonReceiver, protonDelivery, message, dedupKey);
     }
 
-    private void forwardMessage(ProtonSender protonSender, ProtonReceiver protonReceiver, ProtonDelivery sourceDelivery, Message message) {
+    private void forwardMessage(ProtonSender protonSender, ProtonReceiver protonReceiver, ProtonDelivery sourceDelivery, Message message, String dedupKey) {
         MessageAnnotations annotations = message.getMessageAnnotations();
         if (annotations == null) {
-            annotations = new MessageAnnotations(Collections.singletonMap(replicated, true));
+            Map<Symbol, Object> values = new HashMap<>();
+            values.put(replicated, true);
+            message.setMessageAnnotations(new MessageAnnotations(values));
         } else {
             annotations.getValue().put(replicated, true);
         }
-        message.setMessageAnnotations(annotations);
         protonSender.send(message, protonDelivery -> {
             sourceDelivery.disposition(protonDelivery.getRemoteState(), protonDelivery.remotelySettled());
-            protonReceiver.flow(protonSender.getCredit() - protonReceiver.getCredit());
+            // only remembered once forwarded, a message in flight when the links go down is forwarded when delivered again
+            if (dedupKey != null && protonDelivery.getRemoteState() instanceof Accepted) {
+                dedupFilter.putIfAbsent(dedupKey);
+            }
+            // one message out of the window, so credit for a new one
+            if (protonDelivery.remotelySettled()) {
+                protonReceiver.flow(1);
+            }
         });
     }
 
     @Override
     public void stop() {
+        vertx.cancelTimer(dedupTimer);
+        reconnectScheduler.cancel(getSenderKey());
+        reconnectScheduler.cancel(getReceiverKey());
+        metrics.remove(toString());
         receiverConnection.ifPresent(ProtonConnection::close);
         senderConnection.ifPresent(ProtonConnection::close);
     }
 
+    /**
+     * Messages are identified by message id and origin broker, the ones without id can't be tracked.
+     */
+    private String getDedupKey(Message message) {
+        Object messageId = message.getMessageId();
+        return messageId != null ? origin + "/" + messageId : null;
+    }
+
     private static boolean isMessageReplicated(Message message) {
         MessageAnnotations annotations = message.getMessageAnnotations();
         return annotations != null && annotations.getValue().containsKey(replicated);
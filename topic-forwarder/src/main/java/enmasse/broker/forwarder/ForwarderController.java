@@ -15,6 +15,7 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -29,6 +30,14 @@ public class ForwarderController extends AbstractVerticle implements DiscoveryLi
     private final String address;
     private final long connectionRetryInterval = 5000;
     private final String certDir;
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+    private ReconnectScheduler reconnectScheduler;
+
+    // reconnections of all the forwarders are spread over time and capped
+    private static final long reconnectBaseDelay = 1000;
+    private static final long reconnectMaxDelay = 30000;
+    private static final double reconnectAttemptsPerSecond = 5;
+    private static final int reconnectBurst = 10;
 
     public ForwarderController(Host localHost, String address, String certDir) {
         this.localHost = localHost;
@@ -38,8 +47,18 @@ public class ForwarderController extends AbstractVerticle implements DiscoveryLi
 
     @Override
     public void start() {
+        reconnectScheduler = new ReconnectScheduler(ReconnectScheduler.vertxClock(vertx), reconnectBaseDelay, reconnectMaxDelay,
+                reconnectAttemptsPerSecond, reconnectBurst, new Random());
         vertx.createHttpServer()
-                .requestHandler(request -> request.response().setStatusCode(HttpResponseStatus.OK.code()).end())
+                .requestHandler(request -> {
+                    if (request.path().equals("/metrics")) {
+                        request.response()
+                                .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                                .end(metrics.scrape());
+                    } else {
+                        request.response().setStatusCode(HttpResponseStatus.OK.code()).end();
+                    }
+                })
                 .listen(8088);
     }
 
@@ -73,7 +92,7 @@ public class ForwarderController extends AbstractVerticle implements DiscoveryLi
     }
 
     private void createForwarder(Host host) {
-        Forwarder forwarder = new Forwarder(localHost.amqpEndpoint(), host.amqpEndpoint(), address, connectionRetryInterval, certDir);
+        Forwarder forwarder = new Forwarder(localHost.amqpEndpoint(), host.amqpEndpoint(), address, connectionRetryInterval, certDir, Forwarder.DEFAULT_IN_FLIGHT_WINDOW, metrics, reconnectScheduler);
         log.info("Creating forwarder " + forwarder);
         vertx.deployVerticle(forwarder, result -> {
             if (result.succeeded()) {
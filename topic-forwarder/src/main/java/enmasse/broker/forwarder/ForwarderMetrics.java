@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.broker.forwarder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metrics of the forwarders, exposed in the Prometheus text format. Meters are tagged with the forwarder they belong to.
+ */
+public class ForwarderMetrics {
+    private static final String FORWARDER_TAG = "forwarder";
+
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    /**
+     * @return counter of the duplicate messages dropped by the forwarder
+     */
+    public Counter duplicatesDropped(String forwarder) {
+        return Counter.builder("forwarder.dedup.duplicates")
+                .description("Messages not forwarded because already forwarded before")
+                .tag(FORWARDER_TAG, forwarder)
+                .register(registry);
+    }
+
+    /**
+     * @return counter of the messages reported as already seen by the dedup filter on their first delivery
+     */
+    public Counter falsePositives(String forwarder) {
+        return Counter.builder("forwarder.dedup.false.positives")
+                .description("Messages on their first delivery reported as already forwarded by the dedup filter")
+                .tag(FORWARDER_TAG, forwarder)
+                .register(registry);
+    }
+
+    /**
+     * Remove all the meters of a forwarder.
+     */
+    public void remove(String forwarder) {
+        List<Meter> meters = new ArrayList<>();
+        for (Meter meter : registry.getMeters()) {
+            if (forwarder.equals(meter.getId().getTag(FORWARDER_TAG))) {
+                meters.add(meter);
+            }
+        }
+        meters.forEach(registry::remove);
+    }
+
+    /**
+     * @return metrics in the Prometheus text format
+     */
+    public String scrape() {
+        return registry.scrape();
+    }
+}
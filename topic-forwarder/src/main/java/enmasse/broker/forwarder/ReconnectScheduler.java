@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.broker.forwarder;
+
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Schedules the reconnection attempts of the forwarders, so that a broker restart doesn't trigger a storm of
+ * synchronized reconnections from all the peers.
+ *
+ * Every peer backs off exponentially with decorrelated jitter (the next delay is random between the base delay and
+ * three times the previous one, up to a max). When its delay expires, the attempt waits for a token from a bucket
+ * shared by all the peers, capping the attempts per second. Waiting attempts are run starting from the peers that
+ * were healthy most recently, as they are most likely to succeed.
+ */
+public class ReconnectScheduler {
+
+    /**
+     * Source of time and timers, replaced by a virtual clock in tests.
+     */
+    public interface Clock {
+        long now();
+
+        void schedule(long delay, Runnable task);
+    }
+
+    public static Clock vertxClock(Vertx vertx) {
+        return new Clock() {
+            @Override
+            public long now() {
+                return System.currentTimeMillis();
+            }
+
+            @Override
+            public void schedule(long delay, Runnable task) {
+                vertx.setTimer(Math.max(1, delay), id -> task.run());
+            }
+        };
+    }
+
+    private static class Peer {
+        private long lastDelay = 0;
+        private long lastHealthy = Long.MIN_VALUE;
+        private Runnable pending;
+        // invalidates the timers of cancelled attempts
+        private long generation = 0;
+        // order of arrival in the ready queue
+        private long sequence;
+    }
+
+    private final Clock clock;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final double attemptsPerSecond;
+    private final int burst;
+    private final Random random;
+
+    private final Map<String, Peer> peers = new HashMap<>();
+    private final PriorityQueue<Peer> ready = new PriorityQueue<>(
+            Comparator.<Peer>comparingLong(peer -> peer.lastHealthy).reversed().thenComparingLong(peer -> peer.sequence));
+    private double tokens;
+    private long lastRefill;
+    private boolean dispatchScheduled = false;
+    private long sequence = 0;
+    private long attempts = 0;
+
+    /**
+     * @param clock source of time and timers
+     * @param baseDelay min delay before an attempt (ms)
+     * @param maxDelay max delay before an attempt (ms)
+     * @param attemptsPerSecond attempts allowed per second, for all the peers
+     * @param burst attempts allowed at the same time, for all the peers
+     * @param random source of the jitter
+     */
+    public ReconnectScheduler(Clock clock, long baseDelay, long maxDelay, double attemptsPerSecond, int burst, Random random) {
+        this.clock = clock;
+        this.baseDelay = baseDelay;
+        this.maxDelay = Math.max(baseDelay, maxDelay);
+        this.attemptsPerSecond = attemptsPerSecond;
+        this.burst = burst;
+        this.random = random;
+        this.tokens = burst;
+        this.lastRefill = clock.now();
+    }
+
+    /**
+     * Schedule a reconnection attempt for a peer, replacing the one already scheduled if any.
+     *
+     * @return the backoff delay before the attempt competes for a token (ms)
+     */
+    public synchronized long schedule(String peerName, Runnable attempt) {
+        Peer peer = peers.computeIfAbsent(peerName, name -> new Peer());
+        if (peer.pending != null) {
+            peer.pending = attempt;
+            return 0;
+        }
+
+        long previous = peer.lastDelay > 0 ? peer.lastDelay : baseDelay;
+        long upper = Math.min(maxDelay, previous * 3);
+        long delay = upper > baseDelay ? baseDelay + (long) (random.nextDouble() * (upper - baseDelay)) : baseDelay;
+        peer.lastDelay = delay;
+        peer.pending = attempt;
+
+        long generation = ++peer.generation;
+        clock.schedule(delay, () -> ready(peer, generation));
+        return delay;
+    }
+
+    /**
+     * The peer is connected, so its backoff restarts from the base delay and it gets priority over the others.
+     */
+    public synchronized void connected(String peerName) {
+        Peer peer = peers.computeIfAbsent(peerName, name -> new Peer());
+        boolean waiting = ready.remove(peer);
+        peer.lastDelay = 0;
+        peer.lastHealthy = clock.now();
+        if (waiting) {
+            ready.add(peer);
+        }
+    }
+
+    /**
+     * Forget a peer, dropping its scheduled attempt.
+     */
+    public synchronized void cancel(String peerName) {
+        Peer peer = peers.remove(peerName);
+        if (peer != null) {
+            peer.pending = null;
+            peer.generation++;
+            ready.remove(peer);
+        }
+    }
+
+    /**
+     * @return number of attempts run so far
+     */
+    public synchronized long getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return number of attempts waiting for a token
+     */
+    public synchronized int getWaiting() {
+        return ready.size();
+    }
+
+    private void ready(Peer peer, long generation) {
+        List<Runnable> attemptsToRun;
+        synchronized (this) {
+            if (peer.generation != generation || peer.pending == null) {
+                return;
+            }
+            peer.sequence = sequence++;
+            ready.add(peer);
+            attemptsToRun = dispatch();
+        }
+        attemptsToRun.forEach(Runnable::run);
+    }
+
+    /**
+     * Take the attempts to run with the available tokens, scheduling a new dispatch when the next token is available.
+     * Called with the lock held, the attempts are run without it.
+     */
+    private List<Runnable> dispatch() {
+        long now = clock.now();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * attemptsPerSecond / 1000);
+        lastRefill = now;
+
+        List<Runnable> attemptsToRun = new ArrayList<>();
+        while (!ready.isEmpty() && tokens >= 1) {
+            Peer peer = ready.poll();
+            tokens -= 1;
+            attempts++;
+            attemptsToRun.add(peer.pending);
+            peer.pending = null;
+        }
+
+        if (!ready.isEmpty() && !dispatchScheduled) {
+            dispatchScheduled = true;
+            long wait = (long) Math.ceil((1 - tokens) * 1000 / attemptsPerSecond);
+            clock.schedule(Math.max(1, wait), () -> {
+                List<Runnable> next;
+                synchronized (this) {
+                    dispatchScheduled = false;
+                    next = dispatch();
+                }
+                next.forEach(Runnable::run);
+            });
+        }
+        return attemptsToRun;
+    }
+}
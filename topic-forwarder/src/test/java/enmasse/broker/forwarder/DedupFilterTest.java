@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.broker.forwarder;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DedupFilterTest {
+    private static final Logger log = LoggerFactory.getLogger(DedupFilterTest.class.getName());
+    private static final int messagesPerWindow = 1_000_000;
+    private static final double falsePositiveProbability = 0.01;
+
+    @Test
+    public void testFalsePositiveRate() {
+        DedupFilter filter = new DedupFilter(messagesPerWindow, falsePositiveProbability, 2);
+
+        // a full window in the previous generation, and another one in the current
+        for (int i = 0; i < messagesPerWindow; i++) {
+            filter.putIfAbsent(key(i));
+        }
+        filter.rotate();
+        for (int i = messagesPerWindow; i < 2 * messagesPerWindow; i++) {
+            filter.putIfAbsent(key(i));
+        }
+
+        for (int i = 0; i < 2 * messagesPerWindow; i++) {
+            assertTrue(filter.mightContain(key(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 2 * messagesPerWindow; i < 3 * messagesPerWindow; i++) {
+            if (filter.mightContain(key(i))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / messagesPerWindow;
+        log.info("False positive rate " + rate + " with " + filter.getNumHashes() + " hashes");
+        assertTrue(rate < falsePositiveProbability * 1.5);
+    }
+
+    @Test
+    public void testMemory() {
+        DedupFilter filter = new DedupFilter(messagesPerWindow, falsePositiveProbability, 2);
+        for (int i = 0; i < messagesPerWindow; i++) {
+            filter.putIfAbsent(key(i));
+        }
+
+        long bytes = filter.memoryBytes();
+        log.info("Memory for " + messagesPerWindow + " messages per window: " + bytes + " bytes, "
+                + (bytes * 8.0 / messagesPerWindow) + " bits per message");
+        // 2 generations of about 11M bits each
+        assertTrue(bytes < 3 * 1024 * 1024);
+        // the memory doesn't depend on the messages added
+        assertTrue(new DedupFilter(messagesPerWindow, falsePositiveProbability, 2).memoryBytes() == bytes);
+    }
+
+    @Test
+    public void testRotation() {
+        DedupFilter filter = new DedupFilter(1000, falsePositiveProbability, 2);
+        assertTrue(filter.putIfAbsent("a"));
+        assertFalse(filter.putIfAbsent("a"));
+
+        // still remembered in the previous generation
+        filter.rotate();
+        assertTrue(filter.mightContain("a"));
+
+        // forgotten when its generation is reused
+        filter.rotate();
+        assertFalse(filter.mightContain("a"));
+        assertTrue(filter.putIfAbsent("a"));
+    }
+
+    private static String key(int i) {
+        return "broker-0:5673/ID:" + i;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.broker.forwarder;
+
+import enmasse.discovery.Endpoint;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonSender;
+import io.vertx.proton.ProtonServer;
+import io.vertx.proton.ProtonSession;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.message.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the forwarder between two in-process brokers, the destination one settling messages with latency.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ForwarderTest {
+    private static final Logger log = LoggerFactory.getLogger(ForwarderTest.class.getName());
+    private static final String address = "mytopic";
+    private static final String localHost = "127.0.0.1";
+    private static final long timeout = 60_000;
+
+    private Vertx vertx;
+
+    private final AtomicInteger sourceAccepted = new AtomicInteger();
+    private final AtomicInteger destinationReceived = new AtomicInteger();
+    private final AtomicInteger destinationInFlight = new AtomicInteger();
+    private final AtomicInteger destinationMaxInFlight = new AtomicInteger();
+
+    @Before
+    public void setup() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void teardown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testPipelinedThroughput(TestContext context) {
+        int numMessages = 1000;
+        long latency = 10;
+        int window = 100;
+
+        Async settled = context.async(numMessages);
+        ProtonServer source = startSource(context, numMessages, i -> false, settled);
+        ProtonServer destination = startDestination(context, latency);
+
+        long start = System.nanoTime();
+        deployForwarder(context, source, destination, window);
+        settled.awaitSuccess(timeout);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        log.info("Forwarded " + numMessages + " messages with " + latency + " ms latency in " + elapsed + " ms");
+
+        context.assertEquals(numMessages, sourceAccepted.get());
+        context.assertEquals(numMessages, destinationReceived.get());
+        // messages pipelined, but never more than the window
+        context.assertTrue(destinationMaxInFlight.get() > 1);
+        context.assertTrue(destinationMaxInFlight.get() <= window);
+        // one message per round trip would take numMessages * latency
+        context.assertTrue(elapsed < numMessages * latency / 2);
+    }
+
+    @Test
+    public void testReplicatedNotForwarded(TestContext context) {
+        int numMessages = 200;
+
+        // half of the messages already replicated by a peer, they don't take credit forever
+        Async settled = context.async(numMessages);
+        ProtonServer source = startSource(context, numMessages, i -> i % 2 == 0, settled);
+        ProtonServer destination = startDestination(context, 1);
+
+        deployForwarder(context, source, destination, 10);
+        settled.awaitSuccess(timeout);
+
+        context.assertEquals(numMessages, sourceAccepted.get());
+        context.assertEquals(numMessages / 2, destinationReceived.get());
+    }
+
+    private interface Replicated {
+        boolean test(int index);
+    }
+
+    private void deployForwarder(TestContext context, ProtonServer source, ProtonServer destination, int window) {
+        Forwarder forwarder = new Forwarder(new Endpoint(localHost, source.actualPort()),
+                new Endpoint(localHost, destination.actualPort()), address, 1000, null, window);
+        Async deployed = context.async();
+        vertx.deployVerticle(forwarder, context.asyncAssertSuccess(id -> deployed.complete()));
+        deployed.awaitSuccess(timeout);
+    }
+
+    /**
+     * Broker sending the messages to the forwarder subscription as fast as the credit allows.
+     */
+    private ProtonServer startSource(TestContext context, int numMessages, Replicated replicated, Async settled) {
+        return startServer(context, "source", connection -> {
+            connection.senderOpenHandler(sender -> {
+                sender.setSource(sender.getRemoteSource());
+                AtomicInteger sent = new AtomicInteger();
+                Handler<ProtonSender> sendMessages = s -> {
+                    while (!s.sendQueueFull() && sent.get() < numMessages) {
+                        int index = sent.getAndIncrement();
+                        s.send(createMessage(index, replicated.test(index)), delivery -> {
+                            if (delivery.getRemoteState() instanceof Accepted) {
+                                sourceAccepted.incrementAndGet();
+                            }
+                            settled.countDown();
+                        });
+                    }
+                };
+                sender.sendQueueDrainHandler(sendMessages);
+                sender.open();
+            });
+        });
+    }
+
+    /**
+     * Broker settling every message received from the forwarder after the given latency.
+     */
+    private ProtonServer startDestination(TestContext context, long latency) {
+        return startServer(context, "destination", connection -> {
+            connection.receiverOpenHandler(receiver -> {
+                receiver.setTarget(receiver.getRemoteTarget());
+                receiver.setAutoAccept(false);
+                receiver.handler((delivery, message) -> {
+                    destinationMaxInFlight.accumulateAndGet(destinationInFlight.incrementAndGet(), Math::max);
+                    vertx.setTimer(latency, id -> {
+                        destinationInFlight.decrementAndGet();
+                        destinationReceived.incrementAndGet();
+                        delivery.disposition(Accepted.getInstance(), true);
+                    });
+                });
+                receiver.open();
+            });
+        });
+    }
+
+    private ProtonServer startServer(TestContext context, String containerId, Handler<ProtonConnection> linkHandlers) {
+        Async listening = context.async();
+        ProtonServer server = ProtonServer.create(vertx)
+                .connectHandler(connection -> {
+                    connection.setContainer(containerId);
+                    connection.sessionOpenHandler(ProtonSession::open);
+                    linkHandlers.handle(connection);
+                    connection.openHandler(conn -> connection.open());
+                })
+                .listen(0, localHost, context.asyncAssertSuccess(s -> listening.complete()));
+        listening.awaitSuccess(timeout);
+        return server;
+    }
+
+    private static Message createMessage(int index, boolean replicated) {
+        Message message = Message.Factory.create();
+        message.setAddress(address);
+        message.setBody(new AmqpValue("Hello " + index));
+        if (replicated) {
+            message.setMessageAnnotations(new MessageAnnotations(Collections.singletonMap(Symbol.getSymbol("replicated"), true)));
+        }
+        return message;
+    }
+}
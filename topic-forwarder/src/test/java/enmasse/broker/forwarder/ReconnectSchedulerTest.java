@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018, EnMasse authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+
+package enmasse.broker.forwarder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReconnectSchedulerTest {
+    private VirtualClock clock;
+    private List<Long> attemptTimes;
+
+    @Before
+    public void setup() {
+        clock = new VirtualClock();
+        attemptTimes = new ArrayList<>();
+    }
+
+    @Test
+    public void testDecorrelatedJitter() {
+        long base = 100;
+        long max = 10_000;
+        ReconnectScheduler scheduler = new ReconnectScheduler(clock, base, max, 1000, 1000, new Random(1));
+
+        // a peer failing over and over again
+        long previous = base;
+        long longest = 0;
+        for (int i = 0; i < 50; i++) {
+            long delay = scheduler.schedule("peer", this::recordAttempt);
+            assertTrue(delay >= base);
+            assertTrue(delay <= Math.min(max, previous * 3));
+            previous = delay;
+            longest = Math.max(longest, delay);
+            clock.advance(delay);
+        }
+        assertEquals(50, attemptTimes.size());
+        // backing off up to the max delay
+        assertTrue(longest > max / 2);
+
+        // backoff restarted once connected
+        scheduler.connected("peer");
+        assertTrue(scheduler.schedule("peer", this::recordAttempt) <= base * 3);
+    }
+
+    @Test
+    public void testAttemptsSpread() {
+        int numPeers = 100;
+        ReconnectScheduler scheduler = new ReconnectScheduler(clock, 1000, 30_000, 1000, 1000, new Random(2));
+
+        // all the peers losing the connection at the same time, for a few times
+        int[] perInterval = new int[2000];
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < numPeers; i++) {
+                scheduler.schedule("peer-" + i, () -> perInterval[(int) (clock.now() / 100)]++);
+            }
+            clock.advance(60_000);
+        }
+
+        assertEquals(3 * numPeers, scheduler.getAttempts());
+        // attempts spread over time, instead of all the peers in the same 100 ms
+        int busiest = Arrays.stream(perInterval).max().getAsInt();
+        assertTrue("busiest interval with " + busiest + " attempts", busiest < numPeers / 4);
+    }
+
+    @Test
+    public void testTokenBucket() {
+        int numPeers = 100;
+        double rate = 5;
+        int burst = 10;
+        ReconnectScheduler scheduler = new ReconnectScheduler(clock, 1000, 1000, rate, burst, new Random(3));
+
+        for (int i = 0; i < numPeers; i++) {
+            scheduler.schedule("peer-" + i, this::recordAttempt);
+        }
+
+        for (long t = 1000; t <= 10_000; t += 1000) {
+            clock.advance(1000);
+            long attemptsSoFar = attemptTimes.stream().filter(time -> time <= clock.now()).count();
+            // the burst right away, then the rate
+            assertTrue(attemptsSoFar <= burst + rate * (clock.now() - 1000) / 1000 + 1);
+        }
+
+        clock.advance(60_000);
+        assertEquals(numPeers, attemptTimes.size());
+        assertEquals(0, scheduler.getWaiting());
+        // the last attempt waited for the tokens
+        long last = attemptTimes.get(attemptTimes.size() - 1);
+        assertTrue(last >= 1000 + (numPeers - burst) / rate * 1000 - 1000);
+    }
+
+    @Test
+    public void testRecentlyHealthyFirst() {
+        ReconnectScheduler scheduler = new ReconnectScheduler(clock, 1000, 1000, 1, 1, new Random(4));
+        List<String> order = new ArrayList<>();
+
+        scheduler.connected("healthy-long-ago");
+        clock.advance(10_000);
+        scheduler.connected("healthy-recently");
+
+        // the only token taken by another peer, the others waiting together
+        scheduler.schedule("first", () -> order.add("first"));
+        scheduler.schedule("never-healthy", () -> order.add("never-healthy"));
+        scheduler.schedule("healthy-long-ago", () -> order.add("healthy-long-ago"));
+        scheduler.schedule("healthy-recently", () -> order.add("healthy-recently"));
+        clock.advance(10_000);
+
+        assertEquals(Arrays.asList("first", "healthy-recently", "healthy-long-ago", "never-healthy"), order);
+    }
+
+    @Test
+    public void testCancel() {
+        ReconnectScheduler scheduler = new ReconnectScheduler(clock, 1000, 1000, 1000, 1000, new Random(5));
+        scheduler.schedule("peer", this::recordAttempt);
+        scheduler.cancel("peer");
+        clock.advance(10_000);
+
+        assertEquals(0, attemptTimes.size());
+        assertEquals(0, scheduler.getAttempts());
+    }
+
+    private void recordAttempt() {
+        attemptTimes.add(clock.now());
+    }
+
+    /**
+     * Clock where time moves forward only when advanced, running the timers expired in the meantime.
+     */
+    private static class VirtualClock implements ReconnectScheduler.Clock {
+        private long now = 0;
+        private long sequence = 0;
+        private final PriorityQueue<long[]> timers = new PriorityQueue<>(
+                Comparator.<long[]>comparingLong(timer -> timer[0]).thenComparingLong(timer -> timer[1]));
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public void schedule(long delay, Runnable task) {
+            tasks.add(task);
+            timers.add(new long[]{now + Math.max(1, delay), sequence++, tasks.size() - 1});
+        }
+
+        void advance(long millis) {
+            long end = now + millis;
+            while (!timers.isEmpty() && timers.peek()[0] <= end) {
+                long[] timer = timers.poll();
+                now = timer[0];
+                tasks.get((int) timer[2]).run();
+            }
+            now = end;
+        }
+    }
+}